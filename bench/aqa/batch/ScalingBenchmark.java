@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Show how the run time of each Workload grows with its size.  Each workload
+ * is run at doubling sizes and the time per step of its algorithm is
+ * printed, along with how much that changed from the size before: about 1.0
+ * means the interpreter scales with the algorithm; about 2.0 means the
+ * interpreter does O(n) work for each step.
+ *
+ * Run with 'ant bench -Dbench.class=aqa.batch.ScalingBenchmark'.  Workloads
+ * can be written out to run as a batch too: see --generate in BatchCommand.
+ *
+ * @author martinhart
+ */
+public class ScalingBenchmark {
+
+    private static final int[] SIZES = {100, 200, 400, 800};
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 3;
+
+    public static void main(String[] args) throws InterpreterException {
+        for (Engine engine : Engine.values()) {
+            // warm up on the biggest size first so that the small sizes
+            // aren't measured before the JIT has compiled the interpreter.
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                for (Workload workload : Workload.values()) {
+                    execute(engine, workload, SIZES[SIZES.length - 1]);
+                }
+            }
+            for (Workload workload : Workload.values()) {
+                run(engine, workload);
+            }
+        }
+    }
+
+    private static void run(Engine engine, Workload workload) throws InterpreterException {
+        double previous = 0;
+        for (int size : SIZES) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                execute(engine, workload, size);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double perStep = best / (double) workload.steps(size);
+            System.out.printf("%-12s %-16s %6d %10.1f ns/step %s%n", engine, workload, size, perStep,
+                    previous == 0 ? "" : String.format("x%.2f", perStep / previous));
+            previous = perStep;
+        }
+    }
+
+    /**
+     * Run a workload once, checking it produced the right output.
+     */
+    private static void execute(Engine engine, Workload workload, int size) throws InterpreterException {
+        final List<String> output = new ArrayList<>();
+        final Iterator<String> input = workload.input(size).iterator();
+        Interpreter interpreter = new Interpreter(new StringReader(workload.source(size)),
+                output::add, input::next);
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        if (!output.equals(workload.expectedOutput(size))) {
+            throw new IllegalStateException(engine + " got the wrong answer for " + workload.job(size).getName());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.parser;
+
+import aqa.Engine;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import java.io.StringReader;
+
+/**
+ * Measure the cost of subroutine calls and returns on a deeply recursive
+ * program.  Every level of the recursion RETURNs, so this shows how the
+ * engines unwind a subroutine as the call stack gets deeper.
+ *
+ * Run with 'ant bench -Dbench.class=aqa.parser.RecursionBenchmark'.
+ *
+ * @author martinhart
+ */
+public class RecursionBenchmark {
+
+    private static final int DEPTH = 300;
+    private static final int CALLS = 200;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final String PROGRAM =
+            "SUBROUTINE depth(n)\n" +
+            "  IF n = 0 THEN\n" +
+            "    RETURN 0\n" +
+            "  ENDIF\n" +
+            "  RETURN depth(n - 1) + 1\n" +
+            "ENDSUBROUTINE\n" +
+            "total <- 0\n" +
+            "FOR i <- 1 TO " + CALLS + "\n" +
+            "  total <- total + depth(" + DEPTH + ")\n" +
+            "ENDFOR\n" +
+            "OUTPUT total\n";
+
+    public static void main(String[] args) throws InterpreterException {
+        for (Engine engine : Engine.values()) {
+            run(engine);
+        }
+    }
+
+    private static void run(Engine engine) throws InterpreterException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            execute(engine);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            execute(engine);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-35s %8.1f ms for %d calls at depth %d%n",
+                engine, best / 1000000.0, CALLS, DEPTH);
+    }
+
+    /**
+     * Run the program once, checking it produced the right answer.
+     */
+    private static void execute(Engine engine) throws InterpreterException {
+        final StringBuilder output = new StringBuilder();
+        Interpreter interpreter = new Interpreter(new StringReader(PROGRAM),
+                output::append, new NullInputProvider());
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        if (!output.toString().equals(Integer.toString(DEPTH * CALLS))) {
+            throw new IllegalStateException(engine + " produced " + output);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+
+/**
+ * Measure push/pop throughput of the ValueStack implementations.  Each
+ * operation mimics a binary operator: push two values, pop two values.
+ *
+ * Run with 'ant bench' (or 'ant bench -Dbench.class=aqa.value.ValueStackBenchmark').
+ *
+ * @author martinhart
+ */
+public class ValueStackBenchmark {
+
+    private static final int OPERATIONS = 10_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final Value LEFT = new IntegerValue(1);
+    private static final Value RIGHT = new IntegerValue(2);
+
+    public static void main(String[] args) throws InterpreterException {
+        run("ValueStackImpl (java.util.Stack)", new ValueStackImpl());
+        run("ArrayValueStack", new ArrayValueStack());
+    }
+
+    private static void run(String name, ValueStack stack) throws InterpreterException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            operate(stack);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            operate(stack);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-35s %8.1f million push/pop pairs per second%n",
+                name, OPERATIONS * 2 / (best / 1000.0));
+    }
+
+    /**
+     * @return a value depending on every pop, so the work cannot be skipped.
+     */
+    private static int operate(ValueStack stack) throws InterpreterException {
+        int check = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            stack.push(LEFT);
+            stack.push(RIGHT);
+            check += stack.pop() == RIGHT ? 1 : 0;
+            check += stack.pop() == LEFT ? 1 : 0;
+        }
+        if (check != OPERATIONS * 2) {
+            throw new IllegalStateException("stack returned the wrong values");
+        }
+        return check;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measure Interpreter.execute from start to finish (reading the source code
+ * included) on each of the example programs, with each engine.
+ *
+ * The examples are read from the directory named by the aqa.examples system
+ * property ('examples' by default).  Add new examples to the example
+ * parameter.
+ *
+ * @author martinhart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ExamplesBenchmark {
+
+    @Param({"add-array-elements.aqa", "bubblesort.aqa", "subroutines.aqa", "userinput.aqa"})
+    public String example;
+
+    @Param({"PARSER", "TREE_WALKER", "BYTECODE"})
+    public Engine engine;
+
+    private String source;
+
+    @Setup
+    public void read() throws IOException {
+        String directory = System.getProperty("aqa.examples", "examples");
+        source = new String(Files.readAllBytes(Paths.get(directory, example)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void execute(final Blackhole blackhole) throws InterpreterException {
+        Interpreter interpreter = new Interpreter(new StringReader(source),
+                blackhole::consume, () -> "World");
+        interpreter.setEngine(engine);
+        interpreter.execute();
+    }
+}
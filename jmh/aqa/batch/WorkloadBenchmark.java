@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import aqa.Program;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Run each Workload at several sizes on each engine.  Divide each score by
+ * Workload.steps for its size (or see ScalingBenchmark in bench) to see
+ * whether the interpreter scales with the workload's algorithm.
+ *
+ * @author martinhart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xss16m")
+public class WorkloadBenchmark {
+
+    @Param({"NESTED_LOOPS", "SORT", "STRING_BUILDING", "RECURSION", "SUBROUTINES", "IF_LADDER", "OUTPUT"})
+    public Workload workload;
+
+    @Param({"100", "200", "400"})
+    public int size;
+
+    @Param({"PARSER", "TREE_WALKER", "BYTECODE"})
+    public Engine engine;
+
+    private Program program;
+    private List<String> input;
+
+    @Setup
+    public void compile() throws InterpreterException {
+        program = Program.compile(new StringReader(workload.source(size)));
+        input = workload.input(size);
+    }
+
+    @Benchmark
+    public void run(final Blackhole blackhole) throws InterpreterException {
+        final Iterator<String> lines = input.iterator();
+        Interpreter interpreter = new Interpreter(program, blackhole::consume, lines::next);
+        interpreter.setEngine(engine);
+        interpreter.execute();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.parser;
+
+import aqa.Engine;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import aqa.Program;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the cost of calling a subroutine, and of deep recursion, on each
+ * engine.  The programs are compiled once so only running them is measured.
+ * The PARSER engine recurses in Java for every level, so the benchmark runs
+ * with a bigger stack than the default.
+ *
+ * @author martinhart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xss16m")
+public class SubroutineBenchmark {
+
+    private static final int CALLS = 10000;
+
+    private static final String CALLS_PROGRAM =
+            "SUBROUTINE next(n)\n" +
+            "  RETURN n + 1\n" +
+            "ENDSUBROUTINE\n" +
+            "total <- 0\n" +
+            "FOR i <- 1 TO " + CALLS + "\n" +
+            "  total <- next(total)\n" +
+            "ENDFOR\n" +
+            "OUTPUT total\n";
+
+    private static final String RECURSION_PROGRAM =
+            "SUBROUTINE depth(n)\n" +
+            "  IF n = 0 THEN\n" +
+            "    RETURN 0\n" +
+            "  ENDIF\n" +
+            "  RETURN depth(n - 1) + 1\n" +
+            "ENDSUBROUTINE\n" +
+            "OUTPUT depth(%d)\n";
+
+    @Param({"PARSER", "TREE_WALKER", "BYTECODE"})
+    public Engine engine;
+
+    private Program calls;
+
+    @Setup
+    public void compile() throws InterpreterException {
+        calls = Program.compile(new StringReader(CALLS_PROGRAM));
+    }
+
+    /**
+     * Call a subroutine CALLS times.
+     */
+    @Benchmark
+    public String calls() throws InterpreterException {
+        return run(calls, Integer.toString(CALLS));
+    }
+
+    @Benchmark
+    public String recursion(Recursion recursion) throws InterpreterException {
+        return run(recursion.program, Integer.toString(recursion.depth));
+    }
+
+    /**
+     * Run a program, checking it produced the right answer.
+     */
+    private String run(Program program, String expected) throws InterpreterException {
+        StringBuilder output = new StringBuilder();
+        Interpreter interpreter = new Interpreter(program, output::append, new NullInputProvider());
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        if (!output.toString().equals(expected)) {
+            throw new IllegalStateException(engine + " produced " + output);
+        }
+        return expected;
+    }
+
+    /**
+     * A recursive program for the recursion benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Recursion {
+
+        /**
+         * How deep the recursion goes.
+         */
+        @Param({"100", "500"})
+        public int depth;
+
+        private Program program;
+
+        @Setup
+        public void compile() throws InterpreterException {
+            program = Program.compile(new StringReader(String.format(RECURSION_PROGRAM, depth)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import aqa.InterpreterException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure Tokenizer.tokenize on generated source code of several sizes.  The
+ * source is made from a fixed seed so it is the same on every run.
+ *
+ * @author martinhart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TokenizerBenchmark {
+
+    /**
+     * The number of statements in the source code.
+     */
+    @Param({"100", "10000"})
+    public int statements;
+
+    private String source;
+
+    private static final String[] STATEMENTS = {
+        "total%d <- total%d + %d * (count - 1)\n",
+        "IF count%d >= %d THEN OUTPUT 'count is ', count%d ENDIF\n",
+        "WHILE i%d < %d  # keep going\n  i%d <- i%d + 1\nENDWHILE\n",
+        "FOR j%d <- 1 TO %d\n  items[j%d] <- items[j%d - 1] / 2.5\nENDFOR\n",
+        "message%d <- 'line ' + INT_TO_STRING(%d) + ' of %d'\n",
+    };
+
+    @Setup
+    public void generate() {
+        Random random = new Random(statements);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            int n = random.nextInt(100);
+            text.append(String.format(STATEMENTS[random.nextInt(STATEMENTS.length)], n, n, n, n));
+        }
+        source = text.toString();
+    }
+
+    @Benchmark
+    public Tokens tokenize() throws InterpreterException {
+        return new Tokenizer(new StringReader(source)).tokenize();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure arithmetic on IntegerValue and RealValue (which dispatches on the
+ * type of both operands) and push/pop on the ValueStack implementations.
+ *
+ * The operands are held in fields rather than constants so that the JIT
+ * can't fold the arithmetic away.  The mixed benchmark goes round operands of
+ * both types so the call sites see more than one class, as they do when a
+ * program mixes integers and reals.
+ *
+ * @author martinhart
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ValueOperationsBenchmark {
+
+    private Value integer;
+    private Value otherInteger;
+    private Value real;
+    private Value otherReal;
+    private Value[] mixed;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        integer = new IntegerValue(1234);
+        otherInteger = new IntegerValue(56);
+        real = new RealValue(12.34);
+        otherReal = new RealValue(5.6);
+        mixed = new Value[] {integer, real, otherInteger, otherReal};
+    }
+
+    @Benchmark
+    public Value integerAdd() throws InterpreterException {
+        return integer.add(otherInteger);
+    }
+
+    @Benchmark
+    public Value integerMultiply() throws InterpreterException {
+        return integer.multiply(otherInteger);
+    }
+
+    @Benchmark
+    public Value integerDivide() throws InterpreterException {
+        return integer.divide(otherInteger);
+    }
+
+    @Benchmark
+    public int integerCompare() throws InterpreterException {
+        return integer.compare(otherInteger);
+    }
+
+    @Benchmark
+    public Value realAdd() throws InterpreterException {
+        return real.add(otherReal);
+    }
+
+    @Benchmark
+    public Value realMultiply() throws InterpreterException {
+        return real.multiply(otherReal);
+    }
+
+    @Benchmark
+    public Value integerAddReal() throws InterpreterException {
+        return integer.add(real);
+    }
+
+    @Benchmark
+    public Value realAddInteger() throws InterpreterException {
+        return real.add(integer);
+    }
+
+    @Benchmark
+    public Value mixedAdd() throws InterpreterException {
+        int i = next;
+        next = (i + 1) & 3;
+        return mixed[i].add(mixed[(i + 1) & 3]);
+    }
+
+    /**
+     * What a binary operator does to the stack: push two values, pop them.
+     */
+    @Benchmark
+    public Value pushPushPopPop(Stack state) throws InterpreterException {
+        ValueStack stack = state.stack;
+        stack.push(integer);
+        stack.push(real);
+        stack.pop();
+        return stack.pop();
+    }
+
+    /**
+     * A stack for the push/pop benchmark.
+     */
+    @State(Scope.Thread)
+    public static class Stack {
+
+        /**
+         * The ValueStack implementation to push and pop.
+         */
+        @Param({"ArrayValueStack", "ValueStackImpl"})
+        public String type;
+
+        private ValueStack stack;
+
+        @Setup
+        public void setUp() {
+            stack = type.equals("ArrayValueStack") ? new ArrayValueStack() : new ValueStackImpl();
+        }
+    }
+}
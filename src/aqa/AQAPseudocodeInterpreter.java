@@ -3,6 +3,7 @@
  */
 package aqa;
 
+import aqa.batch.BatchCommand;
 import aqa.ui.MainWindow;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
@@ -11,14 +12,19 @@ import javax.swing.UnsupportedLookAndFeelException;
 /**
  * Application entry point.
  * This class initialises the UI and then creates and displays the main window.
+ * Run with --batch to run programs without the UI instead (see BatchCommand).
  * @author martinhart
  */
 public class AQAPseudocodeInterpreter {
 
     /**
-     * @param args the command line arguments (which are ignored!)
+     * @param args the command line arguments (only used in batch mode)
      */
     public static void main(String[] args) {
+        if (BatchCommand.isBatch(args)) {
+            System.exit(new BatchCommand(System.out, System.err).run(args));
+        }
+        
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         }
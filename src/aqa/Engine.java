@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+/**
+ * The ways in which the Interpreter can execute a program.
+ *
+ * @author martinhart
+ */
+public enum Engine {
+
+    /**
+     * Parse and execute the tokens directly (aqa.parser.Parser).  Every
+     * statement is recognised from its tokens each time it is executed.
+     */
+    PARSER,
+
+    /**
+     * Build a syntax tree from the tokens once and then execute the tree
+     * (aqa.ast.TreeWalker).
+     */
+    TREE_WALKER,
+
+    /**
+     * Compile the syntax tree to bytecode and execute that in a single
+     * dispatch loop (aqa.bytecode.BytecodeMachine).
+     */
+    BYTECODE
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+/**
+ * Limits on how much a program may do before it is stopped with an
+ * ExecutionLimitException:
+ *
+ *  - the number of instructions (statements, plus one each time round a
+ *    WHILE or REPEAT loop, so that an empty WHILE TRUE loop is counted),
+ *  - the wall clock time,
+ *  - the depth of subroutine calls, and
+ *  - memory: the total number of array elements and of string characters
+ *    the program holds.
+ *
+ * The memory limits are checked as arrays grow or are copied and strings are
+ * joined with +, before anything is allocated, so that a single statement
+ * such as ary[1000000000] &lt;- 1 cannot use up all of the memory.  They
+ * apply to everything the program holds together (see
+ * ExecutionMeter), so many small arrays are limited just as one big one is,
+ * but values the program has dropped don't count.
+ *
+ * A limit of 0 means there is no limit.  Even an UNLIMITED budget stops the
+ * program when its thread is interrupted (e.g. when the user presses stop).
+ *
+ * @author martinhart
+ */
+public final class ExecutionBudget {
+
+    /**
+     * No limits, other than interruption.
+     */
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(0, 0, 0);
+
+    private final long maxInstructions;
+    private final long maxMillis;
+    private final int maxCallDepth;
+    private final long maxArrayElements;
+    private final long maxStringCharacters;
+
+    /**
+     * Create a budget without memory limits.
+     * @param maxInstructions the most instructions that may be executed (0 for no limit)
+     * @param maxMillis the longest the program may run for (0 for no limit)
+     * @param maxCallDepth the deepest subroutine calls may nest (0 for no limit)
+     */
+    public ExecutionBudget(long maxInstructions, long maxMillis, int maxCallDepth) {
+        this(maxInstructions, maxMillis, maxCallDepth, 0, 0);
+    }
+
+    /**
+     * @param maxInstructions the most instructions that may be executed (0 for no limit)
+     * @param maxMillis the longest the program may run for (0 for no limit)
+     * @param maxCallDepth the deepest subroutine calls may nest (0 for no limit)
+     * @param maxArrayElements the most array elements the program may hold (0 for no limit)
+     * @param maxStringCharacters the most string characters the program may hold (0 for no limit)
+     */
+    public ExecutionBudget(long maxInstructions, long maxMillis, int maxCallDepth,
+            long maxArrayElements, long maxStringCharacters) {
+        if (maxInstructions < 0 || maxMillis < 0 || maxCallDepth < 0
+                || maxArrayElements < 0 || maxStringCharacters < 0) {
+            throw new IllegalArgumentException("limits cannot be negative");
+        }
+        this.maxInstructions = maxInstructions;
+        this.maxMillis = maxMillis;
+        this.maxCallDepth = maxCallDepth;
+        this.maxArrayElements = maxArrayElements;
+        this.maxStringCharacters = maxStringCharacters;
+    }
+
+    /**
+     * @return the most instructions that may be executed (0 for no limit)
+     */
+    public long getMaxInstructions() {
+        return maxInstructions;
+    }
+
+    /**
+     * @return the longest the program may run for in milliseconds (0 for no limit)
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return the deepest subroutine calls may nest (0 for no limit)
+     */
+    public int getMaxCallDepth() {
+        return maxCallDepth;
+    }
+
+    /**
+     * @return the most array elements the program may hold (0 for no limit)
+     */
+    public long getMaxArrayElements() {
+        return maxArrayElements;
+    }
+
+    /**
+     * @return the most string characters the program may hold (0 for no limit)
+     */
+    public long getMaxStringCharacters() {
+        return maxStringCharacters;
+    }
+
+    /**
+     * Start measuring a run of a program against this budget.
+     * @return a new meter; the clock starts now
+     */
+    public ExecutionMeter start() {
+        return new ExecutionMeter(this);
+    }
+}
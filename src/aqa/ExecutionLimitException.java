@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+/**
+ * Thrown when a program exceeds its ExecutionBudget (or is cancelled) rather
+ * than because there is anything wrong with it.  Clients that run untrusted
+ * programs (e.g. the batch runner) can catch this separately from other
+ * errors.
+ *
+ * @author martinhart
+ */
+public class ExecutionLimitException extends InterpreterException {
+
+    /**
+     * The limits that can stop a program.
+     */
+    public enum Limit {
+        INSTRUCTIONS,
+        WALL_TIME,
+        CALL_DEPTH,
+        MEMORY,
+        INTERRUPTED
+    }
+
+    /**
+     * The limit that stopped the program.
+     */
+    private final Limit limit;
+
+    /**
+     * The message without any line number.
+     */
+    private final String reason;
+
+    /**
+     * @param limit the limit that stopped the program
+     * @param reason the user-facing error message
+     */
+    public ExecutionLimitException(Limit limit, String reason) {
+        super(reason);
+        this.limit = limit;
+        this.reason = reason;
+    }
+
+    /**
+     * @param line the line being executed when the limit was reached
+     * @param limit the limit that stopped the program
+     * @param reason the user-facing error message
+     */
+    public ExecutionLimitException(int line, Limit limit, String reason) {
+        super(line, reason);
+        this.limit = limit;
+        this.reason = reason;
+    }
+
+    /**
+     * @return the limit that stopped the program
+     */
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * The engines add the current line to errors as they leave; this keeps
+     * the type (and limit) while doing so.
+     * @param line the line being executed when the limit was reached
+     * @return a copy of this exception for that line
+     */
+    public ExecutionLimitException atLine(int line) {
+        return new ExecutionLimitException(line, limit, reason);
+    }
+}
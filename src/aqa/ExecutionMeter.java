@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.ExecutionLimitException.Limit;
+import aqa.value.MemoryUse;
+import aqa.value.ValueStack;
+import aqa.variable.VariableTable;
+import java.util.ArrayList;
+
+/**
+ * Measures one run of a program against its ExecutionBudget.  The engines
+ * call instruction() for every instruction so it is kept cheap: a counter
+ * comparison, with the clock and interrupt flag only looked at every
+ * CHECK_INTERVAL instructions.
+ *
+ * Memory is allocated by values (aqa.value) which know nothing of the program
+ * running them, so an engine attaches its meter to the thread for the
+ * duration of the run and the values charge whichever meter is attached.
+ * Values created with no meter attached (e.g. literals while parsing) are not
+ * counted.
+ *
+ * Nothing tells the meter when a value is dropped, so the charges only ever
+ * go up.  When they pass a limit the meter measures what the program still
+ * holds (everything reachable from the variables and value stack of the
+ * main program and of each subroutine call in progress, which the engines
+ * tell it about) and
+ * starts counting again from there; only if that is still over the limit is
+ * the program stopped.  So building a string a character at a time, or
+ * making and dropping arrays in a loop, is not stopped, but holding more
+ * than the limit in total is.
+ *
+ * @author martinhart
+ */
+public class ExecutionMeter {
+
+    /**
+     * How often (in instructions) to check the clock and interrupt flag.
+     * Must be a power of 2.
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * The meter charged for memory allocated on each thread.
+     */
+    private static final ThreadLocal<ExecutionMeter> ATTACHED = new ThreadLocal<>();
+
+    private final ExecutionBudget budget;
+    private final long maxInstructions;
+    private final int maxCallDepth;
+    private final long maxArrayElements;
+    private final long maxStringCharacters;
+
+    /**
+     * When the time runs out (System.nanoTime), if there is a time limit.
+     */
+    private final long deadline;
+
+    private long instructions;
+    private int callDepth;
+    private long arrayElements;
+    private long stringCharacters;
+
+    /**
+     * The variables of the main program and of each subroutine call in
+     * progress, innermost last.
+     */
+    private final ArrayList<VariableTable> frames = new ArrayList<>();
+
+    /**
+     * The value stack of each entry in frames.
+     */
+    private final ArrayList<ValueStack> stacks = new ArrayList<>();
+
+    /**
+     * @param budget the limits to apply
+     */
+    ExecutionMeter(ExecutionBudget budget) {
+        this.budget = budget;
+        this.maxInstructions = budget.getMaxInstructions() == 0 ? Long.MAX_VALUE : budget.getMaxInstructions();
+        this.maxCallDepth = budget.getMaxCallDepth() == 0 ? Integer.MAX_VALUE : budget.getMaxCallDepth();
+        this.maxArrayElements = budget.getMaxArrayElements() == 0 ? Long.MAX_VALUE : budget.getMaxArrayElements();
+        this.maxStringCharacters = budget.getMaxStringCharacters() == 0 ? Long.MAX_VALUE : budget.getMaxStringCharacters();
+        this.deadline = System.nanoTime() + budget.getMaxMillis() * 1000000L;
+    }
+
+    /**
+     * Count an instruction.
+     * @throws ExecutionLimitException if a limit has been reached
+     */
+    public void instruction() throws ExecutionLimitException {
+        if (++instructions > maxInstructions) {
+            throw new ExecutionLimitException(Limit.INSTRUCTIONS,
+                    "instruction limit of " + budget.getMaxInstructions() + " exceeded");
+        }
+        if ((instructions & (CHECK_INTERVAL - 1)) == 0) {
+            checkClock();
+        }
+    }
+
+    /**
+     * Say where the main program keeps its values, so that the memory they
+     * hold can be measured.
+     * @param variables the main program's variables
+     * @param stack the main program's value stack
+     */
+    public void setMain(VariableTable variables, ValueStack stack) {
+        if (frames.isEmpty()) {
+            frames.add(variables);
+            stacks.add(stack);
+        } else {
+            frames.set(0, variables);
+            stacks.set(0, stack);
+        }
+    }
+
+    /**
+     * Count a subroutine call.
+     * @param variables the variables of the call
+     * @param stack the value stack of the call
+     * @throws ExecutionLimitException if calls are nested too deeply
+     */
+    public void enterCall(VariableTable variables, ValueStack stack) throws ExecutionLimitException {
+        if (++callDepth > maxCallDepth) {
+            throw new ExecutionLimitException(Limit.CALL_DEPTH,
+                    "call depth limit of " + budget.getMaxCallDepth() + " exceeded");
+        }
+        frames.add(variables);
+        stacks.add(stack);
+    }
+
+    /**
+     * Count a return from a subroutine.
+     */
+    public void exitCall() {
+        --callDepth;
+        frames.remove(frames.size() - 1);
+        stacks.remove(stacks.size() - 1);
+    }
+
+    /**
+     * Make this the meter charged for memory allocated on the current thread.
+     * @return the meter that was attached before (normally null), to be given
+     *  to detach when the run is over
+     */
+    public ExecutionMeter attach() {
+        ExecutionMeter previous = ATTACHED.get();
+        ATTACHED.set(this);
+        return previous;
+    }
+
+    /**
+     * Put back the meter that was attached before attach was called.
+     * @param previous the value returned by attach
+     */
+    public static void detach(ExecutionMeter previous) {
+        if (previous == null) {
+            ATTACHED.remove();
+        } else {
+            ATTACHED.set(previous);
+        }
+    }
+
+    /**
+     * Charge the attached meter (if any) for new array elements.  Call this
+     * before allocating them.
+     * @param count the number of elements
+     * @throws ExecutionLimitException if the program would hold too many
+     */
+    public static void allocateArrayElements(long count) throws ExecutionLimitException {
+        ExecutionMeter meter = ATTACHED.get();
+        if (meter != null && (meter.arrayElements += count) > meter.maxArrayElements) {
+            meter.measure(count, 0);
+        }
+    }
+
+    /**
+     * Charge the attached meter (if any) for new string characters.  Call this
+     * before allocating them.
+     * @param count the number of characters
+     * @throws ExecutionLimitException if the program would hold too many
+     */
+    public static void allocateStringCharacters(long count) throws ExecutionLimitException {
+        ExecutionMeter meter = ATTACHED.get();
+        if (meter != null && (meter.stringCharacters += count) > meter.maxStringCharacters) {
+            meter.measure(0, count);
+        }
+    }
+
+    /**
+     * @return the number of instructions counted so far
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the array elements charged so far, less any that were found to
+     * have been dropped the last time the memory was measured
+     */
+    public long getArrayElements() {
+        return arrayElements;
+    }
+
+    /**
+     * @return the string characters charged so far, less any that were found
+     * to have been dropped the last time the memory was measured
+     */
+    public long getStringCharacters() {
+        return stringCharacters;
+    }
+
+    /**
+     * Replace the charges with what the program still holds, plus an
+     * allocation about to be made.
+     * @param newElements the array elements about to be allocated
+     * @param newCharacters the string characters about to be allocated
+     * @throws ExecutionLimitException if that is over a limit
+     */
+    private void measure(long newElements, long newCharacters) throws ExecutionLimitException {
+        MemoryUse use = new MemoryUse();
+        for (int i = 0; i < frames.size(); i++) {
+            VariableTable frame = frames.get(i);
+            for (String name : frame.getNames()) {
+                use.add(frame.get(name).getValue());
+            }
+            use.add(stacks.get(i));
+        }
+        arrayElements = use.getArrayElements() + newElements;
+        stringCharacters = use.getStringCharacters() + newCharacters;
+        if (arrayElements > maxArrayElements) {
+            throw new ExecutionLimitException(Limit.MEMORY, "array element limit of "
+                    + budget.getMaxArrayElements() + " exceeded");
+        }
+        if (stringCharacters > maxStringCharacters) {
+            throw new ExecutionLimitException(Limit.MEMORY, "string character limit of "
+                    + budget.getMaxStringCharacters() + " exceeded");
+        }
+    }
+
+    /**
+     * @throws ExecutionLimitException if the thread has been interrupted or
+     *  the time has run out
+     */
+    private void checkClock() throws ExecutionLimitException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ExecutionLimitException(Limit.INTERRUPTED, "execution interrupted");
+        }
+        if (budget.getMaxMillis() > 0 && System.nanoTime() - deadline > 0) {
+            throw new ExecutionLimitException(Limit.WALL_TIME,
+                    "time limit of " + budget.getMaxMillis() + "ms exceeded");
+        }
+    }
+}
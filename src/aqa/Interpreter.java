@@ -3,25 +3,44 @@
  */
 package aqa;
 
+import aqa.ast.TreeWalker;
+import aqa.bytecode.BytecodeMachine;
 import aqa.parser.InputProvider;
-import aqa.parser.IgnoreInstructionListener;
 import aqa.parser.InstructionListener;
 import aqa.parser.OutputWriter;
 import aqa.parser.Parser;
-import aqa.tokenizer.Token;
+import aqa.tokenizer.TokenStream;
 import aqa.tokenizer.Tokenizer;
+import java.io.IOException;
 import java.io.Reader;
 
 /**
  * This is the main public facing class used to run the interpreter.  As a client,
  * you shouldn't need to use any other objects defined herein.
  * 
+ * An Interpreter is one run of a program.  To run the same program many
+ * times (or on many threads at once) compile it to a Program once and create
+ * an Interpreter for each run.  Alternatively give each Interpreter the same
+ * ProgramCache and source code that has been seen before will not be read
+ * again.
+ * 
+ * Without a Program or a ProgramCache the PARSER engine runs the source code
+ * as it is read (see aqa.tokenizer.TokenStream), so the source code can only
+ * be run once.
+ * 
  * @author martinhart
  */
 public class Interpreter {
 
-    private final Tokenizer tokenizer;
-    private final Parser parser;
+    private final Reader reader;
+    private Program program;
+    private final OutputWriter writer;
+    private final InputProvider inputProvider;
+    private final InstructionListener instructionListener;
+    private Engine engine;
+    private ExecutionBudget budget;
+    private ProgramCache programCache;
+    private boolean streamed;
 
     /**
      * Create an interpreter that will listen for new instructions as they're
@@ -30,23 +49,103 @@ public class Interpreter {
      * @param reader the source code to execute
      * @param writer the object that writes the parser's OUTPUT and INSPECT data
      * @param inputProvider the object that provides USERINPUT
-     * @param instructionListener the object that listens to progress.
+     * @param instructionListener the object that listens to progress (or null
+     * to run the program without listening, which is faster)
      */
     public Interpreter(Reader reader, OutputWriter writer, InputProvider inputProvider,
             InstructionListener instructionListener) {
-        this.tokenizer = new Tokenizer(reader);
-        this.parser = new Parser(writer, inputProvider, instructionListener);
+        this(reader, null, writer, inputProvider, instructionListener);
     }
     
     /**
      * Create a new instance that will execute without listening for new instructions
-     * (i.e. just run the program).
+     * (i.e. just run the program).  The engines then take a path that has no
+     * listener calls in it at all.
      * @param reader the source code to execute
      * @param writer the object that writes the parser's OUTPUT and INSPECT data
      * @param inputProvider the object that provides USERINPUT
      */
     public Interpreter(Reader reader, OutputWriter writer, InputProvider inputProvider) {
-        this(reader, writer, inputProvider, new IgnoreInstructionListener());
+        this(reader, null, writer, inputProvider, null);
+    }
+
+    /**
+     * Create an interpreter to run a program that has already been compiled.
+     * 
+     * @param program the program to execute
+     * @param writer the object that writes the parser's OUTPUT and INSPECT data
+     * @param inputProvider the object that provides USERINPUT
+     * @param instructionListener the object that listens to progress (or null
+     * to run the program without listening, which is faster)
+     */
+    public Interpreter(Program program, OutputWriter writer, InputProvider inputProvider,
+            InstructionListener instructionListener) {
+        this(null, program, writer, inputProvider, instructionListener);
+    }
+
+    /**
+     * Create an interpreter to run a program that has already been compiled,
+     * without listening for new instructions.
+     * 
+     * @param program the program to execute
+     * @param writer the object that writes the parser's OUTPUT and INSPECT data
+     * @param inputProvider the object that provides USERINPUT
+     */
+    public Interpreter(Program program, OutputWriter writer, InputProvider inputProvider) {
+        this(null, program, writer, inputProvider, null);
+    }
+
+    private Interpreter(Reader reader, Program program, OutputWriter writer,
+            InputProvider inputProvider, InstructionListener instructionListener) {
+        this.reader = reader;
+        this.program = program;
+        this.writer = writer;
+        this.inputProvider = inputProvider;
+        this.instructionListener = instructionListener;
+        this.engine = Engine.PARSER;
+        this.budget = ExecutionBudget.UNLIMITED;
+    }
+
+    /**
+     * Choose how the program is executed.  The default is Engine.PARSER.
+     * @param engine the engine to use
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return the engine that will be used to execute the program
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Limit how much the program may do.  The default is
+     * ExecutionBudget.UNLIMITED.  A program that goes over budget is stopped
+     * with an ExecutionLimitException.
+     * @param budget the limits to apply
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the limits that will be applied to the program
+     */
+    public ExecutionBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Look up (and store) the compiled program in a cache rather than reading
+     * it from the source code every time.  By default there is no cache.  This
+     * has no effect if the Interpreter was given a Program.
+     * @param programCache the cache to use (or null for none)
+     */
+    public void setProgramCache(ProgramCache programCache) {
+        this.programCache = programCache;
     }
 
     /**
@@ -54,18 +153,49 @@ public class Interpreter {
      * @throws InterpreterException if there is an issue with execution.
      */
     public void execute() throws InterpreterException {
-        tokenizeAndPrepareParser();
-        parse();
+        switch (engine) {
+            case TREE_WALKER:
+                walk();
+                break;
+            case BYTECODE:
+                compileAndRun();
+                break;
+            default:
+                parse();
+                break;
+        }
     }
 
     /**
-     * Invoke the tokenizer and add tokens to the parser.
+     * Read the program from the source code if that hasn't been done yet.
+     * @return the program
      * @throws InterpreterException if there are invalid tokens in the source
      */
-    private void tokenizeAndPrepareParser() throws InterpreterException {
-        for (Token token : tokenizer.tokenize()) {
-            parser.addToken(token);
+    private Program program() throws InterpreterException {
+        if (program == null) {
+            if (streamed) {
+                throw new InterpreterException("the source code has already been run");
+            }
+            program = programCache == null ? Program.compile(reader) : programCache.get(readSource());
         }
+        return program;
+    }
+
+    /**
+     * @return all of the source code
+     * @throws InterpreterException if it cannot be read
+     */
+    private String readSource() throws InterpreterException {
+        StringBuilder source = new StringBuilder();
+        char[] buffer = new char[4096];
+        try {
+            for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+                source.append(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new InterpreterException(e.getMessage());
+        }
+        return source.toString();
     }
 
     /**
@@ -73,6 +203,35 @@ public class Interpreter {
      * @throws InterpreterException if execution fails
      */
     private void parse() throws InterpreterException {
-        parser.parse();
+        Parser parser = new Parser(writer, inputProvider, instructionListener);
+        parser.setBudget(budget);
+        if (program == null && programCache == null) {
+            // nothing to share the tokens with, so start running as soon as
+            // the first of them have been read.
+            streamed = true;
+            parser.parse(new TokenStream(new Tokenizer(reader)));
+        } else {
+            parser.parse(program().tokens());
+        }
+    }
+
+    /**
+     * Execute the program's syntax tree.
+     * @throws InterpreterException if there are syntax errors or execution fails
+     */
+    private void walk() throws InterpreterException {
+        TreeWalker walker = new TreeWalker(writer, inputProvider, instructionListener);
+        walker.setBudget(budget);
+        walker.execute(program().tree());
+    }
+
+    /**
+     * Execute the program's bytecode.
+     * @throws InterpreterException if there are syntax errors or execution fails
+     */
+    private void compileAndRun() throws InterpreterException {
+        BytecodeMachine machine = new BytecodeMachine(writer, inputProvider, instructionListener);
+        machine.setBudget(budget);
+        machine.execute(program().bytecode());
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.ast.AstBuilder;
+import aqa.ast.ProgramNode;
+import aqa.bytecode.BytecodeCompiler;
+import aqa.bytecode.BytecodeProgram;
+import aqa.tokenizer.Tokenizer;
+import aqa.tokenizer.Tokens;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+
+/**
+ * A program, read from source code once, that can be run any number of times
+ * (by an Interpreter for each run) including on many threads at the same
+ * time.  For example, to run one program against many sets of user input:
+ *
+ *      Program program = Program.compile(reader);
+ *      for (InputProvider input : inputs) {
+ *          new Interpreter(program, writer, input).execute();
+ *      }
+ *
+ * A Program holds no execution state.  Its tokens, syntax tree and bytecode
+ * are never changed once they have been made; all of the state of a run
+ * (variables, value stack, position) belongs to the engine running it.
+ *
+ * The syntax tree and bytecode are only made when an engine first needs
+ * them, so that the PARSER engine behaves as it always has (e.g. reporting
+ * syntax errors only when it reaches them).
+ *
+ * @author martinhart
+ */
+public final class Program {
+
+    /**
+     * The tokens of the source code.  Never appended to.
+     */
+    private final Tokens tokens;
+
+    /**
+     * The syntax tree, once built.
+     */
+    private ProgramNode tree;
+
+    /**
+     * The bytecode, once compiled.
+     */
+    private BytecodeProgram bytecode;
+
+    /**
+     * @param tokens the tokens of the source code
+     */
+    Program(Tokens tokens) {
+        // Tokens build their tables on first use; do that now, before the
+        // tokens are shared.
+        tokens.getJumpTable();
+        tokens.getSlotTable();
+        this.tokens = tokens;
+    }
+
+    /**
+     * Read a program from source code.
+     * @param source the source code
+     * @return the program
+     * @throws InterpreterException if the source code contains invalid tokens
+     */
+    public static Program compile(Reader source) throws InterpreterException {
+        return new Program(new Tokenizer(source).tokenize());
+    }
+
+    /**
+     * Make a program from tokens that have already been read (e.g. by an
+     * IncrementalTokenizer).
+     * @param tokens the tokens, which must not be changed afterwards
+     * @return the program
+     */
+    public static Program compile(Tokens tokens) {
+        return new Program(tokens);
+    }
+
+    /**
+     * Read a program saved by ProgramFile.write.
+     * @param file the program file
+     * @return the program
+     * @throws InterpreterException if the file is not a program file of the
+     * current version
+     * @throws IOException if the file cannot be read
+     */
+    public static Program load(Path file) throws InterpreterException, IOException {
+        return ProgramFile.read(file);
+    }
+
+    /**
+     * @return the tokens of the program (which must not be changed)
+     */
+    Tokens tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the syntax tree of the program
+     * @throws InterpreterException if there are syntax errors
+     */
+    synchronized ProgramNode tree() throws InterpreterException {
+        if (tree == null) {
+            tree = new AstBuilder(tokens).build();
+        }
+        return tree;
+    }
+
+    /**
+     * @return the program compiled to bytecode
+     * @throws InterpreterException if there are syntax errors
+     */
+    synchronized BytecodeProgram bytecode() throws InterpreterException {
+        if (bytecode == null) {
+            bytecode = new BytecodeCompiler().compile(tree());
+        }
+        return bytecode;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled programs, keyed by a hash (SHA-256) of their source code, so that
+ * source that has been seen before (a resubmission, a reference solution run
+ * against many inputs...) is only read once.
+ *
+ * The cache holds at most a fixed number of programs, dropping the least
+ * recently used when it is full.  It may be shared by any number of threads.
+ *
+ * @author martinhart
+ */
+public class ProgramCache {
+
+    /**
+     * The most programs to hold.
+     */
+    private final int maxEntries;
+
+    /**
+     * The programs, least recently used first.
+     */
+    private final LinkedHashMap<String, Program> programs;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries the most programs to hold (at least 1)
+     */
+    public ProgramCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("a cache must hold at least one program");
+        }
+        this.maxEntries = maxEntries;
+        this.programs = new LinkedHashMap<String, Program>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                if (size() > ProgramCache.this.maxEntries) {
+                    ++evictions;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled form of some source code, compiling it if it isn't
+     * already in the cache.  Source that fails to compile is not cached.
+     * @param source the source code
+     * @return the program
+     * @throws InterpreterException if the source code contains invalid tokens
+     */
+    public Program get(String source) throws InterpreterException {
+        String key = hash(source);
+        synchronized (this) {
+            Program program = programs.get(key);
+            if (program != null) {
+                ++hits;
+                return program;
+            }
+            ++misses;
+        }
+        // Compile outside the lock so one large program doesn't hold up the
+        // rest.  Two threads may both compile the same new source; either
+        // result will do.
+        Program program = Program.compile(new StringReader(source));
+        synchronized (this) {
+            programs.put(key, program);
+        }
+        return program;
+    }
+
+    /**
+     * @return the number of get requests answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of get requests that had to compile the source
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of programs dropped to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of programs in the cache
+     */
+    public synchronized int size() {
+        return programs.size();
+    }
+
+    /**
+     * @return the most programs the cache will hold
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Remove every program (the counters are kept).
+     */
+    public synchronized void clear() {
+        programs.clear();
+    }
+
+    /**
+     * @param source some source code
+     * @return the SHA-256 hash of source, in hex
+     */
+    static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.tokenizer.Token;
+import aqa.tokenizer.TokenKind;
+import aqa.tokenizer.Tokens;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class saves a Program as a compact binary file and reads it back
+ * without tokenizing the source code again.  ProgramFile.read reads the file
+ * with a single memory mapping so a large program loads almost at once.
+ * ProgramFile.load reads a copy of the file instead: it may have to replace
+ * the file, which can't be done on Windows while the file is mapped (and a
+ * mapping is only released when it is garbage collected).
+ *
+ * The file is laid out as follows:
+ *
+ *      magic           "AQAP" (4 bytes)
+ *      version         FORMAT_VERSION (4 byte big endian int)
+ *      source hash     string - SHA-256 of the source code (see ProgramCache)
+ *      strings         count, then for each: kind (byte), text (string)
+ *      tokens          count, then for each: string index, change of line
+ *
+ * where every number after the version is a variable length int (7 bits per
+ * byte, the top bit set on all but the last byte; a change of line is zigzag
+ * encoded so that it may be negative) and a string is its length in bytes
+ * followed by its UTF-8 bytes.  The text of every token appears only once in
+ * the string table, along with the TokenKind it was given, so most tokens
+ * take two bytes.
+ *
+ * A file with a different version, whose token kinds don't agree with the
+ * texts, or whose counts and lengths run past the end of the file, is
+ * rejected; ProgramFile.load then rebuilds it from the source code.
+ *
+ * @author martinhart
+ */
+public final class ProgramFile {
+
+    /**
+     * The first four bytes of every program file.
+     */
+    private static final int MAGIC = 0x41514150;
+
+    /**
+     * Change this whenever the layout of the file, or the way that tokens are
+     * made, changes so that old files are rebuilt.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private ProgramFile() {
+    }
+
+    /**
+     * Save a program.
+     * @param program the program to save
+     * @param source the source code of the program (to recognise stale files)
+     * @param file where to save it
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Program program, String source, Path file) throws IOException {
+        Tokens tokens = program.tokens();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<Token> strings = new ArrayList<>();
+        int[] tokenString = new int[tokens.size()];
+
+        for (int i = 0; i < tokenString.length; i++) {
+            Integer index = stringIndex.get(tokens.getName(i));
+            if (index == null) {
+                index = strings.size();
+                stringIndex.put(tokens.getName(i), index);
+                strings.add(tokens.getToken(i));
+            }
+            tokenString[i] = index;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, ProgramCache.hash(source));
+
+        writeNumber(out, strings.size());
+        for (Token token : strings) {
+            out.writeByte(token.getKind().ordinal());
+            writeString(out, token.getName());
+        }
+
+        writeNumber(out, tokenString.length);
+        int line = 1;
+        for (int i = 0; i < tokenString.length; i++) {
+            int change = tokens.getLineNumber(i) - line;
+            writeNumber(out, tokenString[i]);
+            writeNumber(out, (change << 1) ^ (change >> 31));
+            line += change;
+        }
+        out.flush();
+
+        // write a temporary file first so that nobody reads half a program.
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, bytes.toByteArray());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a saved program.
+     * @param file the program file
+     * @return the program
+     * @throws InterpreterException if the file is not a program file of the
+     * current version
+     * @throws IOException if the file cannot be read
+     */
+    public static Program read(Path file) throws InterpreterException, IOException {
+        ByteBuffer buffer = map(file);
+        readHeader(buffer, file);
+        return readBody(buffer, file);
+    }
+
+    /**
+     * Get a program from its saved file if that file was made from the
+     * current source code by this version, otherwise compile the source code
+     * and save it for next time.
+     * @param source the source code file
+     * @param file the program file (which needn't exist)
+     * @return the program
+     * @throws InterpreterException if the source code contains invalid tokens
+     * @throws IOException if either file cannot be read or the program file
+     * cannot be written
+     */
+    public static Program load(Path source, Path file) throws InterpreterException, IOException {
+        String text = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+        if (Files.isRegularFile(file)) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+                if (readHeader(buffer, file).equals(ProgramCache.hash(text))) {
+                    return readBody(buffer, file);
+                }
+            } catch (InterpreterException e) {
+                // stale or damaged - rebuild it below.
+            }
+        }
+        Program program = Program.compile(new StringReader(text));
+        write(program, text, file);
+        return program;
+    }
+
+    /**
+     * Map the whole of a file into memory.
+     * @param file the file to map
+     * @return the file's bytes
+     * @throws IOException if the file cannot be read
+     */
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Check the magic number and version.
+     * @param buffer the file's bytes
+     * @param file the file (for error messages)
+     * @return the hash of the source code the file was made from
+     * @throws InterpreterException if the file is not of the current version
+     */
+    private static String readHeader(ByteBuffer buffer, Path file) throws InterpreterException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new InterpreterException(file + " is not a program file");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new InterpreterException(file + " is version " + version
+                    + " but version " + FORMAT_VERSION + " is required");
+        }
+        try {
+            return readString(buffer);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw damaged(file);
+        }
+    }
+
+    /**
+     * Read the strings and tokens that follow the source hash.
+     * @param buffer the file's bytes
+     * @param file the file (for error messages)
+     * @return the program
+     * @throws InterpreterException if the file is damaged
+     */
+    private static Program readBody(ByteBuffer buffer, Path file) throws InterpreterException {
+        try {
+            TokenKind[] kinds = TokenKind.values();
+            int count = readNumber(buffer);
+            if (count > buffer.remaining() / 2) {
+                // every string takes at least two bytes: its kind and length.
+                throw damaged(file);
+            }
+            Token[] strings = new Token[count];
+            for (int i = 0; i < strings.length; i++) {
+                int kind = buffer.get();
+                strings[i] = new Token(readString(buffer), 1);
+                if (kind < 0 || kind >= kinds.length || strings[i].getKind() != kinds[kind]) {
+                    throw damaged(file);
+                }
+            }
+
+            // the string table is already the table of distinct texts that
+            // Tokens keeps, so the tokens are just two ints each.
+            count = readNumber(buffer);
+            if (count > buffer.remaining() / 2) {
+                // every token takes at least two bytes.
+                throw damaged(file);
+            }
+            int[] texts = new int[count];
+            int[] lines = new int[count];
+            int line = 1;
+            for (int i = 0; i < texts.length; i++) {
+                int change;
+                texts[i] = readNumber(buffer);
+                change = readNumber(buffer);
+                line += (change >>> 1) ^ -(change & 1);
+                if (texts[i] < 0 || texts[i] >= strings.length || line < 1) {
+                    throw damaged(file);
+                }
+                lines[i] = line;
+            }
+            return new Program(Tokens.fromTable(strings, texts, lines));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw damaged(file);
+        }
+    }
+
+    /**
+     * @param file the damaged file
+     * @return the exception to throw
+     */
+    private static InterpreterException damaged(Path file) {
+        return new InterpreterException(file + " is damaged");
+    }
+
+    private static void writeNumber(DataOutputStream out, int n) throws IOException {
+        while ((n & ~0x7F) != 0) {
+            out.writeByte((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.writeByte(n);
+    }
+
+    private static int readNumber(ByteBuffer buffer) {
+        int n = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            n |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return n;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeNumber(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readNumber(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An array literal, e.g. [1, 2, a + b].  A new array is created each time
+ * this is evaluated.
+ *
+ * @author martinhart
+ */
+public class ArrayLiteralExpression extends Expression {
+
+    private final List<Expression> elements;
+
+    public ArrayLiteralExpression(int line, List<Expression> elements) {
+        super(line);
+        this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+    }
+
+    public List<Expression> getElements() {
+        return elements;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitArrayLiteral(this);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Assignment to a variable or to an element of an array variable:
+ *
+ *      [constant] a <- expression
+ *      a[i] <- expression
+ *      a[i][j] <- expression
+ *
+ * @author martinhart
+ */
+public class AssignmentStatement extends Statement {
+
+    private final String name;
+    private final int slot;
+    private final boolean constant;
+    private final List<Expression> indices;
+    private final Expression value;
+
+    public AssignmentStatement(int line, String name, int slot, boolean constant,
+            List<Expression> indices, Expression value) {
+        super(line);
+        this.name = name;
+        this.slot = slot;
+        this.constant = constant;
+        this.indices = Collections.unmodifiableList(new ArrayList<>(indices));
+        this.value = value;
+    }
+
+    /**
+     * @return the name of the variable being assigned to
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the slot of the variable in the variables of the subroutine
+     * call (or main program) it is used in
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return true if the variable is being declared constant
+     */
+    public boolean isConstant() {
+        return constant;
+    }
+
+    /**
+     * @return the array indices, empty if assigning to the variable itself
+     */
+    public List<Expression> getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return the value to assign
+     */
+    public Expression getValue() {
+        return value;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitAssignment(this);
+    }
+}
@@ -0,0 +1,652 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import aqa.tokenizer.Symbol;
+import aqa.tokenizer.TokenKind;
+import aqa.tokenizer.TokenSequencer;
+import aqa.tokenizer.Tokens;
+import aqa.value.ValueFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class turns tokens into a syntax tree.  It follows the same grammar as
+ * aqa.parser.Parser but instead of executing each statement as it is
+ * recognised it builds a ProgramNode that can be executed afterwards (as many
+ * times as required) without matching tokens again.
+ *
+ * Subroutine definitions are collected while building so every subroutine
+ * is available to the whole program.
+ *
+ * Each variable is given a slot in the variables of the main program or of
+ * the subroutine it is used in (parameters first), and the slot is stored in
+ * the nodes that use it, so that TreeWalker can hold variables in a
+ * FrameVariableTable rather than look them up by name.
+ *
+ * @author martinhart
+ */
+public class AstBuilder {
+
+    /**
+     * Tokens that end a block.
+     */
+    private static final Symbol[] TERMINATORS = {
+        Symbol.ELSE, Symbol.ENDIF, Symbol.ENDWHILE, Symbol.UNTIL, Symbol.ENDFOR, Symbol.ENDSUBROUTINE
+    };
+
+    /**
+     * A wrapper object to keep track of which token we're working on.
+     */
+    private final TokenSequencer tokenSequencer;
+
+    /**
+     * The subroutines defined so far.
+     */
+    private final Map<String, SubroutineNode> subroutines;
+
+    /**
+     * The slot of each variable of the main program or subroutine being built.
+     */
+    private Map<String, Integer> slots;
+
+    /**
+     * The name of the variable in each slot, in slot order.
+     */
+    private List<String> slotNames;
+
+    /**
+     * Create a builder ready to build the tree
+     * @param tokens the tokens to build from
+     */
+    public AstBuilder(Tokens tokens) {
+        this.tokenSequencer = new TokenSequencer(tokens);
+        this.subroutines = new LinkedHashMap<>();
+        this.slots = new HashMap<>();
+        this.slotNames = new ArrayList<>();
+    }
+
+    /**
+     * Work through the tokens building the syntax tree.
+     * @return the root of the tree
+     * @throws InterpreterException if there is a syntax error
+     */
+    public ProgramNode build() throws InterpreterException {
+        List<Statement> main = new ArrayList<>();
+        while (tokenSequencer.thereIsAToken()) {
+            if (tokenSequencer.match(Symbol.SUBROUTINE)) {
+                if (!main.isEmpty()) {
+                    // Parser runs the main program to the end once it starts.
+                    throw error("subroutines must be defined before the main program");
+                }
+                subroutine();
+            } else if (isTerminator()) {
+                throw error("unexpected '" + tokenSequencer.getCurrentTokenName() + "'");
+            } else {
+                main.add(statement());
+            }
+        }
+        return new ProgramNode(new Block(main), subroutines, slotNames);
+    }
+
+    /**
+     * SUBROUTINE name ( [param [, param]...] ) block ENDSUBROUTINE
+     * @throws InterpreterException
+     */
+    private void subroutine() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        String name;
+        List<String> parameters = new ArrayList<>();
+        Block body;
+        Map<String, Integer> mainSlots = slots;
+        List<String> mainSlotNames = slotNames;
+
+        tokenSequencer.expect(Symbol.SUBROUTINE);
+        name = tokenSequencer.getCurrentTokenName();
+        tokenSequencer.advance();
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+        while (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS) && tokenSequencer.thereIsAToken()) {
+            parameters.add(tokenSequencer.getCurrentTokenName());
+            tokenSequencer.advance();
+            if (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS)) {
+                tokenSequencer.expect(Symbol.COMMA);
+            }
+        }
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+
+        slots = new HashMap<>();
+        slotNames = new ArrayList<>();
+        for (String parameter : parameters) {
+            slot(parameter);
+        }
+        body = block();
+        tokenSequencer.expect(Symbol.ENDSUBROUTINE);
+        SubroutineNode subroutine = new SubroutineNode(line, name, parameters, body, slotNames);
+        slots = mainSlots;
+        slotNames = mainSlotNames;
+
+        if (subroutines.containsKey(name)) {
+            throw new InterpreterException(line, "'" + name + "' already defined");
+        }
+        subroutines.put(name, subroutine);
+    }
+
+    /**
+     * A block is a sequence of statements ending at a terminator (or at the
+     * end of the tokens).  The terminator is left for the caller to deal with.
+     * @return the block
+     * @throws InterpreterException
+     */
+    private Block block() throws InterpreterException {
+        List<Statement> statements = new ArrayList<>();
+        while (tokenSequencer.thereIsAToken() && !isTerminator()) {
+            if (tokenSequencer.match(Symbol.SUBROUTINE)) {
+                throw error("subroutines can only be defined in the main program");
+            }
+            statements.add(statement());
+        }
+        return new Block(statements);
+    }
+
+    /**
+     * A statement is either a built in control statement, an assignment or an
+     * expression.
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement statement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+
+        if (tokenSequencer.match(Symbol.RETURN)) {
+            return returnStatement();
+        } else if (tokenSequencer.match(Symbol.OUTPUT)) {
+            tokenSequencer.expect(Symbol.OUTPUT);
+            return new OutputStatement(line, booleanExpression(), false);
+        } else if (tokenSequencer.match(Symbol.INSPECT)) {
+            tokenSequencer.expect(Symbol.INSPECT);
+            return new OutputStatement(line, booleanExpression(), true);
+        } else if (tokenSequencer.match(Symbol.IF)) {
+            return ifStatement();
+        } else if (tokenSequencer.match(Symbol.REPEAT)) {
+            return repeatStatement();
+        } else if (tokenSequencer.match(Symbol.WHILE)) {
+            return whileStatement();
+        } else if (tokenSequencer.match(Symbol.FOR)) {
+            return forStatement();
+        } else if (tokenSequencer.match(Symbol.CONSTANT) || isAssignment()) {
+            return assignment();
+        }
+        return new ExpressionStatement(line, booleanExpression());
+    }
+
+    /**
+     * Look ahead to see if the current token is followed by '<-' or '['.
+     * @return true if we are at the start of an assignment
+     */
+    private boolean isAssignment() {
+        boolean result = false;
+        tokenSequencer.advance();
+        if (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
+            result = true;
+        } else if (tokenSequencer.match(Symbol.LESS)) {
+            tokenSequencer.advance();
+            result = tokenSequencer.match(Symbol.MINUS);
+            tokenSequencer.retreat();
+        }
+        tokenSequencer.retreat();
+        return result;
+    }
+
+    /**
+     * [constant] name [ '[' expression ']' ]... <- boolean-expression
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement assignment() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        boolean constant = false;
+        String name;
+        List<Expression> indices = new ArrayList<>();
+
+        if (tokenSequencer.match(Symbol.CONSTANT)) {
+            tokenSequencer.expect(Symbol.CONSTANT);
+            constant = true;
+        }
+        name = tokenSequencer.getCurrentTokenName();
+        tokenSequencer.advance();
+        while (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
+            tokenSequencer.expect(Symbol.LEFT_BRACKET);
+            indices.add(expression());
+            tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+        }
+        tokenSequencer.expect(Symbol.LESS);
+        tokenSequencer.expect(Symbol.MINUS);
+        return new AssignmentStatement(line, name, slot(name), constant, indices, booleanExpression());
+    }
+
+    /**
+     * RETURN [boolean-expression]
+     *
+     * RETURN outside of a subroutine is only an error if it is executed (see
+     * TreeWalker.visitReturn), as it always has been with the Parser.
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement returnStatement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        tokenSequencer.expect(Symbol.RETURN);
+        if (!tokenSequencer.thereIsAToken() || isTerminator()) {
+            return new ReturnStatement(line, null);
+        }
+        return new ReturnStatement(line, booleanExpression());
+    }
+
+    /**
+     * IF cond THEN block [ELSE IF cond THEN block]... [ELSE block] ENDIF
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement ifStatement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        List<Expression> conditions = new ArrayList<>();
+        List<Block> blocks = new ArrayList<>();
+        Block elseBlock = null;
+
+        tokenSequencer.expect(Symbol.IF);
+        conditions.add(booleanExpression());
+        tokenSequencer.expect(Symbol.THEN);
+        blocks.add(block());
+        while (elseBlock == null && tokenSequencer.match(Symbol.ELSE)) {
+            tokenSequencer.expect(Symbol.ELSE);
+            if (tokenSequencer.match(Symbol.IF)) {
+                tokenSequencer.expect(Symbol.IF);
+                conditions.add(booleanExpression());
+                tokenSequencer.expect(Symbol.THEN);
+                blocks.add(block());
+            } else {
+                elseBlock = block();
+            }
+        }
+        tokenSequencer.expect(Symbol.ENDIF);
+        return new IfStatement(line, conditions, blocks, elseBlock);
+    }
+
+    /**
+     * WHILE cond block ENDWHILE
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement whileStatement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        Expression condition;
+        Block body;
+
+        tokenSequencer.expect(Symbol.WHILE);
+        condition = booleanExpression();
+        body = block();
+        tokenSequencer.expect(Symbol.ENDWHILE);
+        return new WhileStatement(line, condition, body);
+    }
+
+    /**
+     * REPEAT block UNTIL cond
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement repeatStatement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        Block body;
+
+        tokenSequencer.expect(Symbol.REPEAT);
+        body = block();
+        tokenSequencer.expect(Symbol.UNTIL);
+        return new RepeatStatement(line, body, booleanExpression());
+    }
+
+    /**
+     * FOR name <- boolean-expression TO expression block ENDFOR
+     * @return the statement
+     * @throws InterpreterException
+     */
+    private Statement forStatement() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        String counter;
+        Expression start, end;
+        Block body;
+
+        tokenSequencer.expect(Symbol.FOR);
+        counter = tokenSequencer.getCurrentTokenName();
+        tokenSequencer.advance();
+        tokenSequencer.expect(Symbol.LESS);
+        tokenSequencer.expect(Symbol.MINUS);
+        start = booleanExpression();
+        tokenSequencer.expect(Symbol.TO);
+        end = expression();
+        body = block();
+        tokenSequencer.expect(Symbol.ENDFOR);
+        return new ForStatement(line, counter, slot(counter), start, end, body);
+    }
+
+    /**
+     * <boolean-term> [ OR <boolean-term> ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression booleanExpression() throws InterpreterException {
+        Expression result = booleanTerm();
+        while (tokenSequencer.match(Symbol.OR)) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            tokenSequencer.expect(Symbol.OR);
+            result = new BinaryExpression(line, BinaryOperator.OR, result, booleanTerm());
+        }
+        return result;
+    }
+
+    /**
+     * <not-factor> [ AND <not-factor> ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression booleanTerm() throws InterpreterException {
+        Expression result = notFactor();
+        while (tokenSequencer.match(Symbol.AND)) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            tokenSequencer.expect(Symbol.AND);
+            result = new BinaryExpression(line, BinaryOperator.AND, result, notFactor());
+        }
+        return result;
+    }
+
+    /**
+     * [NOT] <relation>
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression notFactor() throws InterpreterException {
+        if (tokenSequencer.match(Symbol.NOT)) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            tokenSequencer.expect(Symbol.NOT);
+            return new NotExpression(line, relation());
+        }
+        return relation();
+    }
+
+    /**
+     * <expression> [ [comparison] <expression> ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression relation() throws InterpreterException {
+        Expression result = expression();
+        while (true) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            BinaryOperator operator;
+            if (tokenSequencer.match(Symbol.LESS)) {
+                tokenSequencer.advance();
+                operator = BinaryOperator.LESS;
+                if (tokenSequencer.match(Symbol.EQUALS)) {
+                    tokenSequencer.advance();
+                    operator = BinaryOperator.LESS_OR_EQUAL;
+                }
+            } else if (tokenSequencer.match(Symbol.GREATER)) {
+                tokenSequencer.advance();
+                operator = BinaryOperator.GREATER;
+                if (tokenSequencer.match(Symbol.EQUALS)) {
+                    tokenSequencer.advance();
+                    operator = BinaryOperator.GREATER_OR_EQUAL;
+                }
+            } else if (tokenSequencer.match(Symbol.EQUALS)) {
+                tokenSequencer.advance();
+                operator = BinaryOperator.EQUAL;
+            } else if (tokenSequencer.match(Symbol.NOT_SIGN)) {
+                tokenSequencer.advance();
+                tokenSequencer.expect(Symbol.EQUALS);
+                operator = BinaryOperator.NOT_EQUAL;
+            } else {
+                return result;
+            }
+            result = new BinaryExpression(line, operator, result, expression());
+        }
+    }
+
+    /**
+     * <term> [ +/- <term> ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression expression() throws InterpreterException {
+        Expression result = term();
+        while (tokenSequencer.match(Symbol.PLUS) || tokenSequencer.match(Symbol.MINUS)) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            BinaryOperator operator = tokenSequencer.match(Symbol.PLUS) ? BinaryOperator.ADD : BinaryOperator.SUBTRACT;
+            tokenSequencer.advance();
+            result = new BinaryExpression(line, operator, result, term());
+        }
+        return result;
+    }
+
+    /**
+     * <factor> [ [ * / DIV MOD ] <factor> ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression term() throws InterpreterException {
+        Expression result = factor();
+        while (true) {
+            int line = tokenSequencer.getCurrentTokenLine();
+            BinaryOperator operator;
+            if (tokenSequencer.match(Symbol.MULTIPLY)) {
+                operator = BinaryOperator.MULTIPLY;
+            } else if (tokenSequencer.match(Symbol.DIVIDE)) {
+                operator = BinaryOperator.DIVIDE;
+            } else if (tokenSequencer.match(Symbol.DIV)) {
+                operator = BinaryOperator.DIV;
+            } else if (tokenSequencer.match(Symbol.MOD)) {
+                operator = BinaryOperator.MOD;
+            } else {
+                return result;
+            }
+            tokenSequencer.advance();
+            result = new BinaryExpression(line, operator, result, factor());
+        }
+    }
+
+    /**
+     * ( <boolean-expression> ) OR <literal>
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression factor() throws InterpreterException {
+        if (tokenSequencer.match(Symbol.LEFT_PARENTHESIS)) {
+            Expression result;
+            tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+            result = booleanExpression();
+            tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+            return result;
+        }
+        return literal();
+    }
+
+    /**
+     * Literal handling:  Process
+     *  actual literal values
+     *  variables
+     *  built in function calls
+     *  user defined subroutine calls
+     *
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression literal() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        String name = tokenSequencer.getCurrentTokenName();
+        Builtin builtin = Builtin.forName(name);
+
+        if (!tokenSequencer.thereIsAToken()) {
+            throw error("unexpected end of program");
+        } else if (tokenSequencer.match(TokenKind.STRING_LITERAL)) {
+            Expression result = new LiteralExpression(line, ValueFactory.createString(tokenSequencer.getCurrentToken()));
+            tokenSequencer.advance();
+            return result;
+        } else if (tokenSequencer.match(Symbol.TRUE) || tokenSequencer.match(Symbol.FALSE)) {
+            Expression result = new LiteralExpression(line, ValueFactory.createBoolean(tokenSequencer.getCurrentToken()));
+            tokenSequencer.advance();
+            return result;
+        } else if (tokenSequencer.match(TokenKind.INTEGER_LITERAL) || tokenSequencer.match(TokenKind.REAL_LITERAL)
+                || tokenSequencer.match(Symbol.MINUS)) {
+            return numberLiteral();
+        } else if (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
+            return arrayLiteral();
+        } else if (builtin != null) {
+            tokenSequencer.advance();
+            return new BuiltinExpression(line, builtin, builtinArguments(builtin));
+        } else if (tokenSequencer.match(Symbol.USERINPUT)) {
+            tokenSequencer.advance();
+            return new UserInputExpression(line);
+        }
+
+        tokenSequencer.advance();
+        if (tokenSequencer.match(Symbol.LEFT_PARENTHESIS)) {
+            return new CallExpression(line, name, callArguments());
+        } else if (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
+            List<Expression> indices = new ArrayList<>();
+            while (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
+                tokenSequencer.expect(Symbol.LEFT_BRACKET);
+                indices.add(booleanExpression());
+                tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+            }
+            return new IndexExpression(line, name, slot(name), indices);
+        }
+        return new VariableExpression(line, name, slot(name));
+    }
+
+    /**
+     * An integer or real literal, optionally preceded by '-'.
+     *
+     * The tokenizer sees '-1' as two tokens so we put them back together here
+     * rather than altering the tokens.
+     *
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression numberLiteral() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        String text = "";
+
+        if (tokenSequencer.match(Symbol.MINUS)) {
+            tokenSequencer.advance();
+            text = "-";
+        }
+        text += tokenSequencer.getCurrentTokenName();
+        try {
+            Expression result;
+            if (text.contains(".")) {
+                result = new LiteralExpression(line, ValueFactory.createReal(Double.parseDouble(text)));
+            } else {
+                result = new LiteralExpression(line, ValueFactory.createInteger(Integer.parseInt(text)));
+            }
+            tokenSequencer.advance();
+            return result;
+        } catch (NumberFormatException e) {
+            throw new InterpreterException(line, "invalid number '" + text + "'");
+        }
+    }
+
+    /**
+     * [ [boolean-expression [, boolean-expression]...] ]
+     * @return the expression
+     * @throws InterpreterException
+     */
+    private Expression arrayLiteral() throws InterpreterException {
+        int line = tokenSequencer.getCurrentTokenLine();
+        List<Expression> elements = new ArrayList<>();
+
+        tokenSequencer.expect(Symbol.LEFT_BRACKET);
+        if (!tokenSequencer.match(Symbol.RIGHT_BRACKET)) {
+            elements.add(booleanExpression());
+            while (tokenSequencer.match(Symbol.COMMA)) {
+                tokenSequencer.advance();
+                elements.add(booleanExpression());
+            }
+        }
+        tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+        return new ArrayLiteralExpression(line, elements);
+    }
+
+    /**
+     * ( expression [, expression]... ) - exactly as many as the function needs.
+     * @param builtin the function being called
+     * @return the argument expressions
+     * @throws InterpreterException
+     */
+    private List<Expression> builtinArguments(Builtin builtin) throws InterpreterException {
+        List<Expression> arguments = new ArrayList<>();
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+        for (int i = 0; i < builtin.getNumberOfArguments(); i++) {
+            if (i > 0) {
+                tokenSequencer.expect(Symbol.COMMA);
+            }
+            arguments.add(expression());
+        }
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+        return arguments;
+    }
+
+    /**
+     * ( [boolean-expression [, boolean-expression]...] )
+     * @return the argument expressions
+     * @throws InterpreterException
+     */
+    private List<Expression> callArguments() throws InterpreterException {
+        List<Expression> arguments = new ArrayList<>();
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+        while (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS) && tokenSequencer.thereIsAToken()) {
+            arguments.add(booleanExpression());
+            if (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS)) {
+                tokenSequencer.expect(Symbol.COMMA);
+            }
+        }
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+        return arguments;
+    }
+
+    /**
+     * @param name a variable name
+     * @return the slot of the variable, given a new one if it hasn't been
+     * used before in the main program or subroutine being built
+     */
+    private int slot(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slotNames.size();
+            slots.put(name, slot);
+            slotNames.add(name);
+        }
+        return slot;
+    }
+
+    /**
+     * @return true if the current token ends a block
+     */
+    private boolean isTerminator() {
+        for (Symbol terminator : TERMINATORS) {
+            if (tokenSequencer.match(terminator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param message what went wrong
+     * @return an exception reporting message against the current line
+     */
+    private InterpreterException error(String message) {
+        return new InterpreterException(tokenSequencer.getCurrentTokenLine(), message);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * Implement this interface to walk the syntax tree, e.g. to execute it or to
+ * translate it into another form.
+ *
+ * @param <R> the type of result produced for each node
+ * @author martinhart
+ */
+public interface AstVisitor<R> {
+
+    R visitSubroutine(SubroutineNode node) throws InterpreterException;
+
+    R visitAssignment(AssignmentStatement node) throws InterpreterException;
+
+    R visitOutput(OutputStatement node) throws InterpreterException;
+
+    R visitIf(IfStatement node) throws InterpreterException;
+
+    R visitWhile(WhileStatement node) throws InterpreterException;
+
+    R visitRepeat(RepeatStatement node) throws InterpreterException;
+
+    R visitFor(ForStatement node) throws InterpreterException;
+
+    R visitReturn(ReturnStatement node) throws InterpreterException;
+
+    R visitExpressionStatement(ExpressionStatement node) throws InterpreterException;
+
+    R visitLiteral(LiteralExpression node) throws InterpreterException;
+
+    R visitArrayLiteral(ArrayLiteralExpression node) throws InterpreterException;
+
+    R visitVariable(VariableExpression node) throws InterpreterException;
+
+    R visitIndex(IndexExpression node) throws InterpreterException;
+
+    R visitBinary(BinaryExpression node) throws InterpreterException;
+
+    R visitNot(NotExpression node) throws InterpreterException;
+
+    R visitCall(CallExpression node) throws InterpreterException;
+
+    R visitBuiltin(BuiltinExpression node) throws InterpreterException;
+
+    R visitUserInput(UserInputExpression node) throws InterpreterException;
+}
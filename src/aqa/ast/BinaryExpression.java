@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * left operator right, e.g. a + 1, a <= b, a AND b
+ *
+ * @author martinhart
+ */
+public class BinaryExpression extends Expression {
+
+    private final BinaryOperator operator;
+    private final Expression left;
+    private final Expression right;
+
+    public BinaryExpression(int line, BinaryOperator operator, Expression left, Expression right) {
+        super(line);
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    public BinaryOperator getOperator() {
+        return operator;
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitBinary(this);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import aqa.value.BooleanValue;
+import aqa.value.Value;
+import aqa.value.Values;
+
+/**
+ * The operators that can appear between two expressions, and what they do
+ * to the values either side of them.
+ *
+ * @author martinhart
+ */
+public enum BinaryOperator {
+
+    ADD("+") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.add(right);
+        }
+    },
+    SUBTRACT("-") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.subtract(right);
+        }
+    },
+    MULTIPLY("*") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.multiply(right);
+        }
+    },
+    DIVIDE("/") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.divide(right);
+        }
+    },
+    DIV("DIV") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.div(right);
+        }
+    },
+    MOD("MOD") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return left.mod(right);
+        }
+    },
+    LESS("<") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(left.compare(right) < 0);
+        }
+    },
+    LESS_OR_EQUAL("<=") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(left.compare(right) < 1);
+        }
+    },
+    GREATER(">") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(left.compare(right) > 0);
+        }
+    },
+    GREATER_OR_EQUAL(">=") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(left.compare(right) > -1);
+        }
+    },
+    EQUAL("=") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(left.equal(right));
+        }
+    },
+    NOT_EQUAL("!=") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            return BooleanValue.valueOf(!left.equal(right));
+        }
+    },
+    AND("AND") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            boolean l = Values.toBoolean(left);
+            return BooleanValue.valueOf(Values.toBoolean(right) && l);
+        }
+    },
+    OR("OR") {
+        @Override
+        public Value apply(Value left, Value right) throws InterpreterException {
+            boolean l = Values.toBoolean(left);
+            return BooleanValue.valueOf(Values.toBoolean(right) || l);
+        }
+    };
+
+    private final String symbol;
+
+    BinaryOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @return the operator as it is written in source code
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Calculate left operator right.
+     *
+     * Note that AND and OR always need both of their operands - the language
+     * does not short circuit.
+     *
+     * @param left the left hand operand
+     * @param right the right hand operand
+     * @return the result
+     * @throws InterpreterException if the operator makes no sense for the operands
+     */
+    public abstract Value apply(Value left, Value right) throws InterpreterException;
+}
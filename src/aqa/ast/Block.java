@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of statements, e.g. the body of a loop or a subroutine.
+ *
+ * @author martinhart
+ */
+public class Block {
+
+    private final List<Statement> statements;
+
+    /**
+     * @param statements the statements, in the order they should be executed
+     */
+    public Block(List<Statement> statements) {
+        this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
+    }
+
+    /**
+     * @return the statements in this block
+     */
+    public List<Statement> getStatements() {
+        return statements;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import aqa.value.IntegerValue;
+import aqa.value.RealValue;
+import aqa.value.StringValue;
+import aqa.value.Value;
+import aqa.value.Values;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The functions built in to the language that take arguments, e.g.
+ * LEN(x), SUBSTRING(start, end, str).
+ *
+ * USERINPUT is not included because it takes no arguments and needs to talk
+ * to the outside world.
+ *
+ * @author martinhart
+ */
+public enum Builtin {
+
+    LEN(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            return args[0].length();
+        }
+    },
+    POSITION(2) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            String str = Values.toStr(args[0]);
+            return IntegerValue.valueOf(str.indexOf(Values.toStr(args[1])));
+        }
+    },
+    SUBSTRING(3) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            int start = Values.toInteger(args[0]);
+            int end = Values.toInteger(args[1]);
+            String str = Values.toStr(args[2]);
+            if (start < 0 || end >= str.length() || start > end + 1) {
+                throw new InterpreterException("invalid substring range " + start + " to " + end);
+            }
+            return new StringValue(str.substring(start, end + 1)); // +1 inclusive substring (see AQA spec)
+        }
+    },
+    STRING_TO_INT(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            String str = Values.toStr(args[0]);
+            try {
+                return IntegerValue.valueOf(Integer.parseInt(str));
+            } catch (NumberFormatException e) {
+                throw new InterpreterException("invalid integer format: '" + str + "'");
+            }
+        }
+    },
+    STRING_TO_REAL(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            String str = Values.toStr(args[0]);
+            try {
+                return new RealValue(Double.parseDouble(str));
+            } catch (NumberFormatException e) {
+                throw new InterpreterException("invalid real format '" + str + "'");
+            }
+        }
+    },
+    INT_TO_STRING(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            return new StringValue(Integer.toString(Values.toInteger(args[0])));
+        }
+    },
+    REAL_TO_STRING(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            return new StringValue(Double.toString(Values.toReal(args[0])));
+        }
+    },
+    CHAR_TO_CODE(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            String s = Values.toStr(args[0]);
+            if (s.isEmpty()) {
+                throw new InterpreterException("CHAR_TO_CODE of empty string");
+            }
+            return IntegerValue.valueOf((int) s.charAt(0));
+        }
+    },
+    CODE_TO_CHAR(1) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            return new StringValue(String.valueOf((char) Values.toInteger(args[0])));
+        }
+    },
+    RANDOM_INT(2) {
+        @Override
+        public Value apply(Value[] args) throws InterpreterException {
+            int start = Values.toInteger(args[0]);
+            int end = Values.toInteger(args[1]);
+            if (end < start) {
+                throw new InterpreterException("invalid random range " + start + " to " + end);
+            }
+            return IntegerValue.valueOf(ThreadLocalRandom.current().nextInt(end - start + 1) + start);
+        }
+    };
+
+    private final int numberOfArguments;
+
+    Builtin(int numberOfArguments) {
+        this.numberOfArguments = numberOfArguments;
+    }
+
+    /**
+     * @return how many arguments this function expects
+     */
+    public int getNumberOfArguments() {
+        return numberOfArguments;
+    }
+
+    /**
+     * Find the built in function with the given name.
+     * @param name the name as written in source code
+     * @return the function or null if name isn't a built in function
+     */
+    public static Builtin forName(String name) {
+        for (Builtin b : values()) {
+            if (b.name().equals(name)) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Call the function.
+     * @param args the argument values, there will be getNumberOfArguments() of them
+     * @return the result
+     * @throws InterpreterException if the arguments are invalid
+     */
+    public abstract Value apply(Value[] args) throws InterpreterException;
+}
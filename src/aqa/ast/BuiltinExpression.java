@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A call to one of the language's built in functions, e.g. LEN(a)
+ *
+ * @author martinhart
+ */
+public class BuiltinExpression extends Expression {
+
+    private final Builtin builtin;
+    private final List<Expression> arguments;
+
+    public BuiltinExpression(int line, Builtin builtin, List<Expression> arguments) {
+        super(line);
+        this.builtin = builtin;
+        this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+    }
+
+    public Builtin getBuiltin() {
+        return builtin;
+    }
+
+    public List<Expression> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitBuiltin(this);
+    }
+}
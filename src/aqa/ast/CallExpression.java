@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A call to a user defined subroutine, e.g. add(1, 2)
+ *
+ * @author martinhart
+ */
+public class CallExpression extends Expression {
+
+    private final String name;
+    private final List<Expression> arguments;
+
+    public CallExpression(int line, String name, List<Expression> arguments) {
+        super(line);
+        this.name = name;
+        this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+    }
+
+    /**
+     * @return the name of the subroutine being called
+     */
+    public String getName() {
+        return name;
+    }
+
+    public List<Expression> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitCall(this);
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+/**
+ * Anything that produces a value, e.g.
+ *
+ *      1 + 2
+ *      LEN(ary)
+ *      add(a, b)
+ *
+ * @author martinhart
+ */
+public abstract class Expression extends Node {
+
+    protected Expression(int line) {
+        super(line);
+    }
+}
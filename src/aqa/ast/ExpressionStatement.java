@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * An expression used as a statement, typically a subroutine call:
+ *
+ *      doSomething(1, 2)
+ *
+ * The value produced (if any) is thrown away.
+ *
+ * @author martinhart
+ */
+public class ExpressionStatement extends Statement {
+
+    private final Expression expression;
+
+    public ExpressionStatement(int line, Expression expression) {
+        super(line);
+        this.expression = expression;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitExpressionStatement(this);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * FOR counter <- start TO end block ENDFOR
+ *
+ * @author martinhart
+ */
+public class ForStatement extends Statement {
+
+    private final String counter;
+    private final int counterSlot;
+    private final Expression start;
+    private final Expression end;
+    private final Block body;
+
+    public ForStatement(int line, String counter, int counterSlot, Expression start, Expression end, Block body) {
+        super(line);
+        this.counter = counter;
+        this.counterSlot = counterSlot;
+        this.start = start;
+        this.end = end;
+        this.body = body;
+    }
+
+    /**
+     * @return the name of the loop counter variable
+     */
+    public String getCounter() {
+        return counter;
+    }
+
+    /**
+     * @return the slot of the loop counter variable
+     */
+    public int getCounterSlot() {
+        return counterSlot;
+    }
+
+    public Expression getStart() {
+        return start;
+    }
+
+    public Expression getEnd() {
+        return end;
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitFor(this);
+    }
+}
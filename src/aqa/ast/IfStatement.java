@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IF cond THEN block [ELSE IF cond THEN block]... [ELSE block] ENDIF
+ *
+ * The conditions and blocks are held in matching lists, so the block at index
+ * i is executed when the condition at index i is the first to be true.
+ *
+ * @author martinhart
+ */
+public class IfStatement extends Statement {
+
+    private final List<Expression> conditions;
+    private final List<Block> blocks;
+    private final Block elseBlock;
+
+    /**
+     * @param line source line
+     * @param conditions the IF and ELSE IF conditions
+     * @param blocks the block belonging to each condition
+     * @param elseBlock the ELSE block or null if there isn't one
+     */
+    public IfStatement(int line, List<Expression> conditions, List<Block> blocks, Block elseBlock) {
+        super(line);
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+        this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+        this.elseBlock = elseBlock;
+    }
+
+    public List<Expression> getConditions() {
+        return conditions;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the ELSE block or null if there isn't one
+     */
+    public Block getElseBlock() {
+        return elseBlock;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitIf(this);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reading an element of an array variable, e.g. ary[i] or ary[i][j].
+ *
+ * @author martinhart
+ */
+public class IndexExpression extends Expression {
+
+    private final String name;
+    private final int slot;
+    private final List<Expression> indices;
+
+    public IndexExpression(int line, String name, int slot, List<Expression> indices) {
+        super(line);
+        this.name = name;
+        this.slot = slot;
+        this.indices = Collections.unmodifiableList(new ArrayList<>(indices));
+    }
+
+    /**
+     * @return the name of the array variable
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the slot of the variable in the variables of the subroutine
+     * call (or main program) it is used in
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public List<Expression> getIndices() {
+        return indices;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitIndex(this);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import aqa.value.Value;
+
+/**
+ * A literal integer, real, string or boolean, e.g. 12, 3.4, 'hi' or TRUE.
+ * These values are immutable so the same Value is used every time the literal
+ * is evaluated.
+ *
+ * @author martinhart
+ */
+public class LiteralExpression extends Expression {
+
+    private final Value value;
+
+    public LiteralExpression(int line, Value value) {
+        super(line);
+        this.value = value;
+    }
+
+    public Value getValue() {
+        return value;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitLiteral(this);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * The base of every element in the syntax tree.  The AstBuilder creates a tree
+ * of these from the tokens once; the tree can then be executed as many times
+ * as required without going back to the tokens.
+ *
+ * Nodes are immutable once built.
+ *
+ * @author martinhart
+ */
+public abstract class Node {
+
+    /**
+     * The line in the source code that this node was built from.
+     */
+    private final int line;
+
+    /**
+     * @param line the source line this node was built from
+     */
+    protected Node(int line) {
+        this.line = line;
+    }
+
+    /**
+     * @return the line in the source code this node was built from
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Pass this node to the relevant method of visitor.
+     * @param <R> the type of result produced by the visitor
+     * @param visitor the visitor
+     * @return whatever the visitor returns
+     * @throws InterpreterException if the visitor fails
+     */
+    public abstract <R> R accept(AstVisitor<R> visitor) throws InterpreterException;
+}
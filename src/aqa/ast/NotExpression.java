@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * NOT operand
+ *
+ * @author martinhart
+ */
+public class NotExpression extends Expression {
+
+    private final Expression operand;
+
+    public NotExpression(int line, Expression operand) {
+        super(line);
+        this.operand = operand;
+    }
+
+    public Expression getOperand() {
+        return operand;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitNot(this);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * OUTPUT expression or INSPECT expression.
+ *
+ * @author martinhart
+ */
+public class OutputStatement extends Statement {
+
+    private final Expression value;
+    private final boolean inspect;
+
+    /**
+     * @param line source line
+     * @param value what to output
+     * @param inspect true for INSPECT (debug representation), false for OUTPUT
+     */
+    public OutputStatement(int line, Expression value, boolean inspect) {
+        super(line);
+        this.value = value;
+        this.inspect = inspect;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+
+    public boolean isInspect() {
+        return inspect;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitOutput(this);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The root of the syntax tree: the main program plus every subroutine that
+ * it defines.
+ *
+ * @author martinhart
+ */
+public class ProgramNode {
+
+    private final Block main;
+    private final Map<String, SubroutineNode> subroutines;
+    private final List<String> slotNames;
+
+    /**
+     * @param main the top level statements
+     * @param subroutines the subroutines defined by the program, by name
+     * @param slotNames the name of the variable in each slot of the main
+     * program's variables (see aqa.variable.FrameVariableTable)
+     */
+    public ProgramNode(Block main, Map<String, SubroutineNode> subroutines, List<String> slotNames) {
+        this.main = main;
+        this.subroutines = Collections.unmodifiableMap(new LinkedHashMap<>(subroutines));
+        this.slotNames = Collections.unmodifiableList(new ArrayList<>(slotNames));
+    }
+
+    /**
+     * @return the top level statements
+     */
+    public Block getMain() {
+        return main;
+    }
+
+    /**
+     * @return the subroutines in the order they were defined, keyed by name
+     */
+    public Map<String, SubroutineNode> getSubroutines() {
+        return subroutines;
+    }
+
+    /**
+     * @return the name of the variable in each slot of the main program's
+     * variables
+     */
+    public List<String> getSlotNames() {
+        return slotNames;
+    }
+}
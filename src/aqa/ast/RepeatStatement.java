@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * REPEAT block UNTIL cond
+ *
+ * @author martinhart
+ */
+public class RepeatStatement extends Statement {
+
+    private final Block body;
+    private final Expression condition;
+
+    public RepeatStatement(int line, Block body, Expression condition) {
+        super(line);
+        this.body = body;
+        this.condition = condition;
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    public Expression getCondition() {
+        return condition;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitRepeat(this);
+    }
+}
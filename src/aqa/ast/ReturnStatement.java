@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * RETURN [expression] - only valid inside a subroutine.
+ *
+ * @author martinhart
+ */
+public class ReturnStatement extends Statement {
+
+    private final Expression value;
+
+    /**
+     * @param line source line
+     * @param value the value to return or null if there isn't one
+     */
+    public ReturnStatement(int line, Expression value) {
+        super(line);
+        this.value = value;
+    }
+
+    /**
+     * @return the value to return or null if there isn't one
+     */
+    public Expression getValue() {
+        return value;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitReturn(this);
+    }
+}
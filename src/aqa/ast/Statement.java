@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+/**
+ * A single instruction in a block, e.g.
+ *
+ *      OUTPUT a
+ *      a <- 1
+ *      WHILE ... ENDWHILE
+ *
+ * @author martinhart
+ */
+public abstract class Statement extends Node {
+
+    protected Statement(int line) {
+        super(line);
+    }
+}
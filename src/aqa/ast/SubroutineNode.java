@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The definition of a subroutine:
+ *
+ *      SUBROUTINE name(a, b)
+ *          body
+ *      ENDSUBROUTINE
+ *
+ * This is the syntax tree equivalent of aqa.subroutine.Subroutine.
+ *
+ * @author martinhart
+ */
+public class SubroutineNode extends Node {
+
+    private final String name;
+    private final List<String> parameters;
+    private final Block body;
+
+    /**
+     * The name of the variable in each slot of a call's variables.
+     */
+    private final List<String> slotNames;
+
+    /**
+     * The slot of each parameter.
+     */
+    private final int[] parameterSlots;
+
+    /**
+     * @param line the line of the definition
+     * @param name the subroutine name
+     * @param parameters the parameter names
+     * @param body the statements to execute when it is called
+     * @param slotNames the name of the variable in each slot (see
+     * aqa.variable.FrameVariableTable), including every parameter
+     */
+    public SubroutineNode(int line, String name, List<String> parameters, Block body, List<String> slotNames) {
+        super(line);
+        this.name = name;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.body = body;
+        this.slotNames = Collections.unmodifiableList(new ArrayList<>(slotNames));
+        this.parameterSlots = new int[parameters.size()];
+        for (int i = 0; i < parameterSlots.length; i++) {
+            parameterSlots[i] = this.slotNames.indexOf(parameters.get(i));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * retrieve a parameter name at specified index
+     * @param index the index of the parameter
+     * @return the parameter name
+     * @throws InterpreterException if invalid index
+     */
+    public String getParameter(int index) throws InterpreterException {
+        if (index < 0 || index >= parameters.size()) {
+            throw new InterpreterException("subroutine '" + name + "' invalid parameter index '" + index + "'");
+        }
+        return parameters.get(index);
+    }
+
+    /**
+     * @param index the index of the parameter
+     * @return the slot the parameter is held in
+     * @throws InterpreterException if invalid index
+     */
+    public int getParameterSlot(int index) throws InterpreterException {
+        if (index < 0 || index >= parameterSlots.length) {
+            throw new InterpreterException("subroutine '" + name + "' invalid parameter index '" + index + "'");
+        }
+        return parameterSlots[index];
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    /**
+     * @return the name of the variable in each slot of a call's variables
+     */
+    public List<String> getSlotNames() {
+        return slotNames;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitSubroutine(this);
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.ExecutionBudget;
+import aqa.ExecutionLimitException;
+import aqa.ExecutionMeter;
+import aqa.InterpreterException;
+import aqa.parser.InputProvider;
+import aqa.parser.InstructionListener;
+import aqa.parser.NullInputProvider;
+import aqa.parser.NullOutputWriter;
+import aqa.parser.OutputWriter;
+import aqa.parser.VirtualMachine;
+import aqa.subroutine.SubroutineTableImpl;
+import aqa.value.ArrayValue;
+import aqa.value.BooleanValue;
+import aqa.value.IntegerValue;
+import aqa.value.StringValue;
+import aqa.value.Value;
+import aqa.value.Values;
+import aqa.variable.FrameVariableTable;
+import aqa.variable.Variable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class executes a syntax tree built by AstBuilder.  It produces the same
+ * results as aqa.parser.Parser but, because the tokens have already been
+ * matched, each statement is dispatched directly instead of being recognised
+ * again every time it runs (e.g. on every iteration of a loop).
+ *
+ * Variables are held in a FrameVariableTable in the VirtualMachine, just as
+ * they are by the Parser, so that InstructionListener clients (e.g. the
+ * debugger) see the same state.  They are read and written by the slots that
+ * AstBuilder stored in the nodes.
+ *
+ * @author martinhart
+ */
+public class TreeWalker implements AstVisitor<Value> {
+
+    private static final IntegerValue ONE = IntegerValue.valueOf(1);
+
+    /**
+     * The object that will provide the user with output (OUTPUT and INSPECT)
+     */
+    private final OutputWriter outputWriter;
+
+    /**
+     * The object that will provide user input during execution (USERINPUT)
+     */
+    private final InputProvider inputProvider;
+
+    /**
+     * The object to notify when we move on to a new instruction, or null if
+     * nothing is listening (so there is nothing to call).
+     */
+    private final InstructionListener instructionListener;
+
+    /**
+     * The subroutines of the program being executed.
+     */
+    private Map<String, SubroutineNode> subroutines;
+
+    /**
+     * The current virtual machine (variable table, and a value stack holding
+     * values part way through an expression so the meter can see them)
+     */
+    private VirtualMachine vm;
+
+    /**
+     * The variables of the current virtual machine.
+     */
+    private FrameVariableTable frame;
+
+    /**
+     * The line of the statement being executed - used to report errors.
+     */
+    private int currentLine;
+
+    /**
+     * Set by RETURN to unwind the subroutine body.
+     */
+    private boolean returning;
+
+    /**
+     * The number of subroutine calls that have not yet returned.
+     */
+    private int calls;
+
+    /**
+     * The value given to RETURN (if any).
+     */
+    private Value returnValue;
+
+    /**
+     * The limits on each run of a program.
+     */
+    private ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+
+    /**
+     * Measures the current run against the budget.
+     */
+    private ExecutionMeter meter;
+
+    /**
+     * Create a tree walker ready to execute programs.
+     * @param outputWriter where program output should go
+     * @param inputProvider where user input should come from
+     * @param instructionListener who to notify about current state, or null to
+     * run as fast as possible without notifying anyone
+     */
+    public TreeWalker(OutputWriter outputWriter, InputProvider inputProvider,
+            InstructionListener instructionListener) {
+        this.outputWriter = outputWriter;
+        this.inputProvider = inputProvider;
+        this.instructionListener = instructionListener;
+    }
+
+    /**
+     * Create a tree walker that does not interact in any way with the outside
+     * world.  Useful for testing.
+     */
+    public TreeWalker() {
+        this(new NullOutputWriter(), new NullInputProvider(), null);
+    }
+
+    /**
+     * Get the current virtual machine state.
+     * @return the vm
+     */
+    public VirtualMachine getVM() {
+        return vm;
+    }
+
+    /**
+     * Set the limits on each run of a program.
+     * @param budget the limits
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Run a program from the start.
+     * @param program the program to run
+     * @throws InterpreterException if execution fails
+     */
+    public void execute(ProgramNode program) throws InterpreterException {
+        subroutines = program.getSubroutines();
+        frame = new FrameVariableTable(program.getSlotNames());
+        vm = new VirtualMachine(new SubroutineTableImpl(), frame);
+        returning = false;
+        returnValue = null;
+        calls = 0;
+        currentLine = 1;
+        meter = budget.start();
+        meter.setMain(frame, vm.getValueStack());
+        ExecutionMeter previousMeter = meter.attach();
+        try {
+            executeBlock(program.getMain());
+        } catch (ExecutionLimitException e) {
+            throw e.atLine(currentLine);
+        } catch (InterpreterException e) {
+            throw new InterpreterException(currentLine, e.getLocalizedMessage());
+        } finally {
+            ExecutionMeter.detach(previousMeter);
+        }
+    }
+
+    /**
+     * Execute each statement in a block, stopping early on RETURN.
+     * @param block the statements to execute
+     * @throws InterpreterException
+     */
+    private void executeBlock(Block block) throws InterpreterException {
+        if (instructionListener != null) {
+            executeBlockListening(block);
+            return;
+        }
+        List<Statement> statements = block.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            currentLine = statement.getLine();
+            meter.instruction();
+            statement.accept(this);
+            if (returning) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * executeBlock, notifying the instruction listener before each statement.
+     * @param block the statements to execute
+     * @throws InterpreterException
+     */
+    private void executeBlockListening(Block block) throws InterpreterException {
+        List<Statement> statements = block.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            currentLine = statement.getLine();
+            meter.instruction();
+            instructionListener.newInstruction(currentLine, vm);
+            statement.accept(this);
+            if (returning) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evaluate an expression that must produce a value.
+     * @param expression the expression to evaluate
+     * @return the value
+     * @throws InterpreterException if evaluation fails or there is no value
+     */
+    private Value evaluate(Expression expression) throws InterpreterException {
+        Value v = expression.accept(this);
+        if (v == null) {
+            throw new InterpreterException("'" + ((CallExpression) expression).getName() + "' did not return a value");
+        }
+        return v;
+    }
+
+    @Override
+    public Value visitSubroutine(SubroutineNode node) throws InterpreterException {
+        // subroutines are collected by AstBuilder and run by visitCall.
+        return null;
+    }
+
+    @Override
+    public Value visitAssignment(AssignmentStatement node) throws InterpreterException {
+        Variable var = frame.get(node.getSlot());
+        List<Expression> indices = node.getIndices();
+
+        if (node.isConstant()) {
+            var.makeConstant();
+        }
+        if (indices.isEmpty()) {
+            var.setValue(evaluate(node.getValue()));
+            return null;
+        }
+
+        int[] index = new int[indices.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = Values.toInteger(evaluate(indices.get(i)));
+        }
+        Value value = evaluate(node.getValue());
+        Value target = var.getValue();
+        for (int i = 0; i < index.length - 1; i++) {
+            if (!(target instanceof ArrayValue)) {
+                throw new InterpreterException("invalid array assignment");
+            }
+            target = target.getAtIndex(index[i]);
+        }
+        if (!(target instanceof ArrayValue)) {
+            throw new InterpreterException("invalid array assignment");
+        }
+        target.setAtIndex(index[index.length - 1], value);
+        return null;
+    }
+
+    @Override
+    public Value visitOutput(OutputStatement node) throws InterpreterException {
+        Value v = evaluate(node.getValue());
+        outputWriter.output(node.isInspect() ? v.inspect() : v.output());
+        return null;
+    }
+
+    @Override
+    public Value visitIf(IfStatement node) throws InterpreterException {
+        List<Expression> conditions = node.getConditions();
+        for (int i = 0; i < conditions.size(); i++) {
+            if (Values.toBoolean(evaluate(conditions.get(i)))) {
+                executeBlock(node.getBlocks().get(i));
+                return null;
+            }
+        }
+        if (node.getElseBlock() != null) {
+            executeBlock(node.getElseBlock());
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitWhile(WhileStatement node) throws InterpreterException {
+        while (Values.toBoolean(evaluate(node.getCondition()))) {
+            executeBlock(node.getBody());
+            if (returning) {
+                break;
+            }
+            meter.instruction();
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitRepeat(RepeatStatement node) throws InterpreterException {
+        do {
+            meter.instruction();
+            executeBlock(node.getBody());
+            if (returning) {
+                break;
+            }
+        } while (!Values.toBoolean(evaluate(node.getCondition())));
+        return null;
+    }
+
+    @Override
+    public Value visitFor(ForStatement node) throws InterpreterException {
+        Variable counter = frame.get(node.getCounterSlot());
+        int endValue;
+
+        counter.setValue(evaluate(node.getStart()));
+        endValue = Values.toInteger(evaluate(node.getEnd()));
+        if (Values.toInteger(counter.getValue()) <= endValue) {
+            while (Values.toInteger(counter.getValue()) <= endValue) {
+                executeBlock(node.getBody());
+                if (returning) {
+                    return null;
+                }
+                counter.setValue(counter.getValue().add(ONE));
+            }
+            counter.setValue(IntegerValue.valueOf(endValue));
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitReturn(ReturnStatement node) throws InterpreterException {
+        if (calls == 0) {
+            throw new InterpreterException("RETURN outside of a subroutine");
+        }
+        returnValue = node.getValue() == null ? null : evaluate(node.getValue());
+        returning = true;
+        return null;
+    }
+
+    @Override
+    public Value visitExpressionStatement(ExpressionStatement node) throws InterpreterException {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Value visitLiteral(LiteralExpression node) throws InterpreterException {
+        return node.getValue();
+    }
+
+    @Override
+    public Value visitArrayLiteral(ArrayLiteralExpression node) throws InterpreterException {
+        ArrayValue ary = new ArrayValue();
+        List<Expression> elements = node.getElements();
+        vm.pushValue(ary);
+        for (int i = 0; i < elements.size(); i++) {
+            ary.setAtIndex(i, evaluate(elements.get(i)));
+        }
+        vm.popValue();
+        return ary;
+    }
+
+    @Override
+    public Value visitVariable(VariableExpression node) throws InterpreterException {
+        return frame.get(node.getSlot()).getValue();
+    }
+
+    @Override
+    public Value visitIndex(IndexExpression node) throws InterpreterException {
+        Value value = frame.get(node.getSlot()).getValue();
+        List<Expression> indices = node.getIndices();
+        for (int i = 0; i < indices.size(); i++) {
+            if (!(value instanceof ArrayValue)) {
+                throw new InterpreterException("attempt to index variable '" + node.getName() + "' as if it were an array");
+            }
+            value = value.getAtIndex(Values.toInteger(evaluate(indices.get(i))));
+        }
+        return value;
+    }
+
+    @Override
+    public Value visitBinary(BinaryExpression node) throws InterpreterException {
+        BinaryOperator operator = node.getOperator();
+        Value left = evaluate(node.getLeft());
+        Value right;
+        if (operator == BinaryOperator.AND || operator == BinaryOperator.OR) {
+            // check the left hand side before evaluating the right, as Parser does.
+            Values.toBoolean(left);
+        }
+        vm.pushValue(left);
+        right = evaluate(node.getRight());
+        vm.popValue();
+        return operator.apply(left, right);
+    }
+
+    @Override
+    public Value visitNot(NotExpression node) throws InterpreterException {
+        return BooleanValue.valueOf(!Values.toBoolean(evaluate(node.getOperand())));
+    }
+
+    /**
+     * Execute a subroutine call:
+     *
+     * 1. evaluate the arguments and copy them into a new variable table.
+     * 2. execute the body in a new vm.
+     * 3. restore the caller's vm and hand back the returned value.
+     */
+    @Override
+    public Value visitCall(CallExpression node) throws InterpreterException {
+        SubroutineNode s = subroutines.get(node.getName());
+        List<Expression> arguments = node.getArguments();
+        FrameVariableTable subroutineVariables;
+        VirtualMachine callerVM = vm;
+        FrameVariableTable callerFrame = frame;
+        int callerLine = currentLine;
+        Value[] copies;
+        Value result;
+
+        if (s == null) {
+            throw new InterpreterException("'" + node.getName() + "' is not defined");
+        }
+        subroutineVariables = new FrameVariableTable(s.getSlotNames());
+        copies = new Value[arguments.size()];
+        for (int i = 0; i < arguments.size(); i++) {
+            Variable argument = new Variable(s.getParameter(i));
+            copies[i] = evaluate(arguments.get(i)).makeCopy();
+            argument.setValue(copies[i]);
+            subroutineVariables.set(s.getParameterSlot(i), argument);
+            vm.pushValue(copies[i]);
+        }
+        for (int i = 0; i < copies.length; i++) {
+            vm.popValue();
+        }
+
+        vm = new VirtualMachine(callerVM.getSubroutineTable(), subroutineVariables);
+        frame = subroutineVariables;
+        meter.enterCall(subroutineVariables, vm.getValueStack());
+        if (instructionListener != null) {
+            instructionListener.subroutineCalled(s.getName());
+        }
+        ++calls;
+        executeBlock(s.getBody());
+        --calls;
+        meter.exitCall();
+        if (instructionListener != null) {
+            instructionListener.subroutineReturned(s.getName());
+        }
+        result = returnValue;
+        returning = false;
+        returnValue = null;
+        ArrayValue.releaseArguments(copies, result);
+        vm = callerVM;
+        frame = callerFrame;
+        currentLine = callerLine;
+        return result;
+    }
+
+    @Override
+    public Value visitBuiltin(BuiltinExpression node) throws InterpreterException {
+        List<Expression> arguments = node.getArguments();
+        Value[] args = new Value[arguments.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = evaluate(arguments.get(i));
+            vm.pushValue(args[i]);
+        }
+        for (int i = 0; i < args.length; i++) {
+            vm.popValue();
+        }
+        return node.getBuiltin().apply(args);
+    }
+
+    @Override
+    public Value visitUserInput(UserInputExpression node) throws InterpreterException {
+        return new StringValue(inputProvider.getInput().trim());
+    }
+}
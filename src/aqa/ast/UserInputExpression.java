@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * USERINPUT
+ *
+ * @author martinhart
+ */
+public class UserInputExpression extends Expression {
+
+    public UserInputExpression(int line) {
+        super(line);
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitUserInput(this);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * A reference to the value of a variable.
+ *
+ * @author martinhart
+ */
+public class VariableExpression extends Expression {
+
+    private final String name;
+    private final int slot;
+
+    public VariableExpression(int line, String name, int slot) {
+        super(line);
+        this.name = name;
+        this.slot = slot;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the slot of the variable in the variables of the subroutine
+     * call (or main program) it is used in
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitVariable(this);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+
+/**
+ * WHILE cond block ENDWHILE
+ *
+ * @author martinhart
+ */
+public class WhileStatement extends Statement {
+
+    private final Expression condition;
+    private final Block body;
+
+    public WhileStatement(int line, Expression condition, Block body) {
+        super(line);
+        this.condition = condition;
+        this.body = body;
+    }
+
+    public Expression getCondition() {
+        return condition;
+    }
+
+    public Block getBody() {
+        return body;
+    }
+
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) throws InterpreterException {
+        return visitor.visitWhile(this);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import aqa.ExecutionBudget;
+import aqa.ProgramCache;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The command line for running programs in batch mode:
+ *
+ *      --batch &lt;directory|manifest&gt; [--threads n] [--virtual]
+ *              [--engine PARSER|TREE_WALKER|BYTECODE] [--out results.json]
+ *              [--max-instructions n] [--timeout ms] [--max-depth n]
+ *              [--max-array-elements n] [--max-string-characters n]
+ *              [--cache-size n] [--generate n[,n...]] [--profile directory]
+ *
+ * The --max options and --timeout set the ExecutionBudget of each program (by
+ * default there are no limits).  Compiled programs are kept in a ProgramCache
+ * of --cache-size entries (DEFAULT_CACHE_SIZE by default, 0 to turn it off).
+ * --generate first writes every Workload at each of the sizes given into the
+ * --batch directory, so that how the run time grows with the size can be
+ * seen in the results.  --profile runs each program with a
+ * ProfilingInstructionListener and writes its hot spots and a flame graph's
+ * collapsed stacks into the directory given (see BatchRunner).
+ *
+ * The results are written as JSON (see BatchReport) to the --out file, or to
+ * standard output if there isn't one.  A summary including the throughput
+ * goes to standard error.
+ *
+ * @author martinhart
+ */
+public class BatchCommand {
+
+    /**
+     * Returned by run when the batch ran, whether or not the programs failed.
+     */
+    public static final int OK = 0;
+
+    /**
+     * Returned by run when the batch could not be run.
+     */
+    public static final int FAILED = 2;
+
+    /**
+     * The number of compiled programs kept, unless --cache-size says otherwise.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final String USAGE = "usage: --batch <directory|manifest> [--threads n] [--virtual]"
+            + " [--engine PARSER|TREE_WALKER|BYTECODE] [--out results.json]"
+            + " [--max-instructions n] [--timeout ms] [--max-depth n]"
+            + " [--max-array-elements n] [--max-string-characters n] [--cache-size n]"
+            + " [--generate n[,n...]] [--profile directory]";
+
+    /**
+     * Where the results go if there is no --out file.
+     */
+    private final PrintStream out;
+
+    /**
+     * Where the summary and any errors go.
+     */
+    private final PrintStream err;
+
+    /**
+     * @param out where the results go if there is no --out file
+     * @param err where the summary and any errors go
+     */
+    public BatchCommand(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * @param args the command line arguments
+     * @return true if args ask for batch mode
+     */
+    public static boolean isBatch(String[] args) {
+        return args.length > 0 && args[0].equals("--batch");
+    }
+
+    /**
+     * Run a batch.
+     * @param args the command line arguments, starting with --batch
+     * @return OK or FAILED
+     */
+    public int run(String[] args) {
+        Path jobs = null, results = null, profiles = null;
+        Engine engine = Engine.PARSER;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads = false;
+        long maxInstructions = 0, maxMillis = 0, maxArrayElements = 0, maxStringCharacters = 0;
+        int maxCallDepth = 0, cacheSize = DEFAULT_CACHE_SIZE;
+        int[] workloadSizes = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        jobs = Paths.get(argument(args, ++i));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(argument(args, ++i));
+                        break;
+                    case "--virtual":
+                        virtualThreads = true;
+                        break;
+                    case "--engine":
+                        engine = Engine.valueOf(argument(args, ++i));
+                        break;
+                    case "--out":
+                        results = Paths.get(argument(args, ++i));
+                        break;
+                    case "--max-instructions":
+                        maxInstructions = Long.parseLong(argument(args, ++i));
+                        break;
+                    case "--timeout":
+                        maxMillis = Long.parseLong(argument(args, ++i));
+                        break;
+                    case "--max-depth":
+                        maxCallDepth = Integer.parseInt(argument(args, ++i));
+                        break;
+                    case "--max-array-elements":
+                        maxArrayElements = Long.parseLong(argument(args, ++i));
+                        break;
+                    case "--max-string-characters":
+                        maxStringCharacters = Long.parseLong(argument(args, ++i));
+                        break;
+                    case "--cache-size":
+                        cacheSize = Integer.parseInt(argument(args, ++i));
+                        break;
+                    case "--generate":
+                        workloadSizes = sizes(argument(args, ++i));
+                        break;
+                    case "--profile":
+                        profiles = Paths.get(argument(args, ++i));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (jobs == null) {
+                throw new IllegalArgumentException("nothing to run");
+            }
+            if (workloadSizes != null) {
+                Workload.writeAll(jobs, workloadSizes);
+            }
+            ExecutionBudget budget = new ExecutionBudget(maxInstructions, maxMillis, maxCallDepth,
+                    maxArrayElements, maxStringCharacters);
+            BatchRunner runner = new BatchRunner(engine, threads, virtualThreads, budget);
+            if (cacheSize > 0) {
+                runner.setProgramCache(new ProgramCache(cacheSize));
+            }
+            if (profiles != null) {
+                runner.setProfileDirectory(Files.createDirectories(profiles));
+            }
+            return run(BatchJob.load(jobs), runner, results);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+        } catch (IOException e) {
+            err.println("unable to read or write: " + e.getMessage());
+        } catch (InterruptedException e) {
+            err.println("interrupted");
+            Thread.currentThread().interrupt();
+        }
+        return FAILED;
+    }
+
+    /**
+     * Run the jobs and report the results.
+     * @param jobs the programs to run
+     * @param runner how to run them
+     * @param results where to write the results (or null for standard output)
+     * @return OK
+     * @throws IOException if the results cannot be written
+     * @throws InterruptedException if interrupted while running
+     */
+    private int run(List<BatchJob> jobs, BatchRunner runner, Path results)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BatchReport report = new BatchReport(runner.run(jobs), System.nanoTime() - start);
+        ProgramCache cache = runner.getProgramCache();
+
+        if (results == null) {
+            report.writeJson(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } else {
+            try (Writer writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+                report.writeJson(writer);
+            }
+        }
+        err.println(report.summary());
+        for (String error : runner.getProfileErrors()) {
+            err.println(error);
+        }
+        if (cache != null) {
+            err.println("program cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+        }
+        return OK;
+    }
+
+    /**
+     * @param list sizes separated by commas
+     * @return the sizes
+     * @throws IllegalArgumentException if a size isn't a positive number
+     */
+    private static int[] sizes(String list) {
+        String[] fields = list.split(",");
+        int[] sizes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            sizes[i] = Integer.parseInt(fields[i].trim());
+            if (sizes[i] < 1) {
+                throw new IllegalArgumentException("workload sizes must be at least 1");
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @param args the command line arguments
+     * @param i the index of an option's argument
+     * @return the argument
+     * @throws IllegalArgumentException if it is missing
+     */
+    private static String argument(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
+}
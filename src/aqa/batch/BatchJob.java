@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A program to be run by the BatchRunner along with the lines of text that
+ * USERINPUT should return, in order (the stdin fixture).
+ *
+ * Jobs are normally read from disk, either:
+ *
+ *  - a directory: every *.aqa file in it, each with an optional fixture of
+ *    the same name ending .in (e.g. bubble.aqa and bubble.in), or
+ *  - a manifest: a text file with one job per line, 'program.aqa [input.in]'.
+ *    Paths are relative to the manifest, blank lines and lines starting with #
+ *    are ignored.
+ *
+ * @author martinhart
+ */
+public class BatchJob {
+
+    /**
+     * The name reported in the results (normally the program's path).
+     */
+    private final String name;
+
+    /**
+     * The source code of the program.
+     */
+    private final String source;
+
+    /**
+     * The USERINPUT fixture.
+     */
+    private final List<String> input;
+
+    /**
+     * @param name the name reported in the results
+     * @param source the program's source code
+     * @param input the lines USERINPUT should return
+     */
+    public BatchJob(String name, String source, List<String> input) {
+        this.name = name;
+        this.source = source;
+        this.input = Collections.unmodifiableList(new ArrayList<>(input));
+    }
+
+    /**
+     * @return the name reported in the results
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the program's source code
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the lines USERINPUT should return
+     */
+    public List<String> getInput() {
+        return input;
+    }
+
+    /**
+     * Read the jobs named by a directory or a manifest file.
+     * @param path a directory of .aqa files or a manifest file
+     * @return the jobs, in a predictable order
+     * @throws IOException if the files cannot be read
+     */
+    public static List<BatchJob> load(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return fromDirectory(path);
+        }
+        return fromManifest(path);
+    }
+
+    /**
+     * @param directory the directory to search
+     * @return a job for every .aqa file in the directory, sorted by name
+     * @throws IOException if the files cannot be read
+     */
+    public static List<BatchJob> fromDirectory(Path directory) throws IOException {
+        List<Path> programs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.aqa")) {
+            for (Path file : files) {
+                programs.add(file);
+            }
+        }
+        Collections.sort(programs);
+
+        List<BatchJob> jobs = new ArrayList<>();
+        for (Path program : programs) {
+            String fileName = program.getFileName().toString();
+            Path fixture = program.resolveSibling(fileName.substring(0, fileName.length() - ".aqa".length()) + ".in");
+            jobs.add(read(program, Files.exists(fixture) ? fixture : null));
+        }
+        return jobs;
+    }
+
+    /**
+     * @param manifest the manifest file
+     * @return a job for every entry in the manifest, in manifest order
+     * @throws IOException if the files cannot be read or an entry is invalid
+     */
+    public static List<BatchJob> fromManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<BatchJob> jobs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            ++lineNumber;
+            if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+                continue;
+            }
+            if (fields.length > 2) {
+                throw new IOException(manifest + ":" + lineNumber + ": expecting 'program.aqa [input.in]'");
+            }
+            jobs.add(read(base.resolve(fields[0]), fields.length == 2 ? base.resolve(fields[1]) : null));
+        }
+        return jobs;
+    }
+
+    /**
+     * @param program the program file
+     * @param fixture the input fixture file (or null if there is none)
+     * @return the job
+     * @throws IOException if the files cannot be read
+     */
+    private static BatchJob read(Path program, Path fixture) throws IOException {
+        String source = new String(Files.readAllBytes(program), StandardCharsets.UTF_8);
+        List<String> input = fixture == null
+                ? Collections.<String>emptyList()
+                : Files.readAllLines(fixture, StandardCharsets.UTF_8);
+        return new BatchJob(program.toString(), source, input);
+    }
+}
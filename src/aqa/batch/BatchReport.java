@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The results of a batch run, written as JSON for the grading tools:
+ *
+ *      {
+ *        "programs": 2, "failures": 1,
+ *        "elapsedMillis": 12.5, "programsPerSecond": 160.0,
+ *        "results": [
+ *          {"name": "a.aqa", "status": "ok", "output": ["1", "2"], "error": null, "millis": 1.2},
+ *          {"name": "b.aqa", "status": "error", "output": [], "error": "...", "millis": 0.4}
+ *        ]
+ *      }
+ *
+ * The status is "ok", "error", or "limit" when the program was stopped by its
+ * ExecutionBudget.
+ *
+ * @author martinhart
+ */
+public class BatchReport {
+
+    /**
+     * The result of each program.
+     */
+    private final List<BatchResult> results;
+
+    /**
+     * The wall clock time taken to run all of the programs.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * @param results the result of each program
+     * @param elapsedNanos the wall clock time taken to run them all
+     */
+    public BatchReport(List<BatchResult> results, long elapsedNanos) {
+        this.results = results;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of programs that did not run to completion
+     */
+    public int getFailures() {
+        int failures = 0;
+        for (BatchResult result : results) {
+            if (!result.succeeded()) {
+                ++failures;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the throughput of the batch
+     */
+    public double getProgramsPerSecond() {
+        return elapsedNanos == 0 ? 0 : results.size() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * @return a one line, human readable, summary
+     */
+    public String summary() {
+        return String.format("%d programs (%d failed) in %.1f ms: %.1f programs per second",
+                results.size(), getFailures(), elapsedNanos / 1e6, getProgramsPerSecond());
+    }
+
+    /**
+     * Write the report as JSON.
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"programs\": " + results.size() + ",\n");
+        out.write("  \"failures\": " + getFailures() + ",\n");
+        out.write("  \"elapsedMillis\": " + millis(elapsedNanos) + ",\n");
+        out.write("  \"programsPerSecond\": " + String.format(Locale.ROOT, "%.1f", getProgramsPerSecond()) + ",\n");
+        out.write("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            BatchResult result = results.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("    {\"name\": " + quote(result.getName()));
+            out.write(", \"status\": " + quote(status(result)));
+            out.write(", \"output\": [");
+            for (int j = 0; j < result.getOutput().size(); j++) {
+                out.write((j == 0 ? "" : ", ") + quote(result.getOutput().get(j)));
+            }
+            out.write("], \"error\": " + (result.succeeded() ? "null" : quote(result.getError())));
+            out.write(", \"millis\": " + millis(result.getElapsedNanos()) + "}");
+        }
+        out.write("\n  ]\n}\n");
+        out.flush();
+    }
+
+    /**
+     * @param result the result of a program
+     * @return how the program finished
+     */
+    private static String status(BatchResult result) {
+        if (result.succeeded()) {
+            return "ok";
+        }
+        return result.limitExceeded() ? "limit" : "error";
+    }
+
+    /**
+     * @param nanos a duration
+     * @return the duration in milliseconds as a JSON number
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * @param s the string to quote
+     * @return s as a JSON string literal
+     */
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
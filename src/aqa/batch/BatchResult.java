@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of running one BatchJob.
+ *
+ * @author martinhart
+ */
+public class BatchResult {
+
+    /**
+     * The name of the job.
+     */
+    private final String name;
+
+    /**
+     * Everything the program sent to its OutputWriter, one entry per OUTPUT.
+     */
+    private final List<String> output;
+
+    /**
+     * Why the program failed, or null if it ran to completion.
+     */
+    private final String error;
+
+    /**
+     * True if the program was stopped by its ExecutionBudget.
+     */
+    private final boolean limitExceeded;
+
+    /**
+     * How long the program took to run.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * @param name the name of the job
+     * @param output the program's output
+     * @param error why the program failed (null if it did not)
+     * @param elapsedNanos how long the program took to run
+     */
+    public BatchResult(String name, List<String> output, String error, long elapsedNanos) {
+        this(name, output, error, false, elapsedNanos);
+    }
+
+    /**
+     * @param name the name of the job
+     * @param output the program's output
+     * @param error why the program failed (null if it did not)
+     * @param limitExceeded true if the program was stopped by its budget
+     * @param elapsedNanos how long the program took to run
+     */
+    public BatchResult(String name, List<String> output, String error,
+            boolean limitExceeded, long elapsedNanos) {
+        this.name = name;
+        this.output = Collections.unmodifiableList(output);
+        this.error = error;
+        this.limitExceeded = limitExceeded;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the name of the job
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the program's output, one entry per OUTPUT
+     */
+    public List<String> getOutput() {
+        return output;
+    }
+
+    /**
+     * @return why the program failed, or null if it ran to completion
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the program ran to completion
+     */
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    /**
+     * @return true if the program was stopped by its ExecutionBudget
+     */
+    public boolean limitExceeded() {
+        return limitExceeded;
+    }
+
+    /**
+     * @return how long the program took to run
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
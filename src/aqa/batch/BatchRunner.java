@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import aqa.ExecutionBudget;
+import aqa.ExecutionLimitException;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import aqa.ProgramCache;
+import aqa.parser.InputProvider;
+import aqa.parser.ProfilingInstructionListener;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Run many programs, without any user interface, on a pool of worker threads.
+ * Each program gets its own Interpreter so nothing is shared between them
+ * except the (immutable) job.
+ *
+ * An ExecutionBudget stops programs that would otherwise keep a worker busy
+ * forever (e.g. WHILE TRUE).  A ProgramCache means that source code that
+ * appears more than once in the batch (or in earlier batches run by the same
+ * runner) is only read once.
+ *
+ * If a profile directory is set each program is run with a
+ * ProfilingInstructionListener, and its hot spots and collapsed stacks are
+ * written there as name.profile.txt and name.collapsed, where name is the
+ * job's file name (with -2, -3... added if two jobs have the same one).  A
+ * profile that cannot be written doesn't fail the program; it is listed in
+ * getProfileErrors instead.
+ *
+ * The workers may be a pool of platform threads or, when the JVM has them
+ * (Java 21+), a new virtual thread for each program.  Virtual threads are
+ * cheap to create but shouldn't be pooled, so in that case a Semaphore keeps
+ * the number of programs running at once to the number of threads asked for.
+ * They are looked up by reflection so that the interpreter itself still
+ * builds and runs on Java 8.
+ *
+ * @author martinhart
+ */
+public class BatchRunner {
+
+    /**
+     * How each program is executed.
+     */
+    private final Engine engine;
+
+    /**
+     * The number of programs to run at once.
+     */
+    private final int threads;
+
+    /**
+     * Whether the workers should be virtual threads.
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * The limits on each program.
+     */
+    private final ExecutionBudget budget;
+
+    /**
+     * Where compiled programs are kept (null if they aren't).
+     */
+    private ProgramCache programCache;
+
+    /**
+     * Where the profiles are written (null if the programs aren't profiled).
+     */
+    private Path profileDirectory;
+
+    /**
+     * The names given to the profiles written so far.
+     */
+    private final Set<String> profileNames = new HashSet<>();
+
+    /**
+     * Why profiles could not be written.
+     */
+    private final List<String> profileErrors = new ArrayList<>();
+
+    /**
+     * Create a runner that does not limit the programs.
+     * @param engine how each program is executed
+     * @param threads the number of programs to run at once
+     * @param virtualThreads true to use virtual threads for the workers
+     * @throws IllegalArgumentException if threads &lt; 1 or virtual threads
+     *  were asked for and this JVM does not have them
+     */
+    public BatchRunner(Engine engine, int threads, boolean virtualThreads) {
+        this(engine, threads, virtualThreads, ExecutionBudget.UNLIMITED);
+    }
+
+    /**
+     * @param engine how each program is executed
+     * @param threads the number of programs to run at once
+     * @param virtualThreads true to use virtual threads for the workers
+     * @param budget the limits on each program
+     * @throws IllegalArgumentException if threads &lt; 1 or virtual threads
+     *  were asked for and this JVM does not have them
+     */
+    public BatchRunner(Engine engine, int threads, boolean virtualThreads, ExecutionBudget budget) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("at least one thread is needed");
+        }
+        if (virtualThreads && !virtualThreadsAvailable()) {
+            throw new IllegalArgumentException("virtual threads need Java 21 or later");
+        }
+        this.engine = engine;
+        this.threads = threads;
+        this.virtualThreads = virtualThreads;
+        this.budget = budget;
+    }
+
+    /**
+     * Keep the compiled programs in a cache.  By default there is no cache.
+     * Set this before calling run.
+     * @param programCache the cache to use (or null for none)
+     */
+    public void setProgramCache(ProgramCache programCache) {
+        this.programCache = programCache;
+    }
+
+    /**
+     * @return the cache of compiled programs (or null if there isn't one)
+     */
+    public ProgramCache getProgramCache() {
+        return programCache;
+    }
+
+    /**
+     * Profile each program, writing the profiles into a directory.  By
+     * default the programs aren't profiled.  Set this before calling run.
+     * @param profileDirectory the directory, which must exist (or null to
+     * stop profiling)
+     */
+    public void setProfileDirectory(Path profileDirectory) {
+        this.profileDirectory = profileDirectory;
+    }
+
+    /**
+     * @return why profiles could not be written, one entry per job
+     */
+    public synchronized List<String> getProfileErrors() {
+        return new ArrayList<>(profileErrors);
+    }
+
+    /**
+     * Run every job.
+     * @param jobs the programs to run
+     * @return a result for each job, in the same order as the jobs
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public List<BatchResult> run(List<BatchJob> jobs) throws InterruptedException {
+        ExecutorService workers = virtualThreads
+                ? newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threads);
+        // a pool of platform threads never runs more than threads jobs at
+        // once anyway, so only the virtual threads ever wait for a permit.
+        Semaphore running = new Semaphore(threads);
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                futures.add(workers.submit(() -> {
+                    running.acquire();
+                    try {
+                        return run(job);
+                    } finally {
+                        running.release();
+                    }
+                }));
+            }
+            List<BatchResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // run(BatchJob) reports the program's failures itself, so
+                    // this went wrong around it (e.g. writing the profile) -
+                    // still only this job's result is lost.
+                    results.add(new BatchResult(jobs.get(i).getName(), new ArrayList<String>(),
+                            "fatal error: " + e.getCause(), false, 0));
+                }
+            }
+            return results;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a single job on the current thread.
+     * @param job the program to run
+     * @return the outcome
+     */
+    public BatchResult run(BatchJob job) {
+        final List<String> output = new ArrayList<>();
+        final Iterator<String> input = job.getInput().iterator();
+        InputProvider inputProvider = () -> input.hasNext() ? input.next() : "";
+        ProfilingInstructionListener profiler = profileDirectory == null
+                ? null : new ProfilingInstructionListener();
+        Interpreter interpreter = new Interpreter(new StringReader(job.getSource()),
+                output::add, inputProvider, profiler);
+        String error = null;
+        boolean limitExceeded = false;
+        long start = System.nanoTime();
+
+        interpreter.setEngine(engine);
+        interpreter.setBudget(budget);
+        interpreter.setProgramCache(programCache);
+        try {
+            interpreter.execute();
+        } catch (ExecutionLimitException e) {
+            error = e.getLocalizedMessage();
+            limitExceeded = true;
+        } catch (InterpreterException e) {
+            error = e.getLocalizedMessage();
+        } catch (RuntimeException | Error e) {
+            // e.g. unbounded recursion in the program, or running out of
+            // memory - report it against the program rather than abandoning
+            // the whole batch.
+            error = "fatal error: " + e;
+        }
+        long nanos = System.nanoTime() - start;
+        if (profiler != null) {
+            profiler.finish();
+            try {
+                writeProfile(profileName(job.getName()), profiler);
+            } catch (IOException e) {
+                synchronized (this) {
+                    profileErrors.add(job.getName() + ": unable to write the profile: " + e.getMessage());
+                }
+            }
+        }
+        return new BatchResult(job.getName(), output, error, limitExceeded, nanos);
+    }
+
+    /**
+     * Choose the name of a job's profile files: its file name, made unique
+     * among the profiles written by this runner, with anything that isn't
+     * safe in a file name replaced.
+     * @param jobName the name of the job (usually the path of its program)
+     * @return the name for the profile files
+     */
+    private synchronized String profileName(String jobName) {
+        String name;
+        try {
+            Path fileName = Paths.get(jobName).getFileName();
+            name = fileName == null ? jobName : fileName.toString();
+        } catch (InvalidPathException e) {
+            name = jobName;
+        }
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        String unique = name;
+        for (int i = 2; !profileNames.add(unique); i++) {
+            unique = name + "-" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * Write a program's profile into the profile directory.
+     * @param name the name for the profile files
+     * @param profiler the program's profile
+     * @throws IOException if the files cannot be written
+     */
+    private void writeProfile(String name, ProfilingInstructionListener profiler) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(profileDirectory.resolve(name + ".profile.txt"),
+                StandardCharsets.UTF_8)) {
+            profiler.writeReport(writer);
+        }
+        try (Writer writer = Files.newBufferedWriter(profileDirectory.resolve(name + ".collapsed"),
+                StandardCharsets.UTF_8)) {
+            profiler.writeCollapsedStacks(writer);
+        }
+    }
+
+    /**
+     * @return true if this JVM can run the workers on virtual threads
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), found by reflection.
+     * @return an executor that starts a new virtual thread for each task
+     * @throws IllegalStateException if this JVM does not have virtual threads
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("virtual threads need Java 21 or later", e);
+        }
+    }
+}
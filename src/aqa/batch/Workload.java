@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic programs of any size for measuring how the interpreter scales.
+ * Each workload makes a program (and the USERINPUT it reads, if any) for a
+ * given size, and says how many basic steps the program's algorithm takes
+ * at that size.  If the time a workload takes divided by its steps stays
+ * the same as the size grows, the interpreter itself adds nothing to the
+ * algorithm's cost; if it grows with the size, something in the interpreter
+ * is O(n) per step.
+ *
+ * The programs are the same every time for a given size (any random numbers
+ * come from a fixed seed) so that results can be compared between runs.
+ *
+ * @author martinhart
+ */
+public enum Workload {
+
+    /**
+     * Two FOR loops, one inside the other, each size times round.
+     */
+    NESTED_LOOPS {
+        @Override
+        public String source(int size) {
+            return "total <- 0\n"
+                    + "FOR i <- 1 TO " + size + "\n"
+                    + "  FOR j <- 1 TO " + size + "\n"
+                    + "    total <- total + (i * j) MOD 10\n"
+                    + "  ENDFOR\n"
+                    + "ENDFOR\n"
+                    + "OUTPUT total\n";
+        }
+
+        @Override
+        public long steps(int size) {
+            return (long) size * size;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            long total = 0;
+            for (long i = 1; i <= size; i++) {
+                for (long j = 1; j <= size; j++) {
+                    total += (i * j) % 10;
+                }
+            }
+            return Collections.singletonList(Long.toString(total));
+        }
+    },
+
+    /**
+     * Read size numbers and bubble sort them.
+     */
+    SORT {
+        @Override
+        public String source(int size) {
+            return "items <- []\n"
+                    + "FOR i <- 0 TO " + (size - 1) + "\n"
+                    + "  items[i] <- STRING_TO_INT(USERINPUT)\n"
+                    + "ENDFOR\n"
+                    + "FOR i <- 0 TO " + (size - 2) + "\n"
+                    + "  FOR j <- 0 TO " + (size - 2) + " - i\n"
+                    + "    IF items[j] > items[j + 1] THEN\n"
+                    + "      tmp <- items[j]\n"
+                    + "      items[j] <- items[j + 1]\n"
+                    + "      items[j + 1] <- tmp\n"
+                    + "    ENDIF\n"
+                    + "  ENDFOR\n"
+                    + "ENDFOR\n"
+                    + "OUTPUT items[0]\n"
+                    + "OUTPUT items[" + (size - 1) + "]\n";
+        }
+
+        @Override
+        public List<String> input(int size) {
+            Random random = new Random(size);
+            List<String> input = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                input.add(Integer.toString(random.nextInt(1000000)));
+            }
+            return input;
+        }
+
+        @Override
+        public long steps(int size) {
+            return (long) size * (size - 1) / 2;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            int[] numbers = new int[size];
+            List<String> input = input(size);
+            for (int i = 0; i < size; i++) {
+                numbers[i] = Integer.parseInt(input.get(i));
+            }
+            Arrays.sort(numbers);
+            return Arrays.asList(Integer.toString(numbers[0]), Integer.toString(numbers[size - 1]));
+        }
+    },
+
+    /**
+     * Build a string by adding to it size times.
+     */
+    STRING_BUILDING {
+        @Override
+        public String source(int size) {
+            return "text <- ''\n"
+                    + "FOR i <- 1 TO " + size + "\n"
+                    + "  text <- text + 'ab'\n"
+                    + "ENDFOR\n"
+                    + "OUTPUT LEN(text)\n";
+        }
+
+        @Override
+        public long steps(int size) {
+            return size;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            return Collections.singletonList(Integer.toString(2 * size));
+        }
+    },
+
+    /**
+     * A subroutine that calls itself size deep.
+     */
+    RECURSION {
+        @Override
+        public String source(int size) {
+            return "SUBROUTINE sum(n)\n"
+                    + "  IF n = 0 THEN\n"
+                    + "    RETURN 0\n"
+                    + "  ENDIF\n"
+                    + "  RETURN n + sum(n - 1)\n"
+                    + "ENDSUBROUTINE\n"
+                    + "OUTPUT sum(" + size + ")\n";
+        }
+
+        @Override
+        public long steps(int size) {
+            return size;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            return Collections.singletonList(Long.toString((long) size * (size + 1) / 2));
+        }
+    },
+
+    /**
+     * size different subroutines, each called once.
+     */
+    SUBROUTINES {
+        @Override
+        public String source(int size) {
+            StringBuilder source = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                source.append("SUBROUTINE add").append(i).append("(x)\n")
+                        .append("  RETURN x + ").append(i).append('\n')
+                        .append("ENDSUBROUTINE\n");
+            }
+            source.append("total <- 0\n");
+            for (int i = 0; i < size; i++) {
+                source.append("total <- add").append(i).append("(total)\n");
+            }
+            return source.append("OUTPUT total\n").toString();
+        }
+
+        @Override
+        public long steps(int size) {
+            return size;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            return Collections.singletonList(Long.toString((long) size * (size - 1) / 2));
+        }
+    },
+
+    /**
+     * An IF with size - 1 ELSE IFs, run once for each of its branches.
+     */
+    IF_LADDER {
+        @Override
+        public String source(int size) {
+            StringBuilder source = new StringBuilder("total <- 0\n");
+            source.append("FOR i <- 0 TO ").append(size - 1).append('\n');
+            for (int i = 0; i < size; i++) {
+                source.append(i == 0 ? "  IF" : "  ELSE IF").append(" i = ").append(i).append(" THEN\n")
+                        .append("    total <- total + ").append(i).append('\n');
+            }
+            source.append("  ELSE\n")
+                    .append("    total <- 0 - 1\n")
+                    .append("  ENDIF\n")
+                    .append("ENDFOR\n")
+                    .append("OUTPUT total\n");
+            return source.toString();
+        }
+
+        @Override
+        public long steps(int size) {
+            return (long) size * (size + 1) / 2;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            return Collections.singletonList(Long.toString((long) size * (size - 1) / 2));
+        }
+    },
+
+    /**
+     * OUTPUT size lines.
+     */
+    OUTPUT {
+        @Override
+        public String source(int size) {
+            return "FOR i <- 1 TO " + size + "\n"
+                    + "  OUTPUT 'line ' + INT_TO_STRING(i)\n"
+                    + "ENDFOR\n";
+        }
+
+        @Override
+        public long steps(int size) {
+            return size;
+        }
+
+        @Override
+        public List<String> expectedOutput(int size) {
+            List<String> output = new ArrayList<>();
+            for (int i = 1; i <= size; i++) {
+                output.add("line " + i);
+            }
+            return output;
+        }
+    };
+
+    /**
+     * @param size how big to make the program (at least 1)
+     * @return the source code of the program
+     */
+    public abstract String source(int size);
+
+    /**
+     * @param size how big the program is
+     * @return the lines that the program reads with USERINPUT
+     */
+    public List<String> input(int size) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param size how big the program is
+     * @return how many basic steps (loop iterations, comparisons, calls...)
+     * the program's algorithm takes
+     */
+    public abstract long steps(int size);
+
+    /**
+     * @param size how big the program is
+     * @return what the program should OUTPUT
+     */
+    public abstract List<String> expectedOutput(int size);
+
+    /**
+     * @param size how big to make the program
+     * @return the program as a job for a BatchRunner, named after the
+     * workload and size (e.g. sort-1000)
+     */
+    public BatchJob job(int size) {
+        return new BatchJob(name().toLowerCase(Locale.ROOT) + "-" + size, source(size), input(size));
+    }
+
+    /**
+     * Write every workload at each size into a directory as name.aqa and
+     * name.in files (see BatchJob.fromDirectory).
+     * @param directory the directory, which is made if it doesn't exist
+     * @param sizes the sizes to write
+     * @throws IOException if the files cannot be written
+     */
+    public static void writeAll(Path directory, int... sizes) throws IOException {
+        Files.createDirectories(directory);
+        for (Workload workload : values()) {
+            for (int size : sizes) {
+                BatchJob job = workload.job(size);
+                Files.write(directory.resolve(job.getName() + ".aqa"),
+                        job.getSource().getBytes(StandardCharsets.UTF_8));
+                if (!job.getInput().isEmpty()) {
+                    Files.write(directory.resolve(job.getName() + ".in"), job.getInput(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+import aqa.InterpreterException;
+import aqa.ast.ArrayLiteralExpression;
+import aqa.ast.AssignmentStatement;
+import aqa.ast.AstVisitor;
+import aqa.ast.BinaryExpression;
+import aqa.ast.Block;
+import aqa.ast.BuiltinExpression;
+import aqa.ast.CallExpression;
+import aqa.ast.Expression;
+import aqa.ast.ExpressionStatement;
+import aqa.ast.ForStatement;
+import aqa.ast.IfStatement;
+import aqa.ast.IndexExpression;
+import aqa.ast.LiteralExpression;
+import aqa.ast.NotExpression;
+import aqa.ast.OutputStatement;
+import aqa.ast.ProgramNode;
+import aqa.ast.RepeatStatement;
+import aqa.ast.ReturnStatement;
+import aqa.ast.Statement;
+import aqa.ast.SubroutineNode;
+import aqa.ast.UserInputExpression;
+import aqa.ast.VariableExpression;
+import aqa.ast.WhileStatement;
+import aqa.value.Value;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compile a syntax tree built by aqa.ast.AstBuilder to bytecode for the
+ * BytecodeMachine.
+ *
+ * Statements always leave the value stack as they found it; expressions leave
+ * exactly one value on it.  Control flow is turned into jumps, e.g.
+ *
+ *      WHILE a < 10
+ *          a <- a + 1
+ *      ENDWHILE
+ *
+ * becomes
+ *
+ *      test:   LOAD a, CONST 10, LESS, JUMP_IF_FALSE end
+ *              LOAD a, CONST 1, ADD, STORE a
+ *              JUMP test
+ *      end:
+ *
+ * @author martinhart
+ */
+public class BytecodeCompiler implements AstVisitor<Void> {
+
+    /**
+     * The index of each subroutine in the compiled program.
+     */
+    private final Map<String, Integer> subroutineIndex = new HashMap<>();
+
+    /**
+     * The instructions of the code being compiled.
+     */
+    private int[] code;
+
+    /**
+     * The number of ints of 'code' in use.
+     */
+    private int size;
+
+    /**
+     * The constant pool of the code being compiled.
+     */
+    private List<Value> constants;
+
+    /**
+     * The names (variables and subroutines) referred to by the code being
+     * compiled, with their index in the pool.
+     */
+    private Map<String, Integer> names;
+
+    /**
+     * Is the code being compiled a subroutine (rather than the main program)?
+     */
+    private boolean insideSubroutine;
+
+    /**
+     * Compile a whole program.
+     * @param program the syntax tree to compile
+     * @return the compiled program
+     * @throws InterpreterException if the program cannot be compiled
+     */
+    public BytecodeProgram compile(ProgramNode program) throws InterpreterException {
+        List<Code> subroutines = new ArrayList<>();
+        subroutineIndex.clear();
+        for (String name : program.getSubroutines().keySet()) {
+            subroutineIndex.put(name, subroutineIndex.size());
+        }
+        insideSubroutine = true;
+        for (SubroutineNode s : program.getSubroutines().values()) {
+            subroutines.add(compile(s.getName(), s.getParameters(), s.getBody()));
+        }
+        insideSubroutine = false;
+        return new BytecodeProgram(compile("", new ArrayList<String>(), program.getMain()), subroutines);
+    }
+
+    /**
+     * Compile the main program or a subroutine body.
+     * @param name the subroutine name
+     * @param parameters the parameter names
+     * @param body the statements to compile
+     * @return the compiled code
+     * @throws InterpreterException
+     */
+    private Code compile(String name, List<String> parameters, Block body) throws InterpreterException {
+        code = new int[64];
+        size = 0;
+        constants = new ArrayList<>();
+        names = new HashMap<>();
+
+        compileBlock(body);
+        emit(Opcodes.RETURN_NONE);
+
+        String[] namePool = new String[names.size()];
+        for (Map.Entry<String, Integer> entry : names.entrySet()) {
+            namePool[entry.getValue()] = entry.getKey();
+        }
+        return new Code(name, parameters.toArray(new String[parameters.size()]),
+                Arrays.copyOf(code, size), constants.toArray(new Value[constants.size()]), namePool);
+    }
+
+    private void compileBlock(Block block) throws InterpreterException {
+        List<Statement> statements = block.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            emit(Opcodes.LINE, statement.getLine());
+            statement.accept(this);
+        }
+    }
+
+    private void compileExpressions(List<Expression> expressions) throws InterpreterException {
+        for (int i = 0; i < expressions.size(); i++) {
+            expressions.get(i).accept(this);
+        }
+    }
+
+    private void emit(int opcode) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = opcode;
+    }
+
+    private void emit(int opcode, int operand) {
+        emit(opcode);
+        emit(operand);
+    }
+
+    private void emit(int opcode, int operand1, int operand2) {
+        emit(opcode);
+        emit(operand1);
+        emit(operand2);
+    }
+
+    /**
+     * @return the address of the next instruction to be emitted.
+     */
+    private int here() {
+        return size;
+    }
+
+    /**
+     * Fill in the target of a jump emitted before the target was known.
+     * @param operand the address of the jump's operand
+     */
+    private void patch(int operand) {
+        code[operand] = size;
+    }
+
+    private int name(String name) {
+        Integer index = names.get(name);
+        if (index == null) {
+            index = names.size();
+            names.put(name, index);
+        }
+        return index;
+    }
+
+    private int constant(Value value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    @Override
+    public Void visitSubroutine(SubroutineNode node) throws InterpreterException {
+        // subroutines are compiled separately by compile(ProgramNode).
+        return null;
+    }
+
+    @Override
+    public Void visitAssignment(AssignmentStatement node) throws InterpreterException {
+        List<Expression> indices = node.getIndices();
+        int name = name(node.getName());
+
+        if (indices.isEmpty()) {
+            node.getValue().accept(this);
+            if (node.isConstant()) {
+                emit(Opcodes.MAKE_CONSTANT, name);
+            }
+            emit(Opcodes.STORE, name);
+            return null;
+        }
+
+        if (node.isConstant()) {
+            emit(Opcodes.MAKE_CONSTANT, name);
+        }
+        compileExpressions(indices);
+        node.getValue().accept(this);
+        emit(Opcodes.STORE_INDEX, name, indices.size());
+        return null;
+    }
+
+    @Override
+    public Void visitOutput(OutputStatement node) throws InterpreterException {
+        node.getValue().accept(this);
+        emit(node.isInspect() ? Opcodes.INSPECT : Opcodes.OUTPUT);
+        return null;
+    }
+
+    @Override
+    public Void visitIf(IfStatement node) throws InterpreterException {
+        List<Expression> conditions = node.getConditions();
+        int[] exits = new int[conditions.size()];
+
+        for (int i = 0; i < conditions.size(); i++) {
+            conditions.get(i).accept(this);
+            emit(Opcodes.JUMP_IF_FALSE, 0);
+            int next = here() - 1;
+            compileBlock(node.getBlocks().get(i));
+            emit(Opcodes.JUMP, 0);
+            exits[i] = here() - 1;
+            patch(next);
+        }
+        if (node.getElseBlock() != null) {
+            compileBlock(node.getElseBlock());
+        }
+        for (int exit : exits) {
+            patch(exit);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(WhileStatement node) throws InterpreterException {
+        int test = here();
+        node.getCondition().accept(this);
+        emit(Opcodes.JUMP_IF_FALSE, 0);
+        int end = here() - 1;
+        compileBlock(node.getBody());
+        emit(Opcodes.JUMP, test);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visitRepeat(RepeatStatement node) throws InterpreterException {
+        int body = here();
+        compileBlock(node.getBody());
+        node.getCondition().accept(this);
+        emit(Opcodes.JUMP_IF_FALSE, body);
+        return null;
+    }
+
+    /**
+     * FOR keeps its end value on the value stack while the loop runs:
+     *
+     *              start, STORE counter
+     *              end, TO_INTEGER
+     *              FOR_START counter exit
+     *      body:   ...
+     *              FOR_NEXT counter body
+     *      exit:
+     */
+    @Override
+    public Void visitFor(ForStatement node) throws InterpreterException {
+        int counter = name(node.getCounter());
+        node.getStart().accept(this);
+        emit(Opcodes.STORE, counter);
+        node.getEnd().accept(this);
+        emit(Opcodes.TO_INTEGER);
+        emit(Opcodes.FOR_START, counter, 0);
+        int exit = here() - 1;
+        int body = here();
+        compileBlock(node.getBody());
+        emit(Opcodes.FOR_NEXT, counter, body);
+        patch(exit);
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(ReturnStatement node) throws InterpreterException {
+        if (!insideSubroutine) {
+            // an error, but only if it is reached (as with the other engines).
+            emit(Opcodes.MISPLACED_RETURN);
+        } else if (node.getValue() == null) {
+            emit(Opcodes.RETURN_NONE);
+        } else {
+            node.getValue().accept(this);
+            emit(Opcodes.RETURN);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(ExpressionStatement node) throws InterpreterException {
+        Expression expression = node.getExpression();
+        if (expression instanceof CallExpression) {
+            compileCall((CallExpression) expression, Opcodes.CALL_VOID);
+        } else {
+            expression.accept(this);
+            emit(Opcodes.POP);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(LiteralExpression node) throws InterpreterException {
+        emit(Opcodes.CONST, constant(node.getValue()));
+        return null;
+    }
+
+    @Override
+    public Void visitArrayLiteral(ArrayLiteralExpression node) throws InterpreterException {
+        compileExpressions(node.getElements());
+        emit(Opcodes.NEW_ARRAY, node.getElements().size());
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(VariableExpression node) throws InterpreterException {
+        emit(Opcodes.LOAD, name(node.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visitIndex(IndexExpression node) throws InterpreterException {
+        List<Expression> indices = node.getIndices();
+        int name = name(node.getName());
+        emit(Opcodes.LOAD, name);
+        for (int i = 0; i < indices.size(); i++) {
+            indices.get(i).accept(this);
+            emit(Opcodes.INDEX, name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpression node) throws InterpreterException {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        // the opcodes ADD to OR are declared in the same order as BinaryOperator.
+        emit(Opcodes.ADD + node.getOperator().ordinal());
+        return null;
+    }
+
+    @Override
+    public Void visitNot(NotExpression node) throws InterpreterException {
+        node.getOperand().accept(this);
+        emit(Opcodes.NOT);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(CallExpression node) throws InterpreterException {
+        compileCall(node, Opcodes.CALL);
+        return null;
+    }
+
+    /**
+     * Calls to subroutines that do not exist only fail if they are executed,
+     * as they do in aqa.parser.Parser.
+     */
+    private void compileCall(CallExpression node, int opcode) throws InterpreterException {
+        Integer index = subroutineIndex.get(node.getName());
+        if (index == null) {
+            emit(Opcodes.UNDEFINED, name(node.getName()));
+            return;
+        }
+        compileExpressions(node.getArguments());
+        emit(opcode, index, node.getArguments().size());
+    }
+
+    @Override
+    public Void visitBuiltin(BuiltinExpression node) throws InterpreterException {
+        compileExpressions(node.getArguments());
+        emit(Opcodes.BUILTIN, node.getBuiltin().ordinal());
+        return null;
+    }
+
+    @Override
+    public Void visitUserInput(UserInputExpression node) throws InterpreterException {
+        emit(Opcodes.USERINPUT);
+        return null;
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+import aqa.ExecutionBudget;
+import aqa.ExecutionLimitException;
+import aqa.ExecutionMeter;
+import aqa.InterpreterException;
+import aqa.ast.Builtin;
+import aqa.parser.InputProvider;
+import aqa.parser.InstructionListener;
+import aqa.parser.NullInputProvider;
+import aqa.parser.NullOutputWriter;
+import aqa.parser.OutputWriter;
+import aqa.parser.VirtualMachine;
+import aqa.subroutine.SubroutineTableImpl;
+import aqa.value.ArrayValue;
+import aqa.value.IntegerValue;
+import aqa.value.StringValue;
+import aqa.value.Value;
+import aqa.value.ValueStack;
+import aqa.value.Values;
+import aqa.variable.FrameVariableTable;
+import aqa.variable.Variable;
+import java.util.List;
+
+/**
+ * This class executes a program compiled by BytecodeCompiler.  Each subroutine
+ * call runs a single dispatch loop over the instructions of its Code, using
+ * the value stack of its own VirtualMachine.
+ *
+ * Variables are held in a FrameVariableTable in the VirtualMachine, just as
+ * they are by aqa.parser.Parser, so that InstructionListener clients (e.g. the
+ * debugger) see the same state.  Instructions refer to them by slot.
+ *
+ * @author martinhart
+ */
+public class BytecodeMachine {
+
+    private static final IntegerValue ONE = IntegerValue.valueOf(1);
+
+    /**
+     * The builtin functions, indexed by the operand of BUILTIN.
+     */
+    private static final Builtin[] BUILTINS = Builtin.values();
+
+    /**
+     * The object that will provide the user with output (OUTPUT and INSPECT)
+     */
+    private final OutputWriter outputWriter;
+
+    /**
+     * The object that will provide user input during execution (USERINPUT)
+     */
+    private final InputProvider inputProvider;
+
+    /**
+     * The object to notify when we move on to a new instruction, or null if
+     * nothing is listening (so there is nothing to call).
+     */
+    private final InstructionListener instructionListener;
+
+    /**
+     * The subroutines of the program being executed.
+     */
+    private List<Code> subroutines;
+
+    /**
+     * The current virtual machine (variable table and value stack)
+     */
+    private VirtualMachine vm;
+
+    /**
+     * The line of the statement being executed - used to report errors.
+     */
+    private int currentLine;
+
+    /**
+     * The limits on each run of a program.
+     */
+    private ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+
+    /**
+     * Measures the current run against the budget.
+     */
+    private ExecutionMeter meter;
+
+    /**
+     * Create a machine ready to execute programs.
+     * @param outputWriter where program output should go
+     * @param inputProvider where user input should come from
+     * @param instructionListener who to notify about current state, or null to
+     * run as fast as possible without notifying anyone
+     */
+    public BytecodeMachine(OutputWriter outputWriter, InputProvider inputProvider,
+            InstructionListener instructionListener) {
+        this.outputWriter = outputWriter;
+        this.inputProvider = inputProvider;
+        this.instructionListener = instructionListener;
+    }
+
+    /**
+     * Create a machine that does not interact in any way with the outside
+     * world.  Useful for testing.
+     */
+    public BytecodeMachine() {
+        this(new NullOutputWriter(), new NullInputProvider(), null);
+    }
+
+    /**
+     * Get the current virtual machine state.
+     * @return the vm
+     */
+    public VirtualMachine getVM() {
+        return vm;
+    }
+
+    /**
+     * Set the limits on each run of a program.
+     * @param budget the limits
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Run a program from the start.
+     * @param program the program to run
+     * @throws InterpreterException if execution fails
+     */
+    public void execute(BytecodeProgram program) throws InterpreterException {
+        subroutines = program.getSubroutines();
+        Code main = program.getMain();
+        FrameVariableTable frame = new FrameVariableTable(main.getNames());
+        vm = new VirtualMachine(new SubroutineTableImpl(), frame);
+        currentLine = 1;
+        meter = budget.start();
+        meter.setMain(frame, vm.getValueStack());
+        ExecutionMeter previousMeter = meter.attach();
+        try {
+            run(main, frame);
+        } catch (ExecutionLimitException e) {
+            throw e.atLine(currentLine);
+        } catch (InterpreterException e) {
+            throw new InterpreterException(currentLine, e.getLocalizedMessage());
+        } finally {
+            ExecutionMeter.detach(previousMeter);
+        }
+    }
+
+    /**
+     * The dispatch loop: execute code in the current vm until it returns.
+     * @param c the code to execute
+     * @param variables the variables of the current vm, by slot
+     * @return the value given to RETURN, or null if there wasn't one
+     * @throws InterpreterException if execution fails
+     */
+    private Value run(Code c, FrameVariableTable variables) throws InterpreterException {
+        // LINE never looks for a listener: code run with one has
+        // LINE_LISTENING in its place (see Code).
+        final int[] code = instructionListener == null ? c.instructions() : c.listeningInstructions();
+        final Value[] constants = c.constants();
+        final String[] names = c.names();
+        final ValueStack stack = vm.getValueStack();
+        int pc = 0;
+        Value right;
+        Value left;
+
+        while (true) {
+            switch (code[pc++]) {
+                case Opcodes.LINE:
+                    currentLine = code[pc++];
+                    meter.instruction();
+                    break;
+                case Opcodes.LINE_LISTENING:
+                    currentLine = code[pc++];
+                    meter.instruction();
+                    instructionListener.newInstruction(currentLine, vm);
+                    break;
+                case Opcodes.CONST:
+                    stack.push(constants[code[pc++]]);
+                    break;
+                case Opcodes.LOAD:
+                    stack.push(variables.get(code[pc++]).getValue());
+                    break;
+                case Opcodes.STORE:
+                    variables.get(code[pc++]).setValue(stack.pop());
+                    break;
+                case Opcodes.MAKE_CONSTANT:
+                    variables.get(code[pc++]).makeConstant();
+                    break;
+                case Opcodes.INDEX: {
+                    int index = stack.popInteger();
+                    Value array = stack.pop();
+                    if (!(array instanceof ArrayValue)) {
+                        throw new InterpreterException("attempt to index variable '" + names[code[pc]] + "' as if it were an array");
+                    }
+                    pc++;
+                    stack.push(array.getAtIndex(index));
+                    break;
+                }
+                case Opcodes.STORE_INDEX:
+                    storeIndex(variables.get(code[pc]), code[pc + 1], stack);
+                    pc += 2;
+                    break;
+                case Opcodes.ADD:
+                    right = stack.pop();
+                    stack.push(stack.pop().add(right));
+                    break;
+                case Opcodes.SUBTRACT:
+                    right = stack.pop();
+                    stack.push(stack.pop().subtract(right));
+                    break;
+                case Opcodes.MULTIPLY:
+                    right = stack.pop();
+                    stack.push(stack.pop().multiply(right));
+                    break;
+                case Opcodes.DIVIDE:
+                    right = stack.pop();
+                    stack.push(stack.pop().divide(right));
+                    break;
+                case Opcodes.DIV:
+                    right = stack.pop();
+                    stack.push(stack.pop().div(right));
+                    break;
+                case Opcodes.MOD:
+                    right = stack.pop();
+                    stack.push(stack.pop().mod(right));
+                    break;
+                case Opcodes.LESS:
+                    right = stack.pop();
+                    stack.push(stack.pop().compare(right) < 0);
+                    break;
+                case Opcodes.LESS_OR_EQUAL:
+                    right = stack.pop();
+                    stack.push(stack.pop().compare(right) < 1);
+                    break;
+                case Opcodes.GREATER:
+                    right = stack.pop();
+                    stack.push(stack.pop().compare(right) > 0);
+                    break;
+                case Opcodes.GREATER_OR_EQUAL:
+                    right = stack.pop();
+                    stack.push(stack.pop().compare(right) > -1);
+                    break;
+                case Opcodes.EQUAL:
+                    right = stack.pop();
+                    stack.push(stack.pop().equal(right));
+                    break;
+                case Opcodes.NOT_EQUAL:
+                    right = stack.pop();
+                    stack.push(!stack.pop().equal(right));
+                    break;
+                case Opcodes.AND:
+                    right = stack.pop();
+                    left = stack.pop();
+                    stack.push(Values.toBoolean(left) & Values.toBoolean(right));
+                    break;
+                case Opcodes.OR:
+                    right = stack.pop();
+                    left = stack.pop();
+                    stack.push(Values.toBoolean(left) | Values.toBoolean(right));
+                    break;
+                case Opcodes.NOT:
+                    stack.push(!stack.popBoolean());
+                    break;
+                case Opcodes.JUMP:
+                    // jumping back means going round a WHILE loop again.
+                    if (code[pc] < pc) {
+                        meter.instruction();
+                    }
+                    pc = code[pc];
+                    break;
+                case Opcodes.JUMP_IF_FALSE:
+                    if (stack.popBoolean()) {
+                        pc++;
+                    } else {
+                        // jumping back means going round a REPEAT loop again.
+                        if (code[pc] < pc) {
+                            meter.instruction();
+                        }
+                        pc = code[pc];
+                    }
+                    break;
+                case Opcodes.NEW_ARRAY:
+                    stack.push(newArray(code[pc++], stack));
+                    break;
+                case Opcodes.BUILTIN:
+                    stack.push(builtin(BUILTINS[code[pc++]], stack));
+                    break;
+                case Opcodes.USERINPUT:
+                    stack.push(new StringValue(inputProvider.getInput().trim()));
+                    break;
+                case Opcodes.CALL: {
+                    Value result = call(subroutines.get(code[pc]), code[pc + 1], stack);
+                    if (result == null) {
+                        throw new InterpreterException("'" + subroutines.get(code[pc]).getName() + "' did not return a value");
+                    }
+                    stack.push(result);
+                    pc += 2;
+                    break;
+                }
+                case Opcodes.CALL_VOID:
+                    call(subroutines.get(code[pc]), code[pc + 1], stack);
+                    pc += 2;
+                    break;
+                case Opcodes.UNDEFINED:
+                    throw new InterpreterException("'" + names[code[pc]] + "' is not defined");
+                case Opcodes.RETURN:
+                    return stack.pop();
+                case Opcodes.RETURN_NONE:
+                    return null;
+                case Opcodes.MISPLACED_RETURN:
+                    throw new InterpreterException("RETURN outside of a subroutine");
+                case Opcodes.OUTPUT:
+                    outputWriter.output(stack.pop().output());
+                    break;
+                case Opcodes.INSPECT:
+                    outputWriter.output(stack.pop().inspect());
+                    break;
+                case Opcodes.POP:
+                    stack.pop();
+                    break;
+                case Opcodes.TO_INTEGER:
+                    Values.toInteger(stack.peek());
+                    break;
+                case Opcodes.FOR_START: {
+                    Variable counter = variables.get(code[pc]);
+                    if (Values.toInteger(counter.getValue()) > Values.toInteger(stack.peek())) {
+                        stack.pop();
+                        pc = code[pc + 1];
+                    } else {
+                        pc += 2;
+                    }
+                    break;
+                }
+                case Opcodes.FOR_NEXT: {
+                    Variable counter = variables.get(code[pc]);
+                    counter.setValue(counter.getValue().add(ONE));
+                    if (Values.toInteger(counter.getValue()) <= Values.toInteger(stack.peek())) {
+                        pc = code[pc + 1];
+                    } else {
+                        counter.setValue(stack.pop());
+                        pc += 2;
+                    }
+                    break;
+                }
+                default:
+                    throw new InterpreterException("invalid opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    /**
+     * Pop a value and 'depth' indices and store the value in the array held
+     * by var.
+     */
+    private void storeIndex(Variable var, int depth, ValueStack stack) throws InterpreterException {
+        Value value = stack.pop();
+        int[] index = new int[depth];
+        for (int i = depth - 1; i >= 0; i--) {
+            index[i] = stack.popInteger();
+        }
+        Value target = var.getValue();
+        for (int i = 0; i < depth - 1; i++) {
+            if (!(target instanceof ArrayValue)) {
+                throw new InterpreterException("invalid array assignment");
+            }
+            target = target.getAtIndex(index[i]);
+        }
+        if (!(target instanceof ArrayValue)) {
+            throw new InterpreterException("invalid array assignment");
+        }
+        target.setAtIndex(index[depth - 1], value);
+    }
+
+    private Value newArray(int size, ValueStack stack) throws InterpreterException {
+        Value[] elements = pop(size, stack);
+        ArrayValue ary = new ArrayValue();
+        for (int i = 0; i < size; i++) {
+            ary.setAtIndex(i, elements[i]);
+        }
+        return ary;
+    }
+
+    private Value builtin(Builtin builtin, ValueStack stack) throws InterpreterException {
+        return builtin.apply(pop(builtin.getNumberOfArguments(), stack));
+    }
+
+    /**
+     * Pop 'count' values, returning them in the order they were pushed.
+     */
+    private Value[] pop(int count, ValueStack stack) throws InterpreterException {
+        Value[] values = new Value[count];
+        for (int i = count - 1; i >= 0; i--) {
+            values[i] = stack.pop();
+        }
+        return values;
+    }
+
+    /**
+     * Execute a subroutine call:
+     *
+     * 1. pop the arguments and copy them into a new variable table.
+     * 2. execute the code in a new vm.
+     * 3. restore the caller's vm and hand back the returned value.
+     */
+    private Value call(Code s, int argumentCount, ValueStack stack) throws InterpreterException {
+        Value[] arguments = pop(argumentCount, stack);
+        FrameVariableTable subroutineVariables = new FrameVariableTable(s.getNames());
+        VirtualMachine callerVM = vm;
+        int callerLine = currentLine;
+
+        for (int i = 0; i < argumentCount; i++) {
+            Variable argument = new Variable(s.getParameter(i));
+            arguments[i] = arguments[i].makeCopy();
+            argument.setValue(arguments[i]);
+            subroutineVariables.set(s.getParameterSlot(i), argument);
+        }
+
+        vm = new VirtualMachine(callerVM.getSubroutineTable(), subroutineVariables);
+        meter.enterCall(subroutineVariables, vm.getValueStack());
+        if (instructionListener != null) {
+            instructionListener.subroutineCalled(s.getName());
+        }
+        Value result = run(s, subroutineVariables);
+        meter.exitCall();
+        if (instructionListener != null) {
+            instructionListener.subroutineReturned(s.getName());
+        }
+        ArrayValue.releaseArguments(arguments, result);
+        vm = callerVM;
+        currentLine = callerLine;
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A whole program compiled to bytecode.  CALL instructions refer to
+ * subroutines by their index in getSubroutines().
+ *
+ * @author martinhart
+ */
+public class BytecodeProgram {
+
+    private final Code main;
+    private final List<Code> subroutines;
+
+    public BytecodeProgram(Code main, List<Code> subroutines) {
+        this.main = main;
+        this.subroutines = Collections.unmodifiableList(new ArrayList<>(subroutines));
+    }
+
+    /**
+     * @return the code of the main program
+     */
+    public Code getMain() {
+        return main;
+    }
+
+    /**
+     * @return the code of each subroutine
+     */
+    public List<Code> getSubroutines() {
+        return subroutines;
+    }
+}
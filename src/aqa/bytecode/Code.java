@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+import aqa.InterpreterException;
+import aqa.value.Value;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compiled form of the main program or of one subroutine: the
+ * instructions plus the constants and variable names they refer to.
+ *
+ * Instances are immutable.
+ *
+ * @author martinhart
+ */
+public class Code {
+
+    private final String name;
+    private final String[] parameters;
+    private final int[] instructions;
+
+    /**
+     * The instructions with each LINE replaced by LINE_LISTENING, for running
+     * with an instruction listener.
+     */
+    private final int[] listeningInstructions;
+
+    private final Value[] constants;
+    private final String[] names;
+    private final List<String> slotNames;
+
+    /**
+     * The slot of each parameter, or -1 if the code doesn't use it.
+     */
+    private final int[] parameterSlots;
+
+    /**
+     * @param name the subroutine name (or an empty string for the main program)
+     * @param parameters the subroutine's parameter names
+     * @param instructions opcodes and their operands
+     * @param constants the constant pool referred to by CONST
+     * @param names the variable/subroutine names referred to by operands
+     */
+    public Code(String name, String[] parameters, int[] instructions, Value[] constants, String[] names) {
+        this.name = name;
+        this.parameters = parameters.clone();
+        this.instructions = instructions.clone();
+        this.listeningInstructions = instructions.clone();
+        for (int pc = 0; pc < listeningInstructions.length; pc += 1 + Opcodes.OPERANDS[listeningInstructions[pc]]) {
+            if (listeningInstructions[pc] == Opcodes.LINE) {
+                listeningInstructions[pc] = Opcodes.LINE_LISTENING;
+            }
+        }
+        this.constants = constants.clone();
+        this.names = names.clone();
+        this.slotNames = Collections.unmodifiableList(Arrays.asList(this.names));
+        this.parameterSlots = new int[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameterSlots[i] = slotNames.indexOf(parameters[i]);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumberOfParameters() {
+        return parameters.length;
+    }
+
+    /**
+     * retrieve a parameter name at specified index
+     * @param index the index of the parameter
+     * @return the parameter name
+     * @throws InterpreterException if invalid index
+     */
+    public String getParameter(int index) throws InterpreterException {
+        if (index < 0 || index >= parameters.length) {
+            throw new InterpreterException("subroutine '" + name + "' invalid parameter index '" + index + "'");
+        }
+        return parameters[index];
+    }
+
+    /**
+     * @param index the index of a parameter
+     * @return the slot the parameter is held in, or -1 if the code doesn't
+     * use it
+     * @throws InterpreterException if invalid index
+     */
+    public int getParameterSlot(int index) throws InterpreterException {
+        if (index < 0 || index >= parameters.length) {
+            throw new InterpreterException("subroutine '" + name + "' invalid parameter index '" + index + "'");
+        }
+        return parameterSlots[index];
+    }
+
+    /**
+     * The operand of LOAD, STORE etc. is the variable's slot in a
+     * FrameVariableTable built from these names.
+     * @return the names referred to by operands, by index
+     */
+    public List<String> getNames() {
+        return slotNames;
+    }
+
+    /**
+     * @return the number of ints in the instruction stream
+     */
+    public int size() {
+        return instructions.length;
+    }
+
+    /*
+     * The arrays are handed to the BytecodeMachine directly, which never
+     * changes them.
+     */
+    int[] instructions() {
+        return instructions;
+    }
+
+    int[] listeningInstructions() {
+        return listeningInstructions;
+    }
+
+    Value[] constants() {
+        return constants;
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    /**
+     * Produce a human readable listing of the instructions, one per line, e.g.
+     *
+     *      0: CONST 0
+     *      2: OUTPUT
+     *
+     * @return the listing
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < instructions.length) {
+            int opcode = instructions[pc];
+            sb.append(pc).append(": ").append(Opcodes.NAMES[opcode]);
+            for (int i = 1; i <= Opcodes.OPERANDS[opcode]; i++) {
+                sb.append(' ').append(instructions[pc + i]);
+            }
+            sb.append('\n');
+            pc += 1 + Opcodes.OPERANDS[opcode];
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Code " + name + Arrays.toString(parameters);
+    }
+}
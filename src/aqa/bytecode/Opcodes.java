@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+/**
+ * The instruction set executed by the BytecodeMachine.  Each instruction is an
+ * opcode followed by zero or more int operands, all stored in a single int[].
+ *
+ * Instructions work on the value stack exactly as described by
+ * aqa.value.ValueStack, e.g.
+ *
+ *      1 + 2
+ *
+ * compiles to
+ *
+ *      CONST 0     (push constants[0], the 1)
+ *      CONST 1     (push constants[1], the 2)
+ *      ADD         (pop two values, push their sum)
+ *
+ * @author martinhart
+ */
+public final class Opcodes {
+
+    /** LINE line: a new statement starts on source line 'line' */
+    public static final int LINE = 0;
+    /** CONST k: push constants[k] */
+    public static final int CONST = 1;
+    /** LOAD n: push the value of variable names[n] */
+    public static final int LOAD = 2;
+    /** STORE n: pop a value into variable names[n] */
+    public static final int STORE = 3;
+    /** MAKE_CONSTANT n: make variable names[n] constant */
+    public static final int MAKE_CONSTANT = 4;
+    /** INDEX n: pop an index and an array (variable names[n]), push the element */
+    public static final int INDEX = 5;
+    /** STORE_INDEX n k: pop a value and k indices, store into array variable names[n] */
+    public static final int STORE_INDEX = 6;
+    /** ADD: pop right, pop left, push left + right */
+    public static final int ADD = 7;
+    public static final int SUBTRACT = 8;
+    public static final int MULTIPLY = 9;
+    public static final int DIVIDE = 10;
+    public static final int DIV = 11;
+    public static final int MOD = 12;
+    public static final int LESS = 13;
+    public static final int LESS_OR_EQUAL = 14;
+    public static final int GREATER = 15;
+    public static final int GREATER_OR_EQUAL = 16;
+    public static final int EQUAL = 17;
+    public static final int NOT_EQUAL = 18;
+    public static final int AND = 19;
+    public static final int OR = 20;
+    /** NOT: pop a boolean, push its inverse */
+    public static final int NOT = 21;
+    /** JUMP a: continue at a */
+    public static final int JUMP = 22;
+    /** JUMP_IF_FALSE a: pop a boolean, continue at a if it is false */
+    public static final int JUMP_IF_FALSE = 23;
+    /** NEW_ARRAY k: pop k values, push an array holding them */
+    public static final int NEW_ARRAY = 24;
+    /** BUILTIN b: pop the arguments of aqa.ast.Builtin b, push its result */
+    public static final int BUILTIN = 25;
+    /** USERINPUT: push a line of user input */
+    public static final int USERINPUT = 26;
+    /** CALL s k: pop k arguments, call subroutine s and push its result */
+    public static final int CALL = 27;
+    /** CALL_VOID s k: as CALL but discard any result */
+    public static final int CALL_VOID = 28;
+    /** UNDEFINED n: fail because subroutine names[n] does not exist */
+    public static final int UNDEFINED = 29;
+    /** RETURN: pop a value and return it to the caller */
+    public static final int RETURN = 30;
+    /** RETURN_NONE: return to the caller without a value */
+    public static final int RETURN_NONE = 31;
+    /** OUTPUT: pop a value and output it */
+    public static final int OUTPUT = 32;
+    /** INSPECT: pop a value and output its debug representation */
+    public static final int INSPECT = 33;
+    /** POP: discard the top value */
+    public static final int POP = 34;
+    /** TO_INTEGER: check that the top value is an integer */
+    public static final int TO_INTEGER = 35;
+    /** FOR_START n a: if counter names[n] > end (top of stack) pop end and continue at a */
+    public static final int FOR_START = 36;
+    /** FOR_NEXT n a: increment counter names[n], continue at a if still <= end, else finish the loop */
+    public static final int FOR_NEXT = 37;
+    /** MISPLACED_RETURN: fail because RETURN is not inside a subroutine */
+    public static final int MISPLACED_RETURN = 38;
+    /**
+     * LINE_LISTENING line: as LINE, and tell the instruction listener.  The
+     * compiler only emits LINE; see Code.listeningInstructions.
+     */
+    public static final int LINE_LISTENING = 39;
+
+    /**
+     * The name and number of operands of each opcode, indexed by opcode.
+     */
+    static final String[] NAMES = {
+        "LINE", "CONST", "LOAD", "STORE", "MAKE_CONSTANT", "INDEX", "STORE_INDEX",
+        "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "DIV", "MOD",
+        "LESS", "LESS_OR_EQUAL", "GREATER", "GREATER_OR_EQUAL", "EQUAL", "NOT_EQUAL",
+        "AND", "OR", "NOT", "JUMP", "JUMP_IF_FALSE", "NEW_ARRAY", "BUILTIN",
+        "USERINPUT", "CALL", "CALL_VOID", "UNDEFINED", "RETURN", "RETURN_NONE",
+        "OUTPUT", "INSPECT", "POP", "TO_INTEGER", "FOR_START", "FOR_NEXT",
+        "MISPLACED_RETURN", "LINE_LISTENING"
+    };
+
+    static final int[] OPERANDS = {
+        1, 1, 1, 1, 1, 1, 2,
+        0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 1,
+        0, 2, 2, 1, 0, 0,
+        0, 0, 0, 0, 2, 2,
+        0, 1
+    };
+
+    private Opcodes() {
+    }
+}
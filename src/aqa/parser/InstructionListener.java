@@ -24,4 +24,28 @@ public interface InstructionListener {
      * @throws InterpreterException throw this exception to abort execution
      */
     public void newInstruction(int lineNumber, VirtualMachine vm) throws InterpreterException;
+
+    /**
+     * Override this method to take action when a subroutine is called.  The
+     * method will be executed once the arguments have been evaluated,
+     * immediately before the subroutine's first instruction.
+     *
+     * @param name the name of the subroutine
+     * @throws InterpreterException throw this exception to abort execution
+     */
+    public default void subroutineCalled(String name) throws InterpreterException {
+        // do nothing.
+    }
+
+    /**
+     * Override this method to take action when a subroutine returns.  The
+     * method will be executed after the subroutine's last instruction, before
+     * the caller carries on.
+     *
+     * @param name the name of the subroutine
+     * @throws InterpreterException throw this exception to abort execution
+     */
+    public default void subroutineReturned(String name) throws InterpreterException {
+        // do nothing.
+    }
 }
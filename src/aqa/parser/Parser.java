@@ -3,19 +3,27 @@
  */
 package aqa.parser;
 
+import aqa.ExecutionBudget;
+import aqa.ExecutionLimitException;
+import aqa.ExecutionMeter;
 import aqa.InterpreterException;
 import aqa.subroutine.Subroutine;
 import aqa.tokenizer.Tokens;
 import aqa.tokenizer.Token;
+import aqa.tokenizer.SlotTable;
+import aqa.tokenizer.Symbol;
+import aqa.tokenizer.TokenKind;
 import aqa.tokenizer.TokenSequencer;
+import aqa.tokenizer.TokenSource;
+import aqa.tokenizer.TokenStream;
 import aqa.value.ArrayValue;
 import aqa.value.IntegerValue;
 import aqa.value.StringValue;
 import aqa.value.Value;
 import aqa.value.ValueFactory;
+import aqa.variable.FrameVariableTable;
 import aqa.variable.Variable;
 import aqa.variable.VariableTable;
-import aqa.variable.VariableTableImpl;
 import java.util.Random;
 
 /**
@@ -27,12 +35,14 @@ import java.util.Random;
  * 2. Add some tokens to parse.
  * 3. Call parse.
  * 
+ * Alternatively pass the tokens of a compiled aqa.Program to parse(Tokens).
+ * The tokens are only read, so one set of tokens may be run by many parsers
+ * at the same time.  Or pass a TokenStream to start running the program
+ * before all of it has been read.
+ * 
  * TODO: refactoring - this class is too big.  Can we split into smaller parsers,
  * each responsible for a BNF statement?
  * 
- * TODO: refactoring - why can't we just pass the tokens into the constructor?
- * why are we adding separate tokens one at a time?
- * 
  * @author martinhart
  */
 public class Parser {
@@ -49,7 +59,8 @@ public class Parser {
     private final InputProvider inputProvider;
     
     /**
-     * The object to notify when we move on to a new instruction.
+     * The object to notify when we move on to a new instruction, or null if
+     * nothing is listening (so there is nothing to call).
      */
     private final InstructionListener instructionListener;
     
@@ -68,11 +79,49 @@ public class Parser {
      */
     private VirtualMachine vm;
     
+    /**
+     * The variables of the current virtual machine, by slot.
+     */
+    private FrameVariableTable frame;
+    
+    /**
+     * Set by RETURN to stop execution of the subroutine body.  We may be
+     * buried deep inside nested IF/WHILE/REPEAT/FOR statements so each of them
+     * checks this after every instruction and stops (without looking at any
+     * more tokens) once it is set.  The subroutine call then clears it.
+     * 
+     * RETURN outside of a subroutine is an error.
+     */
+    private boolean returning;
+
+    /**
+     * The number of subroutine calls that have not yet returned.
+     */
+    private int calls;
+    
+    /**
+     * The number of loops (WHILE, REPEAT and FOR) being run.  While there are
+     * none we never go back to an earlier token, so the tokens before the
+     * current instruction are released.
+     */
+    private int loops;
+    
+    /**
+     * The limits on each run of the program.
+     */
+    private ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+    
+    /**
+     * Measures the current run of the program against the budget.
+     */
+    private ExecutionMeter meter = budget.start();
+    
     /**
      * Create a new instance of the parser ready to go
      * @param outputWriter where program output should go
      * @param inputProvider where user input should come from
-     * @param instructionListener who to notify about current state
+     * @param instructionListener who to notify about current state, or null to
+     * run as fast as possible without notifying anyone
      */
     public Parser(OutputWriter outputWriter, InputProvider inputProvider,
             InstructionListener instructionListener) {
@@ -90,7 +139,7 @@ public class Parser {
      * @param inputProvider where user input should come from
      */
     public Parser(OutputWriter outputWriter, InputProvider inputProvider) {
-        this(outputWriter, inputProvider, new IgnoreInstructionListener());
+        this(outputWriter, inputProvider, null);
     }
     
     /**
@@ -125,19 +174,97 @@ public class Parser {
         return vm;
     }
 
+    /**
+     * Set the limits on each run of the program.
+     * @param budget the limits
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
     /**
      * Iterate through the tokens, parsing and executing statements accordingly.
      *
      * @throws InterpreterException
      */
     public void parse() throws InterpreterException {
-        tokenSequencer = new TokenSequencer(tokens);
+        parse(tokens);
+    }
+
+    /**
+     * Parse and execute tokens as they are read from the source code.
+     * 
+     * @param program the tokens to execute
+     * @throws InterpreterException if the source code cannot be read or
+     * execution fails
+     */
+    public void parse(TokenStream program) throws InterpreterException {
+        try {
+            parse((TokenSource) program);
+        }
+        catch(InterpreterException e) {
+            // a failure to read explains any error caused by the missing tokens.
+            throw program.getFailure() == null ? e : program.getFailure();
+        }
+        if (program.getFailure() != null) {
+            throw program.getFailure();
+        }
+    }
+
+    /**
+     * Parse and execute the given tokens rather than those added to this
+     * parser.  The tokens are not changed.
+     * 
+     * @param program the tokens to execute
+     * @throws InterpreterException
+     */
+    public void parse(TokenSource program) throws InterpreterException {
+        tokenSequencer = new TokenSequencer(program);
+        loops = 0;
+        calls = 0;
+        meter = budget.start();
+        ExecutionMeter previousMeter = meter.attach();
+        useFrame(program);
+        meter.setMain(frame, vm.getValueStack());
         try {
             outerBlock();
         }
+        catch(ExecutionLimitException e) {
+            throw e.atLine(tokenSequencer.getCurrentTokenLine());
+        }
         catch(InterpreterException e) {
             throw new InterpreterException(tokenSequencer.getCurrentTokenLine(), e.getLocalizedMessage());
         }
+        finally {
+            ExecutionMeter.detach(previousMeter);
+        }
+    }
+
+    /**
+     * Move the variables of the vm into a frame with a slot for each variable
+     * in the tokens.
+     * @param program the tokens about to be executed
+     * @throws InterpreterException 
+     */
+    private void useFrame(TokenSource program) throws InterpreterException {
+        VariableTable existing = vm.getVariables();
+        frame = new FrameVariableTable(program.getSlotNames());
+        for (String name : existing.getNames()) {
+            frame.set(existing.get(name));
+        }
+        vm = new VirtualMachine(vm.getSubroutineTable(), frame, vm.getValueStack());
+    }
+
+    /**
+     * Find the variable named by the current token.
+     * @return the variable
+     */
+    private Variable currentVariable() {
+        int slot = tokenSequencer.getCurrentSlot();
+        if (slot == SlotTable.NONE) {
+            return vm.getVariable(tokenSequencer.getCurrentTokenName());
+        }
+        return frame.get(slot);
     }
 
     /**
@@ -157,10 +284,11 @@ public class Parser {
      */
     private void outerBlock() throws InterpreterException {
         while (tokenSequencer.thereIsAToken()) {
-            if (tokenSequencer.match("SUBROUTINE")) {
+            if (tokenSequencer.match(Symbol.SUBROUTINE)) {
                 subroutine();
             } else {
                 block();
+                returning = false;
             }
         }
     }
@@ -173,23 +301,24 @@ public class Parser {
     private void subroutine() throws InterpreterException {
         Subroutine s;
 
-        tokenSequencer.expect("SUBROUTINE");
+        tokenSequencer.expect(Symbol.SUBROUTINE);
         s = new Subroutine(tokenSequencer.getCurrentTokenName());
         tokenSequencer.advance();
-        tokenSequencer.expect("(");
-        while (!tokenSequencer.match(")") && tokenSequencer.thereIsAToken()) {
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+        while (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS) && tokenSequencer.thereIsAToken()) {
             s.addParameter(tokenSequencer.getCurrentTokenName());
             tokenSequencer.advance();
-            if (!tokenSequencer.match(")")) {
-                tokenSequencer.expect(",");
+            if (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS)) {
+                tokenSequencer.expect(Symbol.COMMA);
             }
         }
-        tokenSequencer.expect(")");
-        while (!tokenSequencer.match("ENDSUBROUTINE") && tokenSequencer.thereIsAToken()) {
-            s.addToken(tokenSequencer.getCurrentToken());
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+        int body = tokenSequencer.getCurrentIndex();
+        while (!tokenSequencer.match(Symbol.ENDSUBROUTINE) && tokenSequencer.thereIsAToken()) {
             tokenSequencer.advance();
         }
-        tokenSequencer.expect("ENDSUBROUTINE");
+        s.setTokens(tokenSequencer.range(body, tokenSequencer.getCurrentIndex()));
+        tokenSequencer.expect(Symbol.ENDSUBROUTINE);
         vm.addSubroutine(s);
     }
     
@@ -206,40 +335,63 @@ public class Parser {
      * 6. replace context.
      * 
      * @throws InterpreterException if execution fails
-     * @throws ReturnException if early return from anywhere (subfunction) is triggered.
      * 
      * TODO: this function does too much.  break it down.
      */
-    private void subroutineCall() throws InterpreterException, ReturnException  {
+    private void subroutineCall() throws InterpreterException  {
         Subroutine s = vm.getSubroutine(tokenSequencer.getCurrentTokenName());
         VirtualMachine currentVM = vm;
         TokenSequencer currentTokenSequencer = tokenSequencer;
-        VariableTable subroutineVariables = new VariableTableImpl();
+        FrameVariableTable currentFrame = frame;
+        FrameVariableTable subroutineVariables = new FrameVariableTable(s.getTokens().getSlotTable().getNames());
+        Value[] arguments = new Value[s.getNumberOfParameters()];
+        Value result = null;
         int paramIndex = 0;
         
         tokenSequencer.advance();
-        tokenSequencer.expect("(");
-        while (!tokenSequencer.match(")") && tokenSequencer.thereIsAToken()) {
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
+        while (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS) && tokenSequencer.thereIsAToken()) {
             Variable argument = new Variable(s.getParameter(paramIndex));
             booleanExpression();
-            argument.setValue(vm.popValue().makeCopy());
-            subroutineVariables.set(argument);
+            arguments[paramIndex] = vm.popValue().makeCopy();
+            argument.setValue(arguments[paramIndex]);
+            subroutineVariables.set(s.getParameterSlot(paramIndex), argument);
+            // keep the copy where the meter can see it until the call starts.
+            vm.pushValue(arguments[paramIndex]);
             ++paramIndex;
-            if (!tokenSequencer.match(")")) {
-                tokenSequencer.expect(",");
+            if (!tokenSequencer.match(Symbol.RIGHT_PARENTHESIS)) {
+                tokenSequencer.expect(Symbol.COMMA);
             }
         }
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
+        for (int i = 0; i < paramIndex; i++) {
+            vm.popValue();
+        }
         
         this.vm = new VirtualMachine(vm.getSubroutineTable(), subroutineVariables);
+        this.frame = subroutineVariables;
         this.tokenSequencer = new TokenSequencer(s.getTokens());
+        meter.enterCall(subroutineVariables, vm.getValueStack());
+        if (instructionListener != null) {
+            instructionListener.subroutineCalled(s.getName());
+        }
+        ++calls;
         block();
+        --calls;
+        meter.exitCall();
+        if (instructionListener != null) {
+            instructionListener.subroutineReturned(s.getName());
+        }
+        returning = false;
         try {
-            currentVM.pushValue(vm.popValue());
+            result = vm.popValue();
+            currentVM.pushValue(result);
         } catch(InterpreterException e) {
             // ignore - there's no return value.
         }
+        ArrayValue.releaseArguments(arguments, result);
         this.vm = currentVM;
+        this.frame = currentFrame;
         this.tokenSequencer = currentTokenSequencer;
     }
 
@@ -249,12 +401,8 @@ public class Parser {
      * @throws InterpreterException if an error occurs
      */
     private void block() throws InterpreterException {
-        try {
-            while (tokenSequencer.thereIsAToken()) {
-                instruction();
-            }
-        } catch(ReturnException e) {
-            // ignore
+        while (!returning && tokenSequencer.thereIsAToken()) {
+            instruction();
         }
     }
 
@@ -262,18 +410,23 @@ public class Parser {
      * An instruction is either an assignment or a statement.
      * 
      * @throws InterpreterException if an error occurs
-     * @throws ReturnException if we are breaking out of a subroutine
      */
-    private void instruction() throws InterpreterException, ReturnException {
-        instructionListener.newInstruction(tokenSequencer.getCurrentTokenLine(), vm);
+    private void instruction() throws InterpreterException {
+        if (loops == 0) {
+            tokenSequencer.release();
+        }
+        meter.instruction();
+        if (instructionListener != null) {
+            instructionListener.newInstruction(tokenSequencer.getCurrentTokenLine(), vm);
+        }
         
-        if (tokenSequencer.match("constant")) {
+        if (tokenSequencer.match(Symbol.CONSTANT)) {
             assignment();
         } else {
             tokenSequencer.advance(); // skip variable name
-            if (tokenSequencer.match("<")) { // could be an assignment to variable a <- 1
+            if (tokenSequencer.match(Symbol.LESS)) { // could be an assignment to variable a <- 1
                 tokenSequencer.advance();
-                if (tokenSequencer.match("-")) {
+                if (tokenSequencer.match(Symbol.MINUS)) {
                     tokenSequencer.retreat();
                     tokenSequencer.retreat();
                     assignment();
@@ -284,7 +437,7 @@ public class Parser {
                 }
             } else // could be array assignment a[2] <- 3
             {
-                if (tokenSequencer.match("[")) {
+                if (tokenSequencer.match(Symbol.LEFT_BRACKET)) {
                     tokenSequencer.retreat();
                     assignment();
                 } else {
@@ -302,36 +455,35 @@ public class Parser {
      * to make intent clearer.
      * 
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void assignment() throws InterpreterException, ReturnException {
+    private void assignment() throws InterpreterException {
         try {
             Variable var = constantLValue();
-            if (tokenSequencer.match("[")) { // 'ary[0] <-' or 'ary[0][1] <-'
-                tokenSequencer.expect("[");
+            if (tokenSequencer.match(Symbol.LEFT_BRACKET)) { // 'ary[0] <-' or 'ary[0][1] <-'
+                tokenSequencer.expect(Symbol.LEFT_BRACKET);
                 expression();
                 int arrayIndex = vm.getValueStack().popInteger();
-                tokenSequencer.expect("]");
-                if (tokenSequencer.match("[")) { // ary[0][1] <- 
-                    tokenSequencer.expect("[");
+                tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+                if (tokenSequencer.match(Symbol.LEFT_BRACKET)) { // ary[0][1] <- 
+                    tokenSequencer.expect(Symbol.LEFT_BRACKET);
                     expression();
                     int childIndex = vm.getValueStack().popInteger();
-                    tokenSequencer.expect("]");
-                    tokenSequencer.expect("<");
-                    tokenSequencer.expect("-");
+                    tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+                    tokenSequencer.expect(Symbol.LESS);
+                    tokenSequencer.expect(Symbol.MINUS);
                     booleanExpression();
                     ArrayValue parentArray = (ArrayValue) var.getValue();
                     ArrayValue childArray = (ArrayValue) parentArray.getAtIndex(arrayIndex);
                     childArray.setAtIndex(childIndex, vm.popValue());
                 } else {
-                    tokenSequencer.expect("<");
-                    tokenSequencer.expect("-");
+                    tokenSequencer.expect(Symbol.LESS);
+                    tokenSequencer.expect(Symbol.MINUS);
                     booleanExpression();
                     ((ArrayValue) var.getValue()).setAtIndex(arrayIndex, vm.popValue());
                 }
             } else {
-                tokenSequencer.expect("<");
-                tokenSequencer.expect("-");
+                tokenSequencer.expect(Symbol.LESS);
+                tokenSequencer.expect(Symbol.MINUS);
                 booleanExpression();
                 var.setValue(vm.popValue());
             }
@@ -348,8 +500,8 @@ public class Parser {
     private Variable constantLValue() throws InterpreterException {
         Variable var;
 
-        if (tokenSequencer.match("constant")) {
-            tokenSequencer.expect("constant");
+        if (tokenSequencer.match(Symbol.CONSTANT)) {
+            tokenSequencer.expect(Symbol.CONSTANT);
             var = lValue();
             var.makeConstant();
         } else {
@@ -364,7 +516,7 @@ public class Parser {
      * @return the associated variable
      */
     private Variable lValue() {
-        Variable v = vm.getVariable(tokenSequencer.getCurrentTokenName());
+        Variable v = currentVariable();
         tokenSequencer.advance();
         return v;
     }
@@ -372,38 +524,58 @@ public class Parser {
     /**
      * A statement is either a built in control statement or a boolean expression
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void statement() throws InterpreterException, ReturnException {
-        if (tokenSequencer.match("RETURN")) {
-            tokenSequencer.advance();
+    private void statement() throws InterpreterException {
+        Symbol symbol = tokenSequencer.getCurrentSymbol();
+        if (symbol == null) {
             booleanExpression();
-            throw new ReturnException();
+            return;
         }
-        else if (tokenSequencer.match("OUTPUT")) {
-            output();
-        } else if (tokenSequencer.match("INSPECT")) {
-            inspect();
-        } else if (tokenSequencer.match("IF")) {
-            ifStatement();
-        } else if (tokenSequencer.match("REPEAT")) {
-            repeatStatement();
-        } else if (tokenSequencer.match("WHILE")) {
-            whileStatement();
-        } else if (tokenSequencer.match("FOR")) {
-            forStatement();
-        } else {
-            booleanExpression();
+        switch (symbol) {
+            case RETURN:
+                if (calls == 0) {
+                    throw new InterpreterException("RETURN outside of a subroutine");
+                }
+                tokenSequencer.advance();
+                booleanExpression();
+                returning = true;
+                break;
+            case OUTPUT:
+                output();
+                break;
+            case INSPECT:
+                inspect();
+                break;
+            case IF:
+                ifStatement();
+                break;
+            case REPEAT:
+                ++loops;
+                repeatStatement();
+                --loops;
+                break;
+            case WHILE:
+                ++loops;
+                whileStatement();
+                --loops;
+                break;
+            case FOR:
+                ++loops;
+                forStatement();
+                --loops;
+                break;
+            default:
+                booleanExpression();
+                break;
         }
     }
 
     /**
      * Process user output instruction
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void output() throws InterpreterException, ReturnException {
-        tokenSequencer.expect("OUTPUT");
+    private void output() throws InterpreterException {
+        tokenSequencer.expect(Symbol.OUTPUT);
         booleanExpression();
         outputWriter.output(vm.popValue().output());
     }
@@ -411,10 +583,9 @@ public class Parser {
     /**
      * Process debug output instruction
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void inspect() throws InterpreterException, ReturnException  {
-        tokenSequencer.expect("INSPECT");
+    private void inspect() throws InterpreterException  {
+        tokenSequencer.expect(Symbol.INSPECT);
         booleanExpression();
         outputWriter.output(vm.popValue().inspect());
     }
@@ -422,41 +593,34 @@ public class Parser {
     /**
      * Handle the IF statement
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void ifStatement() throws InterpreterException, ReturnException  {
-        if (ifStatementCondition()) {
-            ifStatementBlock();
-        } else {
-            // the original condition was false, so we need to see if there's
-            // an else block to execute.
-            while (!tokenSequencer.match("ENDIF") && tokenSequencer.thereIsAToken()) {
-                if (tokenSequencer.match("ELSE")) {
-                    tokenSequencer.expect("ELSE");
-                    if (tokenSequencer.match("IF")) {
-                        // there's an else if we need to handle.
-                        elseIfStatement();
-                    } else {
-                        // simply execute the else block.
-                        ifStatementBlock();
-                    }
-                } else {
-                    tokenSequencer.advance();
-                }
+    private void ifStatement() throws InterpreterException  {
+        int branch = tokenSequencer.getCurrentIndex();
+        boolean taken = ifStatementCondition();
+        
+        // while the condition is false, move on to the next ELSE (if any).
+        while (!taken) {
+            tokenSequencer.jumpToMatching(branch);
+            if (!tokenSequencer.match(Symbol.ELSE)) {
+                break;
+            }
+            branch = tokenSequencer.getCurrentIndex();
+            tokenSequencer.expect(Symbol.ELSE);
+            if (tokenSequencer.match(Symbol.IF)) {
+                // there's an else if we need to handle.
+                taken = ifStatementCondition();
+            } else {
+                // simply execute the else block.
+                taken = true;
             }
         }
-        tokenSequencer.expect("ENDIF");
-    }
-
-    /**
-     * Deal with ELSE IF condition
-     * @throws InterpreterException
-     * @throws ReturnException 
-     */
-    private void elseIfStatement() throws InterpreterException, ReturnException  {
-        if (ifStatementCondition()) {
+        if (taken) {
             ifStatementBlock();
+            if (returning) {
+                return;
+            }
         }
+        tokenSequencer.expect(Symbol.ENDIF);
     }
 
     /**
@@ -467,10 +631,10 @@ public class Parser {
      * @return <cond> == true
      * @throws InterpreterException
      */
-    private boolean ifStatementCondition() throws InterpreterException, ReturnException  {
-        tokenSequencer.expect("IF");
+    private boolean ifStatementCondition() throws InterpreterException  {
+        tokenSequencer.expect(Symbol.IF);
         booleanExpression();
-        tokenSequencer.expect("THEN");
+        tokenSequencer.expect(Symbol.THEN);
         return (vm.getValueStack().popBoolean());
     }
 
@@ -480,20 +644,16 @@ public class Parser {
      *
      * @throws InterpreterException
      */
-    private void ifStatementBlock() throws InterpreterException, ReturnException  {
-        boolean haveSeenElse = false;
-        while (!tokenSequencer.match("ENDIF") && tokenSequencer.thereIsAToken()) {
-            if (tokenSequencer.match("ELSE")) {
-                haveSeenElse = true;
-            }
-            if (!haveSeenElse) {
+    private void ifStatementBlock() throws InterpreterException  {
+        while (!returning && !tokenSequencer.match(Symbol.ENDIF) && tokenSequencer.thereIsAToken()) {
+            if (tokenSequencer.match(Symbol.ELSE)) {
+                // We are at the ELSE section, we shouldn't be executing
+                // these statements since an earlier condition was true.
+                tokenSequencer.jumpToEndIf(tokenSequencer.getCurrentIndex());
+            } else {
                 // We are inside the body and we have not come to end of block
                 // so we execute the line.
                 instruction();
-            } else {
-                // We are inside the ELSE section, we shouldn't be executing
-                // these statements since the original IF condition was true.
-                tokenSequencer.advance();
             }
         }
     }
@@ -501,26 +661,30 @@ public class Parser {
     /**
      * Handle WHILE statement constructs
      * @throws InterpreterException
-     * @throws ReturnException 
      * 
      * TODO: break this down
      */
-    private void whileStatement() throws InterpreterException, ReturnException  {
-        int indexOfCondition, indexOfEndWhile = 0;
+    private void whileStatement() throws InterpreterException  {
+        int indexOfWhile, indexOfCondition, indexOfEndWhile = 0;
 
-        tokenSequencer.expect("WHILE");
+        indexOfWhile = tokenSequencer.getCurrentIndex();
+        tokenSequencer.expect(Symbol.WHILE);
         indexOfCondition = tokenSequencer.getCurrentIndex();
         booleanExpression();
         if (vm.getValueStack().popBoolean()) {
             do {
                 // The loop condition is true, so we execute all statements until
                 // we come to end of loop.
-                while (!tokenSequencer.match("ENDWHILE") && tokenSequencer.thereIsAToken()) {
+                while (!tokenSequencer.match(Symbol.ENDWHILE) && tokenSequencer.thereIsAToken()) {
                     instruction();
+                    if (returning) {
+                        return;
+                    }
                 }
                 
                 // we are at the end of the loop so we need to test the condition
                 // again.
+                meter.instruction();
                 indexOfEndWhile = tokenSequencer.getCurrentIndex();
                 tokenSequencer.jumpToPosition(indexOfCondition);
                 booleanExpression();
@@ -528,13 +692,11 @@ public class Parser {
         } else {
             // the loop condition is false, so we skip all statements until we
             // come to the end of the loop.
-            while (!tokenSequencer.match("ENDWHILE") && tokenSequencer.thereIsAToken()) {
-                tokenSequencer.advance();
-            }
+            tokenSequencer.jumpToMatching(indexOfWhile);
             indexOfEndWhile = tokenSequencer.getCurrentIndex();
         }
         tokenSequencer.jumpToPosition(indexOfEndWhile);
-        tokenSequencer.expect("ENDWHILE");
+        tokenSequencer.expect(Symbol.ENDWHILE);
     }
 
     /**
@@ -543,20 +705,23 @@ public class Parser {
      * TODO: break this down.
      * 
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void repeatStatement() throws InterpreterException, ReturnException  {
+    private void repeatStatement() throws InterpreterException  {
         int nextStatement = -1, firstStatement = -1;
 
-        tokenSequencer.expect("REPEAT");
+        tokenSequencer.expect(Symbol.REPEAT);
         firstStatement = tokenSequencer.getCurrentIndex();
         do {
             // execute the loop body.
+            meter.instruction();
             tokenSequencer.jumpToPosition(firstStatement);
-            while (!tokenSequencer.match("UNTIL") && tokenSequencer.thereIsAToken()) {
+            while (!tokenSequencer.match(Symbol.UNTIL) && tokenSequencer.thereIsAToken()) {
                 instruction();
+                if (returning) {
+                    return;
+                }
             }
-            tokenSequencer.expect("UNTIL");
+            tokenSequencer.expect(Symbol.UNTIL);
             
             // check the loop condition.
             booleanExpression();
@@ -575,19 +740,20 @@ public class Parser {
      * 
      * @throws InterpreterException
      */
-    private void forStatement() throws InterpreterException, ReturnException  {
-        int i, endValue, startIndex, endIndex = -1;
+    private void forStatement() throws InterpreterException  {
+        int i, endValue, forIndex, startIndex, endIndex = -1;
         String variableName;
         Variable loopCounter;
     
         // find the variable containing loop counter and assign initial value
-        tokenSequencer.expect("FOR");
+        forIndex = tokenSequencer.getCurrentIndex();
+        tokenSequencer.expect(Symbol.FOR);
         variableName = tokenSequencer.getCurrentTokenName();
         assignment();
         loopCounter = vm.getVariable(variableName);
 
         // find the end value and store it for later checking.
-        tokenSequencer.expect("TO");
+        tokenSequencer.expect(Symbol.TO);
         expression();
         endValue = vm.getValueStack().popInteger();
         startIndex = tokenSequencer.getCurrentIndex();
@@ -595,99 +761,96 @@ public class Parser {
         if ((int) loopCounter.getValue().getValue() <= endValue) {
             // The loop needs to run at least once.
             while ((int) loopCounter.getValue().getValue() <= endValue) { // actually loop
-                while (!tokenSequencer.match("ENDFOR") && tokenSequencer.thereIsAToken()) {
+                while (!tokenSequencer.match(Symbol.ENDFOR) && tokenSequencer.thereIsAToken()) {
                     instruction();
+                    if (returning) {
+                        return;
+                    }
                 }
                 
                 // increment loop counter
                 endIndex = tokenSequencer.getCurrentIndex();
                 tokenSequencer.jumpToPosition(startIndex);
-                loopCounter.setValue(loopCounter.getValue().add(new IntegerValue(1)));
+                loopCounter.setValue(loopCounter.getValue().add(IntegerValue.valueOf(1)));
             }
-            loopCounter.setValue(new IntegerValue(endValue));
+            loopCounter.setValue(IntegerValue.valueOf(endValue));
         }
         else {
             // The initial loop condition means that the loop was never executed.
-            // Ignore all tokens until we hit ENDFOR.
-            while (!tokenSequencer.match("ENDFOR") && tokenSequencer.thereIsAToken()) {
-                tokenSequencer.advance();
-            }
+            // Skip straight to ENDFOR.
+            tokenSequencer.jumpToMatching(forIndex);
             endIndex = tokenSequencer.getCurrentIndex();
         }
 
         if (endIndex > -1) {
             tokenSequencer.jumpToPosition(endIndex);
         }
-        tokenSequencer.expect("ENDFOR");
+        tokenSequencer.expect(Symbol.ENDFOR);
     }
 
     /**
      * Handle LEN(...)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void length() throws InterpreterException, ReturnException  {
+    private void length() throws InterpreterException  {
         Value rvalue;
-        tokenSequencer.expect("LEN");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.LEN);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         rvalue = vm.popValue();
         vm.pushValue(rvalue.length());
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
     }
 
     /**
      * Handle POSITION(str, int)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void stringPosition() throws InterpreterException, ReturnException  {
+    private void stringPosition() throws InterpreterException  {
         String lvalue, rvalue;
-        tokenSequencer.expect("POSITION");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.POSITION);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         lvalue = vm.getValueStack().popString();
-        tokenSequencer.expect(",");
+        tokenSequencer.expect(Symbol.COMMA);
         expression();
         rvalue = vm.getValueStack().popString();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(lvalue.indexOf(rvalue));
     }
 
     /**
      * HANDLE SUBSTRING(start, end, string)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void stringSubstring() throws InterpreterException, ReturnException  {
+    private void stringSubstring() throws InterpreterException  {
         int start, end;
         String str;
-        tokenSequencer.expect("SUBSTRING");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.SUBSTRING);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         start = vm.getValueStack().popInteger();
-        tokenSequencer.expect(",");
+        tokenSequencer.expect(Symbol.COMMA);
         expression();
         end = vm.getValueStack().popInteger();
-        tokenSequencer.expect(",");
+        tokenSequencer.expect(Symbol.COMMA);
         expression();
         str = vm.getValueStack().popString();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(str.substring(start, end + 1)); // +1 inclusive substring (see AQA spec)
     }
 
     /**
      * Handle STRING_TO_INT(str)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void stringToInt() throws InterpreterException, ReturnException  {
+    private void stringToInt() throws InterpreterException  {
         String str;
-        tokenSequencer.expect("STRING_TO_INT");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.STRING_TO_INT);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         str = vm.getValueStack().popString();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         try {
             vm.getValueStack().push(Integer.parseInt(str));
         } catch (NumberFormatException e) {
@@ -698,15 +861,14 @@ public class Parser {
     /**
      * Handle STRING_TO_REAL(str)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void stringToReal() throws InterpreterException, ReturnException  {
+    private void stringToReal() throws InterpreterException  {
         String str;
-        tokenSequencer.expect("STRING_TO_REAL");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.STRING_TO_REAL);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         str = vm.getValueStack().popString();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         try {
             vm.getValueStack().push(Double.parseDouble(str));
         } catch (NumberFormatException e) {
@@ -717,71 +879,66 @@ public class Parser {
     /**
      * Handle INT_TO_STRING(int)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void intToString() throws InterpreterException, ReturnException  {
+    private void intToString() throws InterpreterException  {
         int i;
-        tokenSequencer.expect("INT_TO_STRING");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.INT_TO_STRING);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         i = vm.getValueStack().popInteger();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(Integer.toString(i));
     }
 
     /**
      * Handle REAL_TO_STRING(real)
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void realToString() throws InterpreterException, ReturnException  {
+    private void realToString() throws InterpreterException  {
         double d;
-        tokenSequencer.expect("REAL_TO_STRING");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.REAL_TO_STRING);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         d = vm.getValueStack().popReal();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(Double.toString(d));
     }
 
     /**
      * CHAR_TO_CODE statement
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void charToCode() throws InterpreterException, ReturnException  {
+    private void charToCode() throws InterpreterException  {
         String s;
-        tokenSequencer.expect("CHAR_TO_CODE");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.CHAR_TO_CODE);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         s = vm.getValueStack().popString();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push((int) s.charAt(0));
     }
 
     /**
      * CODE_TO_CHAR statement
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void codeToChar() throws InterpreterException, ReturnException  {
+    private void codeToChar() throws InterpreterException  {
         int i;
-        tokenSequencer.expect("CODE_TO_CHAR");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.CODE_TO_CHAR);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         i = vm.getValueStack().popInteger();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(String.valueOf((char) i));
     }
 
     /**
      * USERINPUT statement
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void userInput() throws InterpreterException, ReturnException  {
+    private void userInput() throws InterpreterException  {
         String input;
-        tokenSequencer.expect("USERINPUT");
+        tokenSequencer.expect(Symbol.USERINPUT);
         input = inputProvider.getInput();
         vm.getValueStack().push(input.trim());
     }
@@ -789,32 +946,30 @@ public class Parser {
     /**
      * RANDOM_INT statement
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void randomInt() throws InterpreterException, ReturnException  {
+    private void randomInt() throws InterpreterException  {
         int start, end;
-        tokenSequencer.expect("RANDOM_INT");
-        tokenSequencer.expect("(");
+        tokenSequencer.expect(Symbol.RANDOM_INT);
+        tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
         expression();
         start = vm.getValueStack().popInteger();
-        tokenSequencer.expect(",");
+        tokenSequencer.expect(Symbol.COMMA);
         expression();
         end = vm.getValueStack().popInteger();
-        tokenSequencer.expect(")");
+        tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         vm.getValueStack().push(new Random().nextInt(end - start + 1) + start);
     }
 
     /**
      * <boolean-term> [ OR <boolean-term> ]
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void booleanExpression() throws InterpreterException, ReturnException  {
+    private void booleanExpression() throws InterpreterException  {
         booleanTerm();
-        while (tokenSequencer.match("OR") && tokenSequencer.thereIsAToken()) {
+        while (tokenSequencer.match(Symbol.OR) && tokenSequencer.thereIsAToken()) {
             boolean lvalue, rvalue;
             lvalue = vm.getValueStack().popBoolean();
-            tokenSequencer.expect("OR");
+            tokenSequencer.expect(Symbol.OR);
             booleanTerm(); //TODO - should this be booleanExpression?
             rvalue = vm.getValueStack().popBoolean();
             if (lvalue || rvalue) {
@@ -829,14 +984,13 @@ public class Parser {
     /**
      * <not-factor> [ AND <not-factor> ]
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void booleanTerm() throws InterpreterException, ReturnException  {
+    private void booleanTerm() throws InterpreterException  {
         notFactor();
-        while (tokenSequencer.match("AND") && tokenSequencer.thereIsAToken()) {
+        while (tokenSequencer.match(Symbol.AND) && tokenSequencer.thereIsAToken()) {
             boolean lvalue, rvalue;
             lvalue = vm.getValueStack().popBoolean();
-            tokenSequencer.expect("AND");
+            tokenSequencer.expect(Symbol.AND);
             notFactor();
             rvalue = vm.getValueStack().popBoolean();
             if (lvalue && rvalue) {
@@ -851,11 +1005,10 @@ public class Parser {
     /**
      * [NOT] <relation>
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void notFactor() throws InterpreterException, ReturnException  {
-        if (tokenSequencer.match("NOT")) {
-            tokenSequencer.expect("NOT");
+    private void notFactor() throws InterpreterException  {
+        if (tokenSequencer.match(Symbol.NOT)) {
+            tokenSequencer.expect(Symbol.NOT);
             relation();
             vm.getValueStack().push(!vm.getValueStack().popBoolean());
         } else {
@@ -866,15 +1019,14 @@ public class Parser {
     /**
      * <expression> [ [comparison] <expression> ]
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void relation() throws InterpreterException, ReturnException  {
+    private void relation() throws InterpreterException  {
         expression();
-        while (tokenSequencer.match("<") || tokenSequencer.match(">") || tokenSequencer.match("=") || tokenSequencer.match("!")) {
+        while (tokenSequencer.match(Symbol.LESS) || tokenSequencer.match(Symbol.GREATER) || tokenSequencer.match(Symbol.EQUALS) || tokenSequencer.match(Symbol.NOT_SIGN)) {
             Value lvalue = vm.popValue(), rvalue;
-            if (tokenSequencer.match("<")) {
+            if (tokenSequencer.match(Symbol.LESS)) {
                 tokenSequencer.advance();
-                if (tokenSequencer.match("=")) {
+                if (tokenSequencer.match(Symbol.EQUALS)) {
                     tokenSequencer.advance();
                     expression();
                     rvalue = vm.popValue();
@@ -884,9 +1036,9 @@ public class Parser {
                     rvalue = vm.popValue();
                     vm.getValueStack().push(lvalue.compare(rvalue) < 0);
                 }
-            } else if (tokenSequencer.match(">")) {
+            } else if (tokenSequencer.match(Symbol.GREATER)) {
                 tokenSequencer.advance();
-                if (tokenSequencer.match("=")) {
+                if (tokenSequencer.match(Symbol.EQUALS)) {
                     tokenSequencer.advance();
                     expression();
                     rvalue = vm.popValue();
@@ -896,14 +1048,14 @@ public class Parser {
                     rvalue = vm.popValue();
                     vm.getValueStack().push(lvalue.compare(rvalue) > 0);
                 }
-            } else if (tokenSequencer.match("=")) {
+            } else if (tokenSequencer.match(Symbol.EQUALS)) {
                 tokenSequencer.advance();
                 expression();
                 rvalue = vm.popValue();
                 vm.getValueStack().push(lvalue.equal(rvalue));
-            } else if (tokenSequencer.match("!")) {
+            } else if (tokenSequencer.match(Symbol.NOT_SIGN)) {
                 tokenSequencer.advance();
-                tokenSequencer.expect("=");
+                tokenSequencer.expect(Symbol.EQUALS);
                 expression();
                 rvalue = vm.popValue();
                 vm.getValueStack().push(!lvalue.equal(rvalue));
@@ -914,19 +1066,18 @@ public class Parser {
     /**
      * <term> [ +/- <term> ]
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void expression() throws InterpreterException, ReturnException  {
+    private void expression() throws InterpreterException  {
         term();
-        while (tokenSequencer.match("+") || tokenSequencer.match("-")) {
+        while (tokenSequencer.match(Symbol.PLUS) || tokenSequencer.match(Symbol.MINUS)) {
             Value lvalue = vm.popValue(), rvalue;
-            if (tokenSequencer.match("+")) {
-                tokenSequencer.expect("+");
+            if (tokenSequencer.match(Symbol.PLUS)) {
+                tokenSequencer.expect(Symbol.PLUS);
                 term();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.add(rvalue));
-            } else if (tokenSequencer.match("-")) {
-                tokenSequencer.expect("-");
+            } else if (tokenSequencer.match(Symbol.MINUS)) {
+                tokenSequencer.expect(Symbol.MINUS);
                 term();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.subtract(rvalue));
@@ -937,29 +1088,28 @@ public class Parser {
     /**
      * <factor> [ [ * / DIV MOD ] <factor> ]
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void term() throws InterpreterException, ReturnException  {
+    private void term() throws InterpreterException  {
         factor();
-        if ((tokenSequencer.match("*") || (tokenSequencer.match("/") || tokenSequencer.match("DIV") || tokenSequencer.match("MOD")))) {
+        while ((tokenSequencer.match(Symbol.MULTIPLY) || (tokenSequencer.match(Symbol.DIVIDE) || tokenSequencer.match(Symbol.DIV) || tokenSequencer.match(Symbol.MOD)))) {
             Value lvalue = vm.popValue(), rvalue;
-            if (tokenSequencer.match("*")) {
-                tokenSequencer.expect("*");
+            if (tokenSequencer.match(Symbol.MULTIPLY)) {
+                tokenSequencer.expect(Symbol.MULTIPLY);
                 factor();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.multiply(rvalue));
-            } else if (tokenSequencer.match("/")) {
-                tokenSequencer.expect("/");
+            } else if (tokenSequencer.match(Symbol.DIVIDE)) {
+                tokenSequencer.expect(Symbol.DIVIDE);
                 factor();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.divide(rvalue));
-            } else if (tokenSequencer.match("DIV")) {
-                tokenSequencer.expect("DIV");
+            } else if (tokenSequencer.match(Symbol.DIV)) {
+                tokenSequencer.expect(Symbol.DIV);
                 factor();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.div(rvalue));
-            } else if (tokenSequencer.match("MOD")) {
-                tokenSequencer.expect("MOD");
+            } else if (tokenSequencer.match(Symbol.MOD)) {
+                tokenSequencer.expect(Symbol.MOD);
                 factor();
                 rvalue = vm.popValue();
                 vm.pushValue(lvalue.mod(rvalue));
@@ -970,13 +1120,12 @@ public class Parser {
     /**
      * ( <boolean-expression> ) OR <literal>
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void factor() throws InterpreterException, ReturnException  {
-        if (tokenSequencer.match("(")) {
-            tokenSequencer.expect("(");
+    private void factor() throws InterpreterException  {
+        if (tokenSequencer.match(Symbol.LEFT_PARENTHESIS)) {
+            tokenSequencer.expect(Symbol.LEFT_PARENTHESIS);
             booleanExpression();
-            tokenSequencer.expect(")");
+            tokenSequencer.expect(Symbol.RIGHT_PARENTHESIS);
         } else {
             literal();
         }
@@ -990,84 +1139,111 @@ public class Parser {
      *  user defined subroutine calls
      * 
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void literal() throws InterpreterException, ReturnException  {
-        //TODO
+    private void literal() throws InterpreterException  {
+        Symbol symbol = tokenSequencer.getCurrentSymbol();
         if (isStringLiteral()) {
             stringLiteral();
-        } else if (tokenSequencer.match("TRUE") || tokenSequencer.match("FALSE")) {
-            booleanLiteral();
         } else if (isNumberLiteral()) {
             numberLiteral();
-        } else if (tokenSequencer.match("[")) {
-            arrayLiteral();
-        } else if (tokenSequencer.match("LEN")) {
-            length();
-        } else if (tokenSequencer.match("POSITION")) {
-            stringPosition();
-        } else if (tokenSequencer.match("SUBSTRING")) {
-            stringSubstring();
-        } else if (tokenSequencer.match("STRING_TO_INT")) {
-            stringToInt();
-        } else if (tokenSequencer.match("STRING_TO_REAL")) {
-            stringToReal();
-        } else if (tokenSequencer.match("INT_TO_STRING")) {
-            intToString();
-        } else if (tokenSequencer.match("REAL_TO_STRING")) {
-            realToString();
-        } else if (tokenSequencer.match("CHAR_TO_CODE")) {
-            charToCode();
-        } else if (tokenSequencer.match("CODE_TO_CHAR")) {
-            codeToChar();
-        } else if (tokenSequencer.match("USERINPUT")) {
-            userInput();
-        } else if (tokenSequencer.match("RANDOM_INT")) {
-            randomInt();
+        } else if (symbol == null) {
+            subroutineCallOrVariable();
         } else {
-            tokenSequencer.advance();
-            if (tokenSequencer.match("(")) {
-                tokenSequencer.retreat();
-                subroutineCall();
-            }
-            else {
-                tokenSequencer.retreat();
-                variable();
+            switch (symbol) {
+                case TRUE:
+                case FALSE:
+                    booleanLiteral();
+                    break;
+                case LEFT_BRACKET:
+                    arrayLiteral();
+                    break;
+                case LEN:
+                    length();
+                    break;
+                case POSITION:
+                    stringPosition();
+                    break;
+                case SUBSTRING:
+                    stringSubstring();
+                    break;
+                case STRING_TO_INT:
+                    stringToInt();
+                    break;
+                case STRING_TO_REAL:
+                    stringToReal();
+                    break;
+                case INT_TO_STRING:
+                    intToString();
+                    break;
+                case REAL_TO_STRING:
+                    realToString();
+                    break;
+                case CHAR_TO_CODE:
+                    charToCode();
+                    break;
+                case CODE_TO_CHAR:
+                    codeToChar();
+                    break;
+                case USERINPUT:
+                    userInput();
+                    break;
+                case RANDOM_INT:
+                    randomInt();
+                    break;
+                default:
+                    subroutineCallOrVariable();
+                    break;
             }
         }
     }
 
+    /**
+     * The current token is a name: either call it or read it.
+     * @throws InterpreterException
+     */
+    private void subroutineCallOrVariable() throws InterpreterException {
+        tokenSequencer.advance();
+        if (tokenSequencer.match(Symbol.LEFT_PARENTHESIS)) {
+            tokenSequencer.retreat();
+            subroutineCall();
+        }
+        else {
+            tokenSequencer.retreat();
+            variable();
+        }
+    }
+
     private boolean isStringLiteral() {
-        return (tokenSequencer.getCurrentTokenName().charAt(0) == '\'');
+        return tokenSequencer.match(TokenKind.STRING_LITERAL);
     }
 
     private boolean isNumberLiteral() {
-        String tok = tokenSequencer.getCurrentTokenName();
-        return (Character.isDigit(tok.charAt(0)) || tok.charAt(0) == '-');
+        return tokenSequencer.match(TokenKind.INTEGER_LITERAL)
+                || tokenSequencer.match(TokenKind.REAL_LITERAL)
+                || tokenSequencer.match(Symbol.MINUS);
     }
 
     /**
      * Handle requests for a variable
      * @throws InterpreterException
-     * @throws ReturnException 
      */
-    private void variable() throws InterpreterException, ReturnException  {
-        Variable v = vm.getVariable(tokenSequencer.getCurrentTokenName());
+    private void variable() throws InterpreterException  {
+        Variable v = currentVariable();
         tokenSequencer.advance();
-        if (tokenSequencer.match("[")) { // array indexing
+        if (tokenSequencer.match(Symbol.LEFT_BRACKET)) { // array indexing
             try {
                 ArrayValue ary = (ArrayValue) v.getValue();
                 int index;
-                tokenSequencer.expect("[");
+                tokenSequencer.expect(Symbol.LEFT_BRACKET);
                 statement();
                 index = vm.getValueStack().popInteger();
-                tokenSequencer.expect("]");
-                if (tokenSequencer.match("[")) { // 2d array
+                tokenSequencer.expect(Symbol.RIGHT_BRACKET);
+                if (tokenSequencer.match(Symbol.LEFT_BRACKET)) { // 2d array
                     ary = (ArrayValue) ary.getAtIndex(index);
-                    tokenSequencer.expect("[");
+                    tokenSequencer.expect(Symbol.LEFT_BRACKET);
                     statement();
                     index = vm.getValueStack().popInteger();
-                    tokenSequencer.expect("]");
+                    tokenSequencer.expect(Symbol.RIGHT_BRACKET);
                     vm.pushValue(ary.getAtIndex(index));
                 } else {
                     vm.pushValue(ary.getAtIndex(index));
@@ -1083,57 +1259,62 @@ public class Parser {
     }
 
     private void stringLiteral() throws InterpreterException {
-        vm.pushValue(ValueFactory.createString(tokenSequencer.getCurrentToken()));
+        String literal = tokenSequencer.getCurrentTokenName();
+        vm.pushValue(ValueFactory.createString(literal.substring(1, literal.length() - 1)));
         tokenSequencer.advance();
     }
 
     private void booleanLiteral() throws InterpreterException {
-        vm.pushValue(ValueFactory.createBoolean(tokenSequencer.getCurrentToken()));
+        vm.pushValue(ValueFactory.createBoolean(tokenSequencer.match(Symbol.TRUE)));
         tokenSequencer.advance();
     }
 
-    private void arrayLiteral() throws InterpreterException, ReturnException {
+    private void arrayLiteral() throws InterpreterException {
         ArrayValue ary = new ArrayValue();
         int index = 0;
         
-        tokenSequencer.expect("[");
-        if (!tokenSequencer.match("]")) {
+        // on the stack from the start, so the meter can see it while the
+        // elements are evaluated.
+        vm.pushValue(ary);
+        tokenSequencer.expect(Symbol.LEFT_BRACKET);
+        if (!tokenSequencer.match(Symbol.RIGHT_BRACKET)) {
             statement();
             ary.setAtIndex(index, vm.popValue());
             ++index;
 
-            while (tokenSequencer.match(",")) {
+            while (tokenSequencer.match(Symbol.COMMA)) {
                 tokenSequencer.advance();
                 statement();
                 ary.setAtIndex(index, vm.popValue());
                 ++index;
             }
         }
-        tokenSequencer.expect("]");
-        vm.pushValue(ary);
+        tokenSequencer.expect(Symbol.RIGHT_BRACKET);
     }
 
     private void numberLiteral() throws InterpreterException {
         // This could be a negative number literal - in which case we need
-        // to combine the tokens '-' and the number.
-        if (tokenSequencer.match("-")) {
+        // to combine the tokens '-' and the number.  The tokens themselves
+        // must not change as they may be run again (or by another parser).
+        String sign = "";
+        if (tokenSequencer.match(Symbol.MINUS)) {
             tokenSequencer.advance();
-            tokenSequencer.getCurrentToken().setName("-" + tokenSequencer.getCurrentTokenName());
+            sign = "-";
         }
-        if (tokenSequencer.contains(".")) {
-            realLiteral();
+        if (tokenSequencer.match(TokenKind.REAL_LITERAL)) {
+            realLiteral(sign);
         } else {
-            integerLiteral();
+            integerLiteral(sign);
         }
     }
 
-    private void realLiteral() throws InterpreterException {
-        vm.pushValue(ValueFactory.createReal(tokenSequencer.getCurrentToken()));
+    private void realLiteral(String sign) throws InterpreterException {
+        vm.pushValue(ValueFactory.createReal(Double.parseDouble(sign + tokenSequencer.getCurrentTokenName())));
         tokenSequencer.advance();
     }
 
-    private void integerLiteral() throws InterpreterException {
-        vm.pushValue(ValueFactory.createInteger(tokenSequencer.getCurrentToken()));
+    private void integerLiteral(String sign) throws InterpreterException {
+        vm.pushValue(ValueFactory.createInteger(Integer.parseInt(sign + tokenSequencer.getCurrentTokenName())));
         tokenSequencer.advance();
     }
 }
@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.parser;
+
+import aqa.InterpreterException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An instruction listener that profiles a run of a program: how many times
+ * each line is run and how long is spent on it, and how many times each
+ * subroutine is called and how long is spent in it.  It works with any
+ * engine.
+ *
+ * The time between one notification and the next is charged to the line
+ * that was running (not including any subroutine it called, which is charged
+ * to the subroutine's own lines).  A subroutine's time includes the
+ * subroutines it calls; a recursive subroutine is only timed from its
+ * outermost call.  Timing starts with the first instruction, so reading
+ * and compiling the program isn't included.
+ *
+ * Once the program has finished call finish, then writeReport for a list of
+ * the hot spots, or writeCollapsedStacks for a file that flame graph tools
+ * (e.g. flamegraph.pl) can draw.
+ *
+ * A listener profiles one run on one thread.  It can pass its notifications
+ * on to another listener (e.g. for stepping through the program); the time
+ * the other listener takes is not charged to the program.
+ *
+ * @author martinhart
+ */
+public class ProfilingInstructionListener implements InstructionListener {
+
+    /**
+     * The name given to the code outside of any subroutine.
+     */
+    public static final String MAIN = "main";
+
+    /**
+     * Who else to notify (or null).
+     */
+    private final InstructionListener next;
+
+    /**
+     * The number of times each line has been run, by line number.
+     */
+    private long[] lineHits = new long[64];
+
+    /**
+     * The time spent on each line in nanoseconds, by line number.
+     */
+    private long[] lineNanos = new long[64];
+
+    /**
+     * What has been measured for each subroutine called, in the order they
+     * were first called.
+     */
+    private final Map<String, SubroutineProfile> subroutines = new LinkedHashMap<>();
+
+    /**
+     * The subroutines that are running, innermost last.
+     */
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+    /**
+     * The root of the tree of every call stack (and the line running at each
+     * level of it) seen so far.
+     */
+    private final StackNode root = new StackNode(MAIN);
+
+    /**
+     * The call stack (and line) that is running now.
+     */
+    private StackNode current = root;
+
+    /**
+     * The line that is running now (0 if none).
+     */
+    private int currentLine;
+
+    /**
+     * When the time was last charged (System.nanoTime).
+     */
+    private long last;
+
+    /**
+     * Has the first instruction been run?
+     */
+    private boolean started;
+
+    /**
+     * Has finish been called?
+     */
+    private boolean finished;
+
+    /**
+     * Create a profiler that doesn't pass notifications on.
+     */
+    public ProfilingInstructionListener() {
+        this(null);
+    }
+
+    /**
+     * @param next the listener to pass notifications on to (or null)
+     */
+    public ProfilingInstructionListener(InstructionListener next) {
+        this.next = next;
+        SubroutineProfile main = profile(MAIN);
+        main.calls = 1;
+        main.active = 1;
+        this.frames.add(new Frame(main, root, root, 0));
+    }
+
+    @Override
+    public void newInstruction(int lineNumber, VirtualMachine vm) throws InterpreterException {
+        charge();
+        if (lineNumber >= lineHits.length) {
+            int size = Math.max(lineNumber + 1, lineHits.length * 2);
+            lineHits = Arrays.copyOf(lineHits, size);
+            lineNanos = Arrays.copyOf(lineNanos, size);
+        }
+        ++lineHits[lineNumber];
+        currentLine = lineNumber;
+        current = frames.getLast().node.child(lineNumber);
+        if (next != null) {
+            next.newInstruction(lineNumber, vm);
+            last = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void subroutineCalled(String name) throws InterpreterException {
+        charge();
+        SubroutineProfile profile = profile(name);
+        ++profile.calls;
+        if (profile.active++ == 0) {
+            profile.outermostStart = last;
+        }
+        StackNode node = current.child(name);
+        frames.add(new Frame(profile, node, current, currentLine));
+        current = node;
+        currentLine = 0;
+        if (next != null) {
+            next.subroutineCalled(name);
+            last = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void subroutineReturned(String name) throws InterpreterException {
+        charge();
+        if (frames.size() > 1) {
+            Frame frame = frames.removeLast();
+            if (--frame.profile.active == 0) {
+                frame.profile.nanos += last - frame.profile.outermostStart;
+            }
+            current = frame.caller;
+            currentLine = frame.callerLine;
+        }
+        if (next != null) {
+            next.subroutineReturned(name);
+            last = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stop profiling: charge the time since the last instruction and end any
+     * subroutines still running (e.g. if the program stopped with an error).
+     * Call this when the program has finished.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        charge();
+        while (!frames.isEmpty()) {
+            Frame frame = frames.removeLast();
+            if (--frame.profile.active == 0) {
+                frame.profile.nanos += last - frame.profile.outermostStart;
+            }
+        }
+        finished = true;
+    }
+
+    /**
+     * @param lineNumber a line number
+     * @return the number of times the line was run
+     */
+    public long getLineHits(int lineNumber) {
+        return lineNumber < lineHits.length ? lineHits[lineNumber] : 0;
+    }
+
+    /**
+     * @param lineNumber a line number
+     * @return the time spent on the line in nanoseconds
+     */
+    public long getLineNanos(int lineNumber) {
+        return lineNumber < lineNanos.length ? lineNanos[lineNumber] : 0;
+    }
+
+    /**
+     * @param name the name of a subroutine (or MAIN)
+     * @return the number of times it was called
+     */
+    public long getSubroutineCalls(String name) {
+        SubroutineProfile profile = subroutines.get(name);
+        return profile == null ? 0 : profile.calls;
+    }
+
+    /**
+     * @param name the name of a subroutine (or MAIN)
+     * @return the time spent in it (including the subroutines it called) in
+     * nanoseconds
+     */
+    public long getSubroutineNanos(String name) {
+        SubroutineProfile profile = subroutines.get(name);
+        return profile == null ? 0 : profile.nanos;
+    }
+
+    /**
+     * Write the hot spots: every line that was run and every subroutine that
+     * was called, the most time consuming first.
+     * @param writer where to write the report
+     * @throws IOException if it cannot be written
+     */
+    public void writeReport(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        long total = getSubroutineNanos(MAIN);
+
+        List<Integer> lines = new ArrayList<>();
+        for (int line = 0; line < lineHits.length; line++) {
+            if (lineHits[line] != 0) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines, (a, b) -> Long.compare(lineNanos[b], lineNanos[a]));
+        out.printf("%8s %14s %12s %7s%n", "line", "hits", "ms", "%");
+        for (int line : lines) {
+            out.printf("%8d %14d %12.3f %7.2f%n", line, lineHits[line],
+                    lineNanos[line] / 1e6, percent(lineNanos[line], total));
+        }
+
+        List<SubroutineProfile> profiles = new ArrayList<>(subroutines.values());
+        Collections.sort(profiles, (a, b) -> Long.compare(b.nanos, a.nanos));
+        out.println();
+        out.printf("%-20s %14s %12s %7s %12s%n", "subroutine", "calls", "ms", "%", "self ms");
+        for (SubroutineProfile profile : profiles) {
+            out.printf("%-20s %14d %12.3f %7.2f %12.3f%n", profile.name, profile.calls,
+                    profile.nanos / 1e6, percent(profile.nanos, total), profile.selfNanos / 1e6);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the time spent in each call stack, one line per stack, in the
+     * collapsed stack format used by flame graph tools:
+     *
+     *      main:12;bubbleSort:5 1500000
+     *
+     * Each frame is a subroutine and the line it was running (the line of
+     * the call for all but the last frame); the number is nanoseconds.
+     * @param writer where to write the stacks
+     * @throws IOException if they cannot be written
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        root.write(MAIN, out);
+        out.flush();
+    }
+
+    /**
+     * Charge the time since it was last charged to the line that is running.
+     */
+    private void charge() {
+        long now = System.nanoTime();
+        if (!started) {
+            started = true;
+            last = now;
+            frames.getFirst().profile.outermostStart = now;
+            return;
+        }
+        long elapsed = now - last;
+        last = now;
+        lineNanos[currentLine] += elapsed;
+        current.nanos += elapsed;
+        frames.getLast().profile.selfNanos += elapsed;
+    }
+
+    /**
+     * @param name the name of a subroutine
+     * @return what has been measured for it, made if it is new
+     */
+    private SubroutineProfile profile(String name) {
+        SubroutineProfile profile = subroutines.get(name);
+        if (profile == null) {
+            profile = new SubroutineProfile(name);
+            subroutines.put(name, profile);
+        }
+        return profile;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+
+    /**
+     * What has been measured for a subroutine.
+     */
+    private static final class SubroutineProfile {
+
+        private final String name;
+        private long calls;
+        private long nanos;
+        private long selfNanos;
+
+        /**
+         * The number of calls that haven't returned yet.
+         */
+        private int active;
+
+        /**
+         * When the outermost call that hasn't returned started.
+         */
+        private long outermostStart;
+
+        SubroutineProfile(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A running subroutine.
+     */
+    private static final class Frame {
+
+        private final SubroutineProfile profile;
+
+        /**
+         * The call stack of the subroutine.
+         */
+        private final StackNode node;
+
+        /**
+         * The call stack and line the subroutine was called from, to go back
+         * to when it returns.
+         */
+        private final StackNode caller;
+        private final int callerLine;
+
+        Frame(SubroutineProfile profile, StackNode node, StackNode caller, int callerLine) {
+            this.profile = profile;
+            this.node = node;
+            this.caller = caller;
+            this.callerLine = callerLine;
+        }
+    }
+
+    /**
+     * One call stack: a subroutine called from the stack above it, or a line
+     * of the subroutine of the stack above it.
+     */
+    private static final class StackNode {
+
+        /**
+         * The subroutine name or line number.
+         */
+        private final Object key;
+
+        /**
+         * The time spent in exactly this stack, in nanoseconds.
+         */
+        private long nanos;
+
+        private Map<Object, StackNode> children;
+
+        StackNode(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * @param key a subroutine name or line number
+         * @return the stack made by adding key to this one
+         */
+        StackNode child(Object key) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            StackNode child = children.get(key);
+            if (child == null) {
+                child = new StackNode(key);
+                children.put(key, child);
+            }
+            return child;
+        }
+
+        /**
+         * Write this stack and the stacks below it.
+         * @param prefix the frames above this stack
+         * @param out where to write them
+         */
+        void write(String prefix, PrintWriter out) {
+            if (nanos != 0) {
+                out.println(prefix + " " + nanos);
+            }
+            if (children == null) {
+                return;
+            }
+            for (StackNode child : children.values()) {
+                if (child.key instanceof Integer) {
+                    // a line: name the frame after it.
+                    child.write(prefix + ":" + child.key, out);
+                } else {
+                    child.write(prefix + ";" + child.key, out);
+                }
+            }
+        }
+    }
+}
@@ -8,7 +8,7 @@ import aqa.subroutine.Subroutine;
 import aqa.subroutine.SubroutineTableImpl;
 import aqa.value.Value;
 import aqa.value.ValueStack;
-import aqa.value.ValueStackImpl;
+import aqa.value.ArrayValueStack;
 import aqa.variable.Variable;
 import aqa.variable.VariableTable;
 import aqa.variable.VariableTableImpl;
@@ -67,7 +67,7 @@ public class VirtualMachine {
      * @param v variables to use
      */
     public VirtualMachine(SubroutineTable s, VariableTable v) {
-        this(s, v, new ValueStackImpl());
+        this(s, v, new ArrayValueStack());
     }
 
     /**
@@ -4,9 +4,9 @@
 package aqa.subroutine;
 
 import aqa.InterpreterException;
-import aqa.tokenizer.Token;
 import aqa.tokenizer.Tokens;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class contains information about a subroutine.  It is used by the parser
@@ -29,7 +29,13 @@ public class Subroutine {
     /**
      * The tokens to execute when the subroutine is called.
      */
-    private final Tokens tokens;
+    private Tokens tokens;
+
+    /**
+     * The slot of each parameter in the tokens' SlotTable (SlotTable.NONE if
+     * the body doesn't use it), worked out on the first call.
+     */
+    private int[] parameterSlots;
 
     /**
      * Create a new subroutine
@@ -54,14 +60,17 @@ public class Subroutine {
      */
     public void addParameter(String name) {
         parameters.add(name);
+        parameterSlots = null;
     }
 
     /**
-     * Add a token to the body of this subroutine
-     * @param t token to execute when subroutine is called
+     * Set the body of this subroutine.  This is usually a range of the
+     * program's tokens (see Tokens.range) rather than a copy of them.
+     * @param body the tokens to execute when subroutine is called
      */
-    public void addToken(Token t) {
-        tokens.append(t);
+    public void setTokens(Tokens body) {
+        tokens = body;
+        parameterSlots = null;
     }
     
     /**
@@ -86,6 +95,29 @@ public class Subroutine {
         }
     }
     
+    /**
+     * Find where a parameter is held in the variables of a call, so that
+     * arguments can be stored without looking their names up on every call.
+     * @param index the index of the parameter
+     * @return the slot of the parameter (see aqa.tokenizer.SlotTable), or
+     * SlotTable.NONE if the body doesn't use it
+     * @throws InterpreterException if invalid index
+     */
+    public int getParameterSlot(int index) throws InterpreterException {
+        if (parameterSlots == null) {
+            List<String> names = tokens.getSlotTable().getNames();
+            int[] result = new int[parameters.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = names.indexOf(parameters.get(i));
+            }
+            parameterSlots = result;
+        }
+        if (index < 0 || index >= parameterSlots.length) {
+            throw new InterpreterException("subroutine '" + name + "' invalid parameter index '" + index + "'");
+        }
+        return parameterSlots[index];
+    }
+
     /**
      * @return the tokens that form the body of this subroutine
      */
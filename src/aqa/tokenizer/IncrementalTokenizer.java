@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import aqa.InterpreterException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps the tokens of source code that is being edited (e.g. in
+ * the code editor) up to date without tokenizing all of it after every
+ * change.  The tokens are kept line by line, along with the state the
+ * Tokenizer was in at the start and end of each line; when some lines are
+ * replaced only those lines are tokenized again, and then the lines after
+ * them until the Tokenizer reaches a line in the same state as before (which
+ * is straight away unless the change opened or closed a string literal, or
+ * a comment that interrupts a token).
+ *
+ * getTokens gives the same tokens as Tokenizer.tokenize would for the whole
+ * source code.  The tokens can be changed on one thread while getTokens is
+ * called on another.
+ *
+ * @author martinhart
+ */
+public class IncrementalTokenizer {
+
+    /**
+     * The lines of the source code (without their newlines).
+     */
+    private final ArrayList<Line> lines = new ArrayList<>();
+
+    /**
+     * The state at the end of the last line.
+     */
+    private Tokenizer.State end = Tokenizer.State.START;
+
+    /**
+     * The tokens of the whole source code, once made (until the next change).
+     */
+    private Tokens tokens;
+
+    /**
+     * The number of changes made (so that getTokens knows whether the tokens
+     * it has made are still up to date).
+     */
+    private int version;
+
+    /**
+     * The number of lines tokenized by the last change.
+     */
+    private int linesTokenized;
+
+    /**
+     * Tokenizes each line.
+     */
+    private final Tokenizer tokenizer = new Tokenizer(new StringReader(""));
+
+    /**
+     * Create a tokenizer of empty source code.
+     */
+    public IncrementalTokenizer() {
+        this("");
+    }
+
+    /**
+     * @param source the source code
+     */
+    public IncrementalTokenizer(String source) {
+        setText(source);
+    }
+
+    /**
+     * Replace all of the source code.
+     * @param source the source code
+     */
+    public synchronized void setText(String source) {
+        lines.clear();
+        lines.add(new Line(""));
+        replaceLines(0, 1, source);
+    }
+
+    /**
+     * Replace some whole lines of the source code.
+     * @param firstLine the index (from 0) of the first line to replace
+     * @param count the number of lines to replace
+     * @param text what to replace them with, which is split into lines at
+     * each newline (so that replacing n lines with text containing no newlines
+     * leaves n - 1 fewer lines)
+     * @throws IndexOutOfBoundsException if there aren't count lines from
+     * firstLine or count is 0
+     */
+    public synchronized void replaceLines(int firstLine, int count, String text) {
+        int size = lines.size();
+        if (firstLine < 0 || count < 1 || firstLine + count > size) {
+            throw new IndexOutOfBoundsException("lines " + firstLine + " to "
+                    + (firstLine + count) + " of " + size);
+        }
+        String[] replacements = text.split("\n", -1);
+        List<Line> replaced = lines.subList(firstLine, firstLine + count);
+        replaced.clear();
+        for (String replacement : replacements) {
+            replaced.add(new Line(replacement));
+        }
+        // there is always at least one replacement, so the lines before
+        // firstLine are unchanged (including which of them is the last).
+        tokenizeLines(firstLine, firstLine + replacements.length);
+        tokens = null;
+        ++version;
+    }
+
+    /**
+     * @return the number of lines of source code
+     */
+    public synchronized int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * @return the tokens of the source code (which must not be changed)
+     */
+    public Tokens getTokens() {
+        Line[] snapshot;
+        Tokenizer.State last;
+        int made;
+        synchronized (this) {
+            if (tokens != null) {
+                return tokens;
+            }
+            snapshot = lines.toArray(new Line[lines.size()]);
+            last = end;
+            made = version;
+        }
+        Tokens result = new Tokens();
+        for (int i = 0; i < snapshot.length; i++) {
+            Line line = snapshot[i];
+            for (int j = 0; j < line.tokens.length; j++) {
+                result.append(line.tokens[j], i + 1 + line.tokenLines[j]);
+            }
+        }
+        if (!last.getPending().isEmpty()) {
+            try {
+                result.append(new Token(last.getPending(), snapshot.length + last.getPendingLine()));
+            } catch (InterpreterException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        // build the tables now, before the tokens are shared.
+        result.getJumpTable();
+        result.getSlotTable();
+        synchronized (this) {
+            if (made == version) {
+                tokens = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of lines that were tokenized by the last change
+     */
+    synchronized int getLinesTokenized() {
+        return linesTokenized;
+    }
+
+    /**
+     * Tokenize lines from one line until the tokenizer is back in the state
+     * it was in before at the start of an unchanged line.
+     * @param from the index of the first line to tokenize
+     * @param changed the index just past the last line that has changed
+     */
+    private void tokenizeLines(int from, int changed) {
+        Tokenizer.State state = from == 0 ? Tokenizer.State.START : lines.get(from - 1).end;
+        int i = from;
+        for (; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (i >= changed && state.equals(line.start)) {
+                break;
+            }
+            line = tokenize(line.text, i, state);
+            lines.set(i, line);
+            state = line.end;
+        }
+        if (i == lines.size()) {
+            end = state;
+        }
+        linesTokenized = i - from;
+    }
+
+    /**
+     * Tokenize one line.
+     * @param text the text of the line
+     * @param index the index of the line
+     * @param start the state at the start of the line
+     * @return the tokenized line
+     */
+    private Line tokenize(String text, int index, Tokenizer.State start) {
+        boolean last = index == lines.size() - 1;
+        int lineNumber = index + 1;
+        tokenizer.resume(new StringReader(last ? text : text + "\n"), lineNumber, start);
+        List<Token> made = new ArrayList<>();
+        try {
+            for (Token token = tokenizer.next(); token != null; token = tokenizer.next()) {
+                made.add(token);
+            }
+        } catch (InterpreterException e) {
+            // a StringReader cannot fail and every token made is valid.
+            throw new IllegalStateException(e);
+        }
+        int[] tokenLines = new int[made.size()];
+        for (int i = 0; i < tokenLines.length; i++) {
+            tokenLines[i] = made.get(i).getLineNumber() - lineNumber;
+        }
+        return new Line(text, start, made.toArray(new Token[made.size()]),
+                tokenLines, tokenizer.getState());
+    }
+
+    /**
+     * One line of the source code and the tokens finished on it.
+     */
+    private static final class Line {
+
+        /**
+         * The text of the line, without its newline.
+         */
+        private final String text;
+
+        /**
+         * The state at the start of the line (null until tokenized).
+         */
+        private final Tokenizer.State start;
+
+        /**
+         * The tokens finished on this line.
+         */
+        private final Token[] tokens;
+
+        /**
+         * The line each token is on, relative to this line (so that the
+         * tokens needn't change when lines are added or removed above).
+         */
+        private final int[] tokenLines;
+
+        /**
+         * The state at the end of the line.
+         */
+        private final Tokenizer.State end;
+
+        /**
+         * A line that hasn't been tokenized yet.
+         */
+        Line(String text) {
+            this(text, null, new Token[0], new int[0], null);
+        }
+
+        Line(String text, Tokenizer.State start, Token[] tokens, int[] tokenLines, Tokenizer.State end) {
+            this.text = text;
+            this.start = start;
+            this.tokens = tokens;
+            this.tokenLines = tokenLines;
+            this.end = end;
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * This class records, for every token that opens a block, the index of the
+ * token that ends it so that the parser can skip a block without looking at
+ * each of its tokens.  e.g.
+ *
+ *      0  1 2 3    4      5  6 7 8    9      10
+ *      IF a THEN   OUTPUT 1  ELSE     OUTPUT 2  ENDIF
+ *
+ * maps IF (0) to ELSE (5) and ELSE (5) to ENDIF (10).
+ *
+ * Blocks that are matched:
+ *
+ *      IF      -> the first ELSE of the same IF statement, or ENDIF
+ *      ELSE    -> the next ELSE of the same IF statement, or ENDIF
+ *      WHILE   -> ENDWHILE
+ *      REPEAT  -> UNTIL
+ *      FOR     -> ENDFOR
+ *
+ * The IF of an ELSE IF belongs to the enclosing IF statement (they share the
+ * ENDIF) so it has no entry of its own; use the ELSE instead.
+ *
+ * @author martinhart
+ */
+public class JumpTable {
+
+    /**
+     * The index of the matching token for each token index, or NONE.
+     */
+    private final int[] matching;
+
+    /**
+     * The index returned for blocks that are never closed: the end of the
+     * tokens.
+     */
+    private final int end;
+
+    /**
+     * The value stored for tokens that do not open a block.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Build the table for some tokens.
+     * @param tokens the tokens to examine
+     */
+    public JumpTable(Tokens tokens) {
+        Deque<Integer> ifs = new ArrayDeque<>();
+        Deque<Integer> whiles = new ArrayDeque<>();
+        Deque<Integer> repeats = new ArrayDeque<>();
+        Deque<Integer> fors = new ArrayDeque<>();
+        Symbol previous = null;
+
+        end = tokens.size();
+        matching = new int[end];
+        Arrays.fill(matching, NONE);
+
+        for (int i = 0; i < end; i++) {
+            Symbol symbol = tokens.getSymbol(i);
+            if (symbol == null) {
+                previous = null;
+                continue;
+            }
+            switch (symbol) {
+                case IF:
+                    if (previous != Symbol.ELSE) {
+                        ifs.push(i);
+                    }
+                    break;
+                case ELSE:
+                    close(ifs, i);
+                    ifs.push(i);
+                    break;
+                case ENDIF:
+                    close(ifs, i);
+                    break;
+                case WHILE:
+                    whiles.push(i);
+                    break;
+                case ENDWHILE:
+                    close(whiles, i);
+                    break;
+                case REPEAT:
+                    repeats.push(i);
+                    break;
+                case UNTIL:
+                    close(repeats, i);
+                    break;
+                case FOR:
+                    fors.push(i);
+                    break;
+                case ENDFOR:
+                    close(fors, i);
+                    break;
+                default:
+                    break;
+            }
+            previous = symbol;
+        }
+
+        // anything left open runs to the end of the tokens.
+        for (Deque<Integer> open : Arrays.asList(ifs, whiles, repeats, fors)) {
+            while (!open.isEmpty()) {
+                matching[open.pop()] = end;
+            }
+        }
+    }
+
+    /**
+     * Match the innermost open block with the token at index.  A terminator
+     * without an opener is left for the parser to complain about.
+     */
+    private void close(Deque<Integer> open, int index) {
+        if (!open.isEmpty()) {
+            matching[open.pop()] = index;
+        }
+    }
+
+    /**
+     * Find the token that ends the block opened at index.
+     * @param index the index of an IF, ELSE, WHILE, REPEAT or FOR token
+     * @return the index of the matching ELSE or terminator.  If the token at
+     * index does not open a block (or it is never closed) this is the index
+     * just past the last token.
+     */
+    public int getMatchingIndex(int index) {
+        if (index < 0 || index >= end || matching[index] == NONE) {
+            return end;
+        }
+        return matching[index];
+    }
+
+    /**
+     * Find the ENDIF of the IF statement containing the IF or ELSE at index.
+     * @param index the index of an IF or ELSE token
+     * @return the index of the ENDIF (or just past the last token if there
+     * isn't one)
+     */
+    public int getEndIndex(int index) {
+        int i = getMatchingIndex(index);
+        while (i < end && matching[i] != NONE) {
+            i = matching[i];
+        }
+        return i;
+    }
+}
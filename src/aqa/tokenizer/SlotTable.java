@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class gives each distinct identifier in some tokens a slot number so
+ * that variables can be held in an array (see aqa.variable.FrameVariableTable)
+ * rather than looked up by name every time they are used.  e.g.
+ *
+ *      0 1 2 3 4 5 6
+ *      a < - b + a
+ *
+ * gives a slot 0 and b slot 1; tokens 0 and 5 are in slot 0, token 3 in slot 1.
+ *
+ * @author martinhart
+ */
+public class SlotTable {
+
+    /**
+     * The slot of each token, or NONE if the token is not an identifier.
+     */
+    private final int[] slots;
+
+    /**
+     * The identifier held in each slot.
+     */
+    private final List<String> names;
+
+    /**
+     * The value returned for tokens that are not identifiers.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Assign slots for some tokens.
+     * @param tokens the tokens to examine
+     */
+    public SlotTable(Tokens tokens) {
+        Map<String, Integer> slotOfName = new HashMap<>();
+        List<String> slotNames = new ArrayList<>();
+
+        slots = new int[tokens.size()];
+        Arrays.fill(slots, NONE);
+        for (int i = 0; i < slots.length; i++) {
+            if (tokens.getKind(i) == TokenKind.IDENTIFIER) {
+                String name = tokens.getName(i);
+                Integer slot = slotOfName.get(name);
+                if (slot == null) {
+                    slot = slotNames.size();
+                    slotOfName.put(name, slot);
+                    slotNames.add(name);
+                }
+                slots[i] = slot;
+            }
+        }
+        names = Collections.unmodifiableList(slotNames);
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the slot of the token at index, or NONE if it isn't an identifier
+     */
+    public int getSlot(int index) {
+        if (index < 0 || index >= slots.length) {
+            return NONE;
+        }
+        return slots[index];
+    }
+
+    /**
+     * @return the identifier held in each slot, in slot order
+     */
+    public List<String> getNames() {
+        return names;
+    }
+}
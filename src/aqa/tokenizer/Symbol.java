@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The keywords and operators of the language.  Each token is given its Symbol
+ * (if it has one) when it is created so that the parser can compare tokens by
+ * identity or switch on them rather than comparing strings.
+ *
+ * Note that the tokenizer splits multi character operators, so '<-' arrives
+ * as LESS followed by MINUS.
+ *
+ * @author martinhart
+ */
+public enum Symbol {
+
+    // keywords
+    SUBROUTINE("SUBROUTINE"),
+    ENDSUBROUTINE("ENDSUBROUTINE"),
+    RETURN("RETURN"),
+    CONSTANT("constant"),
+    OUTPUT("OUTPUT"),
+    INSPECT("INSPECT"),
+    IF("IF"),
+    THEN("THEN"),
+    ELSE("ELSE"),
+    ENDIF("ENDIF"),
+    WHILE("WHILE"),
+    ENDWHILE("ENDWHILE"),
+    REPEAT("REPEAT"),
+    UNTIL("UNTIL"),
+    FOR("FOR"),
+    TO("TO"),
+    ENDFOR("ENDFOR"),
+    AND("AND"),
+    OR("OR"),
+    NOT("NOT"),
+    DIV("DIV"),
+    MOD("MOD"),
+    TRUE("TRUE"),
+    FALSE("FALSE"),
+    USERINPUT("USERINPUT"),
+    LEN("LEN"),
+    POSITION("POSITION"),
+    SUBSTRING("SUBSTRING"),
+    STRING_TO_INT("STRING_TO_INT"),
+    STRING_TO_REAL("STRING_TO_REAL"),
+    INT_TO_STRING("INT_TO_STRING"),
+    REAL_TO_STRING("REAL_TO_STRING"),
+    CHAR_TO_CODE("CHAR_TO_CODE"),
+    CODE_TO_CHAR("CODE_TO_CHAR"),
+    RANDOM_INT("RANDOM_INT"),
+
+    // operators
+    LEFT_PARENTHESIS("("),
+    RIGHT_PARENTHESIS(")"),
+    LEFT_BRACKET("["),
+    RIGHT_BRACKET("]"),
+    COMMA(","),
+    PLUS("+"),
+    MINUS("-"),
+    MULTIPLY("*"),
+    DIVIDE("/"),
+    LESS("<"),
+    GREATER(">"),
+    EQUALS("="),
+    NOT_SIGN("!");
+
+    /**
+     * Every symbol, keyed by its text.
+     */
+    private static final Map<String, Symbol> BY_TEXT = new HashMap<>();
+
+    static {
+        for (Symbol s : values()) {
+            BY_TEXT.put(s.text, s);
+        }
+    }
+
+    /**
+     * The text of the symbol as it appears in source code.
+     */
+    private final String text;
+
+    Symbol(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the symbol as it appears in source code
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return true for operators/separators, false for keywords
+     */
+    public boolean isOperator() {
+        return !Character.isLetter(text.charAt(0));
+    }
+
+    /**
+     * Look up the symbol for some token text.
+     * @param text the token text
+     * @return the symbol or null if the text is not a keyword or operator
+     */
+    public static Symbol forText(String text) {
+        return BY_TEXT.get(text);
+    }
+}
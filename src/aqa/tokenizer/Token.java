@@ -8,7 +8,8 @@ import aqa.InterpreterException;
 /**
  * This class represents a single token to be parsed and executed.  Tokens
  * are created from the source code and are associated with a line number from
- * that code.
+ * that code.  Tokens never change once created so they may be shared by
+ * programs running at the same time.
  * 
  * @author martinhart
  */
@@ -17,13 +18,23 @@ public class Token {
     /**
      * The token name (e.g. OUTPUT)
      */
-    private String name;
+    private final String name;
     
     /**
      * The line in the source code on which this token was present
      */
     private final int lineNumber;
 
+    /**
+     * The keyword or operator this token represents (null if it isn't one)
+     */
+    private final Symbol symbol;
+
+    /**
+     * What sort of token this is
+     */
+    private final TokenKind kind;
+
     /**
      * Create a new token.
      * @param name the token value - must not be empty
@@ -41,6 +52,50 @@ public class Token {
         
         this.name = name;
         this.lineNumber = line;
+        this.symbol = Symbol.forText(name);
+        this.kind = TokenKind.classify(name, symbol);
+    }
+
+    /**
+     * Create a token with the same text as another but on a different line.
+     * This saves classifying the text again when the same text appears many
+     * times (e.g. when a program is read from a ProgramFile).
+     * @param token the token whose text to use
+     * @param line the line token occurs on (must be >=1)
+     * @throws InterpreterException upon invalid arguments
+     */
+    public Token(Token token, int line) throws InterpreterException {
+        this(token.name, checkLine(line), token.symbol, token.kind);
+    }
+
+    /**
+     * Create a token that has already been classified.
+     */
+    private Token(String name, int line, Symbol symbol, TokenKind kind) {
+        this.name = name;
+        this.lineNumber = line;
+        this.symbol = symbol;
+        this.kind = kind;
+    }
+
+    /**
+     * @param line a line number
+     * @return line
+     * @throws InterpreterException if line is not a valid line number
+     */
+    private static int checkLine(int line) throws InterpreterException {
+        if (line < 1) {
+            throw new InterpreterException(line, "Invalid line number");
+        }
+        return line;
+    }
+
+    /**
+     * @param line a valid line number
+     * @return a token with the same text as this one on line
+     */
+    Token onLine(int line) {
+        return line == lineNumber ? this : new Token(name, line, symbol, kind);
     }
 
     /**
@@ -58,18 +113,26 @@ public class Token {
     }
 
     /**
-     * Change the name of this token.
-     * 
-     * For example, when parsing that integer literal '-1', the tokenizer might
-     * see this as two separate tokens.  When parsing, we can reconstruct the
-     * original token value according to context:
-     * 
-     * 1 -1     -> should be parsed as a subtract
-     * -1       -> should be parsed as an integer literal
-     * 
-     * @param name new token name.
+     * @return the keyword or operator this token represents, or null if it is
+     * not a keyword or operator.
      */
-    public void setName(String name) {
-        this.name = name;
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return what sort of token this is
+     */
+    public TokenKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Check if this token is a particular keyword or operator.
+     * @param s the symbol to check for
+     * @return true if this token is s
+     */
+    public boolean is(Symbol s) {
+        return symbol == s;
     }
 }
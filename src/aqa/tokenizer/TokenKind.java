@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+/**
+ * The broad classification of a token, decided once when the token is
+ * created.
+ *
+ * @author martinhart
+ */
+public enum TokenKind {
+
+    /**
+     * A reserved word such as IF or LEN (see Symbol).
+     */
+    KEYWORD,
+
+    /**
+     * A single character operator or separator such as + or ( (see Symbol).
+     */
+    OPERATOR,
+
+    /**
+     * The name of a variable or subroutine.
+     */
+    IDENTIFIER,
+
+    /**
+     * e.g. 42
+     */
+    INTEGER_LITERAL,
+
+    /**
+     * e.g. 3.14
+     */
+    REAL_LITERAL,
+
+    /**
+     * e.g. 'hello'
+     */
+    STRING_LITERAL;
+
+    /**
+     * Classify the text of a token.
+     * @param name the token text
+     * @param symbol the token's Symbol, or null if it doesn't have one
+     * @return the kind of token
+     */
+    static TokenKind classify(String name, Symbol symbol) {
+        if (symbol != null) {
+            return symbol.isOperator() ? OPERATOR : KEYWORD;
+        }
+        char first = name.charAt(0);
+        if (first == '\'') {
+            return STRING_LITERAL;
+        }
+        if (Character.isDigit(first)
+                || (first == '-' && name.length() > 1 && Character.isDigit(name.charAt(1)))) {
+            return name.contains(".") ? REAL_LITERAL : INTEGER_LITERAL;
+        }
+        return IDENTIFIER;
+    }
+}
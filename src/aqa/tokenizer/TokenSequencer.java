@@ -7,7 +7,8 @@ import aqa.InterpreterException;
 
 /**
  * This class is responsible for providing information about the current token
- * being executed and a means to navigate between tokens.
+ * being executed and a means to navigate between tokens.  Tokens are looked
+ * at by index so that no Token objects need to be made.
  *
  * @author martinhart
  */
@@ -16,7 +17,7 @@ public class TokenSequencer {
     /**
      * The tokens managed by this object.
      */
-    private final Tokens tokens;
+    private final TokenSource tokens;
 
     /**
      * The index of the token we're currently working on.
@@ -24,16 +25,17 @@ public class TokenSequencer {
     private int currentIndex;
 
     /**
-     * The token we're currently working on.
+     * A token with the text of the token we're currently working on (see
+     * TokenSource.textAt), or null if there isn't one.
      */
-    private Token currentToken;
+    private Token currentText;
 
     /**
      * Create a new token sequencer
      *
      * @param tokens the tokens to manage
      */
-    public TokenSequencer(Tokens tokens) {
+    public TokenSequencer(TokenSource tokens) {
         this.tokens = tokens;
         currentIndex = 0;
         getToken();
@@ -46,7 +48,7 @@ public class TokenSequencer {
      * reached the end of the tokens.
      */
     public boolean thereIsAToken() {
-        return (currentToken != null);
+        return (currentText != null);
     }
 
     /**
@@ -69,12 +71,37 @@ public class TokenSequencer {
      * if not, or if there is no current token.
      */
     public boolean match(String value) {
-        if (currentToken != null) {
-            return (value.equals(currentToken.getName()));
+        if (currentText != null) {
+            return (value.equals(currentText.getName()));
         }
         return false;
     }
 
+    /**
+     * Check if the current token is a keyword or operator.  e.g.
+     * 
+     * if (tokenSequencer.match(Symbol.PLUS)) {
+     *  // do add logic
+     * }
+     * 
+     * @param symbol the symbol to match with
+     * @return true if the current token is symbol.  false if not, or if there
+     * is no current token.
+     */
+    public boolean match(Symbol symbol) {
+        return currentText != null && currentText.getSymbol() == symbol;
+    }
+
+    /**
+     * Check if the current token is of a particular kind.
+     * @param kind the kind to match with
+     * @return true if the current token is of that kind.  false if not, or if
+     * there is no current token.
+     */
+    public boolean match(TokenKind kind) {
+        return currentText != null && currentText.getKind() == kind;
+    }
+
     /**
      * Require the current token to match an argument.  e.g.
      * 
@@ -88,26 +115,64 @@ public class TokenSequencer {
      */
     public boolean expect(String value) throws InterpreterException {
         if (!match(value)) {
-            int lineNumber = 1;
             String message = "expected '" + value + "'";
-            if (currentToken != null) {
-                lineNumber = currentToken.getLineNumber();
-            }
-            throw new InterpreterException(lineNumber, message);
+            throw new InterpreterException(getCurrentTokenLine(), message);
         }
         advance();
         return true;
     }
 
+    /**
+     * Require the current token to be a keyword or operator.  e.g.
+     * 
+     * tokenSequencer.expect(Symbol.ENDIF)
+     * // this line will not be executed unless ENDIF was encountered.
+     * 
+     * @param symbol the symbol to match with
+     * @return true
+     * @throws InterpreterException if there is no match or if there is no
+     * current token.
+     */
+    public boolean expect(Symbol symbol) throws InterpreterException {
+        if (!match(symbol)) {
+            String message = "expected '" + symbol.getText() + "'";
+            throw new InterpreterException(getCurrentTokenLine(), message);
+        }
+        advance();
+        return true;
+    }
+
+    /**
+     * @return the keyword or operator of the current token, or null if it
+     * is not one or if there is no current token.
+     */
+    public Symbol getCurrentSymbol() {
+        if (currentText == null) {
+            return null;
+        }
+        return currentText.getSymbol();
+    }
+
+    /**
+     * @return the kind of the current token, or null if there is no current
+     * token.
+     */
+    public TokenKind getCurrentKind() {
+        if (currentText == null) {
+            return null;
+        }
+        return currentText.getKind();
+    }
+
     /**
      * Return the name of the current token
      * @return the current token name or an empty string if there is no token.
      */
     public String getCurrentTokenName() {
-        if (currentToken == null) {
+        if (currentText == null) {
             return "";
         }
-        return currentToken.getName();
+        return currentText.getName();
     }
 
     /**
@@ -125,7 +190,7 @@ public class TokenSequencer {
      * is no current token.
      */
     public boolean contains(String value) {
-        if (currentToken == null) {
+        if (currentText == null) {
             return false;
         }
         return getCurrentTokenName().contains(value);
@@ -144,6 +209,24 @@ public class TokenSequencer {
         getToken();
     }
 
+    /**
+     * Skip to the token that ends a block, e.g. from IF to its ELSE or ENDIF.
+     * @param i the index of the token that opens the block
+     * @see JumpTable#getMatchingIndex(int)
+     */
+    public void jumpToMatching(int i) {
+        jumpToPosition(tokens.getMatchingIndex(i));
+    }
+
+    /**
+     * Skip to the ENDIF of an IF statement.
+     * @param i the index of the statement's IF or one of its ELSE tokens
+     * @see JumpTable#getEndIndex(int)
+     */
+    public void jumpToEndIf(int i) {
+        jumpToPosition(tokens.getEndIndex(i));
+    }
+
     /**
      * Move back to the previous token
      */
@@ -158,10 +241,7 @@ public class TokenSequencer {
      * @return the line number of the current token
      */
     public int getCurrentTokenLine() {
-        if (currentToken == null) {
-            return 1;
-        }
-        return currentToken.getLineNumber();
+        return tokens.lineAt(currentIndex);
     }
 
     /**
@@ -174,10 +254,19 @@ public class TokenSequencer {
      * will be no exception to raise.
      */
     public Token getCurrentToken() throws InterpreterException {
-        if (currentToken == null) {
+        if (currentText == null) {
             return new Token("<void>", 1);
         }
-        return currentToken;
+        return tokens.tokenAt(currentIndex);
+    }
+
+    /**
+     * @return the variable slot of the current token, or SlotTable.NONE if it
+     * is not an identifier.
+     * @see SlotTable
+     */
+    public int getCurrentSlot() {
+        return tokens.getSlot(currentIndex);
     }
 
     /**
@@ -188,13 +277,30 @@ public class TokenSequencer {
     }
 
     /**
-     * Set the currentToken based on currentIndex.
+     * Say that the tokens before the current token will not be needed again
+     * (e.g. because there is no loop to go back to the start of).
+     * @see TokenSource#release(int)
+     */
+    public void release() {
+        tokens.release(currentIndex);
+    }
+
+    /**
+     * Take the tokens from one index up to (but not including) another, e.g.
+     * the body of a subroutine.
+     * @param from the index of the first token
+     * @param to the index just past the last token
+     * @return the tokens
+     * @see TokenSource#range(int, int)
+     */
+    public Tokens range(int from, int to) {
+        return tokens.range(from, to);
+    }
+
+    /**
+     * Look at the token at currentIndex.
      */
     private void getToken() {
-        try {
-            currentToken = tokens.getToken(currentIndex);
-        } catch (IndexOutOfBoundsException e) {
-            currentToken = null;
-        }
+        currentText = tokens.textAt(currentIndex);
     }
 }
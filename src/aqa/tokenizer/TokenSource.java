@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.util.List;
+
+/**
+ * The tokens a TokenSequencer moves through.  Either all of the tokens of a
+ * program (Tokens) or tokens read from the source code as they are reached
+ * (TokenStream).
+ *
+ * @author martinhart
+ */
+public interface TokenSource {
+
+    /**
+     * @param index the index of a token
+     * @return the token at index, or null if there isn't one
+     */
+    Token tokenAt(int index);
+
+    /**
+     * Find the text of a token without making a Token for it.
+     * @param index the index of a token
+     * @return a token with the same text (and so the same symbol and kind)
+     * as the token at index but possibly on another line, or null if there
+     * is no token at index
+     */
+    Token textAt(int index);
+
+    /**
+     * @param index the index of a token
+     * @return the line of the token at index, or 1 if there isn't one
+     */
+    int lineAt(int index);
+
+    /**
+     * @param from the index of the first token of the range
+     * @param to the index just past the last token of the range
+     * @return the tokens from 'from' up to (but not including) 'to'
+     */
+    Tokens range(int from, int to);
+
+    /**
+     * @param index the index of a token that opens a block
+     * @return the index of the token that ends the block
+     * @see JumpTable#getMatchingIndex(int)
+     */
+    int getMatchingIndex(int index);
+
+    /**
+     * @param index the index of an IF or ELSE token
+     * @return the index of the ENDIF of its IF statement
+     * @see JumpTable#getEndIndex(int)
+     */
+    int getEndIndex(int index);
+
+    /**
+     * @param index the index of a token
+     * @return the variable slot of the token, or SlotTable.NONE
+     * @see SlotTable#getSlot(int)
+     */
+    int getSlot(int index);
+
+    /**
+     * @return the identifier held in each slot, in slot order
+     */
+    List<String> getSlotNames();
+
+    /**
+     * Say that the tokens before index will never be looked at again, so
+     * they needn't be kept.
+     * @param index the index of the first token still needed
+     */
+    void release(int index);
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import aqa.InterpreterException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * This class hands tokens to a TokenSequencer as they are reached, reading
+ * them from the source code only when they are first asked for.  A program
+ * can start running (and producing output) before the rest of it has been
+ * read, and tokens that have been released are thrown away so a very large
+ * program needn't be held in memory all at once: only the tokens from the
+ * start of the outermost loop being run onwards are kept.
+ *
+ * Blocks are matched (see JumpTable) by reading ahead to the end of the block
+ * when a block is first skipped.  Identifiers do not have slots since that
+ * would need the whole program to be read first.
+ *
+ * If the source code cannot be read the stream ends and getFailure says why.
+ *
+ * @author martinhart
+ */
+public class TokenStream implements TokenSource {
+
+    /**
+     * Where the tokens come from.
+     */
+    private final Tokenizer tokenizer;
+
+    /**
+     * The tokens that are kept, from buffer[offset] for count tokens.
+     */
+    private Token[] buffer = new Token[256];
+
+    /**
+     * Where in buffer the first kept token is.
+     */
+    private int offset;
+
+    /**
+     * The number of tokens kept.
+     */
+    private int count;
+
+    /**
+     * The index (in the whole program) of the first kept token.
+     */
+    private int first;
+
+    /**
+     * Have all of the tokens been read?
+     */
+    private boolean finished;
+
+    /**
+     * Why reading stopped early (or null if it didn't).
+     */
+    private InterpreterException failure;
+
+    /**
+     * Blocks that have already been matched: the index of the token that
+     * opens each one and the index of the token that ends it.
+     */
+    private final TreeMap<Integer, Integer> matching = new TreeMap<>();
+
+    /**
+     * Create a stream of tokens.
+     * @param tokenizer where to read the tokens from
+     */
+    public TokenStream(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * @return the reason the source code could not be read, or null if there
+     * hasn't been a problem
+     */
+    public InterpreterException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the token at index, or null if there isn't one
+     * @throws IllegalStateException if the token has been released
+     */
+    @Override
+    public Token tokenAt(int index) {
+        if (index < first) {
+            if (index < 0) {
+                return null;
+            }
+            throw new IllegalStateException("token " + index + " has been released");
+        }
+        while (index >= first + count && readToken()) {
+            // keep reading.
+        }
+        return index < first + count ? buffer[offset + index - first] : null;
+    }
+
+    @Override
+    public Token textAt(int index) {
+        return tokenAt(index);
+    }
+
+    @Override
+    public int lineAt(int index) {
+        Token token = tokenAt(index);
+        return token == null ? 1 : token.getLineNumber();
+    }
+
+    /**
+     * Tokens are thrown away once released, so the range is a copy.
+     */
+    @Override
+    public Tokens range(int from, int to) {
+        Tokens tokens = new Tokens();
+        for (int i = from; i < to; i++) {
+            tokens.append(tokenAt(i));
+        }
+        return tokens;
+    }
+
+    @Override
+    public int getMatchingIndex(int index) {
+        Integer match = matching.get(index);
+        if (match == null) {
+            match = findMatchingIndex(index);
+            matching.put(index, match);
+        }
+        return match;
+    }
+
+    @Override
+    public int getEndIndex(int index) {
+        int i = getMatchingIndex(index);
+        while (is(i, Symbol.ELSE)) {
+            i = getMatchingIndex(i);
+        }
+        return i;
+    }
+
+    /**
+     * Identifiers do not have slots in a stream.
+     * @param index ignored
+     * @return SlotTable.NONE
+     */
+    @Override
+    public int getSlot(int index) {
+        return SlotTable.NONE;
+    }
+
+    @Override
+    public List<String> getSlotNames() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void release(int index) {
+        int n = Math.min(index, first + count) - first;
+        if (n <= 0) {
+            return;
+        }
+        Arrays.fill(buffer, offset, offset + n, null);
+        offset += n;
+        first += n;
+        count -= n;
+        matching.headMap(first).clear();
+    }
+
+    /**
+     * Find the token that ends the block opened at index by reading ahead,
+     * following the same rules as JumpTable.
+     * @param index the index of a token
+     * @return the index of the matching token
+     */
+    private int findMatchingIndex(int index) {
+        Symbol open = symbolAt(index);
+        Symbol close;
+        if (open == null) {
+            return end();
+        }
+        switch (open) {
+            case IF:
+                if (is(index - 1, Symbol.ELSE)) {
+                    return end();
+                }
+                return findEndOfIf(index);
+            case ELSE:
+                return findEndOfIf(index);
+            case WHILE:
+                close = Symbol.ENDWHILE;
+                break;
+            case REPEAT:
+                close = Symbol.UNTIL;
+                break;
+            case FOR:
+                close = Symbol.ENDFOR;
+                break;
+            default:
+                return end();
+        }
+        int depth = 0;
+        for (int i = index + 1; tokenAt(i) != null; i++) {
+            Symbol symbol = symbolAt(i);
+            if (symbol == open) {
+                ++depth;
+            } else if (symbol == close) {
+                if (depth == 0) {
+                    return i;
+                }
+                --depth;
+            }
+        }
+        return end();
+    }
+
+    /**
+     * @param index the index of an IF or ELSE
+     * @return the index of the next ELSE of the same IF statement, or its
+     * ENDIF
+     */
+    private int findEndOfIf(int index) {
+        int depth = 0;
+        for (int i = index + 1; tokenAt(i) != null; i++) {
+            Symbol symbol = symbolAt(i);
+            if (symbol == Symbol.IF && !is(i - 1, Symbol.ELSE)) {
+                ++depth;
+            } else if (symbol == Symbol.ELSE || symbol == Symbol.ENDIF) {
+                if (depth == 0) {
+                    return i;
+                }
+                if (symbol == Symbol.ENDIF) {
+                    --depth;
+                }
+            }
+        }
+        return end();
+    }
+
+    /**
+     * @return the index just past the last token (reading all of them)
+     */
+    private int end() {
+        while (readToken()) {
+            // keep reading.
+        }
+        return first + count;
+    }
+
+    private Symbol symbolAt(int index) {
+        Token token = tokenAt(index);
+        return token == null ? null : token.getSymbol();
+    }
+
+    private boolean is(int index, Symbol symbol) {
+        return index >= first && symbolAt(index) == symbol;
+    }
+
+    /**
+     * Read one more token from the tokenizer.
+     * @return false if there are no more
+     */
+    private boolean readToken() {
+        if (finished) {
+            return false;
+        }
+        Token token;
+        try {
+            token = tokenizer.next();
+        } catch (InterpreterException e) {
+            failure = e;
+            token = null;
+        }
+        if (token == null) {
+            finished = true;
+            return false;
+        }
+        if (offset + count == buffer.length) {
+            Token[] tokens = count > buffer.length / 2 ? new Token[buffer.length * 2] : buffer;
+            System.arraycopy(buffer, offset, tokens, 0, count);
+            Arrays.fill(tokens, count, tokens.length, null);
+            buffer = tokens;
+            offset = 0;
+        }
+        buffer[offset + count++] = token;
+        return true;
+    }
+}
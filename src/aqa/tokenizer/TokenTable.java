@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class holds the tokens of a program as parallel arrays rather than as
+ * a Token object each.  A token is just the index of its text in a pool of
+ * the distinct token texts (which also holds the Symbol and TokenKind of each
+ * text, since those depend only on the text) and its line number: 8 bytes
+ * rather than a Token, its String and a reference to them both.
+ *
+ * Tokens are only ever added to the end of the table and never change, so
+ * one table can be shared by several Tokens (e.g. the whole program and each
+ * of its subroutines).
+ *
+ * @author martinhart
+ */
+final class TokenTable {
+
+    /**
+     * The index in the pool of the text of each token.
+     */
+    private int[] texts = new int[64];
+
+    /**
+     * The line number of each token.
+     */
+    private int[] lines = new int[64];
+
+    /**
+     * The number of tokens in the table.
+     */
+    private int size;
+
+    /**
+     * The index in the pool of each distinct text - built when first needed
+     * by add.
+     */
+    private HashMap<String, Integer> pool;
+
+    /**
+     * One Token for each distinct text (on the line it was first seen), from
+     * which its name, symbol and kind are taken.
+     */
+    private Token[] distinct = new Token[64];
+
+    /**
+     * The number of distinct texts in the pool.
+     */
+    private int distinctSize;
+
+    /**
+     * Create an empty table.
+     */
+    TokenTable() {
+    }
+
+    /**
+     * Create a table from the arrays it is made of (which are used rather
+     * than copied), e.g. when they have been saved in a file.
+     * @param distinct one token for each distinct text
+     * @param texts the index in distinct of the text of each token
+     * @param lines the line number of each token
+     */
+    TokenTable(Token[] distinct, int[] texts, int[] lines) {
+        this.distinct = distinct;
+        this.distinctSize = distinct.length;
+        this.texts = texts;
+        this.lines = lines;
+        this.size = texts.length;
+    }
+
+    /**
+     * @return the number of tokens in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a token to the end of the table.
+     * @param token the token to add
+     */
+    void add(Token token) {
+        add(token, token.getLineNumber());
+    }
+
+    /**
+     * Add a token to the end of the table on a different line from the one
+     * it says.
+     * @param token the token whose text to add
+     * @param line the line it is on
+     */
+    void add(Token token, int line) {
+        if (pool == null) {
+            pool = new HashMap<>();
+            for (int i = 0; i < distinctSize; i++) {
+                pool.put(distinct[i].getName(), i);
+            }
+        }
+        Integer text = pool.get(token.getName());
+        if (text == null) {
+            text = distinctSize++;
+            if (text == distinct.length) {
+                distinct = Arrays.copyOf(distinct, Math.max(64, text * 2));
+            }
+            distinct[text] = token;
+            pool.put(token.getName(), text);
+        }
+        if (size == texts.length) {
+            texts = Arrays.copyOf(texts, Math.max(64, size * 2));
+            lines = Arrays.copyOf(lines, Math.max(64, size * 2));
+        }
+        texts[size] = text;
+        lines[size] = line;
+        ++size;
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the token's text
+     */
+    String name(int index) {
+        return distinct[texts[index]].getName();
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the token's keyword or operator, or null if it isn't one
+     */
+    Symbol symbol(int index) {
+        return distinct[texts[index]].getSymbol();
+    }
+
+    /**
+     * @param index the index of a token
+     * @return what sort of token it is
+     */
+    TokenKind kind(int index) {
+        return distinct[texts[index]].getKind();
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the line the token is on
+     */
+    int line(int index) {
+        return lines[index];
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the token of the same text that is kept in the pool (which may
+     * be on a different line)
+     */
+    Token text(int index) {
+        return distinct[texts[index]];
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the token as an object
+     */
+    Token token(int index) {
+        return distinct[texts[index]].onLine(lines[index]);
+    }
+}
@@ -6,11 +6,20 @@ package aqa.tokenizer;
 import aqa.InterpreterException;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 
 /**
- * This class reads the source code and splits it up into tokens to be 
+ * This class reads the source code and splits it up into tokens to be
  * parsed.
- * 
+ *
+ * The source code is read into a char array a block at a time and scanned by
+ * index; the text of each token is taken from the array by offset rather than
+ * being built up a character at a time.  Tokens can be taken all at once
+ * (tokenize) or one at a time as they are needed (next, see TokenStream).
+ * A tokenizer can also be resumed on a piece of the source code, carrying on
+ * from where an earlier piece left off (see IncrementalTokenizer).
+ *
  * @author martinhart
  */
 public class Tokenizer {
@@ -18,42 +27,97 @@ public class Tokenizer {
     /**
      * The input source code
      */
-    private final Reader fin;
-    
+    private Reader fin;
+
+    /**
+     * The part of the source code that has been read but not yet finished
+     * with
+     */
+    private char[] source;
+
+    /**
+     * The number of characters in source
+     */
+    private int length;
+
+    /**
+     * Index into source of the next character to read
+     */
+    private int position;
+
+    /**
+     * Has all of the source code been read?
+     */
+    private boolean endOfInput;
+
     /**
      * Line number we are currently tokenizing
      */
     private int currentLine;
-    
+
     /**
      * Line number of current token
      */
     private int tokenLine;
-    
+
     /**
      * Character we're currently reading
      */
     private char character;
-    
+
+    /**
+     * The current token is source[bufferStart] up to (but not including)
+     * source[bufferEnd]...
+     */
+    private int bufferStart;
+
+    /**
+     * ...after whatever is in bufferPrefix.
+     */
+    private int bufferEnd;
+
     /**
-     * Buffer we're filling with characters until we hit a terminator
+     * The start of the current token when it isn't all in one piece of the
+     * source (only when a comment interrupts it).  Usually empty.
      */
-    private String buffer;
-    
+    private final StringBuilder bufferPrefix = new StringBuilder();
+
     /**
-     * The set of tokens we've created
+     * Tokens that have been made but not yet handed out by next()
      */
-    private Tokens tokens;
-    
+    private final ArrayDeque<Token> ready = new ArrayDeque<>();
+
     /**
      * Are we currently in the middle of a string literal?
      */
     private boolean insideStringLiteral;
-    
+
+    /**
+     * Should a token that is unfinished at the end of the input be kept (in
+     * the state) rather than made?  Only when resumed on part of the source.
+     */
+    private boolean holdLastToken;
+
     /**
      * The values that separate tokens.
      */
-    private final char[] TERMINATORS = {'\n', '(', ')', ' ', '\t', '+', '-', '>', '<', '=', '*', ',', '[', ']', '/', '!'};
+    private static final char[] TERMINATORS = {'\n', '(', ')', ' ', '\t', '+', '-', '>', '<', '=', '*', ',', '[', ']', '/', '!'};
+
+    /**
+     * TERMINATOR[c] is true if c is one of TERMINATORS.
+     */
+    private static final boolean[] TERMINATOR = new boolean[128];
+
+    static {
+        for (char c : TERMINATORS) {
+            TERMINATOR[c] = true;
+        }
+    }
+
+    /**
+     * The number of characters to read from the source code at a time.
+     */
+    private static final int READ_SIZE = 8192;
 
     /**
      * Create a new tokenizer ready to run.
@@ -61,50 +125,86 @@ public class Tokenizer {
      */
     public Tokenizer(Reader reader) {
         this.fin = reader;
+        initialise();
     }
 
     /**
      * Run through the source code and create some tokens from it
      * @return the created tokens
      * @throws InterpreterException if there are problems tokenizing the input data.
-     * 
-     * TODO: this method is too long and is difficult to read.  Break it down.
      */
     public Tokens tokenize() throws InterpreterException {
+        Tokens tokens = new Tokens();
+        for (Token token = next(); token != null; token = next()) {
+            tokens.append(token);
+        }
+        return tokens;
+    }
 
-        initialise();
-        while (thereIsMoreData()) {
+    /**
+     * Read just enough of the source code to make the next token.
+     * @return the next token, or null if there are no more
+     * @throws InterpreterException if there are problems tokenizing the input data.
+     */
+    public Token next() throws InterpreterException {
+        while (ready.isEmpty() && thereIsMoreData()) {
             incrementLineNumberIfNewLine();
             if (isComment()) {
                 skipLine();
             }
-            else {
-                if (isStringDelimiter()) {
-                    handleQuotedString();
+            else if (isStringDelimiter()) {
+                handleQuotedString();
+            }
+            else if (isEndOfToken() && !insideStringLiteral) {
+                if (!bufferIsEmpty()) {
+                    addToken();
                 }
-                else {
-                    if (isEndOfToken() && !insideStringLiteral) {
-                        if (!buffer.isEmpty()) {
-                            addToken();
-                        }
-                        if (!isSpace()) {
-                            buffer = "" + character;
-                            addToken();
-                        }
-                    }
-                    else {
-                        buffer += character;
-                    }
+                if (!isSpace()) {
+                    appendCharacter();
+                    addToken();
                 }
             }
+            else {
+                appendCharacter();
+            }
         }
-        
-        if (!buffer.isEmpty()) {
+
+        if (ready.isEmpty() && !bufferIsEmpty() && !holdLastToken) {
             addToken();
         }
-        
-        return tokens;
-    }        
+
+        return ready.poll();
+    }
+
+    /**
+     * Start again on another piece of the source code as though it followed
+     * on from the piece that ended in state.  A token that is unfinished at
+     * the end of the piece is not made; it is kept in getState instead.
+     * @param reader provider of the piece of source code
+     * @param line the line number the piece starts on
+     * @param state the state at the end of the previous piece
+     */
+    void resume(Reader reader, int line, State state) {
+        fin = reader;
+        length = 0;
+        position = 0;
+        endOfInput = false;
+        clearBuffer();
+        bufferPrefix.append(state.pending);
+        currentLine = line;
+        tokenLine = line + state.pendingLine;
+        insideStringLiteral = state.insideStringLiteral;
+        ready.clear();
+        holdLastToken = true;
+    }
+
+    /**
+     * @return the state reached at the end of the source code read so far
+     */
+    State getState() {
+        String pending = bufferPrefix.toString() + new String(source, bufferStart, bufferEnd - bufferStart);
+        return new State(insideStringLiteral, pending, tokenLine - currentLine);
+    }
 
     /**
      * Set up initial state
@@ -112,8 +212,11 @@ public class Tokenizer {
     private void initialise() {
         currentLine = 1;
         tokenLine = 1;
-        buffer = "";
-        tokens = new Tokens();
+        source = new char[READ_SIZE];
+        length = 0;
+        position = 0;
+        endOfInput = false;
+        clearBuffer();
         insideStringLiteral = false;
     }
 
@@ -122,13 +225,38 @@ public class Tokenizer {
      * @throws InterpreterException if an error occurs
      */
     private boolean thereIsMoreData() throws InterpreterException {
+        if (position == length && !endOfInput) {
+            readMore();
+        }
+        if (position < length) {
+            character = source[position++];
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read the next block of source code, keeping the current token.
+     * @throws InterpreterException if an error occurs
+     */
+    private void readMore() throws InterpreterException {
+        int keep = bufferStart == bufferEnd ? length : bufferStart;
+        length -= keep;
+        if (length > source.length / 2) {
+            source = Arrays.copyOfRange(source, keep, keep + source.length * 2);
+        } else {
+            System.arraycopy(source, keep, source, 0, length);
+        }
+        position -= keep;
+        bufferStart -= Math.min(bufferStart, keep);
+        bufferEnd -= Math.min(bufferEnd, keep);
         try {
-            int i = fin.read();
-            if (i != -1) {
-                character = (char) i;
-                return true;
+            int n = fin.read(source, length, source.length - length);
+            if (n == -1) {
+                endOfInput = true;
+            } else {
+                length += n;
             }
-            return false;
         } catch (IOException ex) {
             throw new InterpreterException(currentLine, ex.getMessage());
         }
@@ -139,11 +267,11 @@ public class Tokenizer {
             incrementLineNumber();
         }
     }
-    
+
     private boolean isComment() {
         return (character == '#');
     }
-    
+
     private void skipLine() throws InterpreterException {
         while (thereIsMoreData()) {
             if (isNewLine()) {
@@ -152,51 +280,140 @@ public class Tokenizer {
             }
         }
     }
-    
+
     private boolean isNewLine() {
         return (character == '\n');
     }
-    
+
     private void incrementLineNumber() {
         ++currentLine;
-        if (buffer.isEmpty()) {
+        if (bufferIsEmpty()) {
             ++tokenLine;
         }
     }
-    
+
     private boolean isStringDelimiter() {
         return (character == '\'');
     }
-    
+
     private void handleQuotedString() throws InterpreterException {
+        appendCharacter();
         if (insideStringLiteral) { // end of string
             insideStringLiteral = false;
-            buffer += character;
             addToken();
         }
         else {
-            buffer += character;
             insideStringLiteral = true;
         }
     }
-    
+
+    /**
+     * Add the current character (the one before position) to the buffer.
+     */
+    private void appendCharacter() {
+        int index = position - 1;
+        if (bufferStart == bufferEnd) {
+            bufferStart = index;
+        }
+        else if (bufferEnd != index) {
+            // something (a comment) was skipped in the middle of the token.
+            bufferPrefix.append(source, bufferStart, bufferEnd - bufferStart);
+            bufferStart = index;
+        }
+        bufferEnd = index + 1;
+    }
+
+    private boolean bufferIsEmpty() {
+        return bufferStart == bufferEnd && bufferPrefix.length() == 0;
+    }
+
+    private void clearBuffer() {
+        bufferStart = 0;
+        bufferEnd = 0;
+        bufferPrefix.setLength(0);
+    }
+
     private void addToken() throws InterpreterException {
-        Token token = new Token(buffer, tokenLine);
-        tokens.append(token);
+        String name = new String(source, bufferStart, bufferEnd - bufferStart);
+        if (bufferPrefix.length() != 0) {
+            name = bufferPrefix + name;
+        }
+        ready.add(new Token(name, tokenLine));
         tokenLine = currentLine;
-        buffer = "";
+        clearBuffer();
     }
-    
+
     private boolean isEndOfToken() {
-        for (int i=0; i < TERMINATORS.length; i++) {
-            if (character == TERMINATORS[i]) {
-                return true;
-            }
-        }
-        return false;
+        return character < TERMINATOR.length && TERMINATOR[character];
     }
-    
+
     private boolean isSpace() {
         return Character.isWhitespace(character);
     }
+
+    /**
+     * What a tokenizer carries over from one line of the source code to the
+     * next: whether it is inside a string literal and the token it has not
+     * yet finished.
+     */
+    static final class State {
+
+        /**
+         * The state at the start of the source code.
+         */
+        static final State START = new State(false, "", 0);
+
+        /**
+         * Are we in the middle of a string literal?
+         */
+        private final boolean insideStringLiteral;
+
+        /**
+         * The text of the unfinished token (empty if there isn't one).
+         */
+        private final String pending;
+
+        /**
+         * The line the unfinished token started on, relative to the current
+         * line (so 0 or less).
+         */
+        private final int pendingLine;
+
+        State(boolean insideStringLiteral, String pending, int pendingLine) {
+            this.insideStringLiteral = insideStringLiteral;
+            this.pending = pending;
+            this.pendingLine = pendingLine;
+        }
+
+        /**
+         * @return the text of the unfinished token (empty if there isn't one)
+         */
+        String getPending() {
+            return pending;
+        }
+
+        /**
+         * @return the line the unfinished token started on, relative to the
+         * current line
+         */
+        int getPendingLine() {
+            return pendingLine;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State other = (State) o;
+            return insideStringLiteral == other.insideStringLiteral
+                    && pendingLine == other.pendingLine
+                    && pending.equals(other.pending);
+        }
+
+        @Override
+        public int hashCode() {
+            return (pending.hashCode() * 31 + pendingLine) * 2 + (insideStringLiteral ? 1 : 0);
+        }
+    }
 }
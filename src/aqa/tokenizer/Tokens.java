@@ -3,44 +3,281 @@
  */
 package aqa.tokenizer;
 
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This class represents a container of tokens.
+ *
+ * The tokens are held in a TokenTable.  A range of some tokens (e.g. the body
+ * of a subroutine) shares the table of the whole rather than copying it.
+ *
  * @author martinhart
  */
-public class Tokens implements Iterable<Token> {
-    
+public class Tokens implements Iterable<Token>, TokenSource {
+
+    /**
+     * Where the tokens are kept
+     */
+    private final TokenTable table;
+
+    /**
+     * The index in table of our first token
+     */
+    private final int offset;
+
+    /**
+     * The number of tokens
+     */
+    private int size;
+
+    /**
+     * Are these tokens a range of others (which can't be appended to)?
+     */
+    private final boolean range;
+
     /**
-     * The actual tokens
+     * Where each block ends - built when first needed.
      */
-    private final ArrayList<Token> tokens;
-    
+    private JumpTable jumpTable;
+
+    /**
+     * The slot of each identifier - built when first needed.
+     */
+    private SlotTable slotTable;
+
     public Tokens() {
-        this.tokens = new ArrayList<>();
+        this(new TokenTable(), 0, 0, false);
+    }
+
+    /**
+     * Make tokens from the parts of their table, e.g. when reading a program
+     * back from a file, rather than appending one token at a time.
+     * @param distinct one token for each distinct text (each text only once)
+     * @param texts the index in distinct of the text of each token
+     * @param lines the line number of each token (each a valid line number)
+     * @return the tokens
+     * @throws IllegalArgumentException if texts and lines are different
+     * lengths or a text index is not in distinct
+     */
+    public static Tokens fromTable(Token[] distinct, int[] texts, int[] lines) {
+        if (texts.length != lines.length) {
+            throw new IllegalArgumentException("a line is needed for each token");
+        }
+        for (int text : texts) {
+            if (text < 0 || text >= distinct.length) {
+                throw new IllegalArgumentException("invalid text index " + text);
+            }
+        }
+        return new Tokens(new TokenTable(distinct.clone(), texts.clone(), lines.clone()),
+                0, texts.length, false);
+    }
+
+    /**
+     * @param table where the tokens are kept
+     * @param offset the index in table of the first token
+     * @param size the number of tokens
+     * @param range true if the tokens are a range of others
+     */
+    private Tokens(TokenTable table, int offset, int size, boolean range) {
+        this.table = table;
+        this.offset = offset;
+        this.size = size;
+        this.range = range;
     }
 
     public boolean isEmpty() {
-        return tokens.isEmpty();
+        return size == 0;
     }
 
+    /**
+     * @param token the token to add to the end
+     * @throws IllegalStateException if these tokens are a range of others
+     */
     public void append(Token token) {
-        // we can ignore the result of add because it must return true
-        // see Collections.add documentation.
-        boolean ignore = tokens.add(token);
+        append(token, token.getLineNumber());
+    }
+
+    /**
+     * @param token the token whose text to add to the end
+     * @param line the line it is on (a valid line number)
+     * @throws IllegalStateException if these tokens are a range of others
+     */
+    void append(Token token, int line) {
+        if (range) {
+            throw new IllegalStateException("cannot append to a range of tokens");
+        }
+        table.add(token, line);
+        ++size;
+        jumpTable = null;
+        slotTable = null;
     }
 
+    /**
+     * @param index the index of a token
+     * @return the token
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
     public Token getToken(int index) {
-        return tokens.get(index);
+        return table.token(check(index));
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the text of the token
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
+    public String getName(int index) {
+        return table.name(check(index));
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the keyword or operator the token is, or null if it isn't one
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
+    public Symbol getSymbol(int index) {
+        return table.symbol(check(index));
+    }
+
+    /**
+     * @param index the index of a token
+     * @return what sort of token it is
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
+    public TokenKind getKind(int index) {
+        return table.kind(check(index));
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the line the token is on
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
+    public int getLineNumber(int index) {
+        return table.line(check(index));
     }
 
     public int size() {
-        return tokens.size();
+        return size;
+    }
+
+    /**
+     * @return the jump table for these tokens
+     */
+    public JumpTable getJumpTable() {
+        JumpTable table = jumpTable;
+        if (table == null) {
+            table = new JumpTable(this);
+            jumpTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the variable slots for these tokens
+     */
+    public SlotTable getSlotTable() {
+        SlotTable table = slotTable;
+        if (table == null) {
+            table = new SlotTable(this);
+            slotTable = table;
+        }
+        return table;
+    }
+
+    @Override
+    public Token tokenAt(int index) {
+        return hasToken(index) ? table.token(offset + index) : null;
+    }
+
+    @Override
+    public Token textAt(int index) {
+        return hasToken(index) ? table.text(offset + index) : null;
+    }
+
+    @Override
+    public int lineAt(int index) {
+        return hasToken(index) ? table.line(offset + index) : 1;
+    }
+
+    /**
+     * The range shares these tokens' table rather than copying it.
+     */
+    @Override
+    public Tokens range(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("range " + from + " to " + to + " of " + size);
+        }
+        return new Tokens(table, offset + from, to - from, true);
+    }
+
+    @Override
+    public int getMatchingIndex(int index) {
+        return getJumpTable().getMatchingIndex(index);
+    }
+
+    @Override
+    public int getEndIndex(int index) {
+        return getJumpTable().getEndIndex(index);
+    }
+
+    @Override
+    public int getSlot(int index) {
+        return getSlotTable().getSlot(index);
+    }
+
+    @Override
+    public List<String> getSlotNames() {
+        return getSlotTable().getNames();
+    }
+
+    /**
+     * All of the tokens are kept.
+     * @param index ignored
+     */
+    @Override
+    public void release(int index) {
     }
 
     @Override
     public Iterator<Token> iterator() {
-        return tokens.iterator();
+        return new Iterator<Token>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getToken(next++);
+            }
+        };
+    }
+
+    /**
+     * @param index the index of a token
+     * @return true if there is a token at index
+     */
+    private boolean hasToken(int index) {
+        return index >= 0 && index < size;
+    }
+
+    /**
+     * @param index the index of one of our tokens
+     * @return its index in table
+     * @throws IndexOutOfBoundsException if there is no token at index
+     */
+    private int check(int index) {
+        if (!hasToken(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return offset + index;
     }
 }
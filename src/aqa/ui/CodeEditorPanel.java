@@ -3,12 +3,15 @@
  */
 package aqa.ui;
 
+import aqa.Program;
+import java.awt.Component;
 import java.awt.Font;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.BoxLayout;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
@@ -24,6 +27,7 @@ public class CodeEditorPanel extends JPanel {
 
     private final List<CodeEditorListener> listeners;
     private JTextArea textArea;
+    private SyntaxChecker syntaxChecker;
 
     CodeEditorPanel() {
         listeners = new ArrayList<>();
@@ -41,7 +45,14 @@ public class CodeEditorPanel extends JPanel {
         JScrollPane jsp = new JScrollPane(textArea);
         TextLineNumber tln = new TextLineNumber(textArea);
         jsp.setRowHeaderView(tln);
+        jsp.setAlignmentX(Component.LEFT_ALIGNMENT);
         add(jsp);
+
+        JLabel syntaxStatus = new JLabel(" ");
+        syntaxStatus.setAlignmentX(Component.LEFT_ALIGNMENT);
+        add(syntaxStatus);
+        syntaxChecker = new SyntaxChecker(syntaxStatus);
+        textArea.getDocument().addDocumentListener(syntaxChecker);
         
         textArea.addKeyListener(new KeyListener() {
             @Override
@@ -105,6 +116,16 @@ public class CodeEditorPanel extends JPanel {
         return textArea.getText();
     }
 
+    /**
+     * get the program in the code editor, without reading all of the content
+     * again.  This may be called on any thread (e.g. by InterpreterWorker).
+     *
+     * @return the program
+     */
+    public Program getProgram() {
+        return syntaxChecker.getProgram();
+    }
+
     /**
      * Add a listener to be called when events are triggered from this object.
      *
@@ -5,11 +5,11 @@ package aqa.ui;
 
 import aqa.Interpreter;
 import aqa.InterpreterException;
+import aqa.Program;
 import aqa.parser.InputProvider;
 import aqa.parser.IgnoreInstructionListener;
 import aqa.parser.OutputWriter;
 import aqa.parser.VirtualMachine;
-import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.concurrent.CancellationException;
@@ -104,7 +104,6 @@ public class InterpreterWorker extends SwingWorker<Integer, UpdateInformation> {
     private final OutputPanel outputPanel;
     private final VariableTablePanel variableTablePanel;
     private final IgnoreInstructionListener instructionListener;
-    private final String codeToExecute;
     
     public InterpreterWorker(MainWindow mainWindow, CodeEditorPanel editorPanel, 
             OutputPanel outputPanel, VariableTablePanel variableTablePanel,
@@ -114,20 +113,21 @@ public class InterpreterWorker extends SwingWorker<Integer, UpdateInformation> {
         this.outputPanel = outputPanel;
         this.variableTablePanel = variableTablePanel;
         this.instructionListener = instructionListener;
-        this.codeToExecute = editorPanel.getContent();
-        
     }
 
     public InterpreterWorker(MainWindow mainWindow, CodeEditorPanel editorPanel, 
             OutputPanel outputPanel, VariableTablePanel variableTablePanel) {
-        this(mainWindow, editorPanel, outputPanel, variableTablePanel, 
-                new IgnoreInstructionListener());
+        this(mainWindow, editorPanel, outputPanel, variableTablePanel, null);
     }
 
     @Override
     protected Integer doInBackground() throws Exception {
+        // making the program puts the editor's tokens together, which takes
+        // time in proportion to the length of the code, so it is done here
+        // rather than on the event dispatch thread.
+        Program programToExecute = editorPanel.getProgram();
         try {
-            new Interpreter(new StringReader(codeToExecute), new OutputWriter() {
+            new Interpreter(programToExecute, new OutputWriter() {
                 @Override
                 public void output(String message) {
                     publish(new UpdateInformation(message));
@@ -45,7 +45,7 @@ public class MainWindow extends JFrame {
     private VariableTablePanel variableTablePanel;
     private String fileName;
     private boolean isDirty;
-    private final StepLock stepLock;
+    private StepLock stepLock;
     private JMenu fileMenu;
     private JMenu interpreterMenu;
     private JMenuItem runMenuItem;
@@ -57,7 +57,6 @@ public class MainWindow extends JFrame {
     public MainWindow() {
         fileName = "";
         isDirty = false;
-        stepLock = new StepLock();
     }
 
     public void create() {
@@ -304,6 +303,7 @@ public class MainWindow extends JFrame {
         stopMenuItem.setEnabled(true);
         outputPanel.clear();
         editorPanel.clearHighlights();
+        stepLock = new StepLock();
         StepInstructionListener instructionListener = new StepInstructionListener(stepLock);
         worker = new InterpreterWorker(this, editorPanel, outputPanel, 
                 variableTablePanel, instructionListener);
@@ -311,13 +311,18 @@ public class MainWindow extends JFrame {
     }
     
     private void onStopDebugging() {
+        if (stepLock != null) {
+            stepLock.cancel();
+        }
         if (worker != null) {
             worker.cancel(true);
         }
     }
     
     private void onStep() {
-        stepLock.allowContinue();
+        if (stepLock != null) {
+            stepLock.allowContinue();
+        }
     }
 
     private boolean itIsOkToReplaceEditorBuffer() {
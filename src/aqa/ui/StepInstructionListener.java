@@ -10,7 +10,7 @@ import aqa.parser.VirtualMachine;
 /**
  * This class is used to step through the parser.  It intercepts the parser's
  * notification that a new instruction is being processed and blocks the worker
- * thread until released by a flag (triggered from UI menu).
+ * thread until released by the StepLock (triggered from UI menu).
  * @author martinhart
  */
 public class StepInstructionListener extends IgnoreInstructionListener {
@@ -24,13 +24,9 @@ public class StepInstructionListener extends IgnoreInstructionListener {
     
     @Override
     public void newInstruction(int lineNumber, VirtualMachine vm) throws InterpreterException {
-        boolean canContinue = false;
-        
         worker.publishLine(lineNumber);
         worker.publishVM(vm);
-        while (false == lock.canContinue()) {
-            // do nothing until we can continue!
-        }
+        lock.awaitStep();
     }
     
     public void executeWorker(InterpreterWorker worker) {
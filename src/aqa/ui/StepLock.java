@@ -4,56 +4,72 @@
 package aqa.ui;
 
 import aqa.InterpreterException;
-import java.util.concurrent.Semaphore;
 
 /**
  * This class is used to synchronise the Parser and the MainWindow when stepping
- * through instructions
+ * through instructions.  The worker thread blocks in awaitStep (using no CPU)
+ * until the user presses Step, which calls allowContinue, or stops debugging,
+ * which calls cancel.
+ *
+ * Pressing Step while the worker is busy lets it through its next wait;
+ * pressing it again before then has no further effect.
+ *
+ * A lock is used for one debugging session: once cancelled it stays
+ * cancelled.
  * @author martinhart
  */
 public class StepLock {
-    
+
+    /**
+     * Has Step been pressed since the worker last waited?
+     */
     private boolean released;
-    private final Semaphore semaphore;
-    
+
+    /**
+     * Has debugging been stopped?
+     */
+    private boolean cancelled;
+
     public StepLock() {
         released = false;
-        this.semaphore = new Semaphore(1, true);
+        cancelled = false;
     }
-    
+
     /**
-     * This function returns true if the parser is allowed to continue
-     * @return 
+     * Block until the parser is allowed to continue.
+     * @throws InterpreterException if the lock is cancelled or the waiting
+     * thread is interrupted
      */
-    public boolean canContinue() throws InterpreterException {
-        boolean result = false;
+    public synchronized void awaitStep() throws InterpreterException {
         try {
-            semaphore.acquire(1);
-            result = released;
-            released = false;
-        }
-        catch(InterruptedException e) {
+            while (!released && !cancelled) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            // let whoever interrupted us see it too.
+            Thread.currentThread().interrupt();
             throw new InterpreterException("process interrupted");
         }
-        finally {
-            semaphore.release(1);
+        if (cancelled) {
+            throw new InterpreterException("process cancelled");
         }
-        return result;
+        released = false;
     }
-    
+
     /**
-     * This function causes the parser to be allowed to continue. 
+     * This function causes the parser to be allowed to continue.
      */
-    public void allowContinue() {
-        try {
-            semaphore.acquire(1);
-            released = true;
-        }
-        catch(Exception e) {
-            e.printStackTrace();
-        }
-        finally {
-            semaphore.release(1);
-        }
+    public synchronized void allowContinue() {
+        released = true;
+        notifyAll();
+    }
+
+    /**
+     * Stop the parser: wake it if it is waiting, and make it fail the next
+     * time it would wait.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
     }
 }
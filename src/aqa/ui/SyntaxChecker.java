@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ui;
+
+import aqa.InterpreterException;
+import aqa.Program;
+import aqa.ast.AstBuilder;
+import aqa.tokenizer.IncrementalTokenizer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JLabel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * This class keeps the tokens of the code editor's text up to date as it is
+ * edited, tokenizing only the lines each edit touches (see
+ * IncrementalTokenizer), and checks the syntax in the background shortly
+ * after typing stops.  The result is shown in a label.
+ *
+ * Everything apart from the check itself and getProgram happens on the
+ * event dispatch thread.  Those two put the tokens together (which takes
+ * time in proportion to the length of the code) so they are called on
+ * worker threads.
+ *
+ * @author martinhart
+ */
+class SyntaxChecker implements DocumentListener {
+
+    /**
+     * How long (in milliseconds) to wait after an edit before checking.
+     */
+    private static final int DELAY = 400;
+
+    /**
+     * The tokens of the editor's text.
+     */
+    private final IncrementalTokenizer tokenizer;
+
+    /**
+     * Where to show the result of each check.
+     */
+    private final JLabel status;
+
+    /**
+     * Starts a check once editing pauses.
+     */
+    private final Timer timer;
+
+    /**
+     * The number of edits made, so that the result of a check that was
+     * overtaken by another edit isn't shown.
+     */
+    private int edits;
+
+    /**
+     * @param status where to show the result of each check
+     */
+    SyntaxChecker(JLabel status) {
+        this.tokenizer = new IncrementalTokenizer();
+        this.status = status;
+        this.timer = new Timer(DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                check();
+            }
+        });
+        timer.setRepeats(false);
+    }
+
+    /**
+     * The tokens can be put together on any thread while the editor is being
+     * changed (see IncrementalTokenizer.getTokens).
+     * @return the program in the editor, made from the tokens that have been
+     * kept up to date
+     */
+    Program getProgram() {
+        return Program.compile(tokenizer.getTokens());
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        changed(e);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        changed(e);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // only attributes have changed.
+    }
+
+    /**
+     * Tokenize the lines an edit touched and check again once editing
+     * pauses.
+     * @param e the edit
+     */
+    private void changed(DocumentEvent e) {
+        Document document = e.getDocument();
+        Element root = document.getDefaultRootElement();
+        DocumentEvent.ElementChange change = e.getChange(root);
+        try {
+            if (change == null) {
+                // the edit was within one line.
+                int line = root.getElementIndex(e.getOffset());
+                tokenizer.replaceLines(line, 1, text(document, root.getElement(line), root.getElement(line)));
+            } else {
+                Element[] added = change.getChildrenAdded();
+                tokenizer.replaceLines(change.getIndex(), change.getChildrenRemoved().length,
+                        text(document, added[0], added[added.length - 1]));
+            }
+        } catch (BadLocationException ex) {
+            // can't happen - the lines are in the document - but start again.
+            tokenizer.setText(all(document));
+        }
+        ++edits;
+        status.setText(" ");
+        timer.restart();
+    }
+
+    /**
+     * Check the syntax on a background thread.
+     */
+    private void check() {
+        final int checked = edits;
+        new SwingWorker<InterpreterException, Void>() {
+            @Override
+            protected InterpreterException doInBackground() {
+                try {
+                    new AstBuilder(tokenizer.getTokens()).build();
+                    return null;
+                } catch (InterpreterException e) {
+                    return e;
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (checked != edits) {
+                    return;
+                }
+                try {
+                    InterpreterException error = get();
+                    status.setText(error == null ? "syntax OK" : "error: " + error.getLocalizedMessage());
+                } catch (InterruptedException | ExecutionException e) {
+                    status.setText(" ");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @param document the document
+     * @param first the first of some lines
+     * @param last the last of the lines
+     * @return the text of the lines without the final newline
+     * @throws BadLocationException if the lines aren't in the document
+     */
+    private static String text(Document document, Element first, Element last) throws BadLocationException {
+        int start = first.getStartOffset();
+        // every line ends with a newline; the last line's isn't in the text.
+        int end = Math.min(last.getEndOffset() - 1, document.getLength());
+        return document.getText(start, end - start);
+    }
+
+    /**
+     * @param document the document
+     * @return all of its text
+     */
+    private static String all(Document document) {
+        try {
+            return document.getText(0, document.getLength());
+        } catch (BadLocationException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The elements held by an ArrayValue.
+ *
+ * Most AQA programs fill an array with values of a single type (a list of
+ * scores, a grid of booleans...) so, as well as the generic form that can hold
+ * anything, there are forms backed directly by int[], double[] and boolean[].
+ * These avoid holding a separate Value object for every element.  When a value
+ * of a different type is stored the ArrayValue asks for the generic form
+ * (widen) and carries on with that.
+ *
+ * Storage may be shared by several ArrayValues (see ArrayValue.makeCopy) in
+ * which case references counts them and none of them may modify it.
+ *
+ * @author martinhart
+ */
+abstract class ArrayStorage {
+
+    /**
+     * The number of elements in use.
+     */
+    protected int size;
+
+    /**
+     * The number of ArrayValues using this storage.
+     */
+    int references = 1;
+
+    /**
+     * Choose the storage best suited to an array whose first element is value.
+     * @param value the first element
+     * @return new, empty, storage
+     */
+    static ArrayStorage forElement(Value value) {
+        if (value instanceof IntegerValue) {
+            return new Integers();
+        } else if (value instanceof RealValue) {
+            return new Reals();
+        } else if (value instanceof BooleanValue) {
+            return new Booleans();
+        }
+        return new Generic();
+    }
+
+    /**
+     * @return the number of elements in use
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index 0 &lt;= index &lt; size()
+     * @return the element at index
+     */
+    abstract Value get(int index);
+
+    /**
+     * Replace an element, or append one when index == size().
+     * @param index 0 &lt;= index &lt;= size()
+     * @param value the new element
+     * @return false if value cannot be held by this storage (nothing changes)
+     */
+    abstract boolean set(int index, Value value);
+
+    /**
+     * @return storage with a copy of every element
+     * @throws InterpreterException if an element cannot be copied
+     */
+    abstract ArrayStorage copy() throws InterpreterException;
+
+    /**
+     * Storage can only be shared between copies when modifying one copy can
+     * never be seen through another, i.e. when it holds no arrays.
+     * @return true if copies may share this storage
+     */
+    boolean isShareable() {
+        return true;
+    }
+
+    /**
+     * @return generic storage holding the same elements
+     */
+    Generic widen() {
+        Generic g = new Generic();
+        for (int i = 0; i < size; i++) {
+            g.set(i, get(i));
+        }
+        return g;
+    }
+
+    /**
+     * @param capacity the current capacity
+     * @return the capacity to grow to when appending
+     */
+    static int grow(int capacity) {
+        return Math.max(8, capacity * 2);
+    }
+
+    /**
+     * Storage that can hold any Value.
+     */
+    static final class Generic extends ArrayStorage {
+
+        private final ArrayList<Value> values = new ArrayList<>();
+
+        /**
+         * Set once an array has been stored as an element.
+         */
+        private boolean holdsArrays;
+
+        @Override
+        Value get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        boolean set(int index, Value value) {
+            holdsArrays |= value instanceof ArrayValue;
+            if (index == size) {
+                values.add(value);
+                size++;
+            } else {
+                values.set(index, value);
+            }
+            return true;
+        }
+
+        @Override
+        ArrayStorage copy() throws InterpreterException {
+            Generic g = new Generic();
+            for (int i = 0; i < size; i++) {
+                g.set(i, values.get(i).makeCopy());
+            }
+            return g;
+        }
+
+        @Override
+        boolean isShareable() {
+            return !holdsArrays;
+        }
+
+        @Override
+        Generic widen() {
+            return this;
+        }
+    }
+
+    /**
+     * Storage for an array of integers.
+     */
+    static final class Integers extends ArrayStorage {
+
+        private int[] values = new int[0];
+
+        @Override
+        Value get(int index) {
+            checkIndex(index);
+            return IntegerValue.valueOf(values[index]);
+        }
+
+        @Override
+        boolean set(int index, Value value) {
+            if (!(value instanceof IntegerValue)) {
+                return false;
+            }
+            if (index == size) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, grow(size));
+                }
+                size++;
+            }
+            checkIndex(index);
+            values[index] = ((IntegerValue) value).value;
+            return true;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            Integers s = new Integers();
+            s.values = Arrays.copyOf(values, size);
+            s.size = size;
+            return s;
+        }
+    }
+
+    /**
+     * Storage for an array of reals.
+     */
+    static final class Reals extends ArrayStorage {
+
+        private double[] values = new double[0];
+
+        @Override
+        Value get(int index) {
+            checkIndex(index);
+            return new RealValue(values[index]);
+        }
+
+        @Override
+        boolean set(int index, Value value) {
+            if (!(value instanceof RealValue)) {
+                return false;
+            }
+            if (index == size) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, grow(size));
+                }
+                size++;
+            }
+            checkIndex(index);
+            values[index] = ((RealValue) value).value;
+            return true;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            Reals s = new Reals();
+            s.values = Arrays.copyOf(values, size);
+            s.size = size;
+            return s;
+        }
+    }
+
+    /**
+     * Storage for an array of booleans.
+     */
+    static final class Booleans extends ArrayStorage {
+
+        private boolean[] values = new boolean[0];
+
+        @Override
+        Value get(int index) {
+            checkIndex(index);
+            return BooleanValue.valueOf(values[index]);
+        }
+
+        @Override
+        boolean set(int index, Value value) {
+            if (!(value instanceof BooleanValue)) {
+                return false;
+            }
+            if (index == size) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, grow(size));
+                }
+                size++;
+            }
+            checkIndex(index);
+            values[index] = ((BooleanValue) value).value;
+            return true;
+        }
+
+        @Override
+        ArrayStorage copy() {
+            Booleans s = new Booleans();
+            s.values = Arrays.copyOf(values, size);
+            s.size = size;
+            return s;
+        }
+    }
+
+    /**
+     * The primitive arrays have spare capacity beyond size so check the index
+     * as ArrayList would.
+     * @param index the index to check
+     */
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -3,11 +3,28 @@
  */
 package aqa.value;
 
+import aqa.ExecutionMeter;
 import aqa.InterpreterException;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * This class represents an array.
+ *
+ * The elements are kept in an ArrayStorage chosen by the type of the first
+ * element stored; an array of integers, reals or booleans is held in a
+ * primitive Java array until some other type of value is stored in it.
+ *
+ * Arrays are passed to subroutines by value.  Rather than copying every
+ * element on each call, makeCopy shares the storage and the copy is made by
+ * whichever array is modified first (copy-on-write).  When the subroutine
+ * returns, the engine releases the copies it made for the arguments so that
+ * the caller's array can be changed in place again.
+ *
+ * New elements (including those made by growing or copying the array) are
+ * charged to the ExecutionMeter before they are allocated, so that a program
+ * cannot use up all of the memory (e.g. ary[1000000000] &lt;- 1).
  * 
  * @author martinhart
  */
@@ -16,11 +33,18 @@ public class ArrayValue extends ValueBase {
     /**
      * The values contained inside this array
      */
-    private final ArrayList<Value> values;
+    private ArrayStorage values;
     
     public ArrayValue() {
         super("array");
-        values = new ArrayList<>();
+        values = new ArrayStorage.Generic();
+    }
+    
+    /**
+     * @return the storage currently holding the elements (for testing)
+     */
+    ArrayStorage getStorage() {
+        return values;
     }
     
     /**
@@ -57,31 +81,140 @@ public class ArrayValue extends ValueBase {
 
     @Override
     public void setAtIndex(int index, Value value) throws InterpreterException {
-        while(index >= values.size()) {
-            values.add(NullValue.instance);
+        prepareToModify();
+        allocate(index + 1L);
+        if (index == 0 && values.size() == 0) {
+            values = ArrayStorage.forElement(value);
+        }
+        pad(index);
+        if (!values.set(index, value)) {
+            values = values.widen();
+            values.set(index, value);
         }
-        values.set(index, value);
     }
     
     @Override
     public Value getAtIndex(int index) throws InterpreterException {
-        while(index >= values.size()) {
-            values.add(NullValue.instance);
-        }
+        allocate(index + 1L);
+        pad(index + 1);
         return values.get(index);
     }
     
+    /**
+     * Charge for the elements needed to make the array a given length.
+     * @param length the new length
+     * @throws InterpreterException if there is not enough memory
+     */
+    private void allocate(long length) throws InterpreterException {
+        if (length > values.size()) {
+            ExecutionMeter.allocateArrayElements(length - values.size());
+        }
+    }
+
+    /**
+     * @return the elements (for MemoryUse)
+     */
+    ArrayStorage storage() {
+        return values;
+    }
+    
+    /**
+     * Fill the array with nulls up to (but not including) index.  Only the
+     * generic storage can hold nulls.
+     * @param index the new minimum length
+     * @throws InterpreterException if shared storage cannot be copied
+     */
+    private void pad(int index) throws InterpreterException {
+        if (index > values.size()) {
+            prepareToModify();
+            values = values.widen();
+            while (index > values.size()) {
+                values.set(values.size(), NullValue.instance);
+            }
+        }
+    }
+    
     @Override
     public IntegerValue length() throws InterpreterException {        
-        return new IntegerValue(values.size());
+        return IntegerValue.valueOf(values.size());
     }
  
     @Override
     public Value makeCopy() throws InterpreterException {
         ArrayValue av = new ArrayValue();
-        for (int i=0; i<values.size(); i++) {
-            av.setAtIndex(i, values.get(i).makeCopy());
+        if (values.isShareable()) {
+            values.references++;
+            av.values = values;
+        } else {
+            ExecutionMeter.allocateArrayElements(values.size());
+            av.values = values.copy();
         }
         return av;
     }
+    
+    /**
+     * Release the copies of the arguments made for a subroutine call, once the
+     * subroutine has returned.  Nothing in the subroutine can refer to them
+     * any more (a subroutine can only see its own variables) except through
+     * the value it returned.
+     * @param arguments the values made by makeCopy for the call
+     * @param result the value the subroutine returned (or null)
+     */
+    public static void releaseArguments(Value[] arguments, Value result) {
+        for (Value argument : arguments) {
+            if (argument instanceof ArrayValue) {
+                ((ArrayValue) argument).release(result);
+            }
+        }
+    }
+
+    /**
+     * Give up this array's share of its storage, unless it can still be
+     * reached through survivor.  The array is left empty.
+     * @param survivor the only value that may still refer to this array
+     */
+    private void release(Value survivor) {
+        if (values.references > 1
+                && !reachableFrom(survivor, Collections.newSetFromMap(new IdentityHashMap<>()))) {
+            values.references--;
+            values = new ArrayStorage.Generic();
+        }
+    }
+
+    /**
+     * @param value a value
+     * @param seen the arrays already looked in (an array may hold itself)
+     * @return true if value is this array, or an array holding it
+     */
+    private boolean reachableFrom(Value value, Set<ArrayValue> seen) {
+        if (value == this) {
+            return true;
+        }
+        if (!(value instanceof ArrayValue) || !seen.add((ArrayValue) value)) {
+            return false;
+        }
+        ArrayStorage storage = ((ArrayValue) value).values;
+        if (storage.isShareable()) {
+            // it holds no arrays.
+            return false;
+        }
+        for (int i = 0; i < storage.size(); i++) {
+            if (reachableFrom(storage.get(i), seen)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make sure the storage belongs to this array alone before it is changed.
+     * @throws InterpreterException if shared storage cannot be copied
+     */
+    private void prepareToModify() throws InterpreterException {
+        if (values.references > 1) {
+            ExecutionMeter.allocateArrayElements(values.size());
+            values.references--;
+            values = values.copy();
+        }
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+import java.util.Arrays;
+
+/**
+ * This class represents a stack of values to be used by a virtual machine,
+ * held in a plain array that grows as required.
+ *
+ * Unlike ValueStackImpl (which wraps java.util.Stack) there is no locking on
+ * each call - a stack belongs to a single VirtualMachine which is only ever
+ * used by one thread.
+ *
+ * @author martinhart
+ */
+public class ArrayValueStack extends ValueStack {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The values, bottom of the stack first.
+     */
+    private Value[] values;
+
+    /**
+     * The number of values on the stack.
+     */
+    private int size;
+
+    public ArrayValueStack() {
+        values = new Value[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    @Override
+    public void push(Value v) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = v;
+    }
+
+    @Override
+    public Value pop() throws InterpreterException {
+        if (size == 0) {
+            throw new InterpreterException("value stack is empty");
+        }
+        Value v = values[--size];
+        values[size] = null;
+        return v;
+    }
+
+    @Override
+    public Value peek() throws InterpreterException {
+        if (size == 0) {
+            throw new InterpreterException("value stack is empty");
+        }
+        return values[size - 1];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Value get(int i) {
+        return values[i];
+    }
+}
@@ -12,12 +12,30 @@ import aqa.InterpreterException;
 public class BooleanValue extends ValueBase {
     
     public final boolean value;
+
+    /**
+     * The shared TRUE value.
+     */
+    public static final BooleanValue TRUE = new BooleanValue(true);
+
+    /**
+     * The shared FALSE value.
+     */
+    public static final BooleanValue FALSE = new BooleanValue(false);
     
     public BooleanValue(boolean value) {
         super("boolean");
         this.value = value;
     }
 
+    /**
+     * @param value the boolean
+     * @return TRUE or FALSE
+     */
+    public static BooleanValue valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     @Override
     public String inspect() {
         if (value) {
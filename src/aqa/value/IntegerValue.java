@@ -19,6 +19,40 @@ public class IntegerValue extends ValueBase {
         this.value = val;
     }
 
+    /**
+     * Get an IntegerValue for val.  Values are immutable so commonly used
+     * integers are shared rather than allocated every time they are produced
+     * (e.g. loop counters and array indices).
+     *
+     * The shared range is -128..65535 by default and can be changed with the
+     * system properties aqa.integerCache.low and aqa.integerCache.high.
+     *
+     * @param val the integer
+     * @return the value representing val
+     */
+    public static IntegerValue valueOf(int val) {
+        if (val >= Cache.LOW && val <= Cache.HIGH) {
+            return Cache.VALUES[val - Cache.LOW];
+        }
+        return new IntegerValue(val);
+    }
+
+    /**
+     * The shared IntegerValues, created when first needed.
+     */
+    private static class Cache {
+
+        static final int LOW = Integer.getInteger("aqa.integerCache.low", -128);
+        static final int HIGH = Math.max(LOW - 1, Integer.getInteger("aqa.integerCache.high", 65535));
+        static final IntegerValue[] VALUES = new IntegerValue[HIGH - LOW + 1];
+
+        static {
+            for (int i = 0; i < VALUES.length; i++) {
+                VALUES[i] = new IntegerValue(LOW + i);
+            }
+        }
+    }
+
     @Override
     public String inspect() {
         return "" + value;
@@ -64,7 +98,7 @@ public class IntegerValue extends ValueBase {
     public Value add(Value other) throws InterpreterException {
         if (other instanceof IntegerValue) {
             IntegerValue o = (IntegerValue) other;
-            return new IntegerValue(this.value + o.value);
+            return valueOf(this.value + o.value);
         } else if (other instanceof RealValue) {
             RealValue r = (RealValue) other;
             return new RealValue(this.value + r.value);
@@ -76,7 +110,7 @@ public class IntegerValue extends ValueBase {
     public Value subtract(Value other) throws InterpreterException {
         if (other instanceof IntegerValue) {
             IntegerValue o = (IntegerValue) other;
-            return new IntegerValue(this.value - o.value);
+            return valueOf(this.value - o.value);
         } else if (other instanceof RealValue) {
             RealValue r = (RealValue) other;
             return new RealValue(this.value - r.value);
@@ -88,7 +122,7 @@ public class IntegerValue extends ValueBase {
     public Value multiply(Value other) throws InterpreterException {
         if (other instanceof IntegerValue) {
             IntegerValue o = (IntegerValue) other;
-            return new IntegerValue(this.value * o.value);
+            return valueOf(this.value * o.value);
         } else if (other instanceof RealValue) {
             RealValue o = (RealValue) other;
             return new RealValue(this.value * o.value);
@@ -112,7 +146,7 @@ public class IntegerValue extends ValueBase {
     public Value div(Value other) throws InterpreterException {
         if (other instanceof IntegerValue) {
             IntegerValue i = (IntegerValue) other;
-            return new IntegerValue(this.value / i.value);
+            return valueOf(this.value / i.value);
         }
         return super.div(other);
     }
@@ -121,7 +155,7 @@ public class IntegerValue extends ValueBase {
     public Value mod(Value other) throws InterpreterException {
         if (other instanceof IntegerValue) {
             IntegerValue i = (IntegerValue) other;
-            return new IntegerValue(this.value % i.value);
+            return valueOf(this.value % i.value);
         }
         return super.mod(other);
     }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Measures the memory held by some values: the number of array elements
+ * (including those of arrays held in arrays) and string characters.  Storage
+ * shared by several arrays (see ArrayValue.makeCopy) is only counted once.
+ *
+ * @author martinhart
+ */
+public final class MemoryUse {
+
+    /**
+     * The storage counted so far.
+     */
+    private final Set<ArrayStorage> seen = Collections.newSetFromMap(new IdentityHashMap<ArrayStorage, Boolean>());
+
+    /**
+     * Arrays whose elements have yet to be looked at (so that deeply nested
+     * arrays don't need a deep Java stack).
+     */
+    private final ArrayDeque<ArrayStorage> pending = new ArrayDeque<>();
+
+    private long arrayElements;
+    private long stringCharacters;
+
+    /**
+     * Count a value and everything it holds.
+     * @param value the value (may be null)
+     */
+    public void add(Value value) {
+        count(value);
+        while (!pending.isEmpty()) {
+            ArrayStorage storage = pending.pop();
+            if (storage instanceof ArrayStorage.Generic) {
+                for (int i = 0; i < storage.size(); i++) {
+                    count(storage.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Count every value on a stack and everything they hold.
+     * @param stack the stack
+     */
+    public void add(ValueStack stack) {
+        for (int i = 0; i < stack.size(); i++) {
+            add(stack.get(i));
+        }
+    }
+
+    /**
+     * @return the number of array elements counted
+     */
+    public long getArrayElements() {
+        return arrayElements;
+    }
+
+    /**
+     * @return the number of string characters counted
+     */
+    public long getStringCharacters() {
+        return stringCharacters;
+    }
+
+    private void count(Value value) {
+        if (value instanceof StringValue) {
+            stringCharacters += ((StringValue) value).value.length();
+        } else if (value instanceof ArrayValue) {
+            ArrayStorage storage = ((ArrayValue) value).storage();
+            if (seen.add(storage)) {
+                arrayElements += storage.size();
+                pending.push(storage);
+            }
+        }
+    }
+}
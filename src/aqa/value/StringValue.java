@@ -3,6 +3,7 @@
  */
 package aqa.value;
 
+import aqa.ExecutionMeter;
 import aqa.InterpreterException;
 
 /**
@@ -47,6 +48,7 @@ public class StringValue extends ValueBase {
     public Value add(Value other) throws InterpreterException {
         if (other instanceof StringValue) {
             StringValue o = (StringValue) other;
+            ExecutionMeter.allocateStringCharacters((long) value.length() + o.value.length());
             return new StringValue(this.value + o.value);
         }
         return super.add(other);
@@ -54,7 +56,7 @@ public class StringValue extends ValueBase {
 
     @Override
     public IntegerValue length() throws InterpreterException {
-        return new IntegerValue(value.length());
+        return IntegerValue.valueOf(value.length());
     }
 
     @Override
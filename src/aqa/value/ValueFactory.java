@@ -14,12 +14,12 @@ import aqa.tokenizer.Token;
 public class ValueFactory {
     
     /**
-     * Create a new IntegerValue
+     * Get an IntegerValue (common values are shared, see IntegerValue.valueOf)
      * @param param the underlying value
      * @return the Value representing param
      */
     public static Value createInteger(int param) {
-        return new IntegerValue(param);
+        return IntegerValue.valueOf(param);
     }
    
     /**
@@ -32,12 +32,12 @@ public class ValueFactory {
     }
     
     /**
-     * Create a new BooleanValue
+     * Get a BooleanValue (always BooleanValue.TRUE or FALSE)
      * @param param the underlying value
      * @return the Value representing param
      */
     public static Value createBoolean(boolean param) {
-        return new BooleanValue(param);
+        return BooleanValue.valueOf(param);
     }
    
     /**
@@ -45,6 +45,20 @@ public abstract class ValueStack {
      */
     public abstract Value peek() throws InterpreterException;
 
+    /**
+     * @return the number of values on the stack
+     */
+    public abstract int size();
+
+    /**
+     * Look at a value anywhere on the stack (used to measure the memory the
+     * stack holds).
+     *
+     * @param i the position of the value, 0 being the bottom of the stack
+     * @return the value
+     */
+    public abstract Value get(int i);
+
     /**
      * Push a boolean value onto the stack
      *
@@ -88,17 +102,7 @@ public abstract class ValueStack {
      * @throws InterpreterException if stack is empty or value is not boolean
      */
     public boolean popBoolean() throws InterpreterException {
-        Value v = pop();
-        try {
-            BooleanValue bv = (BooleanValue) v;
-            return bv.value;
-        } catch (ClassCastException e) {
-            try {
-                throw new InterpreterException("expecting " + v.inspect() + " to be boolean");
-            } catch (InterpreterException ex) {
-                throw new InterpreterException("unexpected request for a boolean");
-            }
-        }
+        return Values.toBoolean(pop());
     }
 
     /**
@@ -108,17 +112,7 @@ public abstract class ValueStack {
      * @throws InterpreterException if stack is empty or value is not integer
      */
     public int popInteger() throws InterpreterException {
-        Value v = pop();
-        try {
-            IntegerValue iv = (IntegerValue) v;
-            return iv.value;
-        } catch (ClassCastException e) {
-            try {
-                throw new InterpreterException("expecting " + v.inspect() + " to be integer");
-            } catch (InterpreterException ex) {
-                throw new InterpreterException("unexpected request for a integer");
-            }
-        }
+        return Values.toInteger(pop());
     }
 
     /**
@@ -128,17 +122,7 @@ public abstract class ValueStack {
      * @throws InterpreterException if stack is empty or value is not string
      */
     public String popString() throws InterpreterException {
-        Value v = pop();
-        try {
-            StringValue sv = (StringValue) v;
-            return sv.value;
-        } catch (ClassCastException e) {
-            try {
-                throw new InterpreterException("expecting " + v.inspect() + " to be string");
-            } catch (InterpreterException ex) {
-                throw new InterpreterException("unexpected request for a string");
-            }
-        }
+        return Values.toStr(pop());
     }
 
     /**
@@ -148,16 +132,6 @@ public abstract class ValueStack {
      * @throws InterpreterException if stack is empty or value is not double
      */
     public double popReal() throws InterpreterException {
-        Value v = pop();
-        try {
-            RealValue rv = (RealValue) v;
-            return rv.value;
-        } catch (ClassCastException e) {
-            try {
-                throw new InterpreterException("expecting " + v.inspect() + " to be real");
-            } catch (InterpreterException ex) {
-                throw new InterpreterException("unexpected request for a real");
-            }
-        }
+        return Values.toReal(pop());
     }
 }
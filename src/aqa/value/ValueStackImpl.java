@@ -10,6 +10,9 @@ import java.util.Stack;
 /**
  * This class represents a stack of values to be used by a virtual machine.
  *
+ * Every call is synchronized by java.util.Stack; VirtualMachine uses
+ * ArrayValueStack by default.
+ *
  * @author martinhart
  */
 public class ValueStackImpl extends ValueStack {
@@ -43,4 +46,14 @@ public class ValueStackImpl extends ValueStack {
             throw new InterpreterException(e.getLocalizedMessage());
         }
     }
+
+    @Override
+    public int size() {
+        return stack.size();
+    }
+
+    @Override
+    public Value get(int i) {
+        return stack.get(i);
+    }
 }
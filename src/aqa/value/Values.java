@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+
+/**
+ * Helper functions to unwrap the underlying Java value held by a Value,
+ * checking that it is of the type the caller expects.  For example:
+ *
+ *      IF a THEN
+ *
+ * requires a to be a BooleanValue.
+ *
+ * @author martinhart
+ */
+public final class Values {
+
+    private Values() {
+    }
+
+    /**
+     * @param v the value to unwrap
+     * @return the underlying boolean
+     * @throws InterpreterException if v is not a boolean
+     */
+    public static boolean toBoolean(Value v) throws InterpreterException {
+        if (v instanceof BooleanValue) {
+            return ((BooleanValue) v).value;
+        }
+        throw wrongType(v, "boolean");
+    }
+
+    /**
+     * @param v the value to unwrap
+     * @return the underlying integer
+     * @throws InterpreterException if v is not an integer
+     */
+    public static int toInteger(Value v) throws InterpreterException {
+        if (v instanceof IntegerValue) {
+            return ((IntegerValue) v).value;
+        }
+        throw wrongType(v, "integer");
+    }
+
+    /**
+     * @param v the value to unwrap
+     * @return the underlying string
+     * @throws InterpreterException if v is not a string
+     */
+    public static String toStr(Value v) throws InterpreterException {
+        if (v instanceof StringValue) {
+            return ((StringValue) v).value;
+        }
+        throw wrongType(v, "string");
+    }
+
+    /**
+     * @param v the value to unwrap
+     * @return the underlying double
+     * @throws InterpreterException if v is not a real
+     */
+    public static double toReal(Value v) throws InterpreterException {
+        if (v instanceof RealValue) {
+            return ((RealValue) v).value;
+        }
+        throw wrongType(v, "real");
+    }
+
+    /**
+     * Build the error reported when a value is not of the expected type.
+     * @param v the offending value
+     * @param type the name of the expected type
+     * @return the exception to throw
+     */
+    private static InterpreterException wrongType(Value v, String type) {
+        try {
+            return new InterpreterException("expecting " + v.inspect() + " to be " + type);
+        } catch (InterpreterException ex) {
+            return new InterpreterException("unexpected request for a " + type);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.variable;
+
+import aqa.InterpreterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A variable table for one execution context (the main program or a single
+ * subroutine call) whose variables were given slot numbers before execution
+ * (see aqa.tokenizer.SlotTable).  Variables are then read and written by
+ * slot, which is an array access rather than a hash lookup.
+ *
+ * Names that were not given a slot are still accepted and kept by name, and
+ * getNames() lists every variable that has been used, so clients such as the
+ * debugger's VariableTablePanel do not need to know about slots.
+ *
+ * @author martinhart
+ */
+public class FrameVariableTable extends VariableTable {
+
+    /**
+     * The name of the variable in each slot.
+     */
+    private final List<String> names;
+
+    /**
+     * The variables, by slot.  A slot is null until the variable is used.
+     */
+    private final Variable[] slots;
+
+    /**
+     * Variables without a slot.
+     */
+    private final HashMap<String, Variable> others;
+
+    /**
+     * Create an empty frame.
+     * @param names the name of the variable in each slot
+     */
+    public FrameVariableTable(List<String> names) {
+        this.names = names;
+        this.slots = new Variable[names.size()];
+        this.others = new HashMap<>();
+    }
+
+    /**
+     * Retrieve a variable by slot, creating it if it has not been used before.
+     * @param slot the slot
+     * @return the variable
+     */
+    public Variable get(int slot) {
+        Variable v = slots[slot];
+        if (v == null) {
+            v = new Variable(names.get(slot));
+            slots[slot] = v;
+        }
+        return v;
+    }
+
+    /**
+     * Look up the slot of a variable by name.  This searches the names, so
+     * the engines work out the slots they need (e.g. for parameters) before
+     * execution and use them instead.
+     * @param name the variable name
+     * @return the slot for name, or -1 if it does not have one
+     */
+    public int getSlot(String name) {
+        return names.indexOf(name);
+    }
+
+    @Override
+    public void set(Variable var) throws InterpreterException {
+        set(getSlot(var.getName()), var);
+    }
+
+    /**
+     * Add a new variable whose slot is already known.
+     * @param slot the slot for var, or -1 if it does not have one
+     * @param var the variable
+     * @throws InterpreterException if the variable already exists
+     */
+    public void set(int slot, Variable var) throws InterpreterException {
+        if (slot < 0) {
+            if (others.containsKey(var.getName())) {
+                throw new InterpreterException("variable '" + var.getName() + "' already exists");
+            }
+            others.put(var.getName(), var);
+        } else {
+            if (slots[slot] != null) {
+                throw new InterpreterException("variable '" + var.getName() + "' already exists");
+            }
+            slots[slot] = var;
+        }
+    }
+
+    @Override
+    public Variable get(String name) {
+        int slot = getSlot(name);
+        if (slot >= 0) {
+            return get(slot);
+        }
+        Variable v = others.get(name);
+        if (v == null) {
+            v = new Variable(name);
+            others.put(name, v);
+        }
+        return v;
+    }
+
+    @Override
+    public int size() {
+        return getNames().size();
+    }
+
+    @Override
+    public List<String> getNames() {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                result.add(names.get(i));
+            }
+        }
+        result.addAll(others.keySet());
+        return result;
+    }
+}
@@ -3,17 +3,23 @@
  */
 package aqa;
 
+import aqa.batch.Workload;
 import aqa.parser.InputProvider;
 import aqa.parser.OutputWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
 import org.junit.Before;
 import org.junit.Test;
 
 /**
- * Run through all of the files in the examples folder and ensure that
- * the system doesn't fail!
+ * Run through all of the files in the examples folder, and a small version
+ * of every Workload, and ensure that the system doesn't fail!
  * @author martinhart
  */
 public class AcceptanceTest {
@@ -23,6 +29,8 @@ public class AcceptanceTest {
     private InputProviderStub inputProvider;
     private String codeToParse;
 
+    private static final int WORKLOAD_SIZE = 30;
+
     @Before
     public void setUp() {
         outputObserver = new OutputObserverStub();
@@ -35,12 +43,30 @@ public class AcceptanceTest {
         File folder = new File("examples");
         File[] listOfFiles = folder.listFiles();
         for (File listOfFile : listOfFiles) {
-            testExample(listOfFile);
+            for (Engine engine : Engine.values()) {
+                testExample(listOfFile, engine);
+            }
         }
     }
     
-    private void testExample(File path) throws FileNotFoundException, InterpreterException {        
+    @Test
+    public void testWorkloads() throws InterpreterException {
+        for (Workload workload : Workload.values()) {
+            for (Engine engine : Engine.values()) {
+                final List<String> output = new ArrayList<>();
+                final Iterator<String> input = workload.input(WORKLOAD_SIZE).iterator();
+                subject = new Interpreter(new StringReader(workload.source(WORKLOAD_SIZE)),
+                        output::add, input::next);
+                subject.setEngine(engine);
+                subject.execute();
+                assertEquals(workload + " on " + engine, workload.expectedOutput(WORKLOAD_SIZE), output);
+            }
+        }
+    }
+
+    private void testExample(File path, Engine engine) throws FileNotFoundException, InterpreterException {        
         subject = new Interpreter(new FileReader(path), outputObserver, inputProvider);
+        subject.setEngine(engine);
         subject.execute();        
     }
 
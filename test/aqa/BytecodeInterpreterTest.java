@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+/**
+ * Run all of the interpreter tests using the bytecode engine.
+ * @author martinhart
+ */
+public class BytecodeInterpreterTest extends InterpreterTest {
+
+    @Override
+    protected Engine engine() {
+        return Engine.BYTECODE;
+    }
+}
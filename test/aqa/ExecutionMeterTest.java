@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.value.ArrayValue;
+import aqa.value.ArrayValueStack;
+import aqa.value.IntegerValue;
+import aqa.value.StringValue;
+import aqa.value.Value;
+import aqa.value.ValueStack;
+import aqa.variable.VariableTable;
+import aqa.variable.VariableTableImpl;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ExecutionMeterTest {
+
+    @Test
+    public void memoryIsNotChargedWithoutAnAttachedMeter() throws InterpreterException {
+        ExecutionMeter.allocateArrayElements(Long.MAX_VALUE);
+        ExecutionMeter.allocateStringCharacters(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void attachedMeterChargesForArrayElements() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 5, 0).start();
+        VariableTable variables = new VariableTableImpl();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(variables, new ArrayValueStack());
+        try {
+            ArrayValue ary = new ArrayValue();
+            hold(variables, "ary", ary);
+            ary.setAtIndex(0, IntegerValue.valueOf(1));
+            ary.setAtIndex(4, IntegerValue.valueOf(1));
+            ary.setAtIndex(2, IntegerValue.valueOf(1));
+            assertEquals(5, meter.getArrayElements());
+            ary.setAtIndex(5, IntegerValue.valueOf(1));
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals(ExecutionLimitException.Limit.MEMORY, e.getLimit());
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void attachedMeterChargesForStringCharacters() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 0, 5).start();
+        VariableTable variables = new VariableTableImpl();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(variables, new ArrayValueStack());
+        try {
+            Value s = new StringValue("abc").add(new StringValue("de"));
+            hold(variables, "s", s);
+            s.add(new StringValue("f"));
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals("string character limit of 5 exceeded", e.getMessage());
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void manySmallArraysTogetherExceedTheLimit() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 10, 0).start();
+        VariableTable variables = new VariableTableImpl();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(variables, new ArrayValueStack());
+        try {
+            for (int i = 0; i < 10; i++) {
+                ArrayValue ary = new ArrayValue();
+                hold(variables, "a" + i, ary);
+                ary.setAtIndex(1, IntegerValue.valueOf(i));
+            }
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals("array element limit of 10 exceeded", e.getMessage());
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void valuesOnTheStackAreCharged() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 0, 5).start();
+        ValueStack stack = new ArrayValueStack();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(new VariableTableImpl(), stack);
+        try {
+            stack.push(new StringValue("ab").add(new StringValue("c")));
+            meter.enterCall(new VariableTableImpl(), new ArrayValueStack());
+            new StringValue("ab").add(new StringValue("c"));
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals("string character limit of 5 exceeded", e.getMessage());
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void droppedValuesAreNotCharged() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 0, 200).start();
+        VariableTable variables = new VariableTableImpl();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(variables, new ArrayValueStack());
+        try {
+            Value s = new StringValue("");
+            for (int i = 0; i < 100; i++) {
+                s = s.add(new StringValue("x"));
+                hold(variables, "s", s);
+            }
+            assertEquals(IntegerValue.valueOf(100), s.length());
+            assertTrue(meter.getStringCharacters() <= 200);
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void sharedArraysAreChargedOnce() throws InterpreterException {
+        ArrayValue ary = new ArrayValue();
+        ary.setAtIndex(9, IntegerValue.valueOf(1));
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 30, 0).start();
+        VariableTable variables = new VariableTableImpl();
+        ExecutionMeter previous = meter.attach();
+        meter.setMain(variables, new ArrayValueStack());
+        try {
+            hold(variables, "ary", ary);
+            for (int i = 0; i < 100; i++) {
+                hold(variables, "copy", ary.makeCopy());
+                variables.get("copy").getValue().setAtIndex(0, IntegerValue.valueOf(2));
+            }
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void detachRestoresThePreviousMeter() throws InterpreterException {
+        ExecutionMeter outer = new ExecutionBudget(0, 0, 0, 2, 0).start();
+        ExecutionMeter inner = new ExecutionBudget(0, 0, 0, 1, 0).start();
+        ExecutionMeter none = outer.attach();
+        ExecutionMeter previous = inner.attach();
+        try {
+            ExecutionMeter.allocateArrayElements(2);
+            fail("expected the inner limit to apply");
+        } catch (ExecutionLimitException e) {
+            assertEquals("array element limit of 1 exceeded", e.getMessage());
+        }
+        ExecutionMeter.detach(previous);
+        ExecutionMeter.allocateArrayElements(2);
+        assertEquals(2, outer.getArrayElements());
+        ExecutionMeter.detach(none);
+        ExecutionMeter.allocateArrayElements(4);
+        assertNull(none);
+    }
+
+    @Test
+    public void exceedingTheArrayLimit() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(0, 0, 0, 10, 0).start();
+        ExecutionMeter previous = meter.attach();
+        try {
+            ExecutionMeter.allocateArrayElements(10);
+            ExecutionMeter.allocateArrayElements(11);
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals(ExecutionLimitException.Limit.MEMORY, e.getLimit());
+            assertEquals("array element limit of 10 exceeded", e.getMessage());
+        } finally {
+            ExecutionMeter.detach(previous);
+        }
+    }
+
+    @Test
+    public void instructionLimit() throws InterpreterException {
+        ExecutionMeter meter = new ExecutionBudget(3, 0, 0).start();
+        meter.instruction();
+        meter.instruction();
+        meter.instruction();
+        try {
+            meter.instruction();
+            fail("expected the limit to be exceeded");
+        } catch (ExecutionLimitException e) {
+            assertEquals(ExecutionLimitException.Limit.INSTRUCTIONS, e.getLimit());
+        }
+    }
+
+    private static void hold(VariableTable variables, String name, Value value) throws InterpreterException {
+        variables.get(name).setValue(value);
+    }
+}
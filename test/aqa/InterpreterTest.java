@@ -4,11 +4,14 @@
 package aqa;
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import aqa.parser.OutputWriter;
 import aqa.parser.InputProvider;
+import aqa.parser.NullInputProvider;
 
 /**
  *
@@ -21,6 +24,7 @@ public class InterpreterTest {
     private InputProviderStub inputProvider;
     private String codeToParse;
     private String inputData;
+    private ExecutionBudget budget;
 
     @Before
     public void setUp() {
@@ -28,6 +32,7 @@ public class InterpreterTest {
         inputProvider = new InputProviderStub();
         codeToParse = "";
         inputData = "";
+        budget = ExecutionBudget.UNLIMITED;
     }
 
     @Test
@@ -427,6 +432,52 @@ public class InterpreterTest {
         check("3");
     }
 
+    @Test
+    public void nestedIfElseInsideUntakenBranch() throws Exception {
+        push("IF FALSE THEN");
+        push("IF TRUE THEN");
+        push("OUTPUT 1");
+        push("ELSE");
+        push("OUTPUT 2");
+        push("ENDIF");
+        push("ELSE IF TRUE THEN");
+        push("OUTPUT 3");
+        push("ENDIF");
+        parse();
+        check("3");
+    }
+
+    @Test
+    public void nestedIfElseInsideTakenBranch() throws Exception {
+        push("IF TRUE THEN");
+        push("IF FALSE THEN");
+        push("OUTPUT 1");
+        push("ELSE");
+        push("OUTPUT 2");
+        push("ENDIF");
+        push("ELSE");
+        push("OUTPUT 3");
+        push("ENDIF");
+        parse();
+        check("2");
+    }
+
+    @Test
+    public void nestedLoopsInsideSkippedLoops() throws Exception {
+        push("WHILE FALSE");
+        push("WHILE TRUE");
+        push("ENDWHILE");
+        push("ENDWHILE");
+        push("FOR i <- 1 TO 0");
+        push("FOR j <- 0 TO 1");
+        push("OUTPUT j");
+        push("ENDFOR");
+        push("ENDFOR");
+        push("OUTPUT 'done'");
+        parse();
+        check("done");
+    }
+
     @Test
     public void whileLoop() throws Exception {
         push("a <- ''");
@@ -587,11 +638,418 @@ public class InterpreterTest {
         check("1");
     }
     
+    @Test
+    public void arraysPassedToSubroutinesAreCopiedWhenChanged() throws Exception {
+        push("SUBROUTINE change(a)");
+        push("  a[0][0] <- 9");
+        push("  a[1] <- 8");
+        push("  RETURN a");
+        push("ENDSUBROUTINE");
+        push("ary <- [[1, 2], 3]");
+        push("changed <- change(ary)");
+        push("ary[1] <- 4");
+        push("OUTPUT ary[0][0] + ary[1] + changed[0][0] + changed[1]");
+        parse();
+        check("22");
+    }
+
+    @Test
+    public void returnOutsideOfASubroutineFailsWhenReached() throws Exception {
+        push("i <- 0");
+        push("WHILE i < 5");
+        push("  i <- i + 1");
+        push("  OUTPUT i");
+        push("  IF i = 2 THEN");
+        push("    RETURN 0");
+        push("  ENDIF");
+        push("ENDWHILE");
+        push("OUTPUT 'after'");
+        try {
+            parse();
+            fail("expected RETURN to fail");
+        } catch (InterpreterException e) {
+            assertEquals(6, e.getLine());
+            assertTrue(e.getMessage().endsWith("RETURN outside of a subroutine"));
+        }
+        check("2");
+    }
+
+    @Test
+    public void returnOutsideOfASubroutineThatIsNotReachedIsAllowed() throws Exception {
+        push("IF FALSE THEN");
+        push("  RETURN");
+        push("ENDIF");
+        push("OUTPUT 'after'");
+        parse();
+        check("after");
+    }
+
+    @Test
+    public void nestedIfInsideUntakenBranch() throws Exception {
+        assertEquals("3", run("IF FALSE THEN\n"
+                + "IF TRUE THEN\n"
+                + "OUTPUT 1\n"
+                + "ENDIF\n"
+                + "OUTPUT 2\n"
+                + "ENDIF\n"
+                + "OUTPUT 3\n"));
+    }
+
+    @Test
+    public void chainedMultiplicativeOperatorsApplyLeftToRight() throws Exception {
+        assertEquals("24", run("OUTPUT 2 * 3 * 4\n"));
+        assertEquals("6", run("OUTPUT 100 DIV 7 MOD 4 * 3\n"));
+    }
+
+    @Test
+    public void subroutineCanCallOneDefinedAfterIt() throws Exception {
+        assertEquals("5", run("SUBROUTINE a()\n"
+                + "RETURN b()\n"
+                + "ENDSUBROUTINE\n"
+                + "SUBROUTINE b()\n"
+                + "RETURN 5\n"
+                + "ENDSUBROUTINE\n"
+                + "OUTPUT a()\n"));
+    }
+
+    @Test(expected = InterpreterException.class)
+    public void callingASubroutineDefinedAfterTheMainProgramFails() throws Exception {
+        run("OUTPUT f(1)\n"
+                + "SUBROUTINE f(x)\n"
+                + "RETURN x\n"
+                + "ENDSUBROUTINE\n");
+    }
+
+    @Test
+    public void earlyReturnFromInsideLoop() throws Exception {
+        assertEquals("5", run("SUBROUTINE find()\n"
+                + "FOR i <- 0 TO 10\n"
+                + "IF i = 5 THEN\n"
+                + "RETURN i\n"
+                + "ENDIF\n"
+                + "ENDFOR\n"
+                + "RETURN -1\n"
+                + "ENDSUBROUTINE\n"
+                + "OUTPUT find()\n"));
+    }
+
+    @Test
+    public void recursion() throws Exception {
+        assertEquals("120", run("SUBROUTINE fact(n)\n"
+                + "IF n <= 1 THEN\n"
+                + "RETURN 1\n"
+                + "ENDIF\n"
+                + "RETURN n * fact(n - 1)\n"
+                + "ENDSUBROUTINE\n"
+                + "OUTPUT fact(5)\n"));
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void returnOutsideSubroutine() throws Exception {
+        run("RETURN 1");
+    }
+
+    @Test
+    public void undefinedSubroutineOnlyFailsWhenCalled() throws Exception {
+        assertEquals("1", run("IF FALSE THEN\n"
+                + "missing(1)\n"
+                + "ENDIF\n"
+                + "OUTPUT 1\n"));
+    }
+
+    @Test
+    public void undefinedSubroutineReportsLine() throws Exception {
+        try {
+            run("a <- 1\nOUTPUT missing(a)\n");
+            fail("expected exception");
+        } catch (InterpreterException e) {
+            assertEquals(2, e.getLine());
+            assertTrue(e.getLocalizedMessage().endsWith("'missing' is not defined"));
+        }
+    }
+
+    @Test
+    public void nestedForLoopsLeaveCountersAtEndValue() throws Exception {
+        assertEquals("9345", run("t <- 0\n"
+                + "FOR i <- 1 TO 3\n"
+                + "FOR j <- i TO 4\n"
+                + "t <- t + 1\n"
+                + "ENDFOR\n"
+                + "ENDFOR\n"
+                + "FOR k <- 5 TO 1\n"
+                + "ENDFOR\n"
+                + "k <- k + 0\n"
+                + "OUTPUT t\nOUTPUT i\nOUTPUT j\nOUTPUT k\n"));
+    }
+
+    @Test
+    public void callerWritesAfterAReadOnlyCall() throws Exception {
+        push("SUBROUTINE peek(a)");
+        push("  RETURN a[0]");
+        push("ENDSUBROUTINE");
+        push("ary <- [0, 0, 0]");
+        push("total <- 0");
+        push("FOR i <- 1 TO 10");
+        push("  total <- total + peek(ary)");
+        push("  ary[0] <- i");
+        push("ENDFOR");
+        push("OUTPUT total + ary[0]");
+        parse();
+        check("55");
+    }
+
+    @Test
+    public void arrayReturnedFromSubroutineKeepsItsValues() throws Exception {
+        push("SUBROUTINE same(a)");
+        push("  RETURN a");
+        push("ENDSUBROUTINE");
+        push("SUBROUTINE wrap(a)");
+        push("  w <- [0]");
+        push("  w[0] <- a");
+        push("  RETURN w");
+        push("ENDSUBROUTINE");
+        push("ary <- [1, 2]");
+        push("s <- same(ary)");
+        push("w <- wrap(ary)");
+        push("ary[0] <- 5");
+        push("OUTPUT ary[0] * 100 + s[0] * 10 + w[0][0]");
+        parse();
+        check("511");
+    }
+
     @Test(expected=InterpreterException.class)
     public void lengthOnSomethingThatDoesNotHaveALength() throws Exception {
         parseAndCheck("LEN(23)", "NOTUSED");
     }
 
+    @Test
+    public void emptyWhileTrueLoopStopsAtInstructionLimit() throws Exception {
+        budget = new ExecutionBudget(1000, 0, 0);
+        push("OUTPUT 'start'");
+        push("WHILE TRUE");
+        push("ENDWHILE");
+        checkLimit(ExecutionLimitException.Limit.INSTRUCTIONS);
+        check("start");
+    }
+
+    @Test
+    public void emptyRepeatLoopStopsAtInstructionLimit() throws Exception {
+        budget = new ExecutionBudget(1000, 0, 0);
+        push("REPEAT");
+        push("UNTIL FALSE");
+        checkLimit(ExecutionLimitException.Limit.INSTRUCTIONS);
+    }
+
+    @Test
+    public void programWithinInstructionLimitRuns() throws Exception {
+        budget = new ExecutionBudget(100, 0, 0);
+        push("total <- 0");
+        push("FOR i <- 1 TO 10");
+        push("  total <- total + i");
+        push("ENDFOR");
+        push("OUTPUT total");
+        parse();
+        check("55");
+    }
+
+    @Test
+    public void infiniteLoopStopsAtTimeLimit() throws Exception {
+        budget = new ExecutionBudget(0, 50, 0);
+        push("a <- 0");
+        push("WHILE TRUE");
+        push("  a <- a + 1");
+        push("ENDWHILE");
+        checkLimit(ExecutionLimitException.Limit.WALL_TIME);
+    }
+
+    @Test
+    public void runawayRecursionStopsAtCallDepthLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 50);
+        push("SUBROUTINE f(n)");
+        push("  RETURN f(n + 1)");
+        push("ENDSUBROUTINE");
+        push("OUTPUT f(0)");
+        checkLimit(ExecutionLimitException.Limit.CALL_DEPTH);
+    }
+
+    @Test
+    public void recursionWithinCallDepthLimitRuns() throws Exception {
+        budget = new ExecutionBudget(0, 0, 50);
+        push("SUBROUTINE f(n)");
+        push("  IF n = 0 THEN");
+        push("    RETURN 0");
+        push("  ENDIF");
+        push("  RETURN f(n - 1) + 1");
+        push("ENDSUBROUTINE");
+        push("OUTPUT f(49) + f(49)");
+        parse();
+        check("98");
+    }
+
+    @Test
+    public void hugeArrayIndexStopsAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 1000000, 0);
+        push("ary <- []");
+        push("ary[1000000000] <- 1");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void growingArrayStopsAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 1000, 0);
+        push("ary <- []");
+        push("WHILE TRUE");
+        push("  ary[LEN(ary)] <- 1");
+        push("ENDWHILE");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void growingStringStopsAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 0, 10000);
+        push("s <- ''");
+        push("WHILE TRUE");
+        push("  s <- s + 'x'");
+        push("ENDWHILE");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void manySmallArraysStopAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 1000, 1000);
+        push("all <- []");
+        push("FOR i <- 0 TO 999");
+        push("  all[i] <- [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]");
+        push("ENDFOR");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void manyStringsStopAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 0, 1000);
+        push("all <- []");
+        push("FOR i <- 0 TO 999");
+        push("  all[i] <- 'abcde' + 'fghij'");
+        push("ENDFOR");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void arraysHeldByCallsInProgressStopAtMemoryLimit() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 1000, 0);
+        push("SUBROUTINE tree(n)");
+        push("  t <- [0]");
+        push("  IF n > 0 THEN");
+        push("    t <- [tree(n - 1), tree(n - 1)]");
+        push("  ENDIF");
+        push("  RETURN t");
+        push("ENDSUBROUTINE");
+        push("t <- tree(12)");
+        checkLimit(ExecutionLimitException.Limit.MEMORY);
+    }
+
+    @Test
+    public void buildingAStringACharacterAtATimeIsNotPenalised() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 0, 6000);
+        push("s <- ''");
+        push("FOR i <- 1 TO 3000");
+        push("  s <- s + 'x'");
+        push("ENDFOR");
+        push("OUTPUT LEN(s)");
+        parse();
+        check("3000");
+    }
+
+    @Test
+    public void rebuildingArraysIsNotPenalised() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 100, 0);
+        push("FOR i <- 1 TO 1000");
+        push("  ary <- []");
+        push("  FOR j <- 0 TO 99");
+        push("    ary[j] <- j");
+        push("  ENDFOR");
+        push("ENDFOR");
+        push("OUTPUT LEN(ary)");
+        parse();
+        check("100");
+    }
+
+    @Test
+    public void programWithinMemoryLimitRuns() throws Exception {
+        budget = new ExecutionBudget(0, 0, 0, 100, 100);
+        push("ary <- []");
+        push("s <- ''");
+        push("FOR i <- 0 TO 9");
+        push("  ary[i] <- i");
+        push("  s <- s + 'x'");
+        push("ENDFOR");
+        push("OUTPUT LEN(ary) + LEN(s)");
+        parse();
+        check("20");
+    }
+
+    @Test
+    public void interruptStopsTheProgram() throws Exception {
+        push("WHILE TRUE");
+        push("ENDWHILE");
+        Thread.currentThread().interrupt();
+        try {
+            checkLimit(ExecutionLimitException.Limit.INTERRUPTED);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void listenerIsNotifiedOfEachInstruction() throws Exception {
+        push("total <- 0");
+        push("FOR i <- 1 TO 10");
+        push("  total <- total + i");
+        push("ENDFOR");
+        push("OUTPUT total");
+        final List<Integer> lines = new ArrayList<>();
+        subject = new Interpreter(new StringReader(codeToParse), outputObserver, inputProvider,
+                (lineNumber, vm) -> lines.add(lineNumber));
+        subject.setEngine(engine());
+        subject.execute();
+        check("55");
+        assertEquals(1 + 1 + 10 + 1, lines.size());
+        assertEquals(Integer.valueOf(5), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void instructionLimitIsTheSameWithAListener() throws Exception {
+        budget = new ExecutionBudget(1000, 0, 0);
+        push("WHILE TRUE");
+        push("ENDWHILE");
+        final int[] notified = new int[1];
+        subject = new Interpreter(new StringReader(codeToParse), outputObserver, inputProvider,
+                (lineNumber, vm) -> notified[0]++);
+        subject.setEngine(engine());
+        subject.setBudget(budget);
+        try {
+            subject.execute();
+            fail("expected the program to be stopped");
+        } catch (ExecutionLimitException e) {
+            assertEquals(ExecutionLimitException.Limit.INSTRUCTIONS, e.getLimit());
+        }
+        assertTrue(notified[0] > 0);
+    }
+
+    /**
+     * Run the program expecting it to be stopped by the budget.
+     * @param limit the limit expected to stop it
+     */
+    private void checkLimit(ExecutionLimitException.Limit limit) throws Exception {
+        try {
+            parse();
+            fail("expected the program to be stopped");
+        } catch (ExecutionLimitException e) {
+            assertEquals(limit, e.getLimit());
+            assertTrue(e.getMessage().startsWith("line " + e.getLine() + ": "));
+        }
+    }
+
     private void push(String code) {
         codeToParse += code + "\n";
     }
@@ -609,9 +1067,38 @@ public class InterpreterTest {
 
     private void parse() throws Exception {
         subject = new Interpreter(new StringReader(codeToParse), outputObserver, inputProvider);
+        subject.setEngine(engine());
+        subject.setBudget(budget);
         subject.execute();
     }
 
+    /**
+     * Run a program on the engine being tested.
+     * @param code the program
+     * @return everything it output, run together
+     * @throws Exception if it fails
+     */
+    protected String run(String code) throws Exception {
+        final StringBuilder output = new StringBuilder();
+        Interpreter interpreter = new Interpreter(new StringReader(code), new OutputWriter() {
+            @Override
+            public void output(String message) {
+                output.append(message);
+            }
+        }, new NullInputProvider());
+        interpreter.setEngine(engine());
+        interpreter.execute();
+        return output.toString();
+    }
+
+    /**
+     * Override to run every test in this class against another engine.
+     * @return the engine to test
+     */
+    protected Engine engine() {
+        return Engine.PARSER;
+    }
+
     private void parse(String code) throws Exception {
         codeToParse = code;
         parse();
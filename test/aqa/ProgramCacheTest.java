@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.parser.NullInputProvider;
+import java.io.StringReader;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ProgramCacheTest {
+
+    @Test
+    public void sameSourceGivesSameProgram() throws InterpreterException {
+        ProgramCache cache = new ProgramCache(4);
+        Program first = cache.get("OUTPUT 1\n");
+        assertSame(first, cache.get("OUTPUT 1\n"));
+        assertNotSame(first, cache.get("OUTPUT 2\n"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws InterpreterException {
+        ProgramCache cache = new ProgramCache(2);
+        Program a = cache.get("a <- 1\n");
+        cache.get("b <- 1\n");
+        cache.get("a <- 1\n");
+        cache.get("c <- 1\n");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a <- 1\n"));
+        cache.get("b <- 1\n");
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void hashIsSha256() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                ProgramCache.hash(""));
+    }
+
+    @Test
+    public void interpretersShareACache() throws InterpreterException {
+        ProgramCache cache = new ProgramCache(4);
+        final StringBuilder output = new StringBuilder();
+        for (Engine engine : Engine.values()) {
+            Interpreter interpreter = new Interpreter(new StringReader("OUTPUT -1 + 3\n"),
+                    output::append, new NullInputProvider());
+            interpreter.setEngine(engine);
+            interpreter.setProgramCache(cache);
+            interpreter.execute();
+        }
+        assertEquals("222", output.toString());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void cacheMustHoldAProgram() {
+        new ProgramCache(0);
+    }
+}
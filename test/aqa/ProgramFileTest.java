@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.parser.NullInputProvider;
+import aqa.tokenizer.Token;
+import aqa.tokenizer.Tokens;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ProgramFileTest {
+
+    private static final String SOURCE = "SUBROUTINE twice(n)\n"
+            + "  RETURN n * 2\n"
+            + "ENDSUBROUTINE\n"
+            + "# a comment\n"
+            + "total <- 0\n"
+            + "FOR i <- 1 TO 10\n"
+            + "  total <- total + twice(i)\n"
+            + "ENDFOR\n"
+            + "OUTPUT 'total: ' + INT_TO_STRING(total - -1)\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String run(Program program, Engine engine) throws InterpreterException {
+        final StringBuilder output = new StringBuilder();
+        Interpreter interpreter = new Interpreter(program, output::append, new NullInputProvider());
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        return output.toString();
+    }
+
+    @Test
+    public void savedProgramHasTheSameTokens() throws Exception {
+        Program program = Program.compile(new StringReader(SOURCE));
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        ProgramFile.write(program, SOURCE, file);
+
+        Tokens expected = program.tokens();
+        Tokens actual = Program.load(file).tokens();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Token e = expected.getToken(i);
+            Token a = actual.getToken(i);
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getLineNumber(), a.getLineNumber());
+            assertEquals(e.getKind(), a.getKind());
+            assertSame(e.getSymbol(), a.getSymbol());
+        }
+    }
+
+    @Test
+    public void savedProgramRunsOnEveryEngine() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        ProgramFile.write(Program.compile(new StringReader(SOURCE)), SOURCE, file);
+        Program program = ProgramFile.read(file);
+        for (Engine engine : Engine.values()) {
+            assertEquals("total: 111", run(program, engine));
+        }
+    }
+
+    @Test
+    public void loadRebuildsWhenTheSourceChanges() throws Exception {
+        Path source = folder.newFile("program.aqa").toPath();
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        Files.write(source, "OUTPUT 1\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("1", run(ProgramFile.load(source, file), Engine.PARSER));
+        assertTrue(Files.exists(file));
+
+        Files.write(source, "OUTPUT 2\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("2", run(ProgramFile.load(source, file), Engine.PARSER));
+        assertEquals("2", run(ProgramFile.read(file), Engine.PARSER));
+    }
+
+    @Test
+    public void loadRebuildsAnOldVersion() throws Exception {
+        Path source = folder.newFile("program.aqa").toPath();
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        Files.write(source, "OUTPUT 3\n".getBytes(StandardCharsets.UTF_8));
+        ProgramFile.load(source, file);
+        setVersion(file, ProgramFile.FORMAT_VERSION + 1);
+
+        assertEquals("3", run(ProgramFile.load(source, file), Engine.PARSER));
+        assertEquals(ProgramFile.FORMAT_VERSION, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(4));
+    }
+
+    @Test
+    public void loadRebuildsADamagedFile() throws Exception {
+        Path source = folder.newFile("program.aqa").toPath();
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        Files.write(source, "OUTPUT 4\n".getBytes(StandardCharsets.UTF_8));
+        ProgramFile.load(source, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertEquals("4", run(ProgramFile.load(source, file), Engine.PARSER));
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void loadRebuildsAFileWithAnImpossibleCount() throws Exception {
+        Path source = folder.newFile("program.aqa").toPath();
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        Files.write(source, "OUTPUT 5\n".getBytes(StandardCharsets.UTF_8));
+        ProgramFile.load(source, file);
+        byte[] bytes = Files.readAllBytes(file);
+        // the string count follows the magic number, version and hash.
+        int strings = 8 + 1 + bytes[8];
+        byte[] damaged = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, damaged, 0, strings);
+        System.arraycopy(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07}, 0, damaged, strings, 5);
+        System.arraycopy(bytes, strings + 1, damaged, strings + 5, bytes.length - strings - 1);
+        Files.write(file, damaged);
+
+        assertEquals("5", run(ProgramFile.load(source, file), Engine.PARSER));
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void oldVersionIsRejected() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        ProgramFile.write(Program.compile(new StringReader(SOURCE)), SOURCE, file);
+        setVersion(file, ProgramFile.FORMAT_VERSION + 1);
+        ProgramFile.read(file);
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void otherFilesAreRejected() throws Exception {
+        Path file = folder.newFile("program.aqa").toPath();
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+        ProgramFile.read(file);
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void truncatedFileIsRejected() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("program.aqb");
+        ProgramFile.write(Program.compile(new StringReader(SOURCE)), SOURCE, file);
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] truncated = new byte[bytes.length - 5];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        Files.write(file, truncated);
+        ProgramFile.read(file);
+    }
+
+    private void setVersion(Path file, int version) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, version);
+        Files.write(file, bytes);
+    }
+}
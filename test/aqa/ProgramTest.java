@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+import aqa.parser.OutputWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ProgramTest {
+
+    private static final String SOURCE =
+            "SUBROUTINE total(ary)\n" +
+            "  sum <- -1 + 1\n" +
+            "  FOR i <- 0 TO LEN(ary) - 1\n" +
+            "    sum <- sum + ary[i]\n" +
+            "  ENDFOR\n" +
+            "  RETURN sum\n" +
+            "ENDSUBROUTINE\n" +
+            "n <- STRING_TO_INT(USERINPUT)\n" +
+            "ary <- []\n" +
+            "FOR i <- 0 TO n - 1\n" +
+            "  ary[i] <- i * -2\n" +
+            "ENDFOR\n" +
+            "OUTPUT total(ary)\n";
+
+    @Test
+    public void programCanBeRunMoreThanOnce() throws Exception {
+        Program program = Program.compile(new StringReader(SOURCE));
+        for (Engine engine : Engine.values()) {
+            assertEquals("-20", run(program, engine, "5"));
+            assertEquals("-20", run(program, engine, "5"));
+        }
+    }
+
+    @Test
+    public void programCanBeRunOnManyThreadsAtOnce() throws Exception {
+        final Program program = Program.compile(new StringReader(SOURCE));
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                final Engine engine = Engine.values()[i % Engine.values().length];
+                final String input = Integer.toString(i % 50);
+                results.add(threads.submit(() -> run(program, engine, input)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                int n = i % 50;
+                assertEquals(Integer.toString(-n * (n - 1)), results.get(i).get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedOnEveryRun() throws Exception {
+        Program program = Program.compile(new StringReader("OUTPUT 1\nENDIF\n"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                run(program, Engine.BYTECODE, "");
+                fail("expected a syntax error");
+            } catch (InterpreterException e) {
+                assertEquals(2, e.getLine());
+            }
+        }
+    }
+
+    private static String run(Program program, Engine engine, String input) throws InterpreterException {
+        final StringBuilder output = new StringBuilder();
+        Interpreter interpreter = new Interpreter(program, new OutputWriter() {
+            @Override
+            public void output(String message) {
+                output.append(message);
+            }
+        }, () -> input);
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        return output.toString();
+    }
+}
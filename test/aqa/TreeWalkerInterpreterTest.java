@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa;
+
+/**
+ * Run all of the interpreter tests using the syntax tree engine.
+ * @author martinhart
+ */
+public class TreeWalkerInterpreterTest extends InterpreterTest {
+
+    @Override
+    protected Engine engine() {
+        return Engine.TREE_WALKER;
+    }
+}
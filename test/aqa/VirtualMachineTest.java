@@ -183,6 +183,16 @@ public class VirtualMachineTest {
             peekCalled = true;
             return null;
         }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public Value get(int i) {
+            return null;
+        }
         
     }
     
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ast;
+
+import aqa.InterpreterException;
+import aqa.tokenizer.Tokenizer;
+import aqa.value.IntegerValue;
+import java.io.StringReader;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author martinhart
+ */
+public class AstBuilderTest {
+
+    private ProgramNode program;
+
+    @Test
+    public void emptyProgram() throws InterpreterException {
+        build("");
+        assertEquals(0, program.getMain().getStatements().size());
+        assertEquals(0, program.getSubroutines().size());
+    }
+
+    @Test
+    public void assignment() throws InterpreterException {
+        build("a <- 1");
+        AssignmentStatement s = (AssignmentStatement) statement(0);
+        assertEquals("a", s.getName());
+        assertEquals(false, s.isConstant());
+        assertEquals(0, s.getIndices().size());
+        assertEquals(1, ((IntegerValue) ((LiteralExpression) s.getValue()).getValue()).value);
+    }
+
+    @Test
+    public void constantArrayAssignment() throws InterpreterException {
+        build("constant a[1][2] <- 3");
+        AssignmentStatement s = (AssignmentStatement) statement(0);
+        assertEquals(true, s.isConstant());
+        assertEquals(2, s.getIndices().size());
+    }
+
+    @Test
+    public void negativeNumberLiteral() throws InterpreterException {
+        build("OUTPUT -12");
+        OutputStatement s = (OutputStatement) statement(0);
+        assertEquals(-12, ((IntegerValue) ((LiteralExpression) s.getValue()).getValue()).value);
+    }
+
+    @Test
+    public void operatorPrecedence() throws InterpreterException {
+        build("OUTPUT 1 + 2 * 3 < 4 AND TRUE");
+        BinaryExpression and = (BinaryExpression) ((OutputStatement) statement(0)).getValue();
+        assertEquals(BinaryOperator.AND, and.getOperator());
+        BinaryExpression less = (BinaryExpression) and.getLeft();
+        assertEquals(BinaryOperator.LESS, less.getOperator());
+        BinaryExpression add = (BinaryExpression) less.getLeft();
+        assertEquals(BinaryOperator.ADD, add.getOperator());
+        assertEquals(BinaryOperator.MULTIPLY, ((BinaryExpression) add.getRight()).getOperator());
+    }
+
+    @Test
+    public void comparisonOperators() throws InterpreterException {
+        build("OUTPUT a <= b\nOUTPUT a >= b\nOUTPUT a != b");
+        assertEquals(BinaryOperator.LESS_OR_EQUAL, ((BinaryExpression) ((OutputStatement) statement(0)).getValue()).getOperator());
+        assertEquals(BinaryOperator.GREATER_OR_EQUAL, ((BinaryExpression) ((OutputStatement) statement(1)).getValue()).getOperator());
+        assertEquals(BinaryOperator.NOT_EQUAL, ((BinaryExpression) ((OutputStatement) statement(2)).getValue()).getOperator());
+    }
+
+    @Test
+    public void ifElseIfElse() throws InterpreterException {
+        build("IF a THEN\nOUTPUT 1\nELSE IF b THEN\nOUTPUT 2\nELSE\nOUTPUT 3\nOUTPUT 4\nENDIF");
+        IfStatement s = (IfStatement) statement(0);
+        assertEquals(2, s.getConditions().size());
+        assertEquals(2, s.getBlocks().size());
+        assertEquals(2, s.getElseBlock().getStatements().size());
+    }
+
+    @Test
+    public void nestedBlocksOfTheSameKind() throws InterpreterException {
+        build("WHILE a\nWHILE b\nOUTPUT 1\nENDWHILE\nOUTPUT 2\nENDWHILE\nOUTPUT 3");
+        assertEquals(2, program.getMain().getStatements().size());
+        WhileStatement outer = (WhileStatement) statement(0);
+        assertEquals(2, outer.getBody().getStatements().size());
+        assertEquals(7, statement(1).getLine());
+    }
+
+    @Test
+    public void forLoop() throws InterpreterException {
+        build("FOR i <- 0 TO LEN(a) - 1\nOUTPUT i\nENDFOR");
+        ForStatement s = (ForStatement) statement(0);
+        assertEquals("i", s.getCounter());
+        assertEquals(BinaryOperator.SUBTRACT, ((BinaryExpression) s.getEnd()).getOperator());
+        assertEquals(1, s.getBody().getStatements().size());
+    }
+
+    @Test
+    public void subroutinesAreCollected() throws InterpreterException {
+        build("SUBROUTINE add(a, b)\nRETURN a + b\nENDSUBROUTINE\nOUTPUT add(1, 2)");
+        SubroutineNode s = program.getSubroutines().get("add");
+        assertEquals(2, s.getParameters().size());
+        assertEquals("b", s.getParameter(1));
+        assertEquals(1, s.getBody().getStatements().size());
+        CallExpression call = (CallExpression) ((OutputStatement) statement(0)).getValue();
+        assertEquals("add", call.getName());
+        assertEquals(2, call.getArguments().size());
+    }
+
+    @Test
+    public void variablesAreGivenSlots() throws InterpreterException {
+        build("a <- 1\nb <- a\nFOR a <- 1 TO 2\nENDFOR");
+        AssignmentStatement first = (AssignmentStatement) statement(0);
+        AssignmentStatement second = (AssignmentStatement) statement(1);
+        assertEquals(0, first.getSlot());
+        assertEquals(1, second.getSlot());
+        assertEquals(0, ((VariableExpression) second.getValue()).getSlot());
+        assertEquals(0, ((ForStatement) statement(2)).getCounterSlot());
+        assertEquals(Arrays.asList("a", "b"), program.getSlotNames());
+    }
+
+    @Test
+    public void subroutinesHaveTheirOwnSlotsWithParametersFirst() throws InterpreterException {
+        build("SUBROUTINE f(a, b)\nc <- b\nENDSUBROUTINE\nx <- 1\ny <- x");
+        SubroutineNode s = program.getSubroutines().get("f");
+        AssignmentStatement c = (AssignmentStatement) s.getBody().getStatements().get(0);
+        assertEquals(Arrays.asList("a", "b", "c"), s.getSlotNames());
+        assertEquals(1, s.getParameterSlot(1));
+        assertEquals(2, c.getSlot());
+        assertEquals(1, ((VariableExpression) c.getValue()).getSlot());
+        assertEquals(Arrays.asList("x", "y"), program.getSlotNames());
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void subroutineAfterTheMainProgram() throws InterpreterException {
+        build("x <- 1\nSUBROUTINE f()\nENDSUBROUTINE");
+    }
+
+    @Test
+    public void builtinCall() throws InterpreterException {
+        build("OUTPUT SUBSTRING(1, 2, 'hello')");
+        BuiltinExpression b = (BuiltinExpression) ((OutputStatement) statement(0)).getValue();
+        assertEquals(Builtin.SUBSTRING, b.getBuiltin());
+        assertEquals(3, b.getArguments().size());
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void duplicateSubroutine() throws InterpreterException {
+        build("SUBROUTINE a()\nENDSUBROUTINE\nSUBROUTINE a()\nENDSUBROUTINE");
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void missingEndIf() throws InterpreterException {
+        build("IF a THEN\nOUTPUT 1");
+    }
+
+    @Test
+    public void syntaxErrorsReportTheLine() {
+        try {
+            build("a <- 1\nb <- (2\nOUTPUT b");
+            fail("expected an exception");
+        } catch (InterpreterException e) {
+            assertEquals(3, e.getLine());
+        }
+    }
+
+    private void build(String source) throws InterpreterException {
+        program = new AstBuilder(new Tokenizer(new StringReader(source)).tokenize()).build();
+    }
+
+    private Statement statement(int index) {
+        return program.getMain().getStatements().get(index);
+    }
+}
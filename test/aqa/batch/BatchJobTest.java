@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author martinhart
+ */
+public class BatchJobTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void directoryJobsAreSortedAndPickUpFixtures() throws IOException {
+        write("b.aqa", "OUTPUT 2\n");
+        write("a.aqa", "OUTPUT USERINPUT\n");
+        write("a.in", "hello\nworld\n");
+        write("notes.txt", "ignored");
+        List<BatchJob> jobs = BatchJob.load(folder.getRoot().toPath());
+        assertEquals(2, jobs.size());
+        assertTrue(jobs.get(0).getName().endsWith("a.aqa"));
+        assertEquals(Arrays.asList("hello", "world"), jobs.get(0).getInput());
+        assertEquals("OUTPUT 2\n", jobs.get(1).getSource());
+        assertTrue(jobs.get(1).getInput().isEmpty());
+    }
+
+    @Test
+    public void manifestJobsAreInManifestOrder() throws IOException {
+        write("one.aqa", "OUTPUT 1\n");
+        write("two.aqa", "OUTPUT USERINPUT\n");
+        write("two.txt", "2\n");
+        File manifest = write("jobs.txt", "# programs to grade\ntwo.aqa two.txt\n\none.aqa\n");
+        List<BatchJob> jobs = BatchJob.load(manifest.toPath());
+        assertEquals(2, jobs.size());
+        assertTrue(jobs.get(0).getName().endsWith("two.aqa"));
+        assertEquals(Arrays.asList("2"), jobs.get(0).getInput());
+        assertTrue(jobs.get(1).getName().endsWith("one.aqa"));
+    }
+
+    @Test(expected=IOException.class)
+    public void invalidManifestLine() throws IOException {
+        BatchJob.load(write("jobs.txt", "one.aqa in.txt extra\n").toPath());
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File f = folder.newFile(name);
+        Files.write(f.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class BatchReportTest {
+
+    @Test
+    public void quoteEscapesJsonSpecialCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", BatchReport.quote("a\"b\\c\nd\u0001"));
+    }
+
+    @Test
+    public void countsFailuresAndThroughput() {
+        BatchReport report = new BatchReport(Arrays.asList(
+                new BatchResult("a", Collections.<String>emptyList(), null, 10),
+                new BatchResult("b", Collections.<String>emptyList(), "oops", 10)),
+                1000000000L);
+        assertEquals(1, report.getFailures());
+        assertEquals(2.0, report.getProgramsPerSecond(), 0.001);
+    }
+
+    @Test
+    public void writeJson() throws IOException {
+        StringWriter out = new StringWriter();
+        new BatchReport(Arrays.asList(
+                new BatchResult("a.aqa", Arrays.asList("1", "2"), null, 1500000),
+                new BatchResult("b.aqa", Collections.<String>emptyList(), "line 1: oops", 500000),
+                new BatchResult("c.aqa", Collections.<String>emptyList(), "line 2: limit", true, 500000)),
+                2000000).writeJson(out);
+        assertEquals("{\n"
+                + "  \"programs\": 3,\n"
+                + "  \"failures\": 2,\n"
+                + "  \"elapsedMillis\": 2.000,\n"
+                + "  \"programsPerSecond\": 1500.0,\n"
+                + "  \"results\": [\n"
+                + "    {\"name\": \"a.aqa\", \"status\": \"ok\", \"output\": [\"1\", \"2\"], \"error\": null, \"millis\": 1.500},\n"
+                + "    {\"name\": \"b.aqa\", \"status\": \"error\", \"output\": [], \"error\": \"line 1: oops\", \"millis\": 0.500},\n"
+                + "    {\"name\": \"c.aqa\", \"status\": \"limit\", \"output\": [], \"error\": \"line 2: limit\", \"millis\": 0.500}\n"
+                + "  ]\n"
+                + "}\n", out.toString());
+    }
+}
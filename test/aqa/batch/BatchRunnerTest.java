@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import aqa.ExecutionBudget;
+import aqa.InterpreterException;
+import aqa.Program;
+import aqa.ProgramCache;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author martinhart
+ */
+public class BatchRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void capturesOutput() {
+        BatchResult result = new BatchRunner(Engine.PARSER, 1, false).run(
+                job("a", "OUTPUT 1\nOUTPUT 'two'\n"));
+        assertTrue(result.succeeded());
+        assertEquals(Arrays.asList("1", "two"), result.getOutput());
+    }
+
+    @Test
+    public void userInputComesFromTheFixture() {
+        BatchResult result = new BatchRunner(Engine.BYTECODE, 1, false).run(
+                new BatchJob("a", "OUTPUT USERINPUT + USERINPUT + USERINPUT\n", Arrays.asList("x", "y")));
+        assertEquals(Arrays.asList("xy"), result.getOutput());
+    }
+
+    @Test
+    public void failuresAreReportedInTheResult() {
+        BatchResult result = new BatchRunner(Engine.TREE_WALKER, 1, false).run(
+                job("bad", "OUTPUT 1\nOUTPUT 1 + 'a'\n"));
+        assertFalse(result.succeeded());
+        assertEquals(Arrays.asList("1"), result.getOutput());
+        assertTrue(result.getError().startsWith("line 2:"));
+    }
+
+    @Test
+    public void unboundedRecursionIsReportedInTheResult() {
+        BatchResult result = new BatchRunner(Engine.BYTECODE, 1, false).run(
+                job("deep", "SUBROUTINE f()\nf()\nENDSUBROUTINE\nf()\n"));
+        assertFalse(result.succeeded());
+    }
+
+    @Test
+    public void errorsAreReportedInTheResult() throws InterruptedException {
+        BatchRunner runner = new BatchRunner(Engine.TREE_WALKER, 2, false);
+        runner.setProgramCache(new ProgramCache(10) {
+            @Override
+            public Program get(String source) throws InterpreterException {
+                if (source.contains("boom")) {
+                    throw new OutOfMemoryError("boom");
+                }
+                return super.get(source);
+            }
+        });
+        List<BatchResult> results = runner.run(Arrays.asList(
+                job("a", "OUTPUT 1\n"), job("b", "OUTPUT 'boom'\n"), job("c", "OUTPUT 3\n")));
+        assertEquals(Arrays.asList("1"), results.get(0).getOutput());
+        assertFalse(results.get(1).succeeded());
+        assertTrue(results.get(1).getError().contains("OutOfMemoryError"));
+        assertEquals(Arrays.asList("3"), results.get(2).getOutput());
+    }
+
+    @Test
+    public void aJobThatFailsOutsideTheProgramOnlyLosesItsOwnResult() throws InterruptedException {
+        BatchRunner runner = new BatchRunner(Engine.PARSER, 2, false) {
+            @Override
+            public BatchResult run(BatchJob job) {
+                if (job.getName().equals("b")) {
+                    throw new IllegalStateException("broken");
+                }
+                return super.run(job);
+            }
+        };
+        List<BatchResult> results = runner.run(Arrays.asList(
+                job("a", "OUTPUT 1\n"), job("b", "OUTPUT 2\n"), job("c", "OUTPUT 3\n")));
+        assertEquals(3, results.size());
+        assertEquals("b", results.get(1).getName());
+        assertFalse(results.get(1).succeeded());
+        assertTrue(results.get(1).getError().contains("broken"));
+        assertEquals(Arrays.asList("3"), results.get(2).getOutput());
+    }
+
+    @Test
+    public void resultsAreInJobOrder() throws InterruptedException {
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            jobs.add(job("job" + i, "total <- 0\nFOR i <- 1 TO " + (50 - i) * 100 + "\ntotal <- total + 1\nENDFOR\nOUTPUT " + i + "\n"));
+        }
+        List<BatchResult> results = new BatchRunner(Engine.BYTECODE, 4, false).run(jobs);
+        assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("job" + i, results.get(i).getName());
+            assertEquals(Arrays.asList(Integer.toString(i)), results.get(i).getOutput());
+        }
+    }
+
+    @Test
+    public void virtualThreadsWhenAvailable() throws InterruptedException {
+        if (!BatchRunner.virtualThreadsAvailable()) {
+            return;
+        }
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            jobs.add(job("job" + i, "OUTPUT " + i + "\n"));
+        }
+        List<BatchResult> results = new BatchRunner(Engine.PARSER, 2, true).run(jobs);
+        assertEquals(20, results.size());
+        assertEquals(Arrays.asList("17"), results.get(17).getOutput());
+    }
+
+    @Test
+    public void budgetStopsRunawayPrograms() {
+        BatchResult result = new BatchRunner(Engine.PARSER, 1, false, new ExecutionBudget(0, 20, 0)).run(
+                job("forever", "WHILE TRUE\nENDWHILE\n"));
+        assertFalse(result.succeeded());
+        assertTrue(result.limitExceeded());
+    }
+
+    @Test
+    public void repeatedSourceIsCompiledOnce() throws InterruptedException {
+        BatchRunner runner = new BatchRunner(Engine.BYTECODE, 2, false);
+        runner.setProgramCache(new ProgramCache(8));
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobs.add(new BatchJob("job" + i, "OUTPUT USERINPUT\n", Arrays.asList(Integer.toString(i))));
+        }
+        List<BatchResult> results = runner.run(jobs);
+        assertEquals(Arrays.asList("7"), results.get(7).getOutput());
+        assertEquals(10, runner.getProgramCache().getHits() + runner.getProgramCache().getMisses());
+        assertEquals(1, runner.getProgramCache().size());
+    }
+
+    @Test
+    public void writesProfiles() throws IOException {
+        Path profiles = folder.newFolder().toPath();
+        BatchRunner runner = new BatchRunner(Engine.BYTECODE, 1, false);
+        runner.setProfileDirectory(profiles);
+        BatchResult result = runner.run(job("loop", "total <- 0\nFOR i <- 1 TO 100\ntotal <- total + i\nENDFOR\nOUTPUT total\n"));
+        assertEquals(Arrays.asList("5050"), result.getOutput());
+        List<String> report = Files.readAllLines(profiles.resolve("loop.profile.txt"), StandardCharsets.UTF_8);
+        assertTrue(report.stream().anyMatch(line -> line.matches(" *3 +100 .*")));
+        List<String> stacks = Files.readAllLines(profiles.resolve("loop.collapsed"), StandardCharsets.UTF_8);
+        assertTrue(stacks.stream().anyMatch(line -> line.startsWith("main:3 ")));
+    }
+
+    @Test
+    public void profilesAreNamedAfterTheProgramFile() throws IOException {
+        Path profiles = folder.newFolder().toPath();
+        Path elsewhere = folder.newFolder().toPath();
+        BatchRunner runner = new BatchRunner(Engine.PARSER, 1, false);
+        runner.setProfileDirectory(profiles);
+        runner.run(job("progs/a.aqa", "OUTPUT 1\n"));
+        runner.run(job(elsewhere.resolve("a.aqa").toAbsolutePath().toString(), "OUTPUT 2\n"));
+        assertTrue(Files.exists(profiles.resolve("a.aqa.profile.txt")));
+        assertTrue(Files.exists(profiles.resolve("a.aqa-2.collapsed")));
+        assertEquals(0, elsewhere.toFile().list().length);
+        assertTrue(runner.getProfileErrors().isEmpty());
+    }
+
+    @Test
+    public void aProfileThatCannotBeWrittenDoesNotFailTheProgram() throws IOException {
+        BatchRunner runner = new BatchRunner(Engine.PARSER, 1, false);
+        runner.setProfileDirectory(folder.getRoot().toPath().resolve("missing"));
+        BatchResult result = runner.run(job("a", "OUTPUT 1\n"));
+        assertTrue(result.succeeded());
+        assertEquals(Arrays.asList("1"), result.getOutput());
+        assertEquals(1, runner.getProfileErrors().size());
+        assertTrue(runner.getProfileErrors().get(0).startsWith("a: unable to write the profile"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void needsAtLeastOneThread() {
+        new BatchRunner(Engine.PARSER, 0, false);
+    }
+
+    private static BatchJob job(String name, String source) {
+        return new BatchJob(name, source, Collections.<String>emptyList());
+    }
+}
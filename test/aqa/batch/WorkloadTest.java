@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.batch;
+
+import aqa.Engine;
+import java.io.IOException;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author martinhart
+ */
+public class WorkloadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void workloadsAreTheSameEveryTime() {
+        for (Workload workload : Workload.values()) {
+            assertEquals(workload.source(20), workload.source(20));
+            assertEquals(workload.input(20), workload.input(20));
+        }
+        assertEquals(20, Workload.SORT.input(20).size());
+    }
+
+    @Test
+    public void writtenWorkloadsRunAsABatch() throws IOException, InterruptedException {
+        Workload.writeAll(folder.getRoot().toPath(), 1, 7);
+        List<BatchJob> jobs = BatchJob.load(folder.getRoot().toPath());
+        assertEquals(Workload.values().length * 2, jobs.size());
+
+        List<BatchResult> results = new BatchRunner(Engine.BYTECODE, 2, false).run(jobs);
+        for (BatchResult result : results) {
+            String name = result.getName().replaceAll(".*[/\\\\]", "").replace(".aqa", "");
+            String[] parts = name.split("-");
+            Workload workload = Workload.valueOf(parts[0].toUpperCase());
+            assertTrue(result.getError(), result.succeeded());
+            assertEquals(name, workload.expectedOutput(Integer.parseInt(parts[1])), result.getOutput());
+        }
+    }
+}
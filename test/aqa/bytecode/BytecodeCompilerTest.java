@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.bytecode;
+
+import aqa.ast.AstBuilder;
+import aqa.tokenizer.Tokenizer;
+import java.io.StringReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author martinhart
+ */
+public class BytecodeCompilerTest {
+
+    private BytecodeProgram compile(String code) throws Exception {
+        return new BytecodeCompiler().compile(
+                new AstBuilder(new Tokenizer(new StringReader(code)).tokenize()).build());
+    }
+
+    @Test
+    public void expressionUsesValueStack() throws Exception {
+        assertEquals("0: LINE 1\n"
+                + "2: CONST 0\n"
+                + "4: CONST 1\n"
+                + "6: CONST 2\n"
+                + "8: MULTIPLY\n"
+                + "9: ADD\n"
+                + "10: OUTPUT\n"
+                + "11: RETURN_NONE\n",
+                compile("OUTPUT 1 + 2 * 3").getMain().disassemble());
+    }
+
+    @Test
+    public void whileJumpsBackToCondition() throws Exception {
+        assertEquals("0: LINE 1\n"
+                + "2: LOAD 0\n"
+                + "4: CONST 0\n"
+                + "6: LESS\n"
+                + "7: JUMP_IF_FALSE 20\n"
+                + "9: LINE 2\n"
+                + "11: LOAD 0\n"
+                + "13: CONST 1\n"
+                + "15: ADD\n"
+                + "16: STORE 0\n"
+                + "18: JUMP 2\n"
+                + "20: RETURN_NONE\n",
+                compile("WHILE a < 10\na <- a + 1\nENDWHILE").getMain().disassemble());
+    }
+
+    @Test
+    public void subroutinesAreCompiledSeparately() throws Exception {
+        BytecodeProgram program = compile("SUBROUTINE add(a, b)\n"
+                + "RETURN a + b\n"
+                + "ENDSUBROUTINE\n"
+                + "OUTPUT add(1, 2)\n");
+        assertEquals(1, program.getSubroutines().size());
+        Code add = program.getSubroutines().get(0);
+        assertEquals("add", add.getName());
+        assertEquals(2, add.getNumberOfParameters());
+        assertEquals("b", add.getParameter(1));
+        assertTrue(program.getMain().disassemble().contains("CALL 0 2"));
+    }
+
+    @Test
+    public void callToUnknownSubroutineCompiles() throws Exception {
+        assertTrue(compile("missing()").getMain().disassemble().contains("UNDEFINED 0"));
+    }
+
+    @Test
+    public void listeningCodeOnlyChangesTheLines() throws Exception {
+        Code main = compile("a <- 1\nOUTPUT a\n").getMain();
+        int[] code = main.instructions();
+        int[] listening = main.listeningInstructions();
+        int lines = 0;
+        assertEquals(code.length, listening.length);
+        for (int pc = 0; pc < code.length; pc += 1 + Opcodes.OPERANDS[code[pc]]) {
+            if (code[pc] == Opcodes.LINE) {
+                assertEquals(Opcodes.LINE_LISTENING, listening[pc]);
+                ++lines;
+            } else {
+                assertEquals(code[pc], listening[pc]);
+            }
+            for (int i = 1; i <= Opcodes.OPERANDS[code[pc]]; i++) {
+                assertEquals(code[pc + i], listening[pc + i]);
+            }
+        }
+        assertEquals(2, lines);
+    }
+}
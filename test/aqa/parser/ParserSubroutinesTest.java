@@ -154,6 +154,28 @@ public class ParserSubroutinesTest {
         assertEquals("12", outputWriter.output);
     }
 
+    @Test
+    public void testReturnFromInsideNestedLoops() throws InterpreterException {
+        String source = "SUBROUTINE find(target)\n" +
+                "i <- 0\n" +
+                "WHILE TRUE\n" +
+                "  FOR j <- 1 TO 3\n" +
+                "    REPEAT\n" +
+                "      IF i = target THEN\n" +
+                "        RETURN i\n" +
+                "      ENDIF\n" +
+                "      i <- i + 1\n" +
+                "    UNTIL TRUE\n" +
+                "  ENDFOR\n" +
+                "ENDWHILE\n" +
+                "OUTPUT 'not reached'\n" +
+                "ENDSUBROUTINE\n" +
+                "OUTPUT find(7) + find(2)\n";
+        tokenize(source);
+        subject.parse();
+        assertEquals("9", outputWriter.output);
+    }
+
     private void addTokens(String... tokens) throws InterpreterException {
         for (int i = 0; i < tokens.length; i++) {
             subject.addToken(new Token(tokens[i], i + 1));
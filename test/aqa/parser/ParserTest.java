@@ -5,7 +5,13 @@ package aqa.parser;
 
 import aqa.InterpreterException;
 import aqa.tokenizer.Token;
+import aqa.tokenizer.TokenStream;
+import aqa.tokenizer.Tokenizer;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Vector;
 import org.junit.Before;
@@ -34,6 +40,50 @@ public class ParserTest {
         assertEquals(new Integer(100), instructionListener.lines.get(1));
     }
 
+    @Test
+    public void testStreamedProgramRunsBeforeItIsAllRead() {
+        final List<String> output = new ArrayList<>();
+        Reader reader = new StringReader("OUTPUT 'first'\nOUTPUT 'second'\n") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, Math.min(len, 15));
+                if (n == -1) {
+                    throw new IOException("disconnected");
+                }
+                return n;
+            }
+        };
+        subject = new Parser(output::add, new NullInputProvider());
+        try {
+            subject.parse(new TokenStream(new Tokenizer(reader)));
+            fail("the failure to read should be reported");
+        } catch (InterpreterException e) {
+            assertEquals("line 3: disconnected", e.getMessage());
+        }
+        assertEquals("first", output.get(0));
+        assertEquals("second", output.get(1));
+    }
+
+    @Test
+    public void testStreamedLoopsAndSubroutines() throws InterpreterException {
+        final List<String> output = new ArrayList<>();
+        subject = new Parser(output::add, new NullInputProvider());
+        subject.parse(new TokenStream(new Tokenizer(new StringReader(
+                "SUBROUTINE add(a, b)\n"
+                + "  RETURN a + b\n"
+                + "ENDSUBROUTINE\n"
+                + "total <- 0\n"
+                + "FOR i <- 1 TO 3\n"
+                + "  j <- 0\n"
+                + "  WHILE j < i\n"
+                + "    IF j = 1 THEN total <- add(total, 10) ELSE total <- add(total, 1) ENDIF\n"
+                + "    j <- j + 1\n"
+                + "  ENDWHILE\n"
+                + "ENDFOR\n"
+                + "IF total > 100 THEN OUTPUT 'big' ELSE OUTPUT total ENDIF\n"))));
+        assertEquals(Arrays.asList("24"), output);
+    }
+
     class InstructionListenerStub implements InstructionListener {
         
         public final List<Integer> lines = new ArrayList<>();
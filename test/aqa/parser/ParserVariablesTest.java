@@ -8,6 +8,7 @@ import aqa.tokenizer.Token;
 import aqa.value.ArrayValue;
 import aqa.value.StringValue;
 import aqa.variable.Variable;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.Before;
@@ -41,6 +42,13 @@ public class ParserVariablesTest {
         assertEquals(false, variable.isConstant());
     }
 
+    @Test
+    public void testVariableNamesAfterParse() {
+        addTokens("a", "<", "-", "1", "b", "<", "-", "a");
+        parse();
+        assertEquals(Arrays.asList("a", "b"), subject.getVM().getVariables().getNames());
+    }
+
     @Test
     public void testCreatingAConstantVariable() {
         addTokens("constant", "a", "<", "-", "23");
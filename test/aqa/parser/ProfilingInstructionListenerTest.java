@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.parser;
+
+import aqa.Engine;
+import aqa.Interpreter;
+import aqa.InterpreterException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ProfilingInstructionListenerTest {
+
+    private static final String PROGRAM =
+            "SUBROUTINE twice(n)\n" +
+            "  RETURN n * 2\n" +
+            "ENDSUBROUTINE\n" +
+            "SUBROUTINE sum(n)\n" +
+            "  IF n = 0 THEN\n" +
+            "    RETURN 0\n" +
+            "  ENDIF\n" +
+            "  RETURN n + sum(n - 1)\n" +
+            "ENDSUBROUTINE\n" +
+            "total <- 0\n" +
+            "FOR i <- 1 TO 10\n" +
+            "  total <- total + twice(i)\n" +
+            "ENDFOR\n" +
+            "OUTPUT total + sum(5)\n";
+
+    private ProfilingInstructionListener profile(Engine engine) throws InterpreterException {
+        ProfilingInstructionListener profiler = new ProfilingInstructionListener();
+        List<String> output = new ArrayList<>();
+        Interpreter interpreter = new Interpreter(new StringReader(PROGRAM), output::add,
+                new NullInputProvider(), profiler);
+        interpreter.setEngine(engine);
+        interpreter.execute();
+        profiler.finish();
+        assertEquals("125", output.get(0));
+        return profiler;
+    }
+
+    @Test
+    public void countsTheLinesRunWithEachEngine() throws InterpreterException {
+        for (Engine engine : Engine.values()) {
+            ProfilingInstructionListener profiler = profile(engine);
+            assertEquals(engine.toString(), 1, profiler.getLineHits(10));
+            assertEquals(engine.toString(), 10, profiler.getLineHits(12));
+            assertEquals(engine.toString(), 10, profiler.getLineHits(2));
+            assertEquals(engine.toString(), 6, profiler.getLineHits(5));
+            assertEquals(engine.toString(), 1, profiler.getLineHits(6));
+            assertEquals(engine.toString(), 0, profiler.getLineHits(3));
+            assertEquals(engine.toString(), 0, profiler.getLineHits(1000));
+        }
+    }
+
+    @Test
+    public void countsTheSubroutineCallsWithEachEngine() throws InterpreterException {
+        for (Engine engine : Engine.values()) {
+            ProfilingInstructionListener profiler = profile(engine);
+            assertEquals(engine.toString(), 10, profiler.getSubroutineCalls("twice"));
+            assertEquals(engine.toString(), 6, profiler.getSubroutineCalls("sum"));
+            assertEquals(engine.toString(), 1, profiler.getSubroutineCalls(ProfilingInstructionListener.MAIN));
+            assertEquals(engine.toString(), 0, profiler.getSubroutineCalls("missing"));
+        }
+    }
+
+    @Test
+    public void subroutineTimesAreIncludedInMain() throws InterpreterException {
+        ProfilingInstructionListener profiler = profile(Engine.BYTECODE);
+        long main = profiler.getSubroutineNanos(ProfilingInstructionListener.MAIN);
+        long sum = profiler.getSubroutineNanos("sum");
+        long twice = profiler.getSubroutineNanos("twice");
+        assertTrue(sum > 0);
+        assertTrue(twice > 0);
+        assertTrue(main >= sum + twice);
+        long lines = 0;
+        for (int line = 1; line <= 14; line++) {
+            lines += profiler.getLineNanos(line);
+        }
+        assertTrue(lines <= main);
+    }
+
+    @Test
+    public void writesTheHotSpots() throws InterpreterException, IOException {
+        StringWriter report = new StringWriter();
+        profile(Engine.TREE_WALKER).writeReport(report);
+        String[] lines = report.toString().split("\\R");
+        assertTrue(lines[0].trim().startsWith("line"));
+        int subroutines = 0;
+        while (!lines[subroutines].isEmpty()) {
+            ++subroutines;
+        }
+        // a heading and the 8 lines that were run.
+        assertEquals(9, subroutines);
+        assertTrue(lines[subroutines + 1].startsWith("subroutine"));
+        assertTrue(lines[subroutines + 2].startsWith("main "));
+        assertEquals(subroutines + 5, lines.length);
+    }
+
+    @Test
+    public void writesCollapsedStacks() throws InterpreterException, IOException {
+        StringWriter stacks = new StringWriter();
+        profile(Engine.PARSER).writeCollapsedStacks(stacks);
+        List<String> frames = new ArrayList<>();
+        for (String line : stacks.toString().split("\\R")) {
+            assertTrue(line, line.matches("main(:\\d+)?(;\\w+(:\\d+)?)* \\d+"));
+            frames.add(line.substring(0, line.indexOf(' ')));
+        }
+        assertTrue(frames.contains("main:12;twice:2"));
+        assertTrue(frames.contains("main:14;sum:8;sum:8;sum:8;sum:8;sum:8;sum:6"));
+        assertFalse(frames.contains("main:12;twice:6"));
+    }
+
+    @Test
+    public void passesNotificationsOn() throws InterpreterException {
+        final List<String> events = new ArrayList<>();
+        InstructionListener next = new InstructionListener() {
+            @Override
+            public void newInstruction(int lineNumber, VirtualMachine vm) {
+                events.add(Integer.toString(lineNumber));
+            }
+
+            @Override
+            public void subroutineCalled(String name) {
+                events.add(name);
+            }
+
+            @Override
+            public void subroutineReturned(String name) {
+                events.add("/" + name);
+            }
+        };
+        ProfilingInstructionListener profiler = new ProfilingInstructionListener(next);
+        Interpreter interpreter = new Interpreter(new StringReader("SUBROUTINE f()\nOUTPUT 1\nENDSUBROUTINE\nf()\n"),
+                new NullOutputWriter(), new NullInputProvider(), profiler);
+        interpreter.execute();
+        profiler.finish();
+        assertEquals("[4, f, 2, /f]", events.toString());
+        assertEquals(1, profiler.getLineHits(2));
+    }
+
+    @Test
+    public void finishEndsSubroutinesThatDidNotReturn() throws InterpreterException {
+        ProfilingInstructionListener profiler = new ProfilingInstructionListener();
+        profiler.newInstruction(4, null);
+        profiler.subroutineCalled("f");
+        profiler.newInstruction(2, null);
+        profiler.finish();
+        profiler.finish();
+        assertEquals(1, profiler.getSubroutineCalls("f"));
+        assertTrue(profiler.getSubroutineNanos(ProfilingInstructionListener.MAIN)
+                >= profiler.getSubroutineNanos("f"));
+    }
+}
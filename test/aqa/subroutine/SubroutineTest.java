@@ -4,7 +4,10 @@
 package aqa.subroutine;
 
 import aqa.InterpreterException;
+import aqa.tokenizer.SlotTable;
 import aqa.tokenizer.Token;
+import aqa.tokenizer.Tokenizer;
+import java.io.StringReader;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -46,6 +49,15 @@ public class SubroutineTest {
         assertEquals("help", subject.getParameter(0));
     }
     
+    @Test
+    public void parameterSlotsComeFromTheBody() throws InterpreterException {
+        subject.addParameter("a");
+        subject.addParameter("b");
+        subject.setTokens(new Tokenizer(new StringReader("b <- c")).tokenize());
+        assertEquals(SlotTable.NONE, subject.getParameterSlot(0));
+        assertEquals(0, subject.getParameterSlot(1));
+    }
+
     @Test(expected=InterpreterException.class)
     public void gettingAnInvalidParameterIndex() throws Exception {
         subject.getParameter(293);
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import aqa.InterpreterException;
+import java.io.StringReader;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class IncrementalTokenizerTest {
+
+    private static final String PROGRAM = "a <- 1\n"
+            + "WHILE a < 10\n"
+            + "  OUTPUT 'a is', a  # show it\n"
+            + "  a <- a + 1\n"
+            + "ENDWHILE\n"
+            + "OUTPUT 'done'\n";
+
+    @Test
+    public void tokensAreTheSameAsTokenize() throws InterpreterException {
+        assertSameTokens(PROGRAM, new IncrementalTokenizer(PROGRAM));
+        assertSameTokens("", new IncrementalTokenizer());
+        assertSameTokens("x", new IncrementalTokenizer("x"));
+    }
+
+    @Test
+    public void onlyTheChangedLineIsTokenized() throws InterpreterException {
+        IncrementalTokenizer subject = new IncrementalTokenizer(PROGRAM);
+        subject.replaceLines(3, 1, "  a <- a + 2");
+        assertEquals(1, subject.getLinesTokenized());
+        assertSameTokens(PROGRAM.replace("a + 1", "a + 2"), subject);
+    }
+
+    @Test
+    public void linesCanBeAddedAndRemoved() throws InterpreterException {
+        IncrementalTokenizer subject = new IncrementalTokenizer(PROGRAM);
+        subject.replaceLines(1, 1, "b <- 2\nc <- 3\nWHILE a < 10");
+        assertEquals(3, subject.getLinesTokenized());
+        assertEquals(9, subject.getLineCount());
+        String program = PROGRAM.replace("\nWHILE", "\nb <- 2\nc <- 3\nWHILE");
+        assertSameTokens(program, subject);
+
+        subject.replaceLines(0, 3, "c <- 3");
+        assertEquals(1, subject.getLinesTokenized());
+        assertSameTokens(program.replace("a <- 1\nb <- 2\n", ""), subject);
+    }
+
+    @Test
+    public void openingAStringRetokenizesTheLinesAfter() throws InterpreterException {
+        IncrementalTokenizer subject = new IncrementalTokenizer(PROGRAM);
+        subject.replaceLines(1, 1, "WHILE 'a < 10");
+        assertSameTokens(PROGRAM.replace("WHILE a", "WHILE 'a"), subject);
+        assertTrue(subject.getLinesTokenized() > 1);
+
+        subject.replaceLines(1, 1, "WHILE a < 10");
+        assertSameTokens(PROGRAM, subject);
+    }
+
+    @Test
+    public void commentInsideTokenJoinsTheLines() throws InterpreterException {
+        IncrementalTokenizer subject = new IncrementalTokenizer("ab\ncd e");
+        subject.replaceLines(0, 1, "ab#comment");
+        assertSameTokens("ab#comment\ncd e", subject);
+        assertEquals("abcd", subject.getTokens().getName(0));
+    }
+
+    @Test
+    public void randomEditsGiveTheSameTokensAsTokenize() throws InterpreterException {
+        String[] pieces = {"a", "OUTPUT", " ", "<-", "'", "#", "\n", "1", "(", "IF", "\t"};
+        Random random = new Random(20);
+        StringBuilder text = new StringBuilder(PROGRAM);
+        IncrementalTokenizer subject = new IncrementalTokenizer(PROGRAM);
+        for (int edit = 0; edit < 500; edit++) {
+            String[] lines = text.toString().split("\n", -1);
+            int first = random.nextInt(lines.length);
+            int count = 1 + random.nextInt(Math.min(3, lines.length - first));
+            StringBuilder replacement = new StringBuilder();
+            for (int n = random.nextInt(6); n > 0; n--) {
+                replacement.append(pieces[random.nextInt(pieces.length)]);
+            }
+            subject.replaceLines(first, count, replacement.toString());
+
+            text.setLength(0);
+            for (int i = 0; i < lines.length; i++) {
+                if (i == first) {
+                    text.append(replacement).append('\n');
+                }
+                if (i < first || i >= first + count) {
+                    text.append(lines[i]).append('\n');
+                }
+            }
+            text.setLength(text.length() - 1);
+            assertSameTokens(text.toString(), subject);
+        }
+    }
+
+    private static void assertSameTokens(String source, IncrementalTokenizer subject) throws InterpreterException {
+        Tokens expected = new Tokenizer(new StringReader(source)).tokenize();
+        Tokens actual = subject.getTokens();
+        assertEquals(source, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(source, expected.getName(i), actual.getName(i));
+            assertEquals(source, expected.getLineNumber(i), actual.getLineNumber(i));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.io.StringReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author martinhart
+ */
+public class JumpTableTest {
+
+    private Tokens tokens;
+    private JumpTable subject;
+
+    private void createSubject(String code) throws Exception {
+        tokens = new Tokenizer(new StringReader(code)).tokenize();
+        subject = new JumpTable(tokens);
+    }
+
+    private int indexOf(String name, int occurrence) {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getToken(i).getName().equals(name) && occurrence-- == 0) {
+                return i;
+            }
+        }
+        fail("no " + name);
+        return -1;
+    }
+
+    @Test
+    public void ifMatchesElseAndElseMatchesEndIf() throws Exception {
+        createSubject("IF a THEN\nOUTPUT 1\nELSE\nOUTPUT 2\nENDIF");
+        assertEquals(indexOf("ELSE", 0), subject.getMatchingIndex(indexOf("IF", 0)));
+        assertEquals(indexOf("ENDIF", 0), subject.getMatchingIndex(indexOf("ELSE", 0)));
+        assertEquals(indexOf("ENDIF", 0), subject.getEndIndex(indexOf("IF", 0)));
+    }
+
+    @Test
+    public void elseIfSharesTheEndIf() throws Exception {
+        createSubject("IF a THEN\nELSE IF b THEN\nELSE\nENDIF");
+        assertEquals(indexOf("ELSE", 0), subject.getMatchingIndex(indexOf("IF", 0)));
+        assertEquals(indexOf("ELSE", 1), subject.getMatchingIndex(indexOf("ELSE", 0)));
+        assertEquals(indexOf("ENDIF", 0), subject.getMatchingIndex(indexOf("ELSE", 1)));
+        assertEquals(indexOf("ENDIF", 0), subject.getEndIndex(indexOf("ELSE", 0)));
+    }
+
+    @Test
+    public void nestedBlocksOfTheSameKind() throws Exception {
+        createSubject("WHILE a\nWHILE b\nENDWHILE\nENDWHILE\n"
+                + "FOR i <- 0 TO 1\nFOR j <- 0 TO 1\nENDFOR\nENDFOR\n"
+                + "REPEAT\nREPEAT\nUNTIL a\nUNTIL b\n"
+                + "IF a THEN\nIF b THEN\nELSE\nENDIF\nENDIF");
+        assertEquals(indexOf("ENDWHILE", 1), subject.getMatchingIndex(indexOf("WHILE", 0)));
+        assertEquals(indexOf("ENDWHILE", 0), subject.getMatchingIndex(indexOf("WHILE", 1)));
+        assertEquals(indexOf("ENDFOR", 1), subject.getMatchingIndex(indexOf("FOR", 0)));
+        assertEquals(indexOf("UNTIL", 1), subject.getMatchingIndex(indexOf("REPEAT", 0)));
+        assertEquals(indexOf("ENDIF", 1), subject.getMatchingIndex(indexOf("IF", 0)));
+        assertEquals(indexOf("ELSE", 0), subject.getMatchingIndex(indexOf("IF", 1)));
+    }
+
+    @Test
+    public void unclosedBlockRunsToTheEnd() throws Exception {
+        createSubject("WHILE a\nOUTPUT 1");
+        assertEquals(tokens.size(), subject.getMatchingIndex(0));
+    }
+
+    @Test
+    public void tokensThatDoNotOpenABlock() throws Exception {
+        createSubject("OUTPUT 1");
+        assertEquals(tokens.size(), subject.getMatchingIndex(0));
+        assertEquals(tokens.size(), subject.getMatchingIndex(-1));
+    }
+
+    @Test
+    public void tokensRebuildTableAfterAppend() throws Exception {
+        createSubject("WHILE a");
+        JumpTable before = tokens.getJumpTable();
+        assertSame(before, tokens.getJumpTable());
+        tokens.append(new Token("ENDWHILE", 2));
+        assertEquals(2, tokens.getJumpTable().getMatchingIndex(0));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author martinhart
+ */
+public class SlotTableTest {
+
+    private SlotTable createSubject(String code) throws Exception {
+        return new SlotTable(new Tokenizer(new StringReader(code)).tokenize());
+    }
+
+    @Test
+    public void sameNameSameSlot() throws Exception {
+        // a < - b + a
+        SlotTable subject = createSubject("a <- b + a");
+        assertEquals(0, subject.getSlot(0));
+        assertEquals(1, subject.getSlot(3));
+        assertEquals(0, subject.getSlot(5));
+        assertEquals(Arrays.asList("a", "b"), subject.getNames());
+    }
+
+    @Test
+    public void nonIdentifiersHaveNoSlot() throws Exception {
+        SlotTable subject = createSubject("OUTPUT 1 + 'a'");
+        for (int i = 0; i < 4; i++) {
+            assertEquals(SlotTable.NONE, subject.getSlot(i));
+        }
+        assertEquals(SlotTable.NONE, subject.getSlot(-1));
+        assertEquals(SlotTable.NONE, subject.getSlot(99));
+        assertTrue(subject.getNames().isEmpty());
+    }
+
+    @Test
+    public void tokensCacheTable() throws Exception {
+        Tokens tokens = new Tokenizer(new StringReader("a")).tokenize();
+        assertSame(tokens.getSlotTable(), tokens.getSlotTable());
+        tokens.append(new Token("b", 1));
+        assertEquals(Arrays.asList("a", "b"), tokens.getSlotTable().getNames());
+    }
+}
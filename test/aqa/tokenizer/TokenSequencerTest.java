@@ -238,6 +238,52 @@ public class TokenSequencerTest {
         assertNotEquals(a, b);
     }
 
+    @Test
+    public void testMatchSymbol() {
+        addTokens("IF", "a");
+        createSubject();
+        assertTrue(subject.match(Symbol.IF));
+        assertFalse(subject.match(Symbol.ENDIF));
+        assertEquals(Symbol.IF, subject.getCurrentSymbol());
+        subject.advance();
+        assertTrue(subject.match(TokenKind.IDENTIFIER));
+        assertNull(subject.getCurrentSymbol());
+        subject.advance();
+        assertFalse(subject.match(Symbol.IF));
+        assertFalse(subject.match(TokenKind.IDENTIFIER));
+        assertNull(subject.getCurrentKind());
+    }
+    
+    @Test
+    public void testExpectSymbol() throws Exception {
+        addTokens("(", ")");
+        createSubject();
+        subject.expect(Symbol.LEFT_PARENTHESIS);
+        assertEquals(1, subject.getCurrentIndex());
+        try {
+            subject.expect(Symbol.COMMA);
+            fail("expected exception");
+        } catch (InterpreterException e) {
+            assertEquals("line 2: expected ','", e.getLocalizedMessage());
+        }
+    }
+    
+    @Test
+    public void testJumpToMatching() {
+        addTokens("WHILE", "a", "WHILE", "b", "ENDWHILE", "ENDWHILE", "c");
+        createSubject();
+        subject.jumpToMatching(0);
+        assertEquals(5, subject.getCurrentIndex());
+    }
+
+    @Test
+    public void testJumpToEndIf() {
+        addTokens("IF", "a", "THEN", "ELSE", "IF", "b", "THEN", "ELSE", "ENDIF");
+        createSubject();
+        subject.jumpToEndIf(3);
+        assertEquals(8, subject.getCurrentIndex());
+    }
+    
     private void createSubject() {
         subject = new TokenSequencer(tokens);
     }
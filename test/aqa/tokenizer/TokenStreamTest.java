@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.tokenizer;
+
+import aqa.InterpreterException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class TokenStreamTest {
+
+    private static final String PROGRAM = "IF a THEN\n"
+            + "  WHILE b\n"
+            + "    IF c THEN x ELSE IF d THEN y ELSE z ENDIF\n"
+            + "  ENDWHILE\n"
+            + "ELSE\n"
+            + "  REPEAT\n"
+            + "    FOR i <- 1 TO 3 FOR j <- 1 TO 2 q ENDFOR ENDFOR\n"
+            + "  UNTIL e\n"
+            + "ENDIF\n"
+            + "WHILE f\n";
+
+    @Test
+    public void tokensAreTheSameAsTokenize() throws InterpreterException {
+        Tokens tokens = new Tokenizer(new StringReader(PROGRAM)).tokenize();
+        TokenStream subject = stream(PROGRAM);
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.getToken(i).getName(), subject.tokenAt(i).getName());
+            assertEquals(tokens.getToken(i).getLineNumber(), subject.tokenAt(i).getLineNumber());
+        }
+        assertNull(subject.tokenAt(tokens.size()));
+        assertNull(subject.tokenAt(-1));
+    }
+
+    @Test
+    public void blocksMatchTheJumpTable() throws InterpreterException {
+        Tokens tokens = new Tokenizer(new StringReader(PROGRAM)).tokenize();
+        JumpTable table = tokens.getJumpTable();
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenStream subject = stream(PROGRAM);
+            assertEquals("token " + i, table.getMatchingIndex(i), subject.getMatchingIndex(i));
+            assertEquals("token " + i, table.getEndIndex(i), subject.getEndIndex(i));
+        }
+    }
+
+    @Test
+    public void tokensAreReadWhenNeeded() {
+        CountingReader reader = new CountingReader("OUTPUT 1\n" + repeat("OUTPUT 2\n", 10000));
+        TokenStream subject = new TokenStream(new Tokenizer(reader));
+        assertEquals("OUTPUT", subject.tokenAt(0).getName());
+        assertTrue(reader.read < 10000);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void releasedTokensAreGone() {
+        TokenStream subject = stream("a b c d");
+        assertEquals("c", subject.tokenAt(2).getName());
+        subject.release(2);
+        assertEquals("c", subject.tokenAt(2).getName());
+        subject.tokenAt(1);
+    }
+
+    @Test
+    public void manyTokensCanBeReleased() {
+        TokenStream subject = stream(repeat("a ", 5000));
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("a", subject.tokenAt(i).getName());
+            subject.release(i);
+        }
+        assertNull(subject.tokenAt(5000));
+    }
+
+    @Test
+    public void failureToReadEndsTheStream() {
+        TokenStream subject = new TokenStream(new Tokenizer(new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("WOOO");
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+        assertNull(subject.tokenAt(0));
+        assertEquals("line 1: WOOO", subject.getFailure().getMessage());
+    }
+
+    private TokenStream stream(String source) {
+        return new TokenStream(new Tokenizer(new StringReader(source)));
+    }
+
+    private String repeat(String s, int times) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+
+    private static class CountingReader extends StringReader {
+
+        private int read;
+
+        CountingReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            read += Math.max(n, 0);
+            return n;
+        }
+    }
+}
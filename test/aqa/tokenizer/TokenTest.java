@@ -31,6 +31,42 @@ public class TokenTest {
         assertEquals("bye", t.getName());
     }
     
+    @Test
+    public void testKeyword() throws Exception {
+        Token t = new Token("ENDWHILE", 1);
+        assertEquals(TokenKind.KEYWORD, t.getKind());
+        assertEquals(Symbol.ENDWHILE, t.getSymbol());
+        assertTrue(t.is(Symbol.ENDWHILE));
+        assertFalse(t.is(Symbol.WHILE));
+    }
+    
+    @Test
+    public void testOperator() throws Exception {
+        Token t = new Token("(", 1);
+        assertEquals(TokenKind.OPERATOR, t.getKind());
+        assertEquals(Symbol.LEFT_PARENTHESIS, t.getSymbol());
+    }
+    
+    @Test
+    public void testIdentifier() throws Exception {
+        Token t = new Token("endwhile", 1);
+        assertEquals(TokenKind.IDENTIFIER, t.getKind());
+        assertNull(t.getSymbol());
+    }
+    
+    @Test
+    public void testLiterals() throws Exception {
+        assertEquals(TokenKind.INTEGER_LITERAL, new Token("42", 1).getKind());
+        assertEquals(TokenKind.REAL_LITERAL, new Token("4.2", 1).getKind());
+        assertEquals(TokenKind.STRING_LITERAL, new Token("'4.2'", 1).getKind());
+    }
+    
+    @Test
+    public void testNegativeLiteralAndMinus() throws Exception {
+        assertEquals(TokenKind.INTEGER_LITERAL, new Token("-1", 1).getKind());
+        assertEquals(Symbol.MINUS, new Token("-", 1).getSymbol());
+    }
+    
     @Test(expected=Exception.class)
     public void testInvalidLineNumberWithZero() throws Exception {
         Token t = new Token("hello", 0);
@@ -137,6 +137,28 @@ public class TokenizerTest {
         token = tokens.getToken(1);
     }
 
+    @Test
+    public void testSourceLongerThanOneRead() throws Exception {
+        StringBuilder data = new StringBuilder();
+        for (int i = 1; i <= 5000; i++) {
+            data.append("x").append(i).append(" <- 'line ").append(i).append("'\n");
+        }
+        createSource(data.toString());
+        tokens = subject.tokenize();
+        assertEquals(20000, tokens.size());
+        matchToken(0, "x1", 1);
+        matchToken(19996, "x5000", 5000);
+        matchToken(19999, "'line 5000'", 5000);
+    }
+
+    @Test
+    public void testCommentInsideToken() throws Exception {
+        createSource("ab#comment\ncd e");
+        tokens = subject.tokenize();
+        matchToken(0, "abcd", 1);
+        matchToken(1, "e", 2);
+    }
+
     private void createSource(String data) {
         reader = new StringReader(data);
         subject = new Tokenizer(reader);
@@ -32,5 +32,65 @@ public class TokensTest {
         subject.append(new Token("a", 1));
         assertEquals(false, subject.isEmpty());
     }
+
+    @Test
+    public void testTokensAreKeptByIndex() throws Exception {
+        subject.append(new Token("a", 1));
+        subject.append(new Token("IF", 2));
+        subject.append(new Token("a", 3));
+        assertEquals(3, subject.size());
+        assertEquals("a", subject.getName(2));
+        assertEquals(3, subject.getLineNumber(2));
+        assertEquals(Symbol.IF, subject.getSymbol(1));
+        assertEquals(TokenKind.IDENTIFIER, subject.getKind(0));
+        assertEquals(3, subject.getToken(2).getLineNumber());
+        assertSame(subject.textAt(0), subject.textAt(2));
+    }
+
+    @Test
+    public void testRangeSharesTokens() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            subject.append(new Token("t" + i, i));
+        }
+        Tokens range = subject.range(1, 4);
+        assertEquals(3, range.size());
+        assertEquals("t2", range.getName(0));
+        assertEquals(4, range.getLineNumber(2));
+        assertNull(range.tokenAt(3));
+        assertEquals(0, range.getSlot(0));
+        subject.append(new Token("t6", 6));
+        assertEquals(3, range.size());
+    }
+
+    @Test
+    public void testFromTable() throws Exception {
+        Token[] distinct = {new Token("a", 1), new Token("IF", 1)};
+        subject = Tokens.fromTable(distinct, new int[] {1, 0, 0}, new int[] {1, 1, 3});
+        assertEquals(3, subject.size());
+        assertEquals(Symbol.IF, subject.getSymbol(0));
+        assertEquals("a", subject.getName(2));
+        assertEquals(3, subject.getLineNumber(2));
+        subject.append(new Token("a", 4));
+        subject.append(new Token("b", 4));
+        assertEquals("a", subject.getName(3));
+        assertEquals("b", subject.getName(4));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFromTableWithAnInvalidText() throws Exception {
+        Tokens.fromTable(new Token[] {new Token("a", 1)}, new int[] {1}, new int[] {1});
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testRangeCannotBeAppendedTo() throws Exception {
+        subject.append(new Token("a", 1));
+        subject.range(0, 1).append(new Token("b", 1));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetTokenOutOfRange() throws Exception {
+        subject.append(new Token("a", 1));
+        subject.range(1, 1).getToken(0);
+    }
     
 }
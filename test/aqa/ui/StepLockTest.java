@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.ui;
+
+import aqa.InterpreterException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author martinhart
+ */
+public class StepLockTest {
+
+    @Test(timeout = 5000)
+    public void stepAlreadyPressedLetsTheWorkerThrough() throws InterpreterException {
+        StepLock lock = new StepLock();
+        lock.allowContinue();
+        lock.awaitStep();
+    }
+
+    @Test(timeout = 5000)
+    public void eachStepLetsOneInstructionThrough() throws InterruptedException {
+        StepLock lock = new StepLock();
+        AtomicInteger steps = new AtomicInteger();
+        Thread worker = new Thread(() -> {
+            try {
+                while (true) {
+                    lock.awaitStep();
+                    steps.incrementAndGet();
+                }
+            } catch (InterpreterException e) {
+                // cancelled.
+            }
+        });
+        worker.start();
+        for (int i = 1; i <= 3; i++) {
+            lock.allowContinue();
+            while (steps.get() < i) {
+                Thread.sleep(1);
+            }
+        }
+        Thread.sleep(50);
+        assertEquals(3, steps.get());
+        lock.cancel();
+        worker.join();
+    }
+
+    @Test(timeout = 5000)
+    public void cancelWakesTheWorker() throws InterruptedException {
+        StepLock lock = new StepLock();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<InterpreterException> error = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            started.countDown();
+            try {
+                lock.awaitStep();
+            } catch (InterpreterException e) {
+                error.set(e);
+            }
+        });
+        worker.start();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        lock.cancel();
+        worker.join();
+        assertEquals("process cancelled", error.get().getMessage());
+    }
+
+    @Test(expected = InterpreterException.class)
+    public void cancelledLockDoesNotWait() throws InterpreterException {
+        StepLock lock = new StepLock();
+        lock.cancel();
+        lock.allowContinue();
+        lock.awaitStep();
+    }
+
+    @Test(timeout = 5000)
+    public void interruptWakesTheWorker() throws InterruptedException {
+        StepLock lock = new StepLock();
+        AtomicReference<InterpreterException> error = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                lock.awaitStep();
+            } catch (InterpreterException e) {
+                error.set(e);
+            }
+        });
+        worker.start();
+        worker.interrupt();
+        worker.join();
+        assertNotNull(error.get());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.value;
+
+import aqa.InterpreterException;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author martinhart
+ */
+public class ArrayValueStackTest {
+    
+    private ArrayValueStack subject;
+    
+    @Before
+    public void setUp() {
+        subject = new ArrayValueStack();
+    }
+
+    @Test
+    public void testPushValue() throws InterpreterException {
+        Value v = new ValueStub();
+        subject.push(v);
+        assertEquals(v, subject.pop());
+    }
+    
+    @Test(expected=InterpreterException.class)
+    public void testPopBooleanWithoutBoolean() throws InterpreterException {
+        subject.push(new ValueStub());
+        subject.popBoolean();
+    }
+    
+    @Test
+    public void testPopBoolean() throws InterpreterException {
+        subject.push(true);
+        assertEquals(true, subject.popBoolean());
+        subject.push(false);
+        assertEquals(false, subject.popBoolean());
+    }
+    
+    @Test(expected=InterpreterException.class)
+    public void testPopIntegerWithoutInteger() throws InterpreterException {
+        subject.push(new ValueStub());
+        subject.popInteger();
+    }
+    
+    @Test
+    public void testPopInteger() throws InterpreterException {
+        subject.push(9);
+        assertEquals(9, subject.popInteger());
+    }
+    
+    @Test(expected=InterpreterException.class)
+    public void testPopStringWithoutString() throws InterpreterException {
+        subject.push(new ValueStub());
+        subject.popString();
+    }
+    
+    @Test
+    public void testPopString() throws InterpreterException {
+        subject.push("a");
+        assertEquals("a", subject.popString());
+    }
+    
+    @Test(expected=InterpreterException.class)
+    public void testPopWhenEmpty() throws InterpreterException {
+        subject.pop();
+    }
+    
+    @Test(expected=InterpreterException.class)
+    public void testPeekWhenEmpty() throws InterpreterException {
+        subject.peek();
+    }
+    
+    @Test
+    public void testPeekLeavesValue() throws InterpreterException {
+        subject.push(1);
+        subject.push(2);
+        assertEquals(2, (int) subject.peek().getValue());
+        assertEquals(2, subject.size());
+    }
+    
+    @Test
+    public void testGrowsBeyondInitialCapacity() throws InterpreterException {
+        for (int i = 0; i < 100; i++) {
+            subject.push(i);
+        }
+        assertEquals(100, subject.size());
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, subject.popInteger());
+        }
+        assertEquals(0, subject.size());
+    }
+    
+    private class ValueStub extends ValueBase {
+        
+        public ValueStub() {
+            super("STUB");
+        }
+        
+    }    
+}
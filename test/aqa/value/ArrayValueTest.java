@@ -64,4 +64,122 @@ public class ArrayValueTest {
         assertEquals(NullValue.instance, subject.getAtIndex(1));
     }
         
+    @Test
+    public void integerArrayUsesPrimitiveStorage() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        subject.setAtIndex(1, new IntegerValue(2));
+        assertTrue(subject.getStorage() instanceof ArrayStorage.Integers);
+        assertEquals(2, ((IntegerValue)subject.getAtIndex(1)).value);
+        assertEquals("[1, 2]", subject.inspect());
+    }
+    
+    @Test
+    public void realAndBooleanArraysUsePrimitiveStorage() throws InterpreterException {
+        ArrayValue reals = new ArrayValue(), booleans = new ArrayValue();
+        reals.setAtIndex(0, new RealValue(1.5));
+        booleans.setAtIndex(0, BooleanValue.TRUE);
+        assertTrue(reals.getStorage() instanceof ArrayStorage.Reals);
+        assertTrue(booleans.getStorage() instanceof ArrayStorage.Booleans);
+        assertEquals(1.5, ((RealValue)reals.getAtIndex(0)).value, 0.0);
+        assertEquals(BooleanValue.TRUE, booleans.getAtIndex(0));
+    }
+    
+    @Test
+    public void storingDifferentTypeWidensToGenericStorage() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        subject.setAtIndex(1, new IntegerValue(2));
+        subject.setAtIndex(1, new StringValue("hi"));
+        assertTrue(subject.getStorage() instanceof ArrayStorage.Generic);
+        assertEquals("[1, 'hi']", subject.inspect());
+    }
+    
+    @Test
+    public void paddingWidensToGenericStorage() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        subject.setAtIndex(2, new IntegerValue(3));
+        assertTrue(subject.getStorage() instanceof ArrayStorage.Generic);
+        assertEquals(NullValue.instance, subject.getAtIndex(1));
+        assertEquals(3, subject.length().value);
+    }
+    
+    @Test
+    public void copyOfPrimitiveArrayIsIndependent() throws InterpreterException {
+        for (int i = 0; i < 20; i++) {
+            subject.setAtIndex(i, new IntegerValue(i));
+        }
+        Value copy = subject.makeCopy();
+        copy.setAtIndex(0, new IntegerValue(99));
+        assertEquals(0, ((IntegerValue)subject.getAtIndex(0)).value);
+        assertEquals(99, ((IntegerValue)copy.getAtIndex(0)).value);
+        assertEquals(20, copy.length().value);
+    }
+    
+    @Test
+    public void copySharesStorageUntilModified() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        ArrayValue copy = (ArrayValue) subject.makeCopy();
+        assertSame(subject.getStorage(), copy.getStorage());
+        copy.setAtIndex(0, new IntegerValue(2));
+        assertNotSame(subject.getStorage(), copy.getStorage());
+        assertEquals(1, ((IntegerValue)subject.getAtIndex(0)).value);
+        assertEquals(2, ((IntegerValue)copy.getAtIndex(0)).value);
+    }
+    
+    @Test
+    public void originalModifiedInPlaceOnceCopyHasMoved() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        ArrayStorage storage = subject.getStorage();
+        ArrayValue copy = (ArrayValue) subject.makeCopy();
+        copy.setAtIndex(0, new IntegerValue(2));
+        subject.setAtIndex(0, new IntegerValue(3));
+        assertSame(storage, subject.getStorage());
+        assertEquals(2, ((IntegerValue)copy.getAtIndex(0)).value);
+    }
+    
+    @Test
+    public void modifyingOriginalDoesNotChangeCopy() throws InterpreterException {
+        subject.setAtIndex(0, new StringValue("a"));
+        Value copy = subject.makeCopy();
+        subject.setAtIndex(1, new StringValue("b"));
+        assertEquals(1, copy.length().value);
+        assertEquals("['a']", copy.inspect());
+    }
+    
+    @Test
+    public void nestedArraysAreCopiedByValue() throws InterpreterException {
+        ArrayValue inner = new ArrayValue();
+        inner.setAtIndex(0, new IntegerValue(1));
+        subject.setAtIndex(0, inner);
+        Value copy = subject.makeCopy();
+        copy.getAtIndex(0).setAtIndex(0, new IntegerValue(2));
+        assertEquals("[[1]]", subject.inspect());
+        assertEquals("[[2]]", copy.inspect());
+        inner.setAtIndex(0, new IntegerValue(3));
+        assertEquals("[[3]]", subject.inspect());
+        assertEquals("[[2]]", copy.inspect());
+    }
+
+    @Test
+    public void originalModifiedInPlaceOnceCopyIsReleased() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        ArrayStorage storage = subject.getStorage();
+        Value copy = subject.makeCopy();
+        ArrayValue.releaseArguments(new Value[] {copy, null}, new IntegerValue(1));
+        subject.setAtIndex(0, new IntegerValue(3));
+        assertSame(storage, subject.getStorage());
+    }
+
+    @Test
+    public void copyReachableFromTheResultIsNotReleased() throws InterpreterException {
+        subject.setAtIndex(0, new IntegerValue(1));
+        Value copy = subject.makeCopy();
+        ArrayValue result = new ArrayValue();
+        result.setAtIndex(0, result);
+        result.setAtIndex(1, copy);
+        ArrayValue.releaseArguments(new Value[] {copy}, result);
+        subject.setAtIndex(0, new IntegerValue(3));
+        assertEquals(1, ((IntegerValue)copy.getAtIndex(0)).value);
+        ArrayValue.releaseArguments(new Value[] {copy}, copy);
+        assertEquals(1, ((IntegerValue)copy.getAtIndex(0)).value);
+    }
 }
@@ -26,5 +26,12 @@ public class BooleanValueTest {
         subject = new BooleanValue(false);
         assertEquals("FALSE", subject.output());
     }
-    
+
+    @Test
+    public void testValueOf() {
+        assertSame(BooleanValue.TRUE, BooleanValue.valueOf(true));
+        assertSame(BooleanValue.FALSE, BooleanValue.valueOf(false));
+        assertEquals(true, BooleanValue.TRUE.value);
+        assertEquals(false, BooleanValue.FALSE.value);
+    }
 }
@@ -115,4 +115,23 @@ public class IntegerValueTest {
     public void testToStr() throws Exception {
         assertEquals(true, new StringValue("0").equal(subject.toStr()));
     }
+
+    @Test
+    public void testValueOfSharesCommonValues() {
+        assertSame(IntegerValue.valueOf(0), IntegerValue.valueOf(0));
+        assertSame(IntegerValue.valueOf(-128), IntegerValue.valueOf(-128));
+        assertSame(IntegerValue.valueOf(65535), IntegerValue.valueOf(65535));
+        assertEquals(42, IntegerValue.valueOf(42).value);
+    }
+
+    @Test
+    public void testValueOfOutsideCachedRange() {
+        assertEquals(1000000, IntegerValue.valueOf(1000000).value);
+        assertEquals(-1000000, IntegerValue.valueOf(-1000000).value);
+    }
+
+    @Test
+    public void testArithmeticUsesSharedValues() throws Exception {
+        assertSame(IntegerValue.valueOf(3), new IntegerValue(1).add(new IntegerValue(2)));
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Martin Hart under the terms of the MIT licence.
+ */
+package aqa.variable;
+
+import aqa.InterpreterException;
+import aqa.value.NullValue;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.Before;
+
+/**
+ *
+ * @author martinhart
+ */
+public class FrameVariableTableTest {
+
+    private FrameVariableTable subject;
+
+    @Before
+    public void setUp() {
+        subject = new FrameVariableTable(Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void getBySlotCreatesIfNotPresent() {
+        Variable v = subject.get(1);
+        assertEquals("b", v.getName());
+        assertEquals(true, v.getValue() instanceof NullValue);
+        assertSame(v, subject.get(1));
+    }
+
+    @Test
+    public void getByNameUsesSlot() {
+        assertSame(subject.get(0), subject.get("a"));
+        assertEquals(0, subject.getSlot("a"));
+        assertEquals(-1, subject.getSlot("c"));
+    }
+
+    @Test
+    public void namesWithoutASlotAreKept() {
+        Variable c = subject.get("c");
+        assertSame(c, subject.get("c"));
+        assertEquals(1, subject.size());
+    }
+
+    @Test
+    public void setUsesSlot() throws InterpreterException {
+        Variable b = new Variable("b");
+        subject.set(b);
+        assertSame(b, subject.get(1));
+    }
+
+    @Test
+    public void setByKnownSlot() throws InterpreterException {
+        Variable b = new Variable("b");
+        Variable c = new Variable("c");
+        subject.set(1, b);
+        subject.set(-1, c);
+        assertSame(b, subject.get("b"));
+        assertSame(c, subject.get("c"));
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void setExistingSlotThrows() throws InterpreterException {
+        subject.get(0);
+        subject.set(new Variable("a"));
+    }
+
+    @Test(expected=InterpreterException.class)
+    public void setExistingNameThrows() throws InterpreterException {
+        subject.set(new Variable("c"));
+        subject.set(new Variable("c"));
+    }
+
+    @Test
+    public void onlyUsedVariablesAreNamed() throws InterpreterException {
+        assertEquals(0, subject.size());
+        subject.get("b");
+        subject.set(new Variable("z"));
+        List<String> names = subject.getNames();
+        assertEquals(Arrays.asList("b", "z"), names);
+    }
+}